@@ -22,14 +22,73 @@
  */
 package com.cyberfront.crdt;
 
+import java.io.IOException;
 import java.util.Observable;
 
+import com.cyberfront.crdt.events.ChangeEvent;
+import com.cyberfront.crdt.events.ChangePublisher;
+import com.cyberfront.crdt.support.JsonStreamable;
+import com.cyberfront.crdt.support.Support;
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.JsonNode;
 
 /**
  * This is an abstract base class for CRDT classes.  It specifies the standard interfaces for all derived CRDT classes
+ * 
+ * Each CRDT can publish its changes to subscribers through a ChangePublisher, so they can follow the document without
+ * polling it.
  */
-public abstract class AbstractCRDT extends Observable {
+public abstract class AbstractCRDT extends Observable implements JsonStreamable {
+	
+	/** The publisher of the changes made to this CRDT, created when first requested */
+	private volatile ChangePublisher changes;
+	
+	/**
+	 * Retrieve the publisher of the changes made to this CRDT, through which subscribers receive a ChangeEvent for each
+	 * operation inserted
+	 * 
+	 * @return The publisher of the changes made to this CRDT
+	 */
+	public ChangePublisher getChanges() {
+		if (null == this.changes) {
+			synchronized (this) {
+				if (null == this.changes) {
+					this.changes = new ChangePublisher();
+				}
+			}
+		}
+		
+		return this.changes;
+	}
+	
+	/**
+	 * Determine whether any subscriber is following the changes made to this CRDT
+	 * 
+	 * @return True exactly when there is at least one subscriber
+	 */
+	protected boolean hasSubscribers() {
+		return null != this.changes && this.changes.hasSubscribers();
+	}
+	
+	/**
+	 * Determine whether any subscriber wants the patch each change makes to the document
+	 * 
+	 * @return True exactly when at least one subscriber wants patches
+	 */
+	protected boolean isPatchRequested() {
+		return null != this.changes && this.changes.isPatchRequested();
+	}
+	
+	/**
+	 * Publish a change to the subscribers following this CRDT
+	 * 
+	 * @param event The change to publish
+	 */
+	protected void publish(ChangeEvent event) {
+		if (null != this.changes) {
+			this.changes.publish(event);
+		}
+	}
 	
 	/**
 	 * This will return true exactly when there is at least one com.cyberfront.crdt.operations.DeleteOperation in the list being maintained by the CRDT 
@@ -81,18 +140,26 @@ public abstract class AbstractCRDT extends Observable {
 	public abstract JsonNode getDocument(long timestamp);
 
 	/**
-	 * This is used to create a string representation of the CRDT in support of the toString() method
-	 * @return Return the relevant data for the CRDT
+	 * Stream the fields of this instance to the given generator
+	 *
+	 * @param gen The generator to write to
+	 * @throws IOException If the generator fails to write
 	 */
-	protected String getSegment() {
-		StringBuilder sb = new StringBuilder();
-		JsonNode value = this.getDocument();
-		
-		sb.append("\"created\":\"" + this.isCreated() + "\",");
-		sb.append("\"deleted\":\"" + this.isDeleted() + "\",");
-		sb.append("\"value\":" + (null == value ? "null" : value));
+	protected void writeSegment(JsonGenerator gen) throws IOException {
+		gen.writeStringField("created", String.valueOf(this.isCreated()));
+		gen.writeStringField("deleted", String.valueOf(this.isDeleted()));
+		gen.writeFieldName("value");
+		Support.writeJson(gen, this.getDocument());
+	}
 
-		return sb.toString();
+	/* (non-Javadoc)
+	 * @see com.cyberfront.crdt.support.JsonStreamable#writeJson(com.fasterxml.jackson.core.JsonGenerator)
+	 */
+	@Override
+	public void writeJson(JsonGenerator gen) throws IOException {
+		gen.writeStartObject();
+		this.writeSegment(gen);
+		gen.writeEndObject();
 	}
 	
 	/* (non-Javadoc)
@@ -100,6 +167,6 @@ public abstract class AbstractCRDT extends Observable {
 	 */
 	@Override
 	public String toString() {
-		return "{" + this.getSegment() + "}";
+		return Support.toJson(this);
 	}
 }
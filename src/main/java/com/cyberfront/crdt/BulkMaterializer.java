@@ -0,0 +1,448 @@
+/*
+ * Copyright (c) 2017 Cybernetic Frontiers LLC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package com.cyberfront.crdt;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * The BulkMaterializer class materializes, or validates, the documents of many CRDT managers in parallel on a
+ * ForkJoinPool, such as after a large set of them has been loaded, so the process warms up on every core rather than
+ * rebuilding each document on its first read.  The managers are split recursively into ranges, down to a few per
+ * task, so idle workers steal ranges from busy ones and a few documents with long histories do not hold up the rest.
+ * 
+ * Progress is reported as each manager completes.  The first exception thrown while materializing a document cancels
+ * the run: managers not yet started are skipped, and the exception is rethrown to the caller, wrapped in a
+ * BulkException, once every task has stopped.  Evictions from the DocumentCache are held off for the length of a run.
+ * 
+ * The managers must not be changed or read by other threads while they are materialized.
+ */
+public class BulkMaterializer implements AutoCloseable {
+
+	/**
+	 * The Mode enumeration lists what is done with the document of each manager
+	 */
+	public enum Mode {
+		
+		/** Materialize the document, so it is resident for the first read */
+		MATERIALIZE,
+		
+		/** Materialize the document, and report the managers holding operations which could not be applied */
+		VALIDATE
+	}
+
+	/**
+	 * The Progress interface receives the progress of a run.  It is called on the worker threads, concurrently, so the
+	 * counts it is given may arrive out of order.
+	 */
+	@FunctionalInterface
+	public interface Progress {
+		
+		/**
+		 * Report the progress of a run
+		 *
+		 * @param completed The number of managers completed so far
+		 * @param total The number of managers in the run
+		 */
+		void onProgress(int completed, int total);
+	}
+
+	/**
+	 * The Report class holds the outcome of a run
+	 */
+	public static class Report {
+		
+		/** The number of managers in the run */
+		private final int total;
+		
+		/** The number of managers completed */
+		private final int completed;
+		
+		/** The managers found holding invalid operations, if validating */
+		private final Collection<CRDTManager> invalid;
+		
+		/** The time the run took, in nanoseconds */
+		private final long elapsedNanos;
+
+		/**
+		 * Instantiates a new report
+		 *
+		 * @param total The number of managers in the run
+		 * @param completed The number of managers completed
+		 * @param invalid The managers found holding invalid operations
+		 * @param elapsedNanos The time the run took, in nanoseconds
+		 */
+		private Report(int total, int completed, Collection<CRDTManager> invalid, long elapsedNanos) {
+			this.total = total;
+			this.completed = completed;
+			this.invalid = Collections.unmodifiableCollection(invalid);
+			this.elapsedNanos = elapsedNanos;
+		}
+
+		/**
+		 * Retrieve the number of managers in the run, each counted once however often it was given
+		 *
+		 * @return The number of managers in the run
+		 */
+		public int getTotal() {
+			return this.total;
+		}
+
+		/**
+		 * Retrieve the number of managers completed, which is less than the total if the run was cancelled
+		 *
+		 * @return The number of managers completed
+		 */
+		public int getCompleted() {
+			return this.completed;
+		}
+
+		/**
+		 * Retrieve the managers found holding invalid operations, which is empty unless the run was validating
+		 *
+		 * @return The managers found holding invalid operations
+		 */
+		public Collection<CRDTManager> getInvalid() {
+			return this.invalid;
+		}
+
+		/**
+		 * Retrieve the time the run took
+		 *
+		 * @return The time the run took, in nanoseconds
+		 */
+		public long getElapsedNanos() {
+			return this.elapsedNanos;
+		}
+	}
+
+	/**
+	 * The BulkException class reports the exception which cancelled a run, along with the manager whose document was
+	 * being materialized and the progress made up to then
+	 */
+	public static class BulkException extends RuntimeException {
+
+		/** Serial version identifier */
+		private static final long serialVersionUID = 1L;
+		
+		/** The manager whose document was being materialized */
+		private final transient CRDTManager manager;
+		
+		/** The progress made before the run was cancelled */
+		private final transient Report report;
+
+		/**
+		 * Instantiates a new exception
+		 *
+		 * @param manager The manager whose document was being materialized
+		 * @param report The progress made before the run was cancelled
+		 * @param cause The exception which cancelled the run
+		 */
+		private BulkException(CRDTManager manager, Report report, Throwable cause) {
+			super("Bulk materialization cancelled after " + report.getCompleted() + " of " + report.getTotal() + " managers", cause);
+			this.manager = manager;
+			this.report = report;
+		}
+
+		/**
+		 * Retrieve the manager whose document was being materialized
+		 *
+		 * @return The manager whose document was being materialized
+		 */
+		public CRDTManager getManager() {
+			return this.manager;
+		}
+
+		/**
+		 * Retrieve the progress made before the run was cancelled
+		 *
+		 * @return The progress made before the run was cancelled
+		 */
+		public Report getReport() {
+			return this.report;
+		}
+	}
+
+	/**
+	 * A Run holds the state shared by the tasks of a single run
+	 */
+	private static class Run {
+		
+		/** The managers to process */
+		private final List<CRDTManager> managers;
+		
+		/** What is done with each document */
+		private final Mode mode;
+		
+		/** The receiver of the progress, or null if there is none */
+		private final Progress progress;
+		
+		/** The largest number of managers processed by a single task without splitting */
+		private final int threshold;
+		
+		/** The number of managers completed */
+		private final AtomicInteger completed = new AtomicInteger();
+		
+		/** The managers found holding invalid operations */
+		private final Queue<CRDTManager> invalid = new ConcurrentLinkedQueue<>();
+		
+		/** The first exception thrown, which cancels the run */
+		private final AtomicReference<RuntimeException> failure = new AtomicReference<>();
+		
+		/** The manager whose document was being materialized when the run was cancelled */
+		private volatile CRDTManager failed = null;
+
+		/**
+		 * Instantiates a new run
+		 *
+		 * @param managers The managers to process
+		 * @param mode What is done with each document
+		 * @param progress The receiver of the progress, or null if there is none
+		 * @param parallelism The parallelism of the pool the run is on
+		 */
+		private Run(List<CRDTManager> managers, Mode mode, Progress progress, int parallelism) {
+			this.managers = managers;
+			this.mode = mode;
+			this.progress = progress;
+			this.threshold = Math.max(1, managers.size() / (8 * parallelism));
+		}
+
+		/**
+		 * Determine whether the run was cancelled
+		 *
+		 * @return True exactly when a manager has failed
+		 */
+		private boolean isCancelled() {
+			return null != this.failure.get();
+		}
+
+		/**
+		 * Process a single manager, cancelling the run if it fails
+		 *
+		 * @param manager The manager to process
+		 */
+		private void process(CRDTManager manager) {
+			try {
+				if (Mode.VALIDATE == this.mode) {
+					if (manager.getCrdt().hasInvalidOperations()) {
+						this.invalid.add(manager);
+					}
+				} else {
+					manager.getCrdt().getDocument();
+				}
+				
+				int done = this.completed.incrementAndGet();
+				
+				if (null != this.progress) {
+					this.progress.onProgress(done, this.managers.size());
+				}
+			} catch (RuntimeException e) {
+				if (this.failure.compareAndSet(null, e)) {
+					this.failed = manager;
+				}
+			}
+		}
+	}
+
+	/**
+	 * A Slice is the task processing a range of the managers of a run, splitting it in two while it is large
+	 */
+	private static class Slice extends RecursiveAction {
+
+		/** Serial version identifier */
+		private static final long serialVersionUID = 1L;
+		
+		/** The run the range belongs to */
+		private final transient Run run;
+		
+		/** The index of the first manager in the range */
+		private final int lo;
+		
+		/** The index after the last manager in the range */
+		private final int hi;
+
+		/**
+		 * Instantiates a new task
+		 *
+		 * @param run The run the range belongs to
+		 * @param lo The index of the first manager in the range
+		 * @param hi The index after the last manager in the range
+		 */
+		private Slice(Run run, int lo, int hi) {
+			this.run = run;
+			this.lo = lo;
+			this.hi = hi;
+		}
+
+		/* (non-Javadoc)
+		 * @see java.util.concurrent.RecursiveAction#compute()
+		 */
+		@Override
+		protected void compute() {
+			if (this.run.isCancelled()) {
+				return;
+			} else if (this.hi - this.lo > this.run.threshold) {
+				int mid = (this.lo + this.hi) >>> 1;
+				invokeAll(new Slice(this.run, this.lo, mid), new Slice(this.run, mid, this.hi));
+			} else {
+				for (int i = this.lo; i < this.hi && !this.run.isCancelled(); ++i) {
+					this.run.process(this.run.managers.get(i));
+				}
+			}
+		}
+	}
+
+	/** The pool the runs are on */
+	private final ForkJoinPool pool;
+	
+	/** Flag indicating the pool was created for this instance, and so is shut down when it is closed */
+	private final boolean ownPool;
+
+	/**
+	 * Instantiates a new materializer running on the common ForkJoinPool
+	 */
+	public BulkMaterializer() {
+		this(ForkJoinPool.commonPool(), false);
+	}
+
+	/**
+	 * Instantiates a new materializer running on a pool of its own, which is shut down when it is closed
+	 *
+	 * @param parallelism The number of worker threads of the pool
+	 */
+	public BulkMaterializer(int parallelism) {
+		this(new ForkJoinPool(parallelism), true);
+	}
+
+	/**
+	 * Instantiates a new materializer running on the given pool, which is left running when it is closed
+	 *
+	 * @param pool The pool to run on
+	 */
+	public BulkMaterializer(ForkJoinPool pool) {
+		this(pool, false);
+	}
+
+	/**
+	 * Instantiates a new materializer
+	 *
+	 * @param pool The pool to run on
+	 * @param ownPool Flag indicating the pool is shut down when the materializer is closed
+	 */
+	private BulkMaterializer(ForkJoinPool pool, boolean ownPool) {
+		this.pool = pool;
+		this.ownPool = ownPool;
+	}
+
+	/**
+	 * Retrieve the number of worker threads the runs are spread over
+	 *
+	 * @return The parallelism of the pool
+	 */
+	public int getParallelism() {
+		return this.pool.getParallelism();
+	}
+
+	/**
+	 * Materialize the documents of the given managers
+	 *
+	 * @param managers The managers whose documents are to be materialized
+	 * @return The outcome of the run
+	 * @throws BulkException If materializing a document failed, cancelling the run
+	 */
+	public Report materialize(Collection<? extends CRDTManager> managers) {
+		return this.run(managers, Mode.MATERIALIZE, null);
+	}
+
+	/**
+	 * Materialize the documents of the given managers, and find those holding operations which could not be applied
+	 *
+	 * @param managers The managers whose documents are to be validated
+	 * @return The outcome of the run, including the managers holding invalid operations
+	 * @throws BulkException If materializing a document failed, cancelling the run
+	 */
+	public Report validate(Collection<? extends CRDTManager> managers) {
+		return this.run(managers, Mode.VALIDATE, null);
+	}
+
+	/**
+	 * Process the documents of the given managers in parallel, returning once every one is processed or the run is
+	 * cancelled.  A manager given more than once is processed once.
+	 *
+	 * @param managers The managers whose documents are to be processed
+	 * @param mode What is done with each document
+	 * @param progress The receiver of the progress, or null if there is none
+	 * @return The outcome of the run
+	 * @throws BulkException If processing a document failed, cancelling the run
+	 */
+	public Report run(Collection<? extends CRDTManager> managers, Mode mode, Progress progress) {
+		Set<CRDTManager> unique = Collections.newSetFromMap(new IdentityHashMap<>());
+		List<CRDTManager> list = new ArrayList<>(managers.size());
+		
+		for (CRDTManager manager : managers) {
+			if (unique.add(manager)) {
+				list.add(manager);
+			}
+		}
+		
+		Run run = new Run(list, mode, progress, this.getParallelism());
+		long start = System.nanoTime();
+		
+		DocumentCache.getInstance().hold();
+		try {
+			if (!list.isEmpty()) {
+				this.pool.invoke(new Slice(run, 0, list.size()));
+			}
+		} finally {
+			DocumentCache.getInstance().resume();
+		}
+		
+		Report report = new Report(list.size(), run.completed.get(), new ArrayList<>(run.invalid), System.nanoTime() - start);
+		
+		if (run.isCancelled()) {
+			throw new BulkException(run.failed, report, run.failure.get());
+		}
+		
+		return report;
+	}
+
+	/* (non-Javadoc)
+	 * @see java.lang.AutoCloseable#close()
+	 */
+	@Override
+	public void close() {
+		if (this.ownPool) {
+			this.pool.shutdown();
+		}
+	}
+}
@@ -22,15 +22,33 @@
  */
 package com.cyberfront.crdt;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.UUID;
+
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import com.cyberfront.crdt.causal.Dot;
+import com.cyberfront.crdt.causal.HybridLogicalClock;
+import com.cyberfront.crdt.causal.VersionVector;
+import com.cyberfront.crdt.metrics.Metrics;
 import com.cyberfront.crdt.operations.AbstractOperation;
 import com.cyberfront.crdt.operations.CreateOperation;
 import com.cyberfront.crdt.operations.DeleteOperation;
+import com.cyberfront.crdt.operations.OperationCodec;
 import com.cyberfront.crdt.operations.OperationManager;
 import com.cyberfront.crdt.operations.ReadOperation;
 import com.cyberfront.crdt.operations.UpdateOperation;
+import com.cyberfront.crdt.support.JsonStreamable;
+import com.cyberfront.crdt.support.MemoryEstimate;
+import com.cyberfront.crdt.support.Support;
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.github.fge.jsonpatch.diff.JsonDiff;	// Use this with jsonpatch
@@ -39,8 +57,20 @@ import com.github.fge.jsonpatch.diff.JsonDiff;	// Use this with jsonpatch
 /**
  * The CRDTManager class is used to wrap a CRDT instance so as to interact with it.  The intent of this class is to 
  * provide an interface to manage JSON documents with the CRDT types provided.
+ * 
+ * When given a replica identifier, the manager stamps each operation it generates with a Dot, so other replicas can track
+ * which of its operations they have seen.  Operations are stamped as they are generated through the createOperation,
+ * readOperation, updateOperation and deleteOperation methods, which every manager generates its operations through.
+ * It can optionally deliver operations carrying Dots in causal order, holding any which arrive ahead of an earlier
+ * operation from the same replica until that operation has been delivered.
+ * 
+ * Timestamps for new operations may be drawn from a HybridLogicalClock, which every delivered operation timestamped in
+ * the domain of the clock advances, so replicas generate ordered timestamps without coordinating with each other.
+ * Operations given explicit timestamps outside that domain leave the clock alone, and a manager holding such operations
+ * continues their sequence rather than drawing from the clock, so its new operations never jump ahead of every explicit
+ * one merely because packed physical times are larger.
  */
-public class CRDTManager {
+public class CRDTManager implements JsonStreamable {
 	/** The Constant logger used to generate log entries */
 	@SuppressWarnings("unused")
 	private static final Logger logger = LogManager.getLogger(CRDTManager.class);
@@ -51,6 +81,31 @@ public class CRDTManager {
 	/** The CRDT containing the updates for the JSON object being managed. */
 	private LastWriteWins crdt;
 	
+	/** The identifier of the replica stamped on generated operations, or null to generate them without causal metadata */
+	private UUID replicaId;
+	
+	/** The sequence number of the last operation stamped by this replica */
+	private long sequence = 0L;
+	
+	/** Flag indicating whether operations carrying Dots are delivered in the order they were generated by each replica */
+	private boolean causalDelivery = false;
+	
+	/** Operations held until an earlier operation from the same replica is delivered, indexed by replica and sequence */
+	private Map<UUID, NavigableMap<Long, AbstractOperation>> held;
+	
+	/** The number of operations currently held */
+	private int heldCount = 0;
+	
+	/** The clock providing timestamps for new operations, or null to use the process wide clock */
+	private HybridLogicalClock clock;
+	
+	/**
+	 * Instantiates a new CRDTManager, counting it in the process wide metrics
+	 */
+	public CRDTManager() {
+		Metrics.managed();
+	}
+	
 	/**
 	 * Gets the CRDT this manager is managing
 	 * @return the CRDT this manager is managing
@@ -62,6 +117,120 @@ public class CRDTManager {
 		return crdt;
 	}
 
+	/**
+	 * Retrieve the identifier of the replica stamped on generated operations
+	 *
+	 * @return The replica identifier, or null if generated operations carry no causal metadata
+	 */
+	public UUID getReplicaId() {
+		return this.replicaId;
+	}
+
+	/**
+	 * Set the identifier of the replica stamped on generated operations
+	 *
+	 * @param replicaId The replica identifier, or null to generate operations without causal metadata
+	 */
+	public void setReplicaId(UUID replicaId) {
+		this.replicaId = replicaId;
+	}
+
+	/**
+	 * Determine whether operations carrying Dots are delivered in the order their replica generated them
+	 *
+	 * @return True exactly when causal delivery is enabled
+	 */
+	public boolean isCausalDelivery() {
+		return this.causalDelivery;
+	}
+
+	/**
+	 * Set whether operations carrying Dots are delivered in the order their replica generated them.  Disabling causal
+	 * delivery releases any operations being held.
+	 *
+	 * @param causalDelivery True to enable causal delivery
+	 */
+	public void setCausalDelivery(boolean causalDelivery) {
+		this.causalDelivery = causalDelivery;
+		
+		if (!causalDelivery && null != this.held) {
+			for (NavigableMap<Long, AbstractOperation> ops : this.held.values()) {
+				for (AbstractOperation op : ops.values()) {
+					this.pushAdd(op);
+				}
+			}
+			
+			this.held = null;
+			this.heldCount = 0;
+		}
+	}
+
+	/**
+	 * Retrieve the number of operations held until an earlier operation from the same replica is delivered
+	 *
+	 * @return The number of operations held
+	 */
+	public int getHeldCount() {
+		return this.heldCount;
+	}
+
+	/**
+	 * Retrieve the clock providing timestamps for new operations
+	 *
+	 * @return The clock of this manager, which is the process wide clock unless another has been set
+	 */
+	public HybridLogicalClock getClock() {
+		return null == this.clock ? HybridLogicalClock.getInstance() : this.clock;
+	}
+
+	/**
+	 * Set the clock providing timestamps for new operations
+	 *
+	 * @param clock The clock to use, or null to use the process wide clock
+	 */
+	public void setClock(HybridLogicalClock clock) {
+		this.clock = clock;
+	}
+
+	/**
+	 * Generate the timestamp for a new operation.  It is drawn from the clock of this manager, unless the latest operation
+	 * of the CRDT has an explicit timestamp outside the domain of the clock, in which case it follows that timestamp.
+	 *
+	 * @return A timestamp later than that of every operation held, or generated or delivered through this clock
+	 */
+	public long nextTimestamp() {
+		long latest = this.getCrdt().getLatestTimestamp();
+		
+		return Long.MIN_VALUE == latest || this.getClock().isInDomain(latest) ? this.getClock().now() : latest + 1;
+	}
+
+	/**
+	 * Retrieve the VersionVector summarizing the operations from each replica the CRDT has received
+	 *
+	 * @return A copy of the VersionVector of the CRDT
+	 */
+	public VersionVector getVersionVector() {
+		return this.getCrdt().getVersionVector();
+	}
+
+	/**
+	 * Stamp a newly generated operation with the next Dot of this replica, by copying it with that Dot.  The operation
+	 * given is returned as it is if this manager has no replica identifier, or the operation is null or already stamped.
+	 *
+	 * @param op The operation to stamp
+	 * @param <T> The type of the operation
+	 * @return The stamped copy of the operation, or the operation given if it is not to be stamped
+	 */
+	@SuppressWarnings("unchecked")
+	protected <T extends AbstractOperation> T stamp(T op) {
+		if (null == this.getReplicaId() || null == op || null != op.getDot()) {
+			return op;
+		}
+		
+		this.sequence = Math.max(this.sequence, this.getCrdt().getAddVersion().getLatest(this.getReplicaId())) + 1;
+		return (T) op.copy(new Dot(this.getReplicaId(), this.sequence));
+	}
+
 	/**
 	 * Get the static class ObjectMapper for performing JSON conversions
 	 * @return The static ObjectMapper instance for performing JSON conversions
@@ -87,11 +256,90 @@ public class CRDTManager {
 		return this.getCrdt().isDeleted();
 	}
 
+	/**
+	 * Retrieve the estimated memory retained by the CRDT being managed, covering its operation history, their patches
+	 * and its materialized document
+	 *
+	 * @return The estimated memory retained by the CRDT
+	 */
+	public MemoryEstimate getMemoryEstimate() {
+		return this.getCrdt().getMemoryEstimate();
+	}
+	
 	/**
 	 * Clear all of the operations in the CRDT
 	 */
 	public void clear() {
 		this.getCrdt().clear();
+		this.held = null;
+		this.heldCount = 0;
+	}
+
+	/**
+	 * Write the state of this manager to a snapshot: its replica identity, the operations held for causal delivery and
+	 * the operations of its CRDT
+	 *
+	 * @param out The output to write to
+	 * @throws IOException If the output cannot be written
+	 */
+	void writeSnapshot(DataOutput out) throws IOException {
+		out.writeBoolean(null != this.replicaId);
+		if (null != this.replicaId) {
+			out.writeLong(this.replicaId.getMostSignificantBits());
+			out.writeLong(this.replicaId.getLeastSignificantBits());
+		}
+		
+		out.writeLong(this.sequence);
+		out.writeBoolean(this.causalDelivery);
+		out.writeInt(this.heldCount);
+		
+		if (null != this.held) {
+			for (NavigableMap<Long, AbstractOperation> ops : this.held.values()) {
+				for (AbstractOperation op : ops.values()) {
+					OperationCodec.encode(op, out);
+				}
+			}
+		}
+		
+		this.getCrdt().writeSnapshot(out);
+	}
+
+	/**
+	 * Replace the state of this manager with that of a snapshot written by writeSnapshot, advancing its clock past every
+	 * operation read, as delivering them would
+	 *
+	 * @param in The input to read from
+	 * @throws IOException If the input cannot be read or does not hold a manager
+	 */
+	void readSnapshot(DataInput in) throws IOException {
+		this.clear();
+		
+		this.replicaId = in.readBoolean() ? new UUID(in.readLong(), in.readLong()) : null;
+		this.sequence = in.readLong();
+		this.causalDelivery = in.readBoolean();
+		
+		long latest = Long.MIN_VALUE;
+		
+		for (int i = in.readInt(); i > 0; --i) {
+			AbstractOperation op = OperationCodec.decode(in);
+			
+			if (null == op.getDot()) {
+				throw new IOException("Snapshot holds an operation for causal delivery without a Dot: " + op);
+			} else if (null == this.held) {
+				this.held = new HashMap<>();
+			}
+			
+			this.held.computeIfAbsent(op.getDot().getReplica(), k -> new TreeMap<>()).put(op.getDot().getSequence(), op);
+			++this.heldCount;
+			latest = Math.max(latest, op.getTimeStamp());
+		}
+		
+		this.getCrdt().readSnapshot(in);
+		latest = Math.max(latest, this.getCrdt().getLatestTimestamp());
+		
+		if (this.getClock().isInDomain(latest)) {
+			this.getClock().update(latest);
+		}
 	}
 
 	/**
@@ -100,6 +348,7 @@ public class CRDTManager {
 	 */
 	private void pushAdd(AbstractOperation op) {
 		this.getCrdt().addOperation(op);
+		Metrics.ingested();
 	}
 
 	/**
@@ -108,26 +357,98 @@ public class CRDTManager {
 	 */
 	private void pushRemove(AbstractOperation op) {
 		this.getCrdt().remOperation(op);
+		Metrics.ingested();
+	}
+
+	/**
+	 * Retrieve the number of redelivered operations the CRDT rejected because it already held them
+	 *
+	 * @return The number of duplicate operations rejected
+	 */
+	public long getDuplicateCount() {
+		return this.getCrdt().getDuplicateCount();
 	}
 
 	/**
-	 * Deliver an operation embedded in the OperationManager and based upon the StatusType of that OperationManager
+	 * Deliver an operation embedded in the OperationManager and based upon the StatusType of that OperationManager.  An
+	 * operation the CRDT already holds is counted and dropped here, before it reaches the CRDT, so a redelivery neither
+	 * compares the operation against those held nor discards the materialized document.
 	 * @param op OperationsManager instance wrapping the operation to persist in this CRDT
 	 */
 	protected void push(OperationManager op) {
+		AbstractOperation operation = op.getOperation();
+		
+		if (null != operation && this.getClock().isInDomain(operation.getTimeStamp())) {
+			this.getClock().update(operation.getTimeStamp());
+		}
+		
 		switch(op.getStatus()) {
 		case APPROVED:
 		case PENDING:
-			this.pushAdd(op.getOperation());
+			if (null != operation && this.getCrdt().containsAdd(operation)) {
+				this.getCrdt().countDuplicate();
+			} else if (this.isCausalDelivery() && null != operation && null != operation.getDot()) {
+				this.deliverCausally(operation);
+			} else {
+				this.pushAdd(operation);
+			}
 			break;
 		case REJECTED:
-			this.pushRemove(op.getOperation());
+			if (null != operation && this.getCrdt().containsRem(operation)) {
+				this.getCrdt().countDuplicate();
+			} else {
+				this.pushRemove(operation);
+			}
 			break;
 		default:
 			break;
 		}
 	}
 	
+	/**
+	 * Deliver an operation carrying a Dot once every earlier operation from the same replica has been delivered, holding
+	 * it until then.  Delivering an operation releases any held operations it was the last one missing for.
+	 *
+	 * @param op The operation to deliver
+	 */
+	private void deliverCausally(AbstractOperation op) {
+		Dot dot = op.getDot();
+		VersionVector version = this.getCrdt().getAddVersion();
+		
+		if (!version.isNext(dot)) {
+			if (null == this.held) {
+				this.held = new HashMap<>();
+			}
+			
+			if (null == this.held.computeIfAbsent(dot.getReplica(), k -> new TreeMap<>()).putIfAbsent(dot.getSequence(), op)) {
+				++this.heldCount;
+			} else {
+				this.getCrdt().countDuplicate();
+			}
+			
+			return;
+		}
+		
+		this.pushAdd(op);
+		
+		NavigableMap<Long, AbstractOperation> waiting = null == this.held ? null : this.held.get(dot.getReplica());
+		
+		while (null != waiting && !waiting.isEmpty() && waiting.firstKey() <= version.get(dot.getReplica()) + 1) {
+			AbstractOperation next = waiting.pollFirstEntry().getValue();
+			--this.heldCount;
+			
+			if (this.getCrdt().containsAdd(next)) {
+				this.getCrdt().countDuplicate();
+			} else {
+				this.pushAdd(next);
+			}
+		}
+		
+		if (null != waiting && waiting.isEmpty()) {
+			this.held.remove(dot.getReplica());
+		}
+	}
+	
 	/**
 	 * Generate a CreateOperation given a JsonNode and timestamp
 	 * @param document The source document around which to build the CreateOperation 
@@ -155,7 +476,9 @@ public class CRDTManager {
 	 * @return The update operation resulting from transforming from the source to target JsonNode values
 	 */
 	protected static UpdateOperation generateUpdateOperation(JsonNode source, JsonNode target, long timestamp) {
+		long start = Metrics.start();
 		JsonNode diff = JsonDiff.asJson(source, target);
+		Metrics.diffed(start);
 		return diff.size() > 0 ? new UpdateOperation(diff, timestamp) : null;
 	}
 
@@ -168,6 +491,46 @@ public class CRDTManager {
 		return new DeleteOperation(timestamp);
 	}
 
+	/**
+	 * Generate a CreateOperation given a JsonNode and timestamp, stamped as generated by this replica
+	 * @param document The source document around which to build the CreateOperation 
+	 * @param timestamp Effective timestamp for the create operation
+	 * @return The new CreateOperation
+	 */
+	protected CreateOperation createOperation(JsonNode document, long timestamp) {
+		return this.stamp(generateCreateOperation(document, timestamp));
+	}
+	
+	/**
+	 * Generate a ReadOperation with the given time stamp value, stamped as generated by this replica
+	 * @param timestamp Effective timestamp for the read operation
+	 * @return The read operation with the given timestamp
+	 */
+	protected ReadOperation readOperation(long timestamp) {
+		return this.stamp(generateReadOperation(timestamp));
+	}
+	
+	/**
+	 * Generate an UpdateOperation given an original and update value and a timestamp value, stamped as generated by
+	 * this replica
+	 * @param source The original JsonNode to update with a new value
+	 * @param target The new JsonNode which the update will produce given the original state 
+	 * @param timestamp Effective time stamp for the update operations
+	 * @return The update operation, or null if the source and target do not differ
+	 */
+	protected UpdateOperation updateOperation(JsonNode source, JsonNode target, long timestamp) {
+		return this.stamp(generateUpdateOperation(source, target, timestamp));
+	}
+
+	/**
+	 * Generate a DeleteOperation with the given timestamp, stamped as generated by this replica
+	 * @param timestamp Effective timestamp for the delete operations
+	 * @return A DeleteOperation with the given timestamp 
+	 */
+	protected DeleteOperation deleteOperation(long timestamp) {
+		return this.stamp(generateDeleteOperation(timestamp));
+	}
+
 	/* (non-Javadoc)
 	 * @see com.cyberfront.cmrdt.support.BaseManager#equals(java.lang.Object)
 	 */
@@ -192,15 +555,25 @@ public class CRDTManager {
 		return 31 * super.hashCode() + this.getCrdt().hashCode();
 	}
 	
-	/* (non-Javadoc)
-	 * @see com.cyberfront.cmrdt.support.BaseManager#getSegment()
+	/**
+	 * Stream the fields of this instance to the given generator
+	 *
+	 * @param gen The generator to write to
+	 * @throws IOException If the generator fails to write
 	 */
-	protected String getSegment() {
-		StringBuilder sb = new StringBuilder();
+	protected void writeSegment(JsonGenerator gen) throws IOException {
+		gen.writeFieldName("crdt");
+		Support.writeJson(gen, this.getCrdt());
+	}
 
-		sb.append("\"crdt\":" + (null == this.getCrdt() ? "null" : this.getCrdt().toString()));
-		
-		return sb.toString();
+	/* (non-Javadoc)
+	 * @see com.cyberfront.crdt.support.JsonStreamable#writeJson(com.fasterxml.jackson.core.JsonGenerator)
+	 */
+	@Override
+	public void writeJson(JsonGenerator gen) throws IOException {
+		gen.writeStartObject();
+		this.writeSegment(gen);
+		gen.writeEndObject();
 	}
 	
 	/* (non-Javadoc)
@@ -208,6 +581,6 @@ public class CRDTManager {
 	 */
 	@Override
 	public String toString() {
-		return "{" + this.getSegment() + "}";
+		return Support.toJson(this);
 	}
 }
@@ -0,0 +1,262 @@
+/*
+ * Copyright (c) 2017 Cybernetic Frontiers LLC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package com.cyberfront.crdt;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The DocumentCache class limits the memory held by the documents materialized by LastWriteWins CRDT instances across
+ * the whole process.  Each CRDT reports its materialized document to the cache as it is accessed, and the cache keeps
+ * them in least recently used order.  When the estimated size of the resident documents exceeds the budget, the least
+ * recently used CRDT instances are told to give up their documents, which they rebuild from their operations the next
+ * time they are needed.  Frequently read documents therefore stay resident while cold ones are released.
+ * 
+ * The cache is disabled by default, in which case every CRDT keeps its document until its next change.  It is enabled
+ * by giving it a positive budget.
+ * 
+ * Evictions can be held off while documents are materialized on several threads at once, since releasing the document
+ * of a CRDT which another thread is materializing would race with it.  The budget is enforced again once every hold is
+ * resumed.
+ */
+public class DocumentCache {
+
+	/** The process wide cache instance */
+	private static final DocumentCache instance = new DocumentCache();
+
+	/** The budget, in estimated bytes, for the resident documents, or zero if the cache is disabled */
+	private volatile long budget = 0L;
+
+	/** The estimated bytes of each resident document, keyed by the CRDT holding it, in least recently used order */
+	private final Map<LastWriteWins, Long> resident = new LinkedHashMap<>(16, 0.75f, true);
+
+	/** The total estimated bytes of the resident documents */
+	private long residentBytes = 0L;
+
+	/** The number of accesses which found the document resident */
+	private long hitCount = 0L;
+
+	/** The number of accesses which found a newly materialized document */
+	private long missCount = 0L;
+
+	/** The number of documents released to stay within the budget */
+	private long evictionCount = 0L;
+
+	/** The number of holds on evictions not yet resumed */
+	private int holdCount = 0;
+
+	/**
+	 * Retrieve the process wide cache instance
+	 *
+	 * @return The process wide cache instance
+	 */
+	public static DocumentCache getInstance() {
+		return instance;
+	}
+
+	/**
+	 * Retrieve the budget, in estimated bytes, for the resident documents
+	 *
+	 * @return The budget for the resident documents, or zero if the cache is disabled
+	 */
+	public long getBudget() {
+		return this.budget;
+	}
+
+	/**
+	 * Set the budget, in estimated bytes, for the resident documents.  Documents beyond the new budget are released
+	 * immediately.  A budget of zero or less disables the cache and forgets every resident document, leaving each with
+	 * its CRDT.
+	 *
+	 * @param budget The new budget for the resident documents
+	 */
+	public synchronized void setBudget(long budget) {
+		this.budget = Math.max(0L, budget);
+
+		if (this.isEnabled()) {
+			this.evict(null);
+		} else {
+			this.resident.clear();
+			this.residentBytes = 0L;
+		}
+	}
+
+	/**
+	 * Determine whether the cache is enabled
+	 *
+	 * @return True if and only if the cache has a positive budget
+	 */
+	public boolean isEnabled() {
+		return this.budget > 0L;
+	}
+
+	/**
+	 * Record an access to the materialized document of a CRDT, making it the most recently used, and release the least
+	 * recently used documents of other CRDT instances while the budget is exceeded
+	 *
+	 * @param crdt The CRDT whose document was accessed
+	 * @param bytes The estimated bytes retained by the document
+	 */
+	public void access(LastWriteWins crdt, long bytes) {
+		if (!this.isEnabled()) {
+			return;
+		}
+
+		synchronized (this) {
+			Long previous = this.resident.put(crdt, bytes);
+
+			if (null != previous && previous == bytes) {
+				++this.hitCount;
+				return;
+			}
+
+			++this.missCount;
+			this.residentBytes += bytes - (null == previous ? 0L : previous);
+
+			if (0 == this.holdCount) {
+				this.evict(crdt);
+			}
+		}
+	}
+
+	/**
+	 * Forget the document of a CRDT which has given it up, such as when it changes
+	 *
+	 * @param crdt The CRDT whose document was released
+	 */
+	public void release(LastWriteWins crdt) {
+		if (!this.isEnabled()) {
+			return;
+		}
+
+		synchronized (this) {
+			Long previous = this.resident.remove(crdt);
+
+			if (null != previous) {
+				this.residentBytes -= previous;
+			}
+		}
+	}
+
+	/**
+	 * Hold off evictions, so documents accessed are recorded but none is released, until the hold is resumed.  Holds
+	 * nest, and each must be resumed.
+	 */
+	public synchronized void hold() {
+		++this.holdCount;
+	}
+
+	/**
+	 * Resume evictions held off by hold, releasing the least recently used documents beyond the budget once the last
+	 * hold is resumed
+	 */
+	public synchronized void resume() {
+		if (this.holdCount > 0 && 0 == --this.holdCount && this.isEnabled()) {
+			this.evict(null);
+		}
+	}
+
+	/**
+	 * Release the least recently used documents until the resident documents fit in the budget.  The document just
+	 * accessed is never released, since it is in use.
+	 *
+	 * @param current The CRDT whose document was just accessed, or null if there is none
+	 */
+	private void evict(LastWriteWins current) {
+		Collection<LastWriteWins> evicted = new ArrayList<>();
+
+		for (Iterator<Map.Entry<LastWriteWins, Long>> it = this.resident.entrySet().iterator(); this.residentBytes > this.getBudget() && it.hasNext();) {
+			Map.Entry<LastWriteWins, Long> entry = it.next();
+
+			if (entry.getKey() != current) {
+				it.remove();
+				this.residentBytes -= entry.getValue();
+				++this.evictionCount;
+				evicted.add(entry.getKey());
+			}
+		}
+
+		for (LastWriteWins crdt : evicted) {
+			crdt.evict();
+		}
+	}
+
+	/**
+	 * Retrieve the total estimated bytes of the resident documents
+	 *
+	 * @return The total estimated bytes of the resident documents
+	 */
+	public synchronized long getResidentBytes() {
+		return this.residentBytes;
+	}
+
+	/**
+	 * Retrieve the number of resident documents
+	 *
+	 * @return The number of resident documents
+	 */
+	public synchronized int getResidentCount() {
+		return this.resident.size();
+	}
+
+	/**
+	 * Retrieve the number of accesses which found the document resident
+	 *
+	 * @return The number of accesses which found the document resident
+	 */
+	public synchronized long getHitCount() {
+		return this.hitCount;
+	}
+
+	/**
+	 * Retrieve the number of accesses which found a newly materialized document
+	 *
+	 * @return The number of accesses which found a newly materialized document
+	 */
+	public synchronized long getMissCount() {
+		return this.missCount;
+	}
+
+	/**
+	 * Retrieve the number of documents released to stay within the budget
+	 *
+	 * @return The number of documents released to stay within the budget
+	 */
+	public synchronized long getEvictionCount() {
+		return this.evictionCount;
+	}
+
+	/**
+	 * Forget every resident document and reset the counters, leaving the budget unchanged
+	 */
+	public synchronized void clear() {
+		this.resident.clear();
+		this.residentBytes = 0L;
+		this.hitCount = 0L;
+		this.missCount = 0L;
+		this.evictionCount = 0L;
+	}
+}
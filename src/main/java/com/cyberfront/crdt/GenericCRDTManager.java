@@ -22,13 +22,18 @@
  */
 package com.cyberfront.crdt;
 
+import java.io.IOException;
+
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import com.cyberfront.crdt.metrics.Metrics;
 import com.cyberfront.crdt.operations.CreateOperation;
 import com.cyberfront.crdt.operations.DeleteOperation;
 import com.cyberfront.crdt.operations.ReadOperation;
 import com.cyberfront.crdt.operations.UpdateOperation;
+import com.cyberfront.crdt.support.Support;
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonNode;
 
@@ -91,6 +96,7 @@ public class GenericCRDTManager <T> extends CRDTManager {
 		JsonNode json = this.getCrdt().getDocument(timestamp);
 
 		if (null != json) {
+			long start = Metrics.start();
 			try {
 				return getMapper().treeToValue(json, this.getObjectClass());
 			} catch (JsonProcessingException e) {
@@ -105,6 +111,8 @@ public class GenericCRDTManager <T> extends CRDTManager {
 				if (TERMINATE_ON_JSON_PROCESSING_EXCEPTIONS) {
 					System.exit(0);
 				}
+			} finally {
+				Metrics.converted(start);
 			}
 		}
 		
@@ -131,7 +139,17 @@ public class GenericCRDTManager <T> extends CRDTManager {
 	 * @return The resulting CreateOperation
 	 */
 	public CreateOperation generateCreate(long timestamp, T object) {
-		return generateCreateOperation(getMapper().valueToTree(object), timestamp);
+		return this.createOperation(getMapper().valueToTree(object), timestamp);
+	}
+	
+	/**
+	 * Generate and return a CreateOperation for the given object passed, timestamped by the clock of this manager
+	 *
+	 * @param object The object from which to generate the CreateOperation
+	 * @return The resulting CreateOperation
+	 */
+	public CreateOperation generateCreate(T object) {
+		return this.generateCreate(this.nextTimestamp(), object);
 	}
 	
 	/**
@@ -141,7 +159,7 @@ public class GenericCRDTManager <T> extends CRDTManager {
 	 * @return The resulting ReadOperation
 	 */
 	protected ReadOperation generateRead(long timestamp) {
-		return generateReadOperation(timestamp);
+		return this.readOperation(timestamp);
 	}
 	
 	/**
@@ -152,7 +170,17 @@ public class GenericCRDTManager <T> extends CRDTManager {
 	 * @return The resulting UpdateOperation
 	 */
 	public UpdateOperation generateUpdate(long timestamp, T object) {
-		return generateUpdateOperation(this.getCrdt().getDocument(), getMapper().valueToTree(object), timestamp);
+		return this.updateOperation(this.getCrdt().getDocument(), getMapper().valueToTree(object), timestamp);
+	}
+
+	/**
+	 * Generate and return an UpdateOperation for the given object passed, timestamped by the clock of this manager
+	 *
+	 * @param object The object from which to generate the UpdateOperation
+	 * @return The resulting UpdateOperation
+	 */
+	public UpdateOperation generateUpdate(T object) {
+		return this.generateUpdate(this.nextTimestamp(), object);
 	}
 
 	/**
@@ -162,7 +190,16 @@ public class GenericCRDTManager <T> extends CRDTManager {
 	 * @return The resulting DeleteOperation
 	 */
 	public DeleteOperation generateDelete(long timestamp) {
-		return generateDeleteOperation(timestamp);
+		return this.deleteOperation(timestamp);
+	}
+
+	/**
+	 * Generate and return a DeleteOperation, timestamped by the clock of this manager
+	 *
+	 * @return The resulting DeleteOperation
+	 */
+	public DeleteOperation generateDelete() {
+		return this.generateDelete(this.nextTimestamp());
 	}
 	
 	/* (non-Javadoc)
@@ -202,17 +239,13 @@ public class GenericCRDTManager <T> extends CRDTManager {
 	}
 	
 	/* (non-Javadoc)
-	 * @see com.cyberfront.cmrdt.support.BaseManager#getSegment()
+	 * @see com.cyberfront.crdt.CRDTManager#writeSegment(com.fasterxml.jackson.core.JsonGenerator)
 	 */
 	@Override
-	protected String getSegment() {
-		StringBuilder sb = new StringBuilder();
-		T object = this.getObject();
-
-		sb.append(super.getSegment() + ",");
-		sb.append("\"objectClass\":\"" + this.getObjectClass().getName() + "\",");
-		sb.append("\"object\":" + (null == object ? "null" : object.toString()));
-		
-		return sb.toString();
+	protected void writeSegment(JsonGenerator gen) throws IOException {
+		super.writeSegment(gen);
+		gen.writeStringField("objectClass", this.getObjectClass().getName());
+		gen.writeFieldName("object");
+		Support.writeJson(gen, this.getObject());
 	}
 }
@@ -24,21 +24,47 @@ package com.cyberfront.crdt;
 
 import static org.junit.Assert.assertNotNull;
 
+import java.io.DataInput;
+import java.io.DataOutput;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.List;
 import java.util.Set;
+import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import com.cyberfront.crdt.events.ChangeEvent;
+import com.cyberfront.crdt.events.ChangeEvent.Kind;
+import com.cyberfront.crdt.metrics.Metrics;
 import com.cyberfront.crdt.operations.AbstractOperation;
 import com.cyberfront.crdt.operations.AbstractOperation.OperationType;
+import com.cyberfront.crdt.operations.OperationCodec;
+import com.cyberfront.crdt.operations.OperationKeys;
+import com.cyberfront.crdt.operations.OperationLog;
+import com.cyberfront.crdt.operations.PatchInterpreter;
+import com.cyberfront.crdt.persistent.PersistentNode;
+import com.cyberfront.crdt.support.JsonStreamable;
+import com.cyberfront.crdt.support.MemoryEstimate;
+import com.cyberfront.crdt.support.Pointer;
 import com.cyberfront.crdt.support.Support;
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.NullNode;
 import java.io.IOException;										// Use this with jsonpatch
 import com.github.fge.jsonpatch.JsonPatchException;				// Use this with jsonpatch
+import com.github.fge.jsonpatch.diff.JsonDiff;					// Use this with jsonpatch
 //import com.flipkart.zjsonpatch.JsonPatchApplicationException;		// Use this with zjsonpatch
 
 /**
@@ -48,6 +74,50 @@ import com.github.fge.jsonpatch.JsonPatchException;				// Use this with jsonpatc
  */
 public class LastWriteWins extends OperationTwoSet {
 	
+	/**
+	 * The Backend enumeration lists the ways the operations of a LastWriteWins CRDT can be materialized into its document.
+	 */
+	public enum Backend {
+		
+		/** Apply each operation to a JsonNode with JSON Patch, which copies the whole document for every operation */
+		JSON_PATCH,
+		
+		/**
+		 * Apply each operation in place to a JsonNode owned by the trial, which copies nothing but the values the operation
+		 * adds.  A patch which fails part way through is rolled back, so invalid operations still leave the document intact.
+		 * With parallel replay enabled, runs of updates confined to disjoint subtrees are applied concurrently.
+		 */
+		IN_PLACE,
+		
+		/**
+		 * Apply each operation to a persistent document, which copies only the path to each change.  The version following
+		 * every operation is kept, and since versions share their unchanged nodes this costs little beyond the changes.
+		 */
+		PERSISTENT
+	}
+	
+	/**
+	 * The Materialization enumeration lists the policies for rebuilding the document of a LastWriteWins CRDT after its
+	 * operations change.  Under every policy, an operation which sorts after all of those already applied is applied to
+	 * the materialized document directly, without replaying the others, unless the IN_PLACE backend is used, since that
+	 * would modify documents already handed out.  The policies differ in what happens after any other change.
+	 */
+	public enum Materialization {
+		
+		/** Rebuild the document as soon as the operations change, so reads never wait for a replay */
+		EAGER,
+		
+		/** Discard the document when the operations change, and rebuild it when it is next read */
+		LAZY,
+		
+		/**
+		 * Keep serving the document from before the change until a number of changes have accumulated or a period of time
+		 * has passed since the first of them, then rebuild it when it is next read.  Reads within that window may be stale,
+		 * so a burst of writes costs a single replay.
+		 */
+		DEBOUNCED
+	}
+	
 	/**
 	 * The Class TrialResult is used to process a collection of operations provided to it.  It is intended to augment the LastWriteWins class
 	 * by providing an auxiliary location for storing a single set of operations and to manage access to the resulting JsonNode when the
@@ -58,17 +128,26 @@ public class LastWriteWins extends OperationTwoSet {
 	 * TrialResults are used only for generating final values.  Since READ operations do not change the value of the resulting object, they are 
 	 * filtered from collection of operations used to generate the resulting JSON representation of the reconstructed object.
 	 */
-	public static class TrialResult {
+	public static class TrialResult implements JsonStreamable {
+		
+		/** The estimated bytes retained by the empty object a CREATE operation patches */
+		private static final long CREATED_BYTES = MemoryEstimate.sizeOf(JsonNodeFactory.instance.objectNode());
 		
 		/** Flag to indicate whether invalid operations are to be logged to the console */
 //		@SuppressWarnings("unused")
 		private static final boolean LOG_JSON_PROCESSING_EXCEPTIONS = false;
 		
+		/** The CRDT the operations were taken from, which is told each time they are replayed */
+		private final LastWriteWins crdt;
+
 		/** The set of operations to process; they are processed in timestamp order */
-		private final Set<AbstractOperation> operations;
+		private final OperationLog operations;
 		
 		/** The set of invalid operations detected.  Ideally this is empty, but there are reasons why it may not be empty. */
-		private Collection<AbstractOperation> invalidOperations;
+		private Set<AbstractOperation> invalidOperations;
+		
+		/** Flag indicating whether this TrialResult only probes whether an operation applies, so is left out of the metrics */
+		private final boolean probe;
 
 		/** Latest operation timestamp to include among the applicable operations */
 		private final long timestamp;
@@ -76,6 +155,21 @@ public class LastWriteWins extends OperationTwoSet {
 		/** JsonNode document containing the result of executing the sequence of operations */
 		private JsonNode document;
 		
+		/** The backend used to materialize the document */
+		private final Backend backend;
+		
+		/** Persistent document containing the result of executing the sequence of operations, when using the PERSISTENT backend */
+		private PersistentNode version;
+		
+		/** The persistent document following each operation timestamp, when using the PERSISTENT backend */
+		private NavigableMap<Long, PersistentNode> versions;
+		
+		/** Flag indicating whether the document reflects the persistent document, which appending leaves unconverted */
+		private boolean converted = true;
+		
+		/** The estimated bytes retained by the document, or zero if it has not been materialized */
+		private long documentBytes = 0L;
+		
 		/**
 		 * Instantiates a new trial result given a CRDT to process; the operations list is copied from
 		 * the CRDT instance to be processed and used to generate the resulting JSON object.
@@ -94,14 +188,53 @@ public class LastWriteWins extends OperationTwoSet {
 		 * @param crdt The CRDT to process
 		 */
 		public TrialResult(LastWriteWins crdt, long timestamp) {
+			this(crdt, timestamp, crdt.getBackend());
+		}
+		
+		/**
+		 * Instantiates a new trial result given a CRDT to process and the backend used to materialize its document; the
+		 * operations list is copied from the CRDT instance to be processed and used to generate the resulting JSON object.
+		 *
+		 * @param crdt The CRDT to process
+		 * @param timestamp Latest timestamp to process operations
+		 * @param backend The backend used to materialize the document
+		 */
+		public TrialResult(LastWriteWins crdt, long timestamp, Backend backend) {
+			this(crdt, timestamp, backend, false);
+		}
+		
+		/**
+		 * Instantiates a new trial result given a CRDT to process, the backend used to materialize its document, and
+		 * whether it only probes whether an operation applies
+		 *
+		 * @param crdt The CRDT to process
+		 * @param timestamp Latest timestamp to process operations
+		 * @param backend The backend used to materialize the document
+		 * @param probe True if the replays and invalid operations of this trial are to be left out of the metrics
+		 */
+		private TrialResult(LastWriteWins crdt, long timestamp, Backend backend, boolean probe) {
+			this.crdt = crdt;
+			this.probe = probe;
 			this.timestamp = timestamp;
-			this.operations = new TreeSet<>();
-			this.operations.addAll(
-					crdt.getOpsSet().
+			this.backend = backend;
+			this.operations = crdt.isColumnar() ? crdt.getColumns().select(timestamp) : crdt.getOpsSet().
 					stream().
 					filter(op -> (OperationType.READ != op.getType())).
 					filter(op -> (op.getTimeStamp() <= this.timestamp)).
-					collect(Collectors.toList()));
+					collect(Collectors.toCollection(OperationLog::new));
+		}
+
+		/**
+		 * Instantiates a new trial result holding every operation of the CRDT along with one which it does not yet hold.
+		 * This is used to find which operations would be invalid were the operation added, so it is a probe whose replay
+		 * and invalid operations are left out of the metrics.
+		 *
+		 * @param crdt The CRDT to process
+		 * @param extra The operation to process along with those of the CRDT
+		 */
+		private TrialResult(LastWriteWins crdt, AbstractOperation extra) {
+			this(crdt, Long.MAX_VALUE, crdt.getBackend(), true);
+			this.operations.add(extra);
 		}
 
 		/**
@@ -110,22 +243,188 @@ public class LastWriteWins extends OperationTwoSet {
 		 * @return The document resulting from running the operations in this TrialResult
 		 */
 		public JsonNode getDocument() {
-			if (null == this.document || null == this.invalidOperations) {
-				this.invalidOperations = new ArrayList<>();
-				for (AbstractOperation op : this.getOperations()) {
-					this.document = this.applyOperation(this.document, op);
-				}
+			this.materialize();
+			
+			if (!this.converted) {
+				this.document = null == this.version ? null : this.version.toJsonNode();
+				this.converted = true;
 			}
 			
 			return this.document;
 		}
 
+		/**
+		 * Replay the operations unless the document has been materialized.  With the PERSISTENT backend an append leaves
+		 * the JsonNode document to be converted when it is next read.
+		 */
+		private void materialize() {
+			if (!this.isMaterialized()) {
+				this.invalidOperations = new TreeSet<>();
+				if (!this.probe) {
+					this.crdt.countReplay(this.getOperations().size());
+				}
+				if (Backend.PERSISTENT == this.getBackend()) {
+					this.version = null;
+					this.versions = new TreeMap<>();
+					for (AbstractOperation op : this.getOperations()) {
+						this.version = this.applyOperation(this.version, op);
+						this.versions.put(op.getTimeStamp(), this.version);
+					}
+					this.document = null == this.version ? null : this.version.toJsonNode();
+					this.converted = true;
+				} else if (Backend.IN_PLACE == this.getBackend() && this.crdt.isParallelReplay()) {
+					this.document = this.replayPartitioned();
+				} else if (Backend.IN_PLACE == this.getBackend()) {
+					this.document = null;
+					for (AbstractOperation op : this.getOperations()) {
+						this.document = this.applyInPlace(this.document, op);
+					}
+				} else {
+					for (AbstractOperation op : this.getOperations()) {
+						this.document = this.applyOperation(this.document, op);
+					}
+				}
+				this.documentBytes = MemoryEstimate.sizeOf(this.document);
+			}
+		}
+
+		/**
+		 * Install a document materialized earlier from the same operations, such as one read from a snapshot, so that
+		 * reading it replays nothing
+		 *
+		 * @param document The document resulting from the operations
+		 * @param invalid The identities of the operations which could not be applied
+		 */
+		private void restore(JsonNode document, OperationKeys invalid) {
+			this.invalidOperations = new TreeSet<>();
+			
+			for (AbstractOperation op : this.getOperations()) {
+				if (invalid.contains(op)) {
+					this.invalidOperations.add(op);
+				}
+			}
+			
+			this.document = document;
+			this.converted = true;
+			this.documentBytes = MemoryEstimate.sizeOf(document);
+		}
+
+		/**
+		 * Determine whether the document has been materialized, so reading it replays nothing
+		 *
+		 * @return True exactly when the document is available without replaying the operations
+		 */
+		public boolean isMaterialized() {
+			return (this.converted ? null != this.document : null != this.version) && null != this.invalidOperations;
+		}
+
+		/**
+		 * Apply an operation to the materialized document without replaying the operations already applied.  This is only
+		 * possible when the document has been materialized from all of the operations, and the operation sorts after every
+		 * one of them, since replaying the operations would then apply it last to the same document.  The estimated size
+		 * of the document is adjusted by that of the change rather than estimated afresh.
+		 *
+		 * @param op The operation to apply
+		 * @return True if the operation was applied, or false if the document must be rebuilt instead
+		 */
+		public boolean append(AbstractOperation op) {
+			if (Long.MAX_VALUE != this.getTimestamp() || Backend.IN_PLACE == this.getBackend() || null == this.invalidOperations) {
+				return false;
+			} else if (OperationType.READ == op.getType()) {
+				return true;
+			} else if (!this.getOperations().isEmpty() && this.getOperations().last().compareTo(op) >= 0) {
+				return false;
+			}
+			
+			this.getOperations().add(op);
+			int invalid = this.invalidOperations.size();
+			Function<String[], JsonNode> before;
+			boolean present;
+			
+			if (Backend.PERSISTENT == this.getBackend()) {
+				PersistentNode previous = this.version;
+				before = tokens -> {
+					PersistentNode node = null == previous ? null : previous.at(tokens);
+					return null == node ? null : node.toJsonNode();
+				};
+				this.version = this.applyOperation(this.version, op);
+				this.versions.put(op.getTimeStamp(), this.version);
+				this.converted = false;
+				present = null != this.version;
+			} else {
+				JsonNode previous = this.document;
+				before = tokens -> Pointer.resolve(previous, tokens);
+				this.document = this.applyOperation(this.document, op);
+				present = null != this.document;
+			}
+			
+			if (!present) {
+				this.documentBytes = 0L;
+			} else if (invalid == this.invalidOperations.size()) {
+				long bytes = OperationType.CREATE == op.getType() ? CREATED_BYTES : this.documentBytes;
+				this.documentBytes = Math.max(0L, bytes + MemoryEstimate.sizeOfChange(op.getOp(), OperationType.CREATE == op.getType() ? tokens -> null : before));
+			}
+			
+			return true;
+		}
+
+		/**
+		 * Retrieve the persistent document resulting from running the operations in this TrialResult.  With the JSON_PATCH
+		 * backend this is converted from the JsonNode document.
+		 *
+		 * @return The persistent document resulting from running the operations in this TrialResult
+		 */
+		public PersistentNode getVersion() {
+			if (Backend.PERSISTENT == this.getBackend()) {
+				this.materialize();
+				return this.version;
+			}
+			
+			return PersistentNode.from(this.getDocument());
+		}
+
+		/**
+		 * Retrieve the persistent document resulting from running the operations in this TrialResult up to and including
+		 * the given timestamp.  This requires the PERSISTENT backend, which keeps the version following each operation.
+		 *
+		 * @param timestamp Latest timestamp of the operations to include
+		 * @return The persistent document as of the given timestamp, or null if it did not exist at that time
+		 */
+		public PersistentNode getVersion(long timestamp) {
+			if (Backend.PERSISTENT != this.getBackend()) {
+				throw new IllegalStateException("Intermediate versions are only kept by the " + Backend.PERSISTENT + " backend");
+			}
+
+			this.materialize();
+			Map.Entry<Long, PersistentNode> entry = this.versions.floorEntry(timestamp);
+			return null == entry ? null : entry.getValue();
+		}
+
+		/**
+		 * Retrieve the estimated bytes retained by the document.  This does not materialize the document, and is zero
+		 * until it has been materialized.
+		 *
+		 * @return The estimated bytes retained by the document
+		 */
+		public long getDocumentBytes() {
+			return this.documentBytes;
+		}
+
+		/**
+		 * Retrieve the backend used to materialize the document
+		 *
+		 * @return The backend used to materialize the document
+		 */
+		public Backend getBackend() {
+			return this.backend;
+		}
+
 		/**
 		 * Retrieve the set of operations in this TrialResult.  
 		 *
 		 * @return A the set of operations in this TrialResult
 		 */
-		private Set<AbstractOperation> getOperations() {
+		private OperationLog getOperations() {
 			return this.operations;
 		}
 		
@@ -135,10 +434,7 @@ public class LastWriteWins extends OperationTwoSet {
 		 * @return the invalid
 		 */
 		public Collection<AbstractOperation> getInvalidOperations() {
-			if (null == this.invalidOperations) {
-				this.getDocument();
-			}
-
+			this.materialize();
 			assertNotNull("Invalid Operation List was not allocated", this.invalidOperations);
 
 			return this.invalidOperations;
@@ -158,45 +454,263 @@ public class LastWriteWins extends OperationTwoSet {
 				this.invalidOperations = new TreeSet<>();
 			}
 
+			long start = Metrics.start();
 			try {
 				return op.processOperation(document);
 			} catch (JsonPatchException | IOException e) {  // Use this with jsonpatch
 //			} catch (JsonPatchApplicationException e) {		// Use this with zjsonpatch
-				if (LOG_JSON_PROCESSING_EXCEPTIONS) {
-					logger.error(e);
-					logger.error(" op: " + op.toString());
-					logger.error("doc: " + document);
-					for (StackTraceElement el : e.getStackTrace()) {
-						logger.error(el);
+				this.markInvalid(op, e, document);
+			} finally {
+				this.crdt.applyNanos += Metrics.applied(start);
+			}
+			return document;
+		}
+
+		private JsonNode applyInPlace(JsonNode document, AbstractOperation op) {
+			long start = Metrics.start();
+			try {
+				return op.processInPlace(document);
+			} catch (JsonPatchException e) {
+				this.markInvalid(op, e, document);
+			} finally {
+				this.crdt.applyNanos += Metrics.applied(start);
+			}
+			return document;
+		}
+
+		/**
+		 * Replay the operations in place, applying runs of updates confined to disjoint subtrees concurrently.  A run is
+		 * grown while there is a base location, the longest common prefix of the scopes of its updates, strictly above
+		 * every one of those scopes.  No update of the run then changes the base or anything above it, so updates whose
+		 * scopes differ in the token following the base change disjoint subtrees, whose contents are the same whichever
+		 * order they are applied in.  Every other operation, and every run too short to be worth splitting, is applied
+		 * in order on the calling thread, so the document and the invalid operations are those of a sequential replay.
+		 *
+		 * @return The document resulting from the operations
+		 */
+		private JsonNode replayPartitioned() {
+			List<AbstractOperation> ops = new ArrayList<>(this.getOperations());
+			String[][] scopes = new String[ops.size()][];
+			JsonNode document = null;
+			
+			for (int i = 0; i < scopes.length; ++i) {
+				scopes[i] = ops.get(i).getScope();
+			}
+			
+			for (int start = 0, end; start < scopes.length; start = end) {
+				int baseLength = null == scopes[start] ? -1 : scopes[start].length;
+				int minLength = baseLength;
+				
+				for (end = start + 1; baseLength >= 0 && end < scopes.length && null != scopes[end]; ++end) {
+					int common = commonPrefix(scopes[start], scopes[end], baseLength);
+					int shortest = Math.min(minLength, scopes[end].length);
+					
+					if (shortest <= common) {
+						break;
+					}
+					
+					baseLength = common;
+					minLength = shortest;
+				}
+				
+				if (end - start < PARALLEL_REPLAY_RUN || null == document || !this.applyPartitioned(document, ops, scopes, start, end, baseLength)) {
+					for (int i = start; i < end; ++i) {
+						document = this.applyInPlace(document, ops.get(i));
 					}
 				}
-				this.invalidOperations.add(op);
 			}
+			
 			return document;
 		}
-		
+
 		/**
-		 * Retrieve a string segment used in the toString() method to build up JSON formatted string used primarily
-		 * by the toString() method
+		 * Count the leading reference tokens two scopes have in common
 		 *
-		 * @return The JSON formated string segment
+		 * @param lhs The first scope
+		 * @param rhs The second scope
+		 * @param limit The largest count of interest
+		 * @return The number of leading tokens in common, no more than the limit
 		 */
-		protected String getSegment() {
-			StringBuilder sb = new StringBuilder();
+		private static int commonPrefix(String[] lhs, String[] rhs, int limit) {
+			int length = Math.min(limit, Math.min(lhs.length, rhs.length));
 			
-			sb.append("\"operations\":" + Support.convert(this.getOperations()) + ",");
-			sb.append("\"invalid\":" + Support.convert(this.getInvalidOperations()) + ",");
-			sb.append("\"timestamp\":" + this.getTimestamp() + ",");
-			sb.append("\"document\":" + (null == this.document ? "null" : this.document.toString()));
+			for (int i = 0; i < length; ++i) {
+				if (!lhs[i].equals(rhs[i])) {
+					return i;
+				}
+			}
 			
-			return sb.toString();
+			return length;
+		}
+
+		/**
+		 * Apply a run of updates confined to the children of a base location concurrently, grouping them by the child
+		 * their scopes lie in and spreading the groups over the common ForkJoinPool
+		 *
+		 * @param document The document to change, which is not replaced by any update of the run
+		 * @param ops The operations being replayed
+		 * @param scopes The scopes of the operations
+		 * @param start The index of the first update of the run
+		 * @param end The index after the last update of the run
+		 * @param baseLength The number of reference tokens of the base location
+		 * @return True if the run was applied, or false if it touches a single child and must be applied in order instead
+		 */
+		private boolean applyPartitioned(JsonNode document, List<AbstractOperation> ops, String[][] scopes, int start, int end, int baseLength) {
+			Map<String, Integer> groups = new HashMap<>();
+			int[] group = new int[end - start];
+			
+			for (int i = start; i < end; ++i) {
+				Integer index = groups.putIfAbsent(scopes[i][baseLength], groups.size());
+				group[i - start] = null == index ? groups.size() - 1 : index;
+			}
+			
+			if (groups.size() < 2) {
+				return false;
+			}
+			
+			List<Partition> partitions = new ArrayList<>();
+			int count = Math.min(groups.size(), 4 * ForkJoinPool.getCommonPoolParallelism());
+			
+			for (int i = 0; i < count; ++i) {
+				partitions.add(new Partition(document));
+			}
+			
+			for (int i = start; i < end; ++i) {
+				partitions.get(group[i - start] % count).operations.add(ops.get(i));
+			}
+			
+			ForkJoinTask.invokeAll(partitions);
+			
+			Map<AbstractOperation, JsonPatchException> invalid = new TreeMap<>();
+			for (Partition partition : partitions) {
+				this.crdt.applyNanos += partition.applyNanos;
+				invalid.putAll(partition.invalid);
+			}
+			
+			for (Map.Entry<AbstractOperation, JsonPatchException> entry : invalid.entrySet()) {
+				this.markInvalid(entry.getKey(), entry.getValue(), document);
+			}
+			
+			if (!this.probe) {
+				++this.crdt.parallelRunCount;
+			}
+			return true;
+		}
+
+		private PersistentNode applyOperation(PersistentNode document, AbstractOperation op) {
+			long start = Metrics.start();
+			try {
+				return op.processOperation(document);
+			} catch (JsonPatchException e) {
+				this.markInvalid(op, e, document);
+			} finally {
+				this.crdt.applyNanos += Metrics.applied(start);
+			}
+			return document;
+		}
+
+		/**
+		 * Record an operation which could not be applied to the document
+		 *
+		 * @param op The operation which could not be applied
+		 * @param e The exception raised when applying the operation
+		 * @param document The document the operation was applied to
+		 */
+		private void markInvalid(AbstractOperation op, Exception e, Object document) {
+			if (LOG_JSON_PROCESSING_EXCEPTIONS) {
+				logger.error(e);
+				logger.error(" op: " + op.toString());
+				logger.error("doc: " + document);
+				for (StackTraceElement el : e.getStackTrace()) {
+					logger.error(el);
+				}
+			}
+			this.invalidOperations.add(op);
+			if (!this.probe) {
+				++this.crdt.invalidCount;
+				Metrics.invalid();
+			}
+		}
+		
+		/**
+		 * Stream the fields of this TrialResult to the given generator
+		 *
+		 * @param gen The generator to write to
+		 * @throws IOException If the generator fails to write
+		 */
+		protected void writeSegment(JsonGenerator gen) throws IOException {
+			gen.writeFieldName("operations");
+			Support.writeJson(gen, this.getOperations());
+			gen.writeFieldName("invalid");
+			Support.writeJson(gen, this.getInvalidOperations());
+			gen.writeNumberField("timestamp", this.getTimestamp());
+			gen.writeFieldName("document");
+			Support.writeJson(gen, this.getDocument());
+		}
+
+		/* (non-Javadoc)
+		 * @see com.cyberfront.crdt.support.JsonStreamable#writeJson(com.fasterxml.jackson.core.JsonGenerator)
+		 */
+		@Override
+		public void writeJson(JsonGenerator gen) throws IOException {
+			gen.writeStartObject();
+			this.writeSegment(gen);
+			gen.writeEndObject();
 		}
 		
 		/* (non-Javadoc)
 		 * @see java.lang.Object#toString()
 		 */
 		public String toString() {
-			return "{" + this.getSegment() + "}";
+			return Support.toJson(this);
+		}
+	}
+
+	/**
+	 * A Partition applies, in order, the updates of a run whose scopes lie in some of the children of its base location.
+	 * The invalid updates and the time spent are kept with the partition, and gathered once every partition completes.
+	 */
+	private static class Partition extends RecursiveAction {
+
+		/** Serial version identifier */
+		private static final long serialVersionUID = 1L;
+		
+		/** The document to change */
+		private final transient JsonNode document;
+		
+		/** The updates to apply, in order */
+		private final transient List<AbstractOperation> operations = new ArrayList<>();
+		
+		/** The updates which could not be applied, along with the reason */
+		private final transient Map<AbstractOperation, JsonPatchException> invalid = new HashMap<>();
+		
+		/** The time, in nanoseconds, spent applying the updates, if metrics are enabled */
+		private long applyNanos = 0L;
+
+		/**
+		 * Instantiates a new partition
+		 *
+		 * @param document The document to change
+		 */
+		private Partition(JsonNode document) {
+			this.document = document;
+		}
+
+		/* (non-Javadoc)
+		 * @see java.util.concurrent.RecursiveAction#compute()
+		 */
+		@Override
+		protected void compute() {
+			for (AbstractOperation op : this.operations) {
+				long start = Metrics.start();
+				try {
+					op.processInPlace(this.document);
+				} catch (JsonPatchException e) {
+					this.invalid.put(op, e);
+				} finally {
+					this.applyNanos += Metrics.applied(start);
+				}
+			}
 		}
 	}
 
@@ -204,8 +718,341 @@ public class LastWriteWins extends OperationTwoSet {
 //	@SuppressWarnings("unused")
 	private static final Logger logger = LogManager.getLogger(LastWriteWins.class);
 	
+	/** The shortest run of updates confined to disjoint subtrees which a parallel replay applies concurrently */
+	public static final int PARALLEL_REPLAY_RUN = 64;
+	
+	/** Flag indicating whether newly created LastWriteWins instances replay their IN_PLACE documents in parallel */
+	private static boolean defaultParallelReplay = false;
+	
+	/** Flag indicating whether this CRDT replays its IN_PLACE document in parallel */
+	private boolean parallelReplay = isDefaultParallelReplay();
+	
+	/** The number of runs of updates this CRDT has applied concurrently */
+	private long parallelRunCount = 0L;
+	
+	/** The backend used to materialize the documents of newly created LastWriteWins instances */
+	private static Backend defaultBackend = Backend.JSON_PATCH;
+	
 	private TrialResult trial = null;
 	
+	/** The backend used to materialize the document of this CRDT */
+	private Backend backend = getDefaultBackend();
+	
+	/** The materialization policy of newly created LastWriteWins instances */
+	private static Materialization defaultMaterialization = Materialization.LAZY;
+	
+	/** The materialization policy of this CRDT */
+	private Materialization materialization = getDefaultMaterialization();
+	
+	/** The number of changes after which a DEBOUNCED document is rebuilt */
+	private int debounceCount = 16;
+	
+	/** The time, in milliseconds, after the first change following which a DEBOUNCED document is rebuilt */
+	private long debounceMillis = 100L;
+	
+	/** The number of changes not yet reflected in a DEBOUNCED document */
+	private int pendingChanges = 0;
+	
+	/** The time, in milliseconds, of the first change not yet reflected in a DEBOUNCED document */
+	private long pendingSince = 0L;
+	
+	/** The number of operations applied to the materialized document without a replay */
+	private long appendCount = 0L;
+	
+	/** The number of times the operations of this CRDT were replayed to produce its document */
+	private long replayCount = 0L;
+	
+	/** The total number of operations processed over all of the replays of this CRDT */
+	private long replayLength = 0L;
+	
+	/** The total time, in nanoseconds, spent applying operations to the document of this CRDT, if metrics are enabled */
+	private long applyNanos = 0L;
+	
+	/** The number of times an operation of this CRDT was found invalid when applied to its document */
+	private long invalidCount = 0L;
+	
+	/**
+	 * Retrieve the number of times the operations of this CRDT were replayed to produce its document
+	 *
+	 * @return The number of replays
+	 */
+	public long getReplayCount() {
+		return this.replayCount;
+	}
+	
+	/**
+	 * Retrieve the total number of operations processed over all of the replays of this CRDT
+	 *
+	 * @return The total number of operations replayed
+	 */
+	public long getReplayLength() {
+		return this.replayLength;
+	}
+	
+	/**
+	 * Retrieve the total time spent applying operations to the document of this CRDT, over every replay and append.
+	 * This is only measured while metrics are enabled.
+	 *
+	 * @return The total time, in nanoseconds, spent applying operations
+	 */
+	public long getApplyNanos() {
+		return this.applyNanos;
+	}
+	
+	/**
+	 * Retrieve the number of times an operation of this CRDT was found invalid when applied to its document.  An
+	 * operation is counted again each time a replay finds it invalid.
+	 *
+	 * @return The number of times an operation was found invalid
+	 */
+	public long getInvalidCount() {
+		return this.invalidCount;
+	}
+	
+	/**
+	 * Retrieve the backend used to materialize the documents of newly created LastWriteWins instances
+	 *
+	 * @return The default backend
+	 */
+	public static Backend getDefaultBackend() {
+		return defaultBackend;
+	}
+	
+	/**
+	 * Set the backend used to materialize the documents of newly created LastWriteWins instances.  Existing instances
+	 * are not affected.
+	 *
+	 * @param backend The new default backend
+	 */
+	public static void setDefaultBackend(Backend backend) {
+		defaultBackend = backend;
+	}
+	
+	/**
+	 * Retrieve the backend used to materialize the document of this CRDT
+	 *
+	 * @return The backend used to materialize the document
+	 */
+	public Backend getBackend() {
+		return this.backend;
+	}
+	
+	/**
+	 * Set the backend used to materialize the document of this CRDT.  Any document already materialized is discarded.
+	 *
+	 * @param backend The backend used to materialize the document
+	 */
+	public void setBackend(Backend backend) {
+		if (this.backend != backend) {
+			this.backend = backend;
+			this.resetTrial();
+		}
+	}
+	
+	/**
+	 * Determine whether newly created LastWriteWins instances replay their IN_PLACE documents in parallel
+	 *
+	 * @return True exactly when newly created instances replay in parallel
+	 */
+	public static boolean isDefaultParallelReplay() {
+		return defaultParallelReplay;
+	}
+	
+	/**
+	 * Set whether newly created LastWriteWins instances replay their IN_PLACE documents in parallel.  Existing
+	 * instances are not affected.
+	 *
+	 * @param parallelReplay True exactly when newly created instances are to replay in parallel
+	 */
+	public static void setDefaultParallelReplay(boolean parallelReplay) {
+		defaultParallelReplay = parallelReplay;
+	}
+	
+	/**
+	 * Determine whether this CRDT replays its document in parallel, which only affects the IN_PLACE backend
+	 *
+	 * @return True exactly when this CRDT replays in parallel
+	 */
+	public boolean isParallelReplay() {
+		return this.parallelReplay;
+	}
+	
+	/**
+	 * Set whether this CRDT replays its document in parallel, which only affects the IN_PLACE backend.  Either way the
+	 * same document results, so any document already materialized is kept.
+	 *
+	 * @param parallelReplay True exactly when this CRDT is to replay in parallel
+	 */
+	public void setParallelReplay(boolean parallelReplay) {
+		this.parallelReplay = parallelReplay;
+	}
+	
+	/**
+	 * Retrieve the number of runs of updates this CRDT has applied concurrently while replaying its document
+	 *
+	 * @return The number of runs applied concurrently
+	 */
+	public long getParallelRunCount() {
+		return this.parallelRunCount;
+	}
+	
+	/**
+	 * Retrieve the materialization policy of newly created LastWriteWins instances
+	 *
+	 * @return The default materialization policy
+	 */
+	public static Materialization getDefaultMaterialization() {
+		return defaultMaterialization;
+	}
+	
+	/**
+	 * Set the materialization policy of newly created LastWriteWins instances.  Existing instances are not affected.
+	 *
+	 * @param materialization The new default materialization policy
+	 */
+	public static void setDefaultMaterialization(Materialization materialization) {
+		defaultMaterialization = materialization;
+	}
+	
+	/**
+	 * Retrieve the materialization policy of this CRDT
+	 *
+	 * @return The materialization policy
+	 */
+	public Materialization getMaterialization() {
+		return this.materialization;
+	}
+	
+	/**
+	 * Set the materialization policy of this CRDT.  Any stale DEBOUNCED document is discarded.
+	 *
+	 * @param materialization The materialization policy
+	 */
+	public void setMaterialization(Materialization materialization) {
+		if (this.pendingChanges > 0) {
+			this.resetTrial();
+		}
+		
+		this.materialization = materialization;
+	}
+	
+	/**
+	 * Retrieve the number of changes after which a DEBOUNCED document is rebuilt
+	 *
+	 * @return The number of changes
+	 */
+	public int getDebounceCount() {
+		return this.debounceCount;
+	}
+	
+	/**
+	 * Retrieve the time after the first change following which a DEBOUNCED document is rebuilt
+	 *
+	 * @return The time in milliseconds
+	 */
+	public long getDebounceMillis() {
+		return this.debounceMillis;
+	}
+	
+	/**
+	 * Set when a DEBOUNCED document is rebuilt, which is whenever it is read after either limit has been reached
+	 *
+	 * @param count The number of changes after which the document is rebuilt
+	 * @param millis The time, in milliseconds, after the first change following which the document is rebuilt
+	 */
+	public void setDebounce(int count, long millis) {
+		this.debounceCount = count;
+		this.debounceMillis = millis;
+	}
+	
+	/**
+	 * Retrieve the number of changes not yet reflected in the document, which is only ever positive when DEBOUNCED
+	 *
+	 * @return The number of pending changes
+	 */
+	public int getPendingChanges() {
+		return this.pendingChanges;
+	}
+	
+	/**
+	 * Retrieve the number of operations applied to the materialized document without replaying the others
+	 *
+	 * @return The number of operations appended
+	 */
+	public long getAppendCount() {
+		return this.appendCount;
+	}
+	
+	/**
+	 * Rebuild the document on its next read if it is DEBOUNCED and either the number of pending changes or the time since
+	 * the first of them has reached its limit
+	 */
+	private void flushDue() {
+		if (this.pendingChanges > 0 && (this.pendingChanges >= this.getDebounceCount()
+				|| System.currentTimeMillis() - this.pendingSince >= this.getDebounceMillis())) {
+			this.resetTrial();
+		}
+	}
+	
+	/**
+	 * Bring the materialized document up to date with the operations, however stale it is
+	 */
+	public void flush() {
+		if (this.pendingChanges > 0) {
+			this.resetTrial();
+		}
+		
+		if (Materialization.EAGER == this.getMaterialization()) {
+			this.getDocument();
+		}
+	}
+	
+	/**
+	 * Replace the trial used to materialize the document
+	 *
+	 * @param timestamp Latest timestamp of the operations the trial includes
+	 */
+	private void newTrial(long timestamp) {
+		this.trial = new TrialResult(this, timestamp);
+		this.pendingChanges = 0;
+	}
+	
+	/**
+	 * React to a change to the operations, applying an added operation directly to the document where possible, and
+	 * otherwise following the materialization policy
+	 *
+	 * @param added The operation added, or null if the change was the removal of an operation
+	 */
+	private void changed(AbstractOperation added) {
+		if (null != added && 0 == this.pendingChanges && null != this.trial && !this.containsRem(added) && this.trial.append(added)) {
+			++this.appendCount;
+			this.cacheAccess();
+			return;
+		} else if (Materialization.DEBOUNCED == this.getMaterialization() && null != this.trial && Long.MAX_VALUE == this.trial.getTimestamp()) {
+			if (0 == this.pendingChanges++) {
+				this.pendingSince = System.currentTimeMillis();
+			}
+			return;
+		}
+		
+		this.resetTrial();
+		
+		if (Materialization.EAGER == this.getMaterialization()) {
+			this.getDocument();
+		}
+	}
+	
+	/**
+	 * Account for a single replay of the given number of operations
+	 *
+	 * @param length The number of operations replayed
+	 */
+	private void countReplay(long length) {
+		++this.replayCount;
+		this.replayLength += length;
+		Metrics.rebuilt(length);
+	}
+	
 	/* (non-Javadoc)
 	 * @see com.cyberfront.cmrdt.manager.AbstractCRDT#readValue()
 	 */
@@ -219,11 +1066,97 @@ public class LastWriteWins extends OperationTwoSet {
 	 */
 	@Override
 	public JsonNode getDocument(long timestamp) {
-		if (null == this.trial || this.trial.getTimestamp() != timestamp) {
-			this.trial = new TrialResult(this, timestamp);
+		this.flushDue();
+		
+		if (Backend.PERSISTENT == this.getBackend() && null != this.trial && this.trial.getTimestamp() > timestamp) {
+			if (this.trial.isMaterialized()) {
+				Metrics.cacheHit();
+			}
+			
+			PersistentNode version = this.trial.getVersion(timestamp);
+			this.cacheAccess();
+			return null == version ? null : version.toJsonNode();
+		} else if (null == this.trial || this.trial.getTimestamp() != timestamp) {
+			this.newTrial(timestamp);
+		} else if (this.trial.isMaterialized()) {
+			Metrics.cacheHit();
 		}
 
-		return this.trial.getDocument();
+		JsonNode rv = this.trial.getDocument();
+		this.cacheAccess();
+		return rv;
+	}
+	
+	/**
+	 * Report an access to the materialized document to the DocumentCache
+	 */
+	private void cacheAccess() {
+		DocumentCache.getInstance().access(this, this.trial.getDocumentBytes());
+	}
+	
+	/**
+	 * Give up the materialized document, which is rebuilt from the operations the next time it is needed.  This is
+	 * used by the DocumentCache to keep the resident documents within its budget.
+	 */
+	void evict() {
+		this.trial = null;
+		this.pendingChanges = 0;
+	}
+	
+	/**
+	 * Discard the materialized document following a change to the operations, and tell the DocumentCache it is gone
+	 */
+	private void resetTrial() {
+		this.pendingChanges = 0;
+		
+		if (null != this.trial) {
+			this.trial = null;
+			DocumentCache.getInstance().release(this);
+		}
+	}
+	
+	/**
+	 * Retrieve the persistent document resulting from all of the operations in this CRDT
+	 *
+	 * @return The persistent document, or null if the document does not exist
+	 */
+	public PersistentNode getVersion() {
+		return this.getVersion(Long.MAX_VALUE);
+	}
+	
+	/**
+	 * Retrieve the persistent document as of the given timestamp.  With the PERSISTENT backend, earlier versions are taken
+	 * from the last replay of the operations, without replaying them again.
+	 *
+	 * @param timestamp Latest timestamp of the operations to include
+	 * @return The persistent document as of the given timestamp, or null if it did not exist at that time
+	 */
+	public PersistentNode getVersion(long timestamp) {
+		if (Backend.PERSISTENT != this.getBackend()) {
+			return PersistentNode.from(this.getDocument(timestamp));
+		}
+		
+		this.flushDue();
+		
+		if (null == this.trial || this.trial.getTimestamp() < timestamp) {
+			this.newTrial(Long.MAX_VALUE);
+		}
+		
+		PersistentNode rv = this.trial.getVersion(timestamp);
+		this.cacheAccess();
+		return rv;
+	}
+	
+	/**
+	 * Retrieve the estimated memory retained by this CRDT, including its materialized document if there is one.  This
+	 * never materializes the document, so it is cheap enough to call on every write.
+	 *
+	 * @return The estimated memory retained by this CRDT
+	 */
+	@Override
+	public MemoryEstimate getMemoryEstimate() {
+		MemoryEstimate rv = super.getMemoryEstimate();
+		return null == this.trial ? rv : rv.add(new MemoryEstimate(0L, 0L, this.trial.getDocumentBytes()));
 	}
 	
 	/**
@@ -231,49 +1164,244 @@ public class LastWriteWins extends OperationTwoSet {
 	 * @return List of invalid operations
 	 */
 	public Collection<AbstractOperation> getInvalidOperations() {
+		this.flushDue();
+		
 		if (null == trial) {
-			this.trial = new TrialResult(this);
+			this.newTrial(Long.MAX_VALUE);
 		}
 		
 		return this.trial.getInvalidOperations();
 	}
 	
 	/**
-	 * Insert an operation to the ADD set 
+	 * Determine whether any of the operations could not be applied.  This reuses the materialized document when there is
+	 * one, which appending operations keeps current, so it replays the operations only when the document is missing.
+	 *
+	 * @return True exactly when at least one operation is invalid
+	 */
+	public boolean hasInvalidOperations() {
+		return !this.getInvalidOperations().isEmpty();
+	}
+	
+	/**
+	 * Determine whether an operation would apply cleanly were it added to this CRDT, without adding it.  An operation
+	 * which sorts after every other is checked against the materialized document alone, at a cost proportional to its
+	 * patch.  One which sorts earlier is checked the same way when it is an update which cannot interfere with any of
+	 * the updates after it, since neither then changes what the others see.  Otherwise the operations are replayed with
+	 * it included.  A DEBOUNCED document with changes pending is rebuilt first, so the check never sees a stale document.
+	 *
+	 * @param op The operation to check
+	 * @return True exactly when adding the operation would make no operation invalid, itself included
+	 */
+	public boolean canApply(AbstractOperation op) {
+		if (null == op || OperationType.READ == op.getType() || OperationType.DELETE == op.getType() || this.containsRem(op)) {
+			return true;
+		}
+		
+		if (this.pendingChanges > 0) {
+			this.resetTrial();
+		}
+		
+		if (this.containsAdd(op)) {
+			return !this.getInvalidOperations().contains(op);
+		} else if (null == this.trial || Long.MAX_VALUE != this.trial.getTimestamp()) {
+			this.newTrial(Long.MAX_VALUE);
+		}
+		
+		JsonNode tip = this.trial.getDocument();
+		this.cacheAccess();
+		
+		if (this.commutesWithLater(op)) {
+			return op.isApplicable(tip);
+		}
+		
+		// The invalid operations of a trial are held in a sorted set, so each is looked up rather than scanned for
+		Collection<AbstractOperation> invalid = this.trial.getInvalidOperations();
+		
+		return new TrialResult(this, op).
+				getInvalidOperations().
+				stream().
+				allMatch(el -> el != op && invalid.contains(el));
+	}
+	
+	/**
+	 * Determine whether an operation commutes with every operation of the current trial which sorts after it, so that
+	 * checking it against the materialized document is the same as checking it where it sorts
+	 *
+	 * @param op The operation to check
+	 * @return True when no operation sorts after the given one, or it and all of those are non-interfering updates
+	 */
+	private boolean commutesWithLater(AbstractOperation op) {
+		List<AbstractOperation> later = this.trial.getOperations().after(op);
+		
+		if (later.isEmpty()) {
+			return true;
+		} else if (OperationType.UPDATE != op.getType()) {
+			return false;
+		}
+		
+		for (AbstractOperation el : later) {
+			if (OperationType.UPDATE != el.getType() || PatchInterpreter.interferes(op.getOp(), el.getOp())) {
+				return false;
+			}
+		}
+		
+		return true;
+	}
+	
+	/**
+	 * Insert an operation to the ADD set, publishing the change to any subscribers.  A duplicate is counted and dropped
+	 * before the document is copied for the patch of the change, since it changes nothing.
 	 *
 	 * @param op The operation to add to the ADD set
+	 * @return True exactly when the operation was not already in the ADD set
 	 */
 	@Override
-	protected void addOperation(AbstractOperation op) {
-		if (null != op) {
-			super.addOperation(op);
-			this.trial = null;
+	protected boolean addOperation(AbstractOperation op) {
+		if (null == op) {
+			return false;
+		} else if (this.containsAdd(op)) {
+			this.countDuplicate();
+			return false;
 		}
+		
+		JsonNode before = this.getPublishedDocument();
+		
+		if (!super.addOperation(op)) {
+			return false;
+		}
+		
+		this.changed(op);
+		this.publishChange(Kind.ADD, op, before);
+		return true;
 	}
 	
 	/**
-	 * Insert an operation to the REMOVE set 
+	 * Insert an operation to the REMOVE set, publishing the change to any subscribers.  A duplicate is counted and
+	 * dropped before the document is copied for the patch of the change, since it changes nothing.
 	 *
 	 * @param op The operation to add to the REMOVE set
+	 * @return True exactly when the operation was not already in the REMOVE set
 	 */
 	@Override
-	protected void remOperation(AbstractOperation op) {
-		if (null != op) {
-			super.remOperation(op);
-			this.trial = null;
+	protected boolean remOperation(AbstractOperation op) {
+		if (null == op) {
+			return false;
+		} else if (this.containsRem(op)) {
+			this.countDuplicate();
+			return false;
+		}
+		
+		JsonNode before = this.getPublishedDocument();
+		
+		if (!super.remOperation(op)) {
+			return false;
+		}
+		
+		this.changed(null);
+		this.publishChange(Kind.REMOVE, op, before);
+		return true;
+	}
+	
+	/**
+	 * Retrieve a copy of the current document if a subscriber wants the patch of the next change, so the patch can be
+	 * computed against it once the change is made
+	 *
+	 * @return A copy of the current document, or null if no subscriber wants patches
+	 */
+	private JsonNode getPublishedDocument() {
+		if (!this.isPatchRequested()) {
+			return null;
+		}
+		
+		JsonNode document = this.getDocument();
+		return null == document ? NullNode.getInstance() : document.deepCopy();
+	}
+	
+	/**
+	 * Publish a change to any subscribers, with the patch it made to the document if a subscriber wants it
+	 *
+	 * @param kind The set the operation was inserted into
+	 * @param op The operation inserted
+	 * @param before A copy of the document before the change, or null if no subscriber wants patches
+	 */
+	private void publishChange(Kind kind, AbstractOperation op, JsonNode before) {
+		if (this.hasSubscribers()) {
+			JsonNode patch = null;
+			
+			if (null != before) {
+				JsonNode after = this.getDocument();
+				patch = JsonDiff.asJson(before, null == after ? NullNode.getInstance() : after);
+			}
+			
+			this.publish(new ChangeEvent(this, kind, op, patch));
 		}
 	}
 
-	/* (non-Javadoc)
-	 * @see com.cyberfront.cmrdt.manager.OperationTwoSet#getSegment()
+	/**
+	 * Write the operations of this CRDT to a snapshot, followed by its current document and the identities of the
+	 * operations which could not be applied to it, so that reading the snapshot need not replay the operations
+	 *
+	 * @param out The output to write to
+	 * @throws IOException If the output cannot be written
+	 */
+	@Override
+	void writeSnapshot(DataOutput out) throws IOException {
+		super.writeSnapshot(out);
+		this.flush();
+		
+		JsonNode document = this.getDocument();
+		Collection<AbstractOperation> invalid = this.getInvalidOperations();
+		
+		Snapshot.writeDocument(document, out);
+		out.writeInt(invalid.size());
+		for (AbstractOperation op : invalid) {
+			OperationCodec.encodeIdentity(op, out);
+		}
+	}
+
+	/**
+	 * Replace the operations of this CRDT with those of a snapshot written by writeSnapshot.  The document held by the
+	 * snapshot is installed as the materialized document, unless the PERSISTENT backend is used, since that keeps every
+	 * version of the document, which the snapshot does not hold; it then replays the operations when first read.
+	 *
+	 * @param in The input to read from
+	 * @throws IOException If the input cannot be read
 	 */
 	@Override
-	protected String getSegment() {
-		StringBuilder sb = new StringBuilder();
+	void readSnapshot(DataInput in) throws IOException {
+		super.readSnapshot(in);
+		
+		JsonNode document = Snapshot.readDocument(in);
+		OperationKeys invalid = new OperationKeys();
+		
+		for (int i = in.readInt(); i > 0; --i) {
+			invalid.add(OperationCodec.decodeIdentity(in));
+		}
 		
-		sb.append(super.getSegment() + ",");
-		sb.append("\"trial\":" + (null == this.trial ? "null" : this.trial.toString()));
+		if (null != document && Backend.PERSISTENT != this.getBackend()) {
+			this.newTrial(Long.MAX_VALUE);
+			this.trial.restore(document, invalid);
+			this.cacheAccess();
+		}
+	}
 
-		return sb.toString();
+	/* (non-Javadoc)
+	 * @see com.cyberfront.crdt.OperationTwoSet#clear()
+	 */
+	@Override
+	public void clear() {
+		super.clear();
+		this.resetTrial();
+	}
+
+	/* (non-Javadoc)
+	 * @see com.cyberfront.crdt.OperationTwoSet#writeSegment(com.fasterxml.jackson.core.JsonGenerator)
+	 */
+	@Override
+	protected void writeSegment(JsonGenerator gen) throws IOException {
+		super.writeSegment(gen);
+		gen.writeFieldName("trial");
+		Support.writeJson(gen, this.trial);
 	}
 }
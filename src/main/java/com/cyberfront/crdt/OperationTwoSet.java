@@ -22,35 +22,143 @@
  */
 package com.cyberfront.crdt;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.TreeSet;
 
+import com.cyberfront.crdt.causal.VersionVector;
+import com.cyberfront.crdt.metrics.Metrics;
 import com.cyberfront.crdt.operations.AbstractOperation;
 import com.cyberfront.crdt.operations.AbstractOperation.OperationType;
+import com.cyberfront.crdt.operations.OperationCodec;
+import com.cyberfront.crdt.operations.OperationColumns;
+import com.cyberfront.crdt.operations.OperationKeys;
+import com.cyberfront.crdt.operations.OperationLog;
+import com.cyberfront.crdt.support.MemoryEstimate;
 import com.cyberfront.crdt.support.Support;
+import com.fasterxml.jackson.core.JsonGenerator;
 
 /**
  * This is an abstract class which defines a Two Set CRDT.  One set contains operations to use, called an ADD set, and the other contains
  * a set of operations which must not be used, called a REMOVE set.  Elements in the REMOVE set have precedence over those in the ADD set.
  * That is, if an element is contained in the REMOVE set it will not be used if it is in the ADD set, regardless of when it was added to the
  * ADD set.
+ * 
+ * Operations are identified by their Dot when they carry one, and otherwise by their timestamp, operation identifier,
+ * type and the hash of their JSON operation.  The identities inserted in each set are also kept in compact
+ * OperationKeys, so a redelivered operation is recognized in constant time, without comparing it against the
+ * operations already held.  The Dots of operations in the ADD set which carry causal metadata are summarized in
+ * a VersionVector.
+ * 
+ * Both sets are OperationLogs, which append operations arriving in order in constant time and are replayed by walking
+ * arrays rather than the nodes of a tree.
+ * 
+ * Optionally, the metadata of the operations is also kept in OperationColumns, a structure of primitive arrays, so that
+ * counting operations by type, finding whether the document was created or deleted, and selecting the operations to
+ * replay up to a timestamp are loops over those arrays rather than a merge of the two sets followed by a walk over the
+ * operations.  The columns are appended to as operations arrive in order, and rebuilt on demand otherwise.
  */
 public abstract class OperationTwoSet extends AbstractCRDT {
 	
 	/** The ADD set. */
-	private Collection<AbstractOperation> addSet;
+	private OperationLog addSet;
 
 	/** The REMOVE set. */
-	private Collection<AbstractOperation> remSet;
+	private OperationLog remSet;
+	
+	/** The identities of the operations inserted in the ADD set */
+	private OperationKeys addKeys;
+	
+	/** The identities of the operations inserted in the REMOVE set */
+	private OperationKeys remKeys;
+	
+	/** The Dots of the operations in the ADD set which carry them */
+	private VersionVector addVersion;
+	
+	/** The number of operations in the ADD set which carry a Dot */
+	private int dottedCount = 0;
+	
+	/** The number of operations rejected because they were already in the set they were inserted in */
+	private long duplicateCount = 0L;
+	
+	/** The estimated bytes retained by the operations in the ADD and REMOVE sets, excluding their patches */
+	private long operationBytes = 0L;
+	
+	/** The estimated bytes retained by the patches of the operations in the ADD and REMOVE sets */
+	private long patchBytes = 0L;
+	
+	/** Flag indicating whether newly created instances keep the metadata of their operations in columns */
+	private static boolean defaultColumnar = false;
+	
+	/** Flag indicating whether this instance keeps the metadata of its operations in columns */
+	private boolean columnar = isDefaultColumnar();
+	
+	/** The columns of the operations in the ADD set, or null if they must be rebuilt before their next use */
+	private OperationColumns columns = null;
+	
+	/**
+	 * Determine whether newly created instances keep the metadata of their operations in columns
+	 *
+	 * @return True exactly when newly created instances keep columns
+	 */
+	public static boolean isDefaultColumnar() {
+		return defaultColumnar;
+	}
+	
+	/**
+	 * Set whether newly created instances keep the metadata of their operations in columns.  Existing instances are
+	 * not affected.
+	 *
+	 * @param columnar True exactly when newly created instances are to keep columns
+	 */
+	public static void setDefaultColumnar(boolean columnar) {
+		defaultColumnar = columnar;
+	}
+	
+	/**
+	 * Determine whether this instance keeps the metadata of its operations in columns
+	 *
+	 * @return True exactly when this instance keeps columns
+	 */
+	public boolean isColumnar() {
+		return this.columnar;
+	}
+	
+	/**
+	 * Set whether this instance keeps the metadata of its operations in columns.  Turning them off releases them, and
+	 * turning them on builds them when they are next needed.
+	 *
+	 * @param columnar True exactly when this instance is to keep columns
+	 */
+	public void setColumnar(boolean columnar) {
+		this.columnar = columnar;
+		this.columns = null;
+	}
+	
+	/**
+	 * Retrieve the columns of the operations in the ADD set, building them from the ADD and REMOVE sets if they are
+	 * not current.  This must only be called while the instance keeps columns.
+	 *
+	 * @return The columns of the operations in the ADD set
+	 */
+	protected OperationColumns getColumns() {
+		if (null == this.columns) {
+			this.columns = OperationColumns.of(this.getAddSet(), this.getRemSet());
+		}
+		
+		return this.columns;
+	}
 	
 	/**
 	 * This method retrieved the ADD set.
 	 *
 	 * @return the ADD set
 	 */
-	private Collection<AbstractOperation> getAddSet() {
+	private OperationLog getAddSet() {
 		if (null == this.addSet) {
-			this.addSet = new TreeSet<>();
+			this.addSet = new OperationLog();
 		}
 		
 		return this.addSet;
@@ -61,13 +169,85 @@ public abstract class OperationTwoSet extends AbstractCRDT {
 	 *
 	 * @return the REMOVE set
 	 */
-	private Collection<AbstractOperation> getRemSet() {
+	private OperationLog getRemSet() {
 		if (null == this.remSet) {
-			this.remSet = new TreeSet<>();
+			this.remSet = new OperationLog();
 		}
 		return this.remSet;
 	}
 	
+	/**
+	 * This method retrieves the identities of the operations in the ADD set.
+	 *
+	 * @return the identities of the operations in the ADD set
+	 */
+	private OperationKeys getAddKeys() {
+		if (null == this.addKeys) {
+			this.addKeys = new OperationKeys();
+		}
+		
+		return this.addKeys;
+	}
+	
+	/**
+	 * This method retrieves the identities of the operations in the REMOVE set.
+	 *
+	 * @return the identities of the operations in the REMOVE set
+	 */
+	private OperationKeys getRemKeys() {
+		if (null == this.remKeys) {
+			this.remKeys = new OperationKeys();
+		}
+		
+		return this.remKeys;
+	}
+	
+	/**
+	 * This method retrieves the VersionVector summarizing the Dots of the operations in the ADD set.
+	 *
+	 * @return the VersionVector of the ADD set
+	 */
+	VersionVector getAddVersion() {
+		if (null == this.addVersion) {
+			this.addVersion = new VersionVector();
+		}
+		
+		return this.addVersion;
+	}
+	
+	/**
+	 * Retrieve a copy of the VersionVector summarizing the Dots of the operations in the ADD set.  A replica sends this
+	 * to another to learn which operations it is missing.
+	 *
+	 * @return A copy of the VersionVector of the ADD set
+	 */
+	public VersionVector getVersionVector() {
+		return new VersionVector(this.getAddVersion());
+	}
+	
+	/**
+	 * Retrieve copies of the operations in the ADD set which are missing from a replica, given its VersionVector.
+	 * Operations without a Dot cannot be compared against the vector, so they are always included.
+	 *
+	 * @param remote The VersionVector of the replica
+	 * @return Copies of the operations the replica has not seen
+	 */
+	public Collection<AbstractOperation> getDelta(VersionVector remote) {
+		Collection<AbstractOperation> rv = new ArrayList<>();
+		
+		if (this.dottedCount == this.getAddSet().size() && remote.dominates(this.getAddVersion())) {
+			return rv;
+		}
+		
+		for (AbstractOperation op : this.getAddSet()) {
+			if (null == op.getDot() || !remote.contains(op.getDot())) {
+				rv.add(op.copy());
+			}
+		}
+		
+		return rv;
+	}
+	
 	public Collection<AbstractOperation> copyAddSet() {
 		return AbstractOperation.copy(this.getAddSet());
 	}
@@ -100,57 +280,239 @@ public abstract class OperationTwoSet extends AbstractCRDT {
 	 * @return The number of elements in the Remove Set
 	 */
 	public long getOperationCount() {
-		return this.getOpsSet().size();
+		return this.isColumnar() ? this.getColumns().countActive() : this.getOpsSet().size();
 	}
 	
 	/**
-	 * Insert an operation to the ADD set 
+	 * Insert an operation to the ADD set.  The identity of the operation is only recorded once the ADD set accepts it, and
+	 * an operation the ADD set already holds an equal of is counted as a duplicate.
 	 *
 	 * @param op The operation to add to the ADD set
+	 * @return True exactly when the operation was not already in the ADD set
 	 */
-	protected void addOperation(AbstractOperation op) {
-		this.getAddSet().add(op);
+	protected boolean addOperation(AbstractOperation op) {
+		if (this.getAddKeys().contains(op) || !this.getAddSet().add(op)) {
+			++this.duplicateCount;
+		} else {
+			this.getAddKeys().add(op);
+			this.countOperation(op);
+			Metrics.stored(1L, 0L, this.containsRem(op) ? 0L : 1L);
+			
+			if (null != this.columns && !this.columns.append(op, this.containsRem(op))) {
+				this.columns = null;
+			}
+			
+			if (null != op.getDot() && this.getAddVersion().add(op.getDot())) {
+				++this.dottedCount;
+			}
+			
+			return true;
+		}
+		
+		return false;
 	}
 	
 	/**
-	 * Insert an operation to the REMOVE set 
+	 * Insert an operation to the REMOVE set.  The identity of the operation is only recorded once the REMOVE set accepts
+	 * it, and an operation the REMOVE set already holds an equal of is counted as a duplicate.
 	 *
 	 * @param op The operation to add to the REMOVE set
+	 * @return True exactly when the operation was not already in the REMOVE set
 	 */
-	protected void remOperation(AbstractOperation op) {
-		this.getRemSet().add(op);
+	protected boolean remOperation(AbstractOperation op) {
+		if (this.getRemKeys().contains(op) || !this.getRemSet().add(op)) {
+			++this.duplicateCount;
+		} else {
+			this.getRemKeys().add(op);
+			this.countOperation(op);
+			Metrics.stored(0L, 1L, this.containsAdd(op) ? -1L : 0L);
+			
+			if (null != this.columns && this.containsAdd(op) && !this.columns.markRemoved(op)) {
+				this.columns = null;
+			}
+			return true;
+		}
+		
+		return false;
 	}
 	
 	/**
-	 * This private static function returns a set resulting from removing all of the elements on the RHS from the set on the LHS
+	 * Determine whether an operation with the same identity as the one given has already been inserted in the ADD set
 	 *
-	 * @param lhs The left hand side of the difference operator
-	 * @param rhs The right hand side of the difference operator
-	 * @return The set of elements resulting from removing all of the elements in RHS from LHS
-	 */
-	private static Collection<AbstractOperation> diff(Collection<AbstractOperation> lhs, Collection<AbstractOperation> rhs) {
-		Collection<AbstractOperation> rv = new TreeSet<>();
-		rv.addAll(lhs);
-		rv.removeAll(rhs);
-		return rv;
+	 * @param op The operation to look for
+	 * @return True exactly when the operation is already in the ADD set
+	 */
+	boolean containsAdd(AbstractOperation op) {
+		return this.getAddKeys().contains(op);
+	}
+	
+	/**
+	 * Determine whether an operation with the same identity as the one given has already been inserted in the REMOVE set
+	 *
+	 * @param op The operation to look for
+	 * @return True exactly when the operation is already in the REMOVE set
+	 */
+	boolean containsRem(AbstractOperation op) {
+		return this.getRemKeys().contains(op);
+	}
+	
+	/**
+	 * Record an operation rejected before insertion because it was already in the set it was destined for
+	 */
+	void countDuplicate() {
+		++this.duplicateCount;
+	}
+	
+	/**
+	 * Retrieve the number of redelivered operations rejected because they were already in the ADD or REMOVE set
+	 *
+	 * @return The number of duplicate operations rejected
+	 */
+	public long getDuplicateCount() {
+		return this.duplicateCount;
+	}
+	
+	/**
+	 * Account for the memory retained by an operation newly inserted in the ADD or REMOVE set
+	 *
+	 * @param op The operation inserted
+	 */
+	private void countOperation(AbstractOperation op) {
+		this.operationBytes += MemoryEstimate.OPERATION_BYTES + MemoryEstimate.SET_ENTRY_BYTES;
+		this.patchBytes += op.getPatchBytes();
+	}
+	
+	/**
+	 * Retrieve the estimated memory retained by this CRDT.  The estimate is maintained as operations are inserted, so
+	 * it is cheap to retrieve.
+	 *
+	 * @return The estimated memory retained by this CRDT
+	 */
+	public MemoryEstimate getMemoryEstimate() {
+		return new MemoryEstimate(this.operationBytes, this.patchBytes, 0L);
 	}
 	
 	/**
 	 * This method returns the collection of elements in the ADD set after those in the REMOVE set have been
-	 * removed.
+	 * removed.  Both sets are sorted, so this is a single merged pass over them.
+	 *
+	 * @return The operations which are active in this Two Set CRDT, in order
+	 */
+	public OperationLog getOpsSet() {
+		return OperationLog.difference(this.getAddSet(), this.getRemSet());
+	}
+
+	/**
+	 * Retrieve the latest timestamp of any operation in the ADD or REMOVE set
+	 *
+	 * @return The latest timestamp, or Long.MIN_VALUE if both sets are empty
+	 */
+	long getLatestTimestamp() {
+		long rv = Long.MIN_VALUE;
+		
+		if (!this.getAddSet().isEmpty()) {
+			rv = this.getAddSet().last().getTimeStamp();
+		}
+		
+		if (!this.getRemSet().isEmpty()) {
+			rv = Math.max(rv, this.getRemSet().last().getTimeStamp());
+		}
+		
+		return rv;
+	}
+
+	/**
+	 * Write the operations of this CRDT to a snapshot.  The snapshot is compacted: operations of the ADD set which are
+	 * also in the REMOVE set are left out, since they never contribute to the document, and the REMOVE set is written as
+	 * tombstones holding the identity of each operation without its JSON operation.  Each tombstone records whether its
+	 * operation was added, so a redelivery of the operation is still recognized as a duplicate once the snapshot is read.
+	 * Both sets are written in order, so they are read back by appending to the end of each set.
 	 *
-	 * @return The operations which are active in this Two Set CRDT
+	 * @param out The output to write to
+	 * @throws IOException If the output cannot be written
 	 */
-	public Collection<AbstractOperation> getOpsSet() {
-		return diff(this.getAddSet(), this.getRemSet());
+	void writeSnapshot(DataOutput out) throws IOException {
+		OperationLog live = this.getOpsSet();
+		
+		out.writeLong(this.duplicateCount);
+		this.getAddVersion().write(out);
+		
+		out.writeInt(live.size());
+		for (AbstractOperation op : live) {
+			OperationCodec.encode(op, out);
+		}
+		
+		out.writeInt(this.getRemSet().size());
+		for (AbstractOperation op : this.getRemSet()) {
+			OperationCodec.encodeIdentity(op, out);
+			out.writeBoolean(this.containsAdd(op));
+		}
+	}
+
+	/**
+	 * Replace the operations of this CRDT with those of a snapshot written by writeSnapshot.  The operations are appended
+	 * to the ends of the ADD and REMOVE sets as they are read, and the VersionVector is read whole rather than rebuilt
+	 * from the Dots of the operations, so this costs constant time per operation.
+	 *
+	 * @param in The input to read from
+	 * @throws IOException If the input cannot be read or its operations are not in order
+	 */
+	void readSnapshot(DataInput in) throws IOException {
+		this.clear();
+		
+		long duplicates = in.readLong();
+		VersionVector version = VersionVector.read(in);
+		
+		int live = in.readInt();
+		for (int i = 0; i < live; ++i) {
+			AbstractOperation op = OperationCodec.decode(in);
+			
+			if (!this.getAddSet().append(op) || !this.getAddKeys().add(op)) {
+				throw new IOException("Snapshot operations are out of order at " + op);
+			}
+			
+			this.countOperation(op);
+			if (null != op.getDot()) {
+				++this.dottedCount;
+			}
+		}
+		
+		int tombstones = in.readInt();
+		for (int i = 0; i < tombstones; ++i) {
+			AbstractOperation op = OperationCodec.decodeIdentity(in);
+			
+			if (!this.getRemSet().append(op) || !this.getRemKeys().add(op)) {
+				throw new IOException("Snapshot tombstones are out of order at " + op);
+			}
+			
+			this.countOperation(op);
+			if (in.readBoolean()) {
+				this.getAddKeys().add(op);
+			}
+		}
+		
+		this.getAddVersion().merge(version);
+		this.duplicateCount = duplicates;
+		Metrics.stored(live, tombstones, live);
 	}
 
 	/**
 	 * This method removes all elements in both the ADD and REMOVE sets, effectively reseting them to empty.
 	 */
 	public void clear() {
+		if (Metrics.isEnabled()) {
+			Metrics.stored(-this.getAddSet().size(), -this.getRemSet().size(), -this.getOpsSet().size());
+		}
+		
 		this.getAddSet().clear();
 		this.getRemSet().clear();
+		this.getAddKeys().clear();
+		this.getRemKeys().clear();
+		this.getAddVersion().clear();
+		this.dottedCount = 0;
+		this.columns = null;
+		this.operationBytes = 0L;
+		this.patchBytes = 0L;
 	}
 
 	/**
@@ -161,13 +523,21 @@ public abstract class OperationTwoSet extends AbstractCRDT {
 	 * @return True exactly when the set of active operations is empty
 	 */
 	public boolean isEmpty() {
-		return (this.getAddSet().isEmpty() && this.getRemSet().isEmpty()) || this.getOpsSet().isEmpty();
+		if (this.getAddSet().isEmpty() && this.getRemSet().isEmpty()) {
+			return true;
+		}
+		
+		return this.isColumnar() ? 0 == this.getColumns().countActive() : this.getOpsSet().isEmpty();
 	}
 
 	/* (non-Javadoc)
 	 * @see com.cyberfront.cmrdt.manager.AbstractCRDT#isCreated()
 	 */
 	public boolean isCreated() {
+		if (this.isColumnar()) {
+			return this.getColumns().contains(OperationType.CREATE);
+		}
+		
 		for (AbstractOperation op : this.getOpsSet()) {
 			if (op.isCreated()) {
 				return true;
@@ -181,6 +551,10 @@ public abstract class OperationTwoSet extends AbstractCRDT {
 	 * @see com.cyberfront.cmrdt.manager.AbstractCRDT#isDeleted()
 	 */
 	public boolean isDeleted() {
+		if (this.isColumnar()) {
+			return this.getColumns().contains(OperationType.DELETE);
+		}
+		
 		for (AbstractOperation op : this.getOpsSet()) {
 			if (op.isDeleted()) {
 				return true;
@@ -209,12 +583,22 @@ public abstract class OperationTwoSet extends AbstractCRDT {
 		return rv;
 	}
 
+	/**
+	 * Count the active operations of the given type, from the columns if this instance keeps them
+	 *
+	 * @param opType Type of operation to count
+	 * @return Number of active operations with the given type
+	 */
+	private long countOperations(OperationType opType) {
+		return this.isColumnar() ? this.getColumns().count(opType) : countOperations(this.getOpsSet(), opType);
+	}
+
 	/* (non-Javadoc)
 	 * @see com.cyberfront.crdt.AbstractCRDT#countCreated()
 	 */
 	@Override
 	public long countCreated() {
-		return countOperations(this.getOpsSet(), OperationType.CREATE);
+		return this.countOperations(OperationType.CREATE);
 	}
 	
 	/* (non-Javadoc)
@@ -222,7 +606,7 @@ public abstract class OperationTwoSet extends AbstractCRDT {
 	 */
 	@Override
 	public long countRead() {
-		return countOperations(this.getOpsSet(), OperationType.READ);
+		return this.countOperations(OperationType.READ);
 	}
 	
 	/* (non-Javadoc)
@@ -230,7 +614,7 @@ public abstract class OperationTwoSet extends AbstractCRDT {
 	 */
 	@Override
 	public long countUpdate() {
-		return countOperations(this.getOpsSet(), OperationType.UPDATE);
+		return this.countOperations(OperationType.UPDATE);
 	}
 	
 	/* (non-Javadoc)
@@ -238,21 +622,20 @@ public abstract class OperationTwoSet extends AbstractCRDT {
 	 */
 	@Override
 	public long countDelete() {
-		return countOperations(this.getOpsSet(), OperationType.DELETE);
+		return this.countOperations(OperationType.DELETE);
 	}
 	
 	/* (non-Javadoc)
-	 * @see com.cyberfront.cmrdt.manager.AbstractCRDT#getSegment()
+	 * @see com.cyberfront.crdt.AbstractCRDT#writeSegment(com.fasterxml.jackson.core.JsonGenerator)
 	 */
 	@Override
-	protected String getSegment() {
-		StringBuilder sb = new StringBuilder();
-		
-		sb.append(super.getSegment() + ",");
-		sb.append("\"addSet\":" + Support.convert(this.getAddSet()) + ",");
-		sb.append("\"remSet\":" + Support.convert(this.getRemSet()) + ",");
-		sb.append("\"opSet\":" + Support.convert(this.getOpsSet()));
-
-		return sb.toString();
+	protected void writeSegment(JsonGenerator gen) throws IOException {
+		super.writeSegment(gen);
+		gen.writeFieldName("addSet");
+		Support.writeJson(gen, this.getAddSet());
+		gen.writeFieldName("remSet");
+		Support.writeJson(gen, this.getRemSet());
+		gen.writeFieldName("opSet");
+		Support.writeJson(gen, this.getOpsSet());
 	}
 }
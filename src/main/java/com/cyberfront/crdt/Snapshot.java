@@ -0,0 +1,286 @@
+/*
+ * Copyright (c) 2017 Cybernetic Frontiers LLC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package com.cyberfront.crdt;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Supplier;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * The Snapshot class writes the full state of CRDT managers to a compact binary stream, and reads it back, so that a node
+ * can be restarted without redelivering the history of every document.  For each manager the snapshot holds its replica
+ * identity, its version vector, the live operations of its CRDT, tombstones for the operations it removed and its
+ * materialized document.  Operations are written with the OperationCodec, and tombstones without their JSON operations.
+ * 
+ * Reading a snapshot does not insert operations one by one.  Each set of operations is written in order, and is read
+ * back by appending to the end of the set, while the materialized document is installed as it is, so a manager is
+ * restored in time proportional to its operations, with no replay.
+ * 
+ * A snapshot starts with a magic number, a format version and the number of managers it holds, and ends with the CRC32
+ * checksum of everything before it.  Each manager is written as a frame, its length followed by its contents and their
+ * own CRC32 checksum.  A frame is read in bounded chunks and checked before any of it is trusted, so a corrupt length
+ * or count cannot cause a huge allocation or be restored into a manager, and nothing is read past the end of the
+ * snapshot.
+ */
+public class Snapshot {
+
+	/** The magic number starting every snapshot, the characters "CRDT" */
+	public static final int MAGIC = 0x43524454;
+
+	/** The version of the snapshot format */
+	public static final int VERSION = 2;
+
+	/** The length written in place of the document when there is none */
+	private static final int NO_DOCUMENT = -1;
+
+	/** The largest number of bytes of a frame read at once, which bounds the memory a corrupt frame length can claim */
+	private static final int FRAME_CHUNK = 1 << 16;
+
+	/** The ObjectMapper used to serialize and parse documents */
+	private static final ObjectMapper mapper = new ObjectMapper();
+
+	/**
+	 * Write a snapshot of a single manager
+	 *
+	 * @param manager The manager to write
+	 * @param out The stream to write to, which is flushed but not closed
+	 * @throws IOException If the stream cannot be written
+	 */
+	public static void write(CRDTManager manager, OutputStream out) throws IOException {
+		writeAll(Collections.singletonList(manager), out);
+	}
+
+	/**
+	 * Write a snapshot of a collection of managers, one after another
+	 *
+	 * @param managers The managers to write
+	 * @param out The stream to write to, which is flushed but not closed
+	 * @throws IOException If the stream cannot be written
+	 */
+	public static void writeAll(Collection<? extends CRDTManager> managers, OutputStream out) throws IOException {
+		BufferedOutputStream buffer = new BufferedOutputStream(out);
+		CRC32 checksum = new CRC32();
+		DataOutputStream data = new DataOutputStream(new CheckedOutputStream(buffer, checksum));
+		
+		data.writeInt(MAGIC);
+		data.writeInt(VERSION);
+		data.writeInt(managers.size());
+		
+		for (CRDTManager manager : managers) {
+			ByteArrayOutputStream frame = new ByteArrayOutputStream();
+			manager.writeSnapshot(new DataOutputStream(frame));
+			
+			CRC32 frameChecksum = new CRC32();
+			frameChecksum.update(frame.toByteArray());
+			data.writeInt(frame.size());
+			frame.writeTo(data);
+			data.writeLong(frameChecksum.getValue());
+		}
+		
+		data.flush();
+		new DataOutputStream(buffer).writeLong(checksum.getValue());
+		buffer.flush();
+	}
+
+	/**
+	 * Read a snapshot of a single manager into the given one, replacing its state
+	 *
+	 * @param in The stream to read from
+	 * @param manager The manager to restore, which is left empty if its part of the snapshot proves to be corrupt
+	 * @throws IOException If the stream cannot be read, or does not hold a valid snapshot of a single manager
+	 */
+	public static void read(InputStream in, CRDTManager manager) throws IOException {
+		read(in, () -> manager, true);
+	}
+
+	/**
+	 * Read a snapshot of a collection of managers, restoring each into a manager from the given supplier
+	 *
+	 * @param in The stream to read from
+	 * @param supplier The supplier of the managers to restore, each of which has its state replaced
+	 * @param <T> The type of the managers
+	 * @return The managers restored, in the order they were written
+	 * @throws IOException If the stream cannot be read or does not hold a valid snapshot, in which case every manager
+	 * restored so far is left empty
+	 */
+	public static <T extends CRDTManager> List<T> readAll(InputStream in, Supplier<T> supplier) throws IOException {
+		return read(in, supplier, false);
+	}
+
+	/**
+	 * Read a snapshot, restoring each manager it holds into a manager from the given supplier
+	 *
+	 * @param in The stream to read from
+	 * @param supplier The supplier of the managers to restore
+	 * @param single Flag indicating the snapshot must hold exactly one manager
+	 * @param <T> The type of the managers
+	 * @return The managers restored, in the order they were written
+	 * @throws IOException If the stream cannot be read or does not hold a valid snapshot, in which case every manager
+	 * restored so far is left empty
+	 */
+	private static <T extends CRDTManager> List<T> read(InputStream in, Supplier<T> supplier, boolean single) throws IOException {
+		CRC32 checksum = new CRC32();
+		DataInputStream data = new DataInputStream(new CheckedInputStream(in, checksum));
+		List<T> rv = new ArrayList<>();
+		boolean complete = false;
+		
+		try {
+			if (MAGIC != data.readInt()) {
+				throw new IOException("Stream does not hold a snapshot");
+			}
+			
+			int version = data.readInt();
+			if (VERSION != version) {
+				throw new IOException("Unsupported snapshot version " + version);
+			}
+			
+			int count = data.readInt();
+			if (count < 0) {
+				throw new IOException("Malformed manager count " + count);
+			} else if (single && 1 != count) {
+				throw new IOException("Snapshot holds " + count + " managers rather than one");
+			}
+			
+			for (; count > 0; --count) {
+				DataInputStream frame = new DataInputStream(new ByteArrayInputStream(readFrame(data)));
+				T manager = supplier.get();
+				rv.add(manager);
+				manager.readSnapshot(frame);
+				
+				if (frame.available() > 0) {
+					throw new IOException("Snapshot frame holds " + frame.available() + " bytes past its manager");
+				}
+			}
+			
+			long expected = checksum.getValue();
+			if (expected != new DataInputStream(in).readLong()) {
+				throw new IOException("Snapshot checksum does not match its contents");
+			}
+			
+			complete = true;
+		} catch (RuntimeException e) {
+			throw new IOException("Snapshot is corrupt", e);
+		} finally {
+			if (!complete) {
+				for (T manager : rv) {
+					manager.clear();
+				}
+			}
+		}
+		
+		return rv;
+	}
+
+	/**
+	 * Read the frame holding a single manager, and check it against its checksum.  The frame is read in chunks of at
+	 * most FRAME_CHUNK bytes, so a corrupt length claims no more memory than the stream actually holds.
+	 *
+	 * @param in The input to read from
+	 * @return The contents of the frame
+	 * @throws IOException If the input cannot be read, ends within the frame, or the frame does not match its checksum
+	 */
+	private static byte[] readFrame(DataInput in) throws IOException {
+		int length = in.readInt();
+		if (length < 0) {
+			throw new IOException("Malformed frame length " + length);
+		}
+		
+		ByteArrayOutputStream frame = new ByteArrayOutputStream(Math.min(length, FRAME_CHUNK));
+		byte[] chunk = new byte[Math.min(length, FRAME_CHUNK)];
+		
+		for (int remaining = length; remaining > 0; remaining -= chunk.length) {
+			if (remaining < chunk.length) {
+				chunk = new byte[remaining];
+			}
+			
+			in.readFully(chunk);
+			frame.write(chunk, 0, chunk.length);
+		}
+		
+		byte[] rv = frame.toByteArray();
+		CRC32 checksum = new CRC32();
+		checksum.update(rv);
+		
+		if (checksum.getValue() != in.readLong()) {
+			throw new IOException("Snapshot frame checksum does not match its contents");
+		}
+		
+		return rv;
+	}
+
+	/**
+	 * Write a document to a snapshot as serialized JSON, preceded by its length
+	 *
+	 * @param document The document to write, which may be null
+	 * @param out The output to write to
+	 * @throws IOException If the output cannot be written
+	 */
+	static void writeDocument(JsonNode document, DataOutput out) throws IOException {
+		if (null == document) {
+			out.writeInt(NO_DOCUMENT);
+		} else {
+			byte[] data = mapper.writeValueAsBytes(document);
+			out.writeInt(data.length);
+			out.write(data);
+		}
+	}
+
+	/**
+	 * Read a document written by writeDocument from a snapshot
+	 *
+	 * @param in The input to read from
+	 * @return The document read, or null if none was written
+	 * @throws IOException If the input cannot be read or does not hold a document
+	 */
+	static JsonNode readDocument(DataInput in) throws IOException {
+		int length = in.readInt();
+		
+		if (NO_DOCUMENT == length) {
+			return null;
+		} else if (length < 0) {
+			throw new IOException("Malformed document length " + length);
+		}
+		
+		byte[] data = new byte[length];
+		in.readFully(data);
+		return mapper.readTree(data);
+	}
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright (c) 2017 Cybernetic Frontiers LLC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package com.cyberfront.crdt.causal;
+
+import java.io.IOException;
+import java.util.UUID;
+
+import com.cyberfront.crdt.support.JsonStreamable;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+/**
+ * The Dot class identifies an operation by the replica which generated it and a sequence number counting the operations
+ * that replica has generated for the same document, starting from one.  Dots are the unit of causal metadata summarized
+ * by a VersionVector.
+ */
+public class Dot implements Comparable<Dot>, JsonStreamable {
+
+	/** The identifier of the replica which generated the operation */
+	private final UUID replica;
+
+	/** The sequence number of the operation among those generated by the replica */
+	private final long sequence;
+
+	/**
+	 * Instantiates a new Dot
+	 *
+	 * @param replica The identifier of the replica which generated the operation
+	 * @param sequence The sequence number of the operation among those generated by the replica
+	 */
+	public Dot(UUID replica, long sequence) {
+		if (null == replica) {
+			throw new IllegalArgumentException("Dot replica is null");
+		} else if (sequence <= 0) {
+			throw new IllegalArgumentException("Dot sequence " + sequence + " is not positive");
+		}
+
+		this.replica = replica;
+		this.sequence = sequence;
+	}
+
+	/**
+	 * Retrieve the identifier of the replica which generated the operation
+	 *
+	 * @return The replica identifier
+	 */
+	public UUID getReplica() {
+		return this.replica;
+	}
+
+	/**
+	 * Retrieve the sequence number of the operation among those generated by the replica
+	 *
+	 * @return The sequence number
+	 */
+	public long getSequence() {
+		return this.sequence;
+	}
+
+	/* (non-Javadoc)
+	 * @see java.lang.Comparable#compareTo(java.lang.Object)
+	 */
+	@Override
+	public int compareTo(Dot o) {
+		int rv = this.getReplica().compareTo(o.getReplica());
+		return 0 == rv ? Long.compare(this.getSequence(), o.getSequence()) : rv;
+	}
+
+	/* (non-Javadoc)
+	 * @see java.lang.Object#equals(java.lang.Object)
+	 */
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		} else if (!(obj instanceof Dot)) {
+			return false;
+		}
+
+		Dot dot = (Dot) obj;
+		return this.getSequence() == dot.getSequence() && this.getReplica().equals(dot.getReplica());
+	}
+
+	/* (non-Javadoc)
+	 * @see java.lang.Object#hashCode()
+	 */
+	@Override
+	public int hashCode() {
+		return 31 * this.getReplica().hashCode() + Long.hashCode(this.getSequence());
+	}
+
+	/* (non-Javadoc)
+	 * @see com.cyberfront.crdt.support.JsonStreamable#writeJson(com.fasterxml.jackson.core.JsonGenerator)
+	 */
+	@Override
+	public void writeJson(JsonGenerator gen) throws IOException {
+		gen.writeStartObject();
+		gen.writeStringField("replica", this.getReplica().toString());
+		gen.writeNumberField("sequence", this.getSequence());
+		gen.writeEndObject();
+	}
+
+	/* (non-Javadoc)
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "{\"replica\":\"" + this.getReplica() + "\",\"sequence\":" + this.getSequence() + "}";
+	}
+}
@@ -0,0 +1,227 @@
+/*
+ * Copyright (c) 2017 Cybernetic Frontiers LLC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package com.cyberfront.crdt.causal;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * The HybridLogicalClock class generates timestamps which follow physical time closely but never go backwards, and which
+ * always exceed the timestamps of every operation the clock has observed.  Each timestamp is packed into a single long,
+ * with the physical time in milliseconds in the upper 48 bits and a logical counter in the lower 16 bits.  The counter
+ * distinguishes timestamps generated within the same millisecond, or while the physical clock lags one observed from
+ * another replica.  Packed timestamps compare in the same order as the events they mark, so they can be used wherever a
+ * timestamp is expected.
+ * 
+ * A timestamp received from a replica whose physical clock runs further ahead than the maximum offset is not adopted,
+ * which keeps a single fast clock from dragging every replica forward with it.  Such timestamps are counted instead.
+ * 
+ * Operations may also carry timestamps given explicitly by the caller, such as a simulation's own time, which are not
+ * packed physical times at all.  The clock only belongs to timestamps whose physical time falls after its epoch, and
+ * isInDomain lets callers leave every other timestamp unobserved.
+ */
+public class HybridLogicalClock {
+
+	/** The number of bits holding the logical counter */
+	public static final int LOGICAL_BITS = 16;
+
+	/** The mask selecting the logical counter */
+	private static final long LOGICAL_MASK = (1L << LOGICAL_BITS) - 1;
+
+	/** The default maximum amount, in milliseconds, a received timestamp may run ahead of the physical clock */
+	public static final long DEFAULT_MAX_OFFSET = 500L;
+
+	/** The default epoch, in milliseconds, before which a timestamp is not taken to be in the domain of a clock */
+	public static final long DEFAULT_EPOCH = 1483228800000L;
+
+	/** The process wide clock, driven by the system clock */
+	private static final HybridLogicalClock instance = new HybridLogicalClock(System::currentTimeMillis);
+
+	/** The source of physical time in milliseconds */
+	private final LongSupplier physicalClock;
+
+	/** The physical time, in milliseconds, before which a timestamp is not taken to be in the domain of this clock */
+	private final long epoch;
+
+	/** The maximum amount, in milliseconds, a received timestamp may run ahead of the physical clock and be adopted */
+	private volatile long maxOffset = DEFAULT_MAX_OFFSET;
+
+	/** The last timestamp generated or observed */
+	private final AtomicLong last = new AtomicLong(0L);
+
+	/** The number of received timestamps ignored because they ran too far ahead of the physical clock */
+	private final AtomicLong skewCount = new AtomicLong(0L);
+
+	/**
+	 * Instantiates a new clock
+	 *
+	 * @param physicalClock The source of physical time in milliseconds
+	 */
+	public HybridLogicalClock(LongSupplier physicalClock) {
+		this(physicalClock, DEFAULT_EPOCH);
+	}
+
+	/**
+	 * Instantiates a new clock with the given epoch
+	 *
+	 * @param physicalClock The source of physical time in milliseconds
+	 * @param epoch The physical time in milliseconds before which a timestamp is not in the domain of the clock
+	 */
+	public HybridLogicalClock(LongSupplier physicalClock, long epoch) {
+		this.physicalClock = physicalClock;
+		this.epoch = epoch;
+	}
+
+	/**
+	 * Retrieve the process wide clock, driven by the system clock
+	 *
+	 * @return The process wide clock
+	 */
+	public static HybridLogicalClock getInstance() {
+		return instance;
+	}
+
+	/**
+	 * Pack a physical time and logical counter into a timestamp
+	 *
+	 * @param physical The physical time in milliseconds
+	 * @param logical The logical counter
+	 * @return The packed timestamp
+	 */
+	public static long pack(long physical, long logical) {
+		return (physical << LOGICAL_BITS) | (logical & LOGICAL_MASK);
+	}
+
+	/**
+	 * Extract the physical time from a packed timestamp
+	 *
+	 * @param timestamp The packed timestamp
+	 * @return The physical time in milliseconds
+	 */
+	public static long getPhysical(long timestamp) {
+		return timestamp >>> LOGICAL_BITS;
+	}
+
+	/**
+	 * Extract the logical counter from a packed timestamp
+	 *
+	 * @param timestamp The packed timestamp
+	 * @return The logical counter
+	 */
+	public static long getLogical(long timestamp) {
+		return timestamp & LOGICAL_MASK;
+	}
+
+	/**
+	 * Determine whether a timestamp is in the domain of this clock, that is, whether it is a packed physical time no
+	 * earlier than the epoch of the clock rather than one given explicitly by a caller
+	 *
+	 * @param timestamp The timestamp to check
+	 * @return True exactly when the timestamp is in the domain of this clock
+	 */
+	public boolean isInDomain(long timestamp) {
+		return timestamp >= pack(this.epoch, 0L);
+	}
+
+	/**
+	 * Retrieve the maximum amount a received timestamp may run ahead of the physical clock and still be adopted
+	 *
+	 * @return The maximum offset in milliseconds
+	 */
+	public long getMaxOffset() {
+		return this.maxOffset;
+	}
+
+	/**
+	 * Set the maximum amount a received timestamp may run ahead of the physical clock and still be adopted
+	 *
+	 * @param maxOffset The maximum offset in milliseconds
+	 */
+	public void setMaxOffset(long maxOffset) {
+		this.maxOffset = maxOffset;
+	}
+
+	/**
+	 * Retrieve the number of received timestamps ignored because they ran too far ahead of the physical clock
+	 *
+	 * @return The number of timestamps ignored
+	 */
+	public long getSkewCount() {
+		return this.skewCount.get();
+	}
+
+	/**
+	 * Retrieve the last timestamp generated or observed, without advancing the clock
+	 *
+	 * @return The last timestamp
+	 */
+	public long getLast() {
+		return this.last.get();
+	}
+
+	/**
+	 * Generate a timestamp for a local event, such as a new operation.  It is later than every timestamp previously
+	 * generated or observed by this clock.
+	 *
+	 * @return The new timestamp
+	 */
+	public long now() {
+		long wall = pack(this.physicalClock.getAsLong(), 0L);
+		long prev;
+		long next;
+
+		do {
+			prev = this.last.get();
+			next = Math.max(wall, prev + 1);
+		} while (!this.last.compareAndSet(prev, next));
+
+		return next;
+	}
+
+	/**
+	 * Observe a timestamp received from another replica, so every timestamp generated afterwards is later than it.  A
+	 * timestamp running further ahead of the physical clock than the maximum offset is counted and otherwise ignored.
+	 *
+	 * @param received The timestamp received
+	 * @return The timestamp of the receive event
+	 */
+	public long update(long received) {
+		long physical = this.physicalClock.getAsLong();
+
+		if (getPhysical(received) - physical > this.getMaxOffset()) {
+			this.skewCount.incrementAndGet();
+			return this.now();
+		}
+
+		long wall = pack(physical, 0L);
+		long prev;
+		long next;
+
+		do {
+			prev = this.last.get();
+			next = Math.max(wall, Math.max(prev, received) + 1);
+		} while (!this.last.compareAndSet(prev, next));
+
+		return next;
+	}
+}
@@ -0,0 +1,369 @@
+/*
+ * Copyright (c) 2017 Cybernetic Frontiers LLC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package com.cyberfront.crdt.causal;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.UUID;
+
+import com.cyberfront.crdt.support.JsonStreamable;
+import com.cyberfront.crdt.support.Support;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+/**
+ * The VersionVector class summarizes a set of Dots.  For each replica it holds the highest sequence number below which
+ * every Dot of that replica is in the set, so the set is described by one counter per replica rather than one entry per
+ * operation.  Dots delivered out of order, beyond a gap, are held separately until the gap is filled and they can be
+ * folded into the counter.
+ * 
+ * Comparing two vectors costs time proportional to the number of replicas, which makes them suitable for deciding which
+ * operations a replica is missing, whether an operation has been seen, and which operations every replica has seen.
+ */
+public class VersionVector implements JsonStreamable {
+
+	/** The highest sequence number of each replica below which every Dot is in the set */
+	private final Map<UUID, Long> counters = new TreeMap<>();
+
+	/** The sequence numbers of each replica in the set, but beyond a gap in the sequence */
+	private final Map<UUID, NavigableSet<Long>> ahead = new TreeMap<>();
+
+	/**
+	 * Instantiates a new, empty VersionVector
+	 */
+	public VersionVector() {
+	}
+
+	/**
+	 * Instantiates a copy of the given VersionVector
+	 *
+	 * @param src The VersionVector to copy
+	 */
+	public VersionVector(VersionVector src) {
+		this.counters.putAll(src.counters);
+		for (Map.Entry<UUID, NavigableSet<Long>> entry : src.ahead.entrySet()) {
+			this.ahead.put(entry.getKey(), new TreeSet<>(entry.getValue()));
+		}
+	}
+
+	/**
+	 * Retrieve the highest sequence number of a replica below which every Dot is in the set
+	 *
+	 * @param replica The replica identifier
+	 * @return The contiguous sequence number of the replica, which is zero if none of its Dots are in the set
+	 */
+	public long get(UUID replica) {
+		Long rv = this.counters.get(replica);
+		return null == rv ? 0L : rv;
+	}
+
+	/**
+	 * Retrieve the highest sequence number of a replica in the set, including those beyond a gap
+	 *
+	 * @param replica The replica identifier
+	 * @return The highest sequence number of the replica, which is zero if none of its Dots are in the set
+	 */
+	public long getLatest(UUID replica) {
+		NavigableSet<Long> pending = this.ahead.get(replica);
+		return null == pending ? this.get(replica) : pending.last();
+	}
+
+	/**
+	 * Retrieve the replicas with at least one Dot in the set
+	 *
+	 * @return The replica identifiers
+	 */
+	public Set<UUID> getReplicas() {
+		Set<UUID> rv = new TreeSet<>(this.counters.keySet());
+		rv.addAll(this.ahead.keySet());
+		return rv;
+	}
+
+	/**
+	 * Determine whether there are Dots in the set beyond a gap
+	 *
+	 * @return True exactly when some replica has a gap in its sequence
+	 */
+	public boolean hasGaps() {
+		return !this.ahead.isEmpty();
+	}
+
+	/**
+	 * Determine whether a Dot is in the set
+	 *
+	 * @param dot The Dot to look for
+	 * @return True exactly when the Dot is in the set
+	 */
+	public boolean contains(Dot dot) {
+		if (dot.getSequence() <= this.get(dot.getReplica())) {
+			return true;
+		}
+
+		NavigableSet<Long> pending = this.ahead.get(dot.getReplica());
+		return null != pending && pending.contains(dot.getSequence());
+	}
+
+	/**
+	 * Determine whether a Dot immediately follows the contiguous sequence of its replica, so every operation which
+	 * its replica generated before it is in the set
+	 *
+	 * @param dot The Dot to check
+	 * @return True exactly when all of the preceding Dots of the replica are in the set
+	 */
+	public boolean isNext(Dot dot) {
+		return dot.getSequence() == this.get(dot.getReplica()) + 1;
+	}
+
+	/**
+	 * Insert a Dot into the set
+	 *
+	 * @param dot The Dot to insert
+	 * @return True exactly when the Dot was not already in the set
+	 */
+	public boolean add(Dot dot) {
+		UUID replica = dot.getReplica();
+		long counter = this.get(replica);
+
+		if (dot.getSequence() <= counter) {
+			return false;
+		} else if (dot.getSequence() > counter + 1) {
+			return this.ahead.computeIfAbsent(replica, k -> new TreeSet<>()).add(dot.getSequence());
+		}
+
+		this.counters.put(replica, dot.getSequence());
+		this.absorb(replica);
+
+		return true;
+	}
+
+	/**
+	 * Fold the sequence numbers held beyond a gap into the counter of a replica, once the gap has been filled
+	 *
+	 * @param replica The replica identifier
+	 */
+	private void absorb(UUID replica) {
+		NavigableSet<Long> pending = this.ahead.get(replica);
+
+		if (null != pending) {
+			long counter = this.get(replica);
+
+			while (!pending.isEmpty() && pending.first() <= counter + 1) {
+				counter = Math.max(counter, pending.pollFirst());
+			}
+
+			this.counters.put(replica, counter);
+
+			if (pending.isEmpty()) {
+				this.ahead.remove(replica);
+			}
+		}
+	}
+
+	/**
+	 * Insert every Dot of another VersionVector into this one
+	 *
+	 * @param other The VersionVector to merge into this one
+	 * @return This VersionVector
+	 */
+	public VersionVector merge(VersionVector other) {
+		for (UUID replica : other.getReplicas()) {
+			if (other.get(replica) > this.get(replica)) {
+				this.counters.put(replica, other.get(replica));
+			}
+
+			NavigableSet<Long> pending = other.ahead.get(replica);
+			if (null != pending) {
+				this.ahead.computeIfAbsent(replica, k -> new TreeSet<>()).addAll(pending);
+			}
+
+			this.absorb(replica);
+		}
+
+		return this;
+	}
+
+	/**
+	 * Determine whether every Dot in another VersionVector is also in this one
+	 *
+	 * @param other The VersionVector to compare against
+	 * @return True exactly when this VersionVector contains every Dot of the other
+	 */
+	public boolean dominates(VersionVector other) {
+		for (UUID replica : other.getReplicas()) {
+			for (long sequence = this.get(replica) + 1; sequence <= other.get(replica); ++sequence) {
+				if (!this.contains(new Dot(replica, sequence))) {
+					return false;
+				}
+			}
+
+			NavigableSet<Long> pending = other.ahead.get(replica);
+			if (null != pending) {
+				for (Long sequence : pending) {
+					if (!this.contains(new Dot(replica, sequence))) {
+						return false;
+					}
+				}
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * Produce the VersionVector holding the contiguous Dots common to every VersionVector given.  When the vectors are
+	 * those of every replica, the result holds the operations every replica has seen, which are causally stable.
+	 *
+	 * @param vectors The VersionVectors to intersect
+	 * @return The VersionVector of the contiguous Dots common to all of the vectors
+	 */
+	public static VersionVector meet(Iterable<VersionVector> vectors) {
+		VersionVector rv = null;
+
+		for (VersionVector vector : vectors) {
+			if (null == rv) {
+				rv = new VersionVector();
+				rv.counters.putAll(vector.counters);
+			} else {
+				for (Map.Entry<UUID, Long> entry : rv.counters.entrySet()) {
+					entry.setValue(Math.min(entry.getValue(), vector.get(entry.getKey())));
+				}
+				rv.counters.values().removeIf(counter -> counter <= 0L);
+			}
+		}
+
+		return null == rv ? new VersionVector() : rv;
+	}
+
+	/**
+	 * Write the VersionVector to a binary output, as a count of replicas followed by the counter of each and the sequence
+	 * numbers it holds beyond a gap
+	 *
+	 * @param out The output to write to
+	 * @throws IOException If the output cannot be written
+	 */
+	public void write(DataOutput out) throws IOException {
+		Set<UUID> replicas = this.getReplicas();
+		out.writeInt(replicas.size());
+
+		for (UUID replica : replicas) {
+			NavigableSet<Long> pending = this.ahead.get(replica);
+			out.writeLong(replica.getMostSignificantBits());
+			out.writeLong(replica.getLeastSignificantBits());
+			out.writeLong(this.get(replica));
+			out.writeInt(null == pending ? 0 : pending.size());
+
+			if (null != pending) {
+				for (Long sequence : pending) {
+					out.writeLong(sequence);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Read a VersionVector written by write from a binary input
+	 *
+	 * @param in The input to read from
+	 * @return The VersionVector read
+	 * @throws IOException If the input cannot be read or does not hold a VersionVector
+	 */
+	public static VersionVector read(DataInput in) throws IOException {
+		VersionVector rv = new VersionVector();
+		int replicas = in.readInt();
+
+		for (int i = 0; i < replicas; ++i) {
+			UUID replica = new UUID(in.readLong(), in.readLong());
+			long counter = in.readLong();
+			int pending = in.readInt();
+
+			if (counter < 0L || pending < 0) {
+				throw new IOException("Malformed version vector for replica " + replica);
+			} else if (counter > 0L) {
+				rv.counters.put(replica, counter);
+			}
+
+			for (int j = 0; j < pending; ++j) {
+				rv.ahead.computeIfAbsent(replica, k -> new TreeSet<>()).add(in.readLong());
+			}
+		}
+
+		return rv;
+	}
+
+	/**
+	 * Remove every Dot from the set
+	 */
+	public void clear() {
+		this.counters.clear();
+		this.ahead.clear();
+	}
+
+	/* (non-Javadoc)
+	 * @see java.lang.Object#equals(java.lang.Object)
+	 */
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		} else if (!(obj instanceof VersionVector)) {
+			return false;
+		}
+
+		VersionVector vector = (VersionVector) obj;
+		return this.counters.equals(vector.counters) && this.ahead.equals(vector.ahead);
+	}
+
+	/* (non-Javadoc)
+	 * @see java.lang.Object#hashCode()
+	 */
+	@Override
+	public int hashCode() {
+		return 31 * this.counters.hashCode() + this.ahead.hashCode();
+	}
+
+	/* (non-Javadoc)
+	 * @see com.cyberfront.crdt.support.JsonStreamable#writeJson(com.fasterxml.jackson.core.JsonGenerator)
+	 */
+	@Override
+	public void writeJson(JsonGenerator gen) throws IOException {
+		gen.writeStartObject();
+		gen.writeFieldName("counters");
+		Support.writeJson(gen, this.counters);
+		gen.writeFieldName("ahead");
+		Support.writeJson(gen, this.ahead);
+		gen.writeEndObject();
+	}
+
+	/* (non-Javadoc)
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "{\"counters\":" + Support.convert(this.counters) + ",\"ahead\":" + Support.convert(this.ahead) + "}";
+	}
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright (c) 2017 Cybernetic Frontiers LLC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package com.cyberfront.crdt.events;
+
+import com.cyberfront.crdt.AbstractCRDT;
+import com.cyberfront.crdt.operations.AbstractOperation;
+import com.fasterxml.jackson.databind.JsonNode;
+
+/**
+ * The ChangeEvent class describes a single change to a CRDT: an operation inserted into either its ADD or its REMOVE
+ * set.  When a subscriber asks for them, the event also carries the JSON Patch which takes the document from its state
+ * before the change to its state after it.
+ */
+public class ChangeEvent {
+
+	/**
+	 * The Enum Kind lists the sets of a CRDT an operation can be inserted into
+	 */
+	public enum Kind {
+
+		/** The operation was inserted into the ADD set */
+		ADD,
+
+		/** The operation was inserted into the REMOVE set */
+		REMOVE
+	}
+
+	/** The CRDT which changed */
+	private final AbstractCRDT source;
+
+	/** The set the operation was inserted into */
+	private final Kind kind;
+
+	/** The operation inserted */
+	private final AbstractOperation operation;
+
+	/** The patch from the previous document to the new one, or null if none was requested */
+	private final JsonNode patch;
+
+	/**
+	 * Instantiates a new ChangeEvent
+	 *
+	 * @param source The CRDT which changed
+	 * @param kind The set the operation was inserted into
+	 * @param operation The operation inserted
+	 * @param patch The patch from the previous document to the new one, or null if none was requested
+	 */
+	public ChangeEvent(AbstractCRDT source, Kind kind, AbstractOperation operation, JsonNode patch) {
+		this.source = source;
+		this.kind = kind;
+		this.operation = operation;
+		this.patch = patch;
+	}
+
+	/**
+	 * Retrieve the CRDT which changed
+	 *
+	 * @return The CRDT which changed
+	 */
+	public AbstractCRDT getSource() {
+		return this.source;
+	}
+
+	/**
+	 * Retrieve the set the operation was inserted into
+	 *
+	 * @return The set the operation was inserted into
+	 */
+	public Kind getKind() {
+		return this.kind;
+	}
+
+	/**
+	 * Retrieve the operation inserted
+	 *
+	 * @return The operation inserted
+	 */
+	public AbstractOperation getOperation() {
+		return this.operation;
+	}
+
+	/**
+	 * Retrieve the JSON Patch from the document before the change to the document after it
+	 *
+	 * @return The patch, or null if no subscriber requested patches when the event was published
+	 */
+	public JsonNode getPatch() {
+		return this.patch;
+	}
+
+	/* (non-Javadoc)
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "{\"kind\":\"" + this.getKind() + "\",\"operation\":" + this.getOperation()
+				+ ",\"patch\":" + (null == this.getPatch() ? "null" : this.getPatch().toString()) + "}";
+	}
+}
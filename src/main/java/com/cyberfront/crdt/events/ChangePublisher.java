@@ -0,0 +1,337 @@
+/*
+ * Copyright (c) 2017 Cybernetic Frontiers LLC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package com.cyberfront.crdt.events;
+
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * The ChangePublisher class publishes the ChangeEvents of a CRDT to any number of subscribers, following the protocol of
+ * java.util.concurrent.Flow.Publisher.  Publishing never blocks the thread changing the CRDT: each event is appended to
+ * a bounded buffer held for every subscriber, and events are handed to the subscriber on the executor of the publisher
+ * as it requests them.  A subscriber which falls so far behind that its buffer overflows is sent onError and dropped,
+ * rather than holding up the CRDT or silently missing changes; it can read the document and subscribe again.
+ * 
+ * When there are no subscribers, publishing costs a single check.
+ */
+public class ChangePublisher {
+
+	/** The default number of events buffered for each subscriber */
+	public static final int DEFAULT_BUFFER_SIZE = 256;
+
+	/** The executor on which subscribers are called */
+	private final Executor executor;
+
+	/** The current subscriptions */
+	private final List<BufferedSubscription> subscriptions = new CopyOnWriteArrayList<>();
+
+	/** Flag indicating the publisher has been closed */
+	private volatile boolean closed = false;
+
+	/**
+	 * A subscription holding the events published but not yet sent to its subscriber
+	 */
+	private class BufferedSubscription implements ChangeSubscription {
+
+		/** The subscriber events are sent to */
+		private final ChangeSubscriber subscriber;
+
+		/** The maximum number of events buffered */
+		private final int capacity;
+
+		/** Flag indicating the subscriber wants the patch of each change */
+		private final boolean patchRequested;
+
+		/** The events published but not yet sent */
+		private final ArrayDeque<ChangeEvent> buffer = new ArrayDeque<>();
+
+		/** The number of events requested but not yet sent */
+		private long demand = 0L;
+
+		/** Flag indicating onSubscribe has not yet been called */
+		private boolean subscribing = true;
+
+		/** Flag indicating a drain of the buffer is scheduled or running */
+		private boolean draining = false;
+
+		/** Flag indicating the subscription has been cancelled, or has ended */
+		private boolean cancelled = false;
+
+		/** Flag indicating onComplete should be sent once the buffer empties */
+		private boolean completing = false;
+
+		/** The error to send in place of further events, or null if there is none */
+		private Throwable error = null;
+
+		/**
+		 * Instantiates a new subscription
+		 *
+		 * @param subscriber The subscriber events are sent to
+		 * @param capacity The maximum number of events buffered
+		 * @param patchRequested Flag indicating the subscriber wants the patch of each change
+		 */
+		public BufferedSubscription(ChangeSubscriber subscriber, int capacity, boolean patchRequested) {
+			this.subscriber = subscriber;
+			this.capacity = capacity;
+			this.patchRequested = patchRequested;
+		}
+
+		/**
+		 * Buffer a published event, failing the subscription if the buffer is full
+		 *
+		 * @param event The event published
+		 */
+		public void offer(ChangeEvent event) {
+			synchronized (this) {
+				if (this.cancelled || this.completing || null != this.error) {
+					return;
+				} else if (this.buffer.size() >= this.capacity) {
+					this.buffer.clear();
+					this.error = new IllegalStateException("Change buffer of " + this.capacity + " events overflowed");
+				} else {
+					this.buffer.add(event);
+				}
+			}
+
+			this.schedule();
+		}
+
+		/**
+		 * Send onComplete once the buffered events have been sent
+		 */
+		public void complete() {
+			synchronized (this) {
+				this.completing = true;
+			}
+
+			this.schedule();
+		}
+
+		/* (non-Javadoc)
+		 * @see com.cyberfront.crdt.events.ChangeSubscription#request(long)
+		 */
+		@Override
+		public void request(long count) {
+			synchronized (this) {
+				if (count <= 0) {
+					this.buffer.clear();
+					this.error = new IllegalArgumentException("Requested " + count + " events");
+				} else {
+					this.demand = Long.MAX_VALUE - this.demand < count ? Long.MAX_VALUE : this.demand + count;
+				}
+			}
+
+			this.schedule();
+		}
+
+		/* (non-Javadoc)
+		 * @see com.cyberfront.crdt.events.ChangeSubscription#cancel()
+		 */
+		@Override
+		public void cancel() {
+			synchronized (this) {
+				this.cancelled = true;
+				this.buffer.clear();
+			}
+
+			ChangePublisher.this.subscriptions.remove(this);
+		}
+
+		/**
+		 * Determine whether the subscriber wants the patch of each change
+		 *
+		 * @return True exactly when the subscriber wants patches
+		 */
+		public boolean isPatchRequested() {
+			return this.patchRequested;
+		}
+
+		/**
+		 * Schedule a drain of the buffer on the executor, unless one is already scheduled or running
+		 */
+		private void schedule() {
+			synchronized (this) {
+				if (this.draining || this.cancelled) {
+					return;
+				}
+
+				this.draining = true;
+			}
+
+			ChangePublisher.this.executor.execute(this::drain);
+		}
+
+		/**
+		 * Send the subscriber onSubscribe if it has not had it, then as many buffered events as it has requested, then
+		 * any error or completion which is due
+		 */
+		private void drain() {
+			if (this.subscribing) {
+				this.subscribing = false;
+				this.subscriber.onSubscribe(this);
+			}
+
+			while (true) {
+				ChangeEvent event = null;
+				Throwable failure = null;
+				boolean done = false;
+
+				synchronized (this) {
+					if (this.cancelled) {
+						this.draining = false;
+						return;
+					} else if (null != this.error) {
+						failure = this.error;
+						this.cancelled = true;
+					} else if (this.demand > 0 && !this.buffer.isEmpty()) {
+						event = this.buffer.poll();
+						--this.demand;
+					} else if (this.completing && this.buffer.isEmpty()) {
+						done = true;
+						this.cancelled = true;
+					} else {
+						this.draining = false;
+						return;
+					}
+				}
+
+				if (null != failure) {
+					ChangePublisher.this.subscriptions.remove(this);
+					this.subscriber.onError(failure);
+				} else if (done) {
+					ChangePublisher.this.subscriptions.remove(this);
+					this.subscriber.onComplete();
+				} else {
+					this.subscriber.onNext(event);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Instantiates a new publisher which calls its subscribers on the common ForkJoinPool
+	 */
+	public ChangePublisher() {
+		this(ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Instantiates a new publisher
+	 *
+	 * @param executor The executor on which subscribers are called
+	 */
+	public ChangePublisher(Executor executor) {
+		this.executor = executor;
+	}
+
+	/**
+	 * Subscribe to the events of the CRDT, without patches and with the default buffer size
+	 *
+	 * @param subscriber The subscriber to send events to
+	 */
+	public void subscribe(ChangeSubscriber subscriber) {
+		this.subscribe(subscriber, DEFAULT_BUFFER_SIZE, false);
+	}
+
+	/**
+	 * Subscribe to the events of the CRDT
+	 *
+	 * @param subscriber The subscriber to send events to
+	 * @param bufferSize The maximum number of events buffered for the subscriber before it is failed
+	 * @param patchRequested True if the subscriber wants the patch of each change, which requires the document to be
+	 * materialized before and after every change
+	 */
+	public void subscribe(ChangeSubscriber subscriber, int bufferSize, boolean patchRequested) {
+		if (bufferSize <= 0) {
+			throw new IllegalArgumentException("Buffer size " + bufferSize + " is not positive");
+		}
+
+		BufferedSubscription subscription = new BufferedSubscription(subscriber, bufferSize, patchRequested);
+
+		if (this.closed) {
+			subscription.complete();
+		} else {
+			this.subscriptions.add(subscription);
+			subscription.schedule();
+		}
+	}
+
+	/**
+	 * Determine whether there are any subscribers
+	 *
+	 * @return True exactly when at least one subscriber is subscribed
+	 */
+	public boolean hasSubscribers() {
+		return !this.subscriptions.isEmpty();
+	}
+
+	/**
+	 * Retrieve the number of subscribers
+	 *
+	 * @return The number of subscribers
+	 */
+	public int getSubscriberCount() {
+		return this.subscriptions.size();
+	}
+
+	/**
+	 * Determine whether any subscriber wants the patch of each change
+	 *
+	 * @return True exactly when at least one subscriber wants patches
+	 */
+	public boolean isPatchRequested() {
+		for (BufferedSubscription subscription : this.subscriptions) {
+			if (subscription.isPatchRequested()) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * Publish an event to every subscriber
+	 *
+	 * @param event The event to publish
+	 */
+	public void publish(ChangeEvent event) {
+		for (BufferedSubscription subscription : this.subscriptions) {
+			subscription.offer(event);
+		}
+	}
+
+	/**
+	 * Close the publisher, sending onComplete to every subscriber once it has received its buffered events.  Later
+	 * subscribers are completed immediately.
+	 */
+	public void close() {
+		this.closed = true;
+
+		for (BufferedSubscription subscription : this.subscriptions) {
+			subscription.complete();
+		}
+	}
+}
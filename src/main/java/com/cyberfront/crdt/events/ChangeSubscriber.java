@@ -0,0 +1,59 @@
+/*
+ * Copyright (c) 2017 Cybernetic Frontiers LLC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package com.cyberfront.crdt.events;
+
+/**
+ * A ChangeSubscriber receives the ChangeEvents published by a ChangePublisher.  Its methods mirror those of
+ * java.util.concurrent.Flow.Subscriber: once subscribed it receives a ChangeSubscription, through which it requests
+ * events, and is then sent at most as many events as it has requested, followed by either onError or onComplete.  The
+ * methods are called from the executor of the publisher, one at a time.
+ */
+public interface ChangeSubscriber {
+
+	/**
+	 * Called once, before any other method, with the subscription through which to request events
+	 *
+	 * @param subscription The subscription of this subscriber
+	 */
+	public abstract void onSubscribe(ChangeSubscription subscription);
+
+	/**
+	 * Called with each event requested
+	 *
+	 * @param event The next event
+	 */
+	public abstract void onNext(ChangeEvent event);
+
+	/**
+	 * Called when the subscription fails, after which no more events are sent.  This happens when the subscriber falls
+	 * so far behind that its buffer overflows.
+	 *
+	 * @param error The cause of the failure
+	 */
+	public abstract void onError(Throwable error);
+
+	/**
+	 * Called when the publisher is closed and every buffered event has been sent, after which no more events are sent
+	 */
+	public abstract void onComplete();
+}
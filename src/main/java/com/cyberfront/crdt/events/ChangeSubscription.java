@@ -0,0 +1,43 @@
+/*
+ * Copyright (c) 2017 Cybernetic Frontiers LLC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package com.cyberfront.crdt.events;
+
+/**
+ * A ChangeSubscription links a ChangeSubscriber to a ChangePublisher.  Its methods mirror those of
+ * java.util.concurrent.Flow.Subscription: the subscriber requests events through it, which is how it exerts backpressure
+ * on the publisher, and cancels it to stop receiving events.
+ */
+public interface ChangeSubscription {
+
+	/**
+	 * Request more events.  Events published beyond those requested are buffered until they are requested.
+	 *
+	 * @param count The number of additional events to request, which must be positive
+	 */
+	public abstract void request(long count);
+
+	/**
+	 * Stop receiving events, discarding any still buffered
+	 */
+	public abstract void cancel();
+}
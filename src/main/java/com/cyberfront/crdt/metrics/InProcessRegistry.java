@@ -0,0 +1,254 @@
+/*
+ * Copyright (c) 2017 Cybernetic Frontiers LLC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package com.cyberfront.crdt.metrics;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleSupplier;
+
+/**
+ * The InProcessRegistry is the default MetricsRegistry, which keeps its metrics in memory where they may be read by the
+ * process itself, published through the MetricsMBeanAdapter, or written out by the PrometheusExporter.  Counters are
+ * LongAdders, which stay cheap to update under contention, and histograms count their measurements in buckets whose
+ * bounds are powers of two, so recording a value takes constant time and space regardless of how many values have been
+ * recorded.
+ */
+public class InProcessRegistry implements MetricsRegistry {
+
+	/**
+	 * A Counter backed by a LongAdder
+	 */
+	public static class LongCounter implements Counter {
+		
+		/** The count */
+		private final LongAdder count = new LongAdder();
+
+		/* (non-Javadoc)
+		 * @see com.cyberfront.crdt.metrics.Counter#increment()
+		 */
+		@Override
+		public void increment() {
+			this.count.increment();
+		}
+
+		/* (non-Javadoc)
+		 * @see com.cyberfront.crdt.metrics.Counter#add(long)
+		 */
+		@Override
+		public void add(long delta) {
+			this.count.add(delta);
+		}
+
+		/**
+		 * Retrieve the count
+		 *
+		 * @return The count
+		 */
+		public long getCount() {
+			return this.count.sum();
+		}
+	}
+
+	/**
+	 * A Histogram which counts measurements in 65 buckets, the first holding zero and each following one holding the
+	 * values with one more significant bit than the one before it.  Percentiles are reported as the upper bound of the
+	 * bucket they fall in, so they are within a factor of two of the true value.
+	 */
+	public static class LogHistogram implements Histogram {
+		
+		/** The number of measurements in each bucket */
+		private final AtomicLongArray buckets = new AtomicLongArray(Long.SIZE + 1);
+		
+		/** The number of measurements */
+		private final LongAdder count = new LongAdder();
+		
+		/** The sum of the measurements */
+		private final LongAdder sum = new LongAdder();
+		
+		/** The largest measurement */
+		private final AtomicLong max = new AtomicLong();
+
+		/* (non-Javadoc)
+		 * @see com.cyberfront.crdt.metrics.Histogram#record(long)
+		 */
+		@Override
+		public void record(long value) {
+			long clamped = Math.max(0L, value);
+			
+			this.buckets.incrementAndGet(Long.SIZE - Long.numberOfLeadingZeros(clamped));
+			this.count.increment();
+			this.sum.add(clamped);
+			
+			if (clamped > this.max.get()) {
+				this.max.accumulateAndGet(clamped, Math::max);
+			}
+		}
+
+		/**
+		 * Retrieve the number of measurements
+		 *
+		 * @return The number of measurements
+		 */
+		public long getCount() {
+			return this.count.sum();
+		}
+
+		/**
+		 * Retrieve the sum of the measurements
+		 *
+		 * @return The sum of the measurements
+		 */
+		public long getSum() {
+			return this.sum.sum();
+		}
+
+		/**
+		 * Retrieve the largest measurement
+		 *
+		 * @return The largest measurement, or zero if there are none
+		 */
+		public long getMax() {
+			return this.max.get();
+		}
+
+		/**
+		 * Retrieve the mean of the measurements
+		 *
+		 * @return The mean of the measurements, or zero if there are none
+		 */
+		public double getMean() {
+			long n = this.getCount();
+			return 0 == n ? 0.0 : (double) this.getSum() / n;
+		}
+
+		/**
+		 * Retrieve an estimate of a percentile of the measurements
+		 *
+		 * @param percentile The percentile to estimate, from 0 to 100
+		 * @return The upper bound of the bucket holding the percentile, no larger than the largest measurement
+		 */
+		public long getPercentile(double percentile) {
+			long total = 0L;
+			
+			for (int i = 0; i < this.buckets.length(); ++i) {
+				total += this.buckets.get(i);
+			}
+			
+			long rank = (long) Math.ceil(total * Math.min(100.0, Math.max(0.0, percentile)) / 100.0);
+			long seen = 0L;
+			
+			for (int i = 0; i < this.buckets.length(); ++i) {
+				seen += this.buckets.get(i);
+				
+				if (seen >= rank && seen > 0) {
+					long bound = i >= Long.SIZE - 1 ? Long.MAX_VALUE : (1L << i) - 1L;
+					return Math.min(bound, this.getMax());
+				}
+			}
+			
+			return 0L;
+		}
+	}
+
+	/** The counters, by name */
+	private final ConcurrentMap<String, LongCounter> counters = new ConcurrentHashMap<>();
+	
+	/** The histograms, by name */
+	private final ConcurrentMap<String, LogHistogram> histograms = new ConcurrentHashMap<>();
+	
+	/** The gauges, by name */
+	private final ConcurrentMap<String, DoubleSupplier> gauges = new ConcurrentHashMap<>();
+
+	/* (non-Javadoc)
+	 * @see com.cyberfront.crdt.metrics.MetricsRegistry#counter(java.lang.String)
+	 */
+	@Override
+	public LongCounter counter(String name) {
+		return this.counters.computeIfAbsent(name, key -> new LongCounter());
+	}
+
+	/* (non-Javadoc)
+	 * @see com.cyberfront.crdt.metrics.MetricsRegistry#histogram(java.lang.String)
+	 */
+	@Override
+	public LogHistogram histogram(String name) {
+		return this.histograms.computeIfAbsent(name, key -> new LogHistogram());
+	}
+
+	/* (non-Javadoc)
+	 * @see com.cyberfront.crdt.metrics.MetricsRegistry#gauge(java.lang.String, java.util.function.DoubleSupplier)
+	 */
+	@Override
+	public void gauge(String name, DoubleSupplier supplier) {
+		this.gauges.put(name, supplier);
+	}
+
+	/**
+	 * Retrieve every counter, sorted by name
+	 *
+	 * @return An unmodifiable snapshot of the counters by name
+	 */
+	public SortedMap<String, LongCounter> getCounters() {
+		return Collections.unmodifiableSortedMap(new TreeMap<>(this.counters));
+	}
+
+	/**
+	 * Retrieve every histogram, sorted by name
+	 *
+	 * @return An unmodifiable snapshot of the histograms by name
+	 */
+	public SortedMap<String, LogHistogram> getHistograms() {
+		return Collections.unmodifiableSortedMap(new TreeMap<>(this.histograms));
+	}
+
+	/**
+	 * Retrieve every gauge, sorted by name
+	 *
+	 * @return An unmodifiable snapshot of the gauges by name
+	 */
+	public SortedMap<String, DoubleSupplier> getGauges() {
+		return Collections.unmodifiableSortedMap(new TreeMap<>(this.gauges));
+	}
+
+	/**
+	 * Retrieve the count of every counter, sorted by name
+	 *
+	 * @return The count of each counter by name
+	 */
+	public Map<String, Long> getCounts() {
+		Map<String, Long> rv = new TreeMap<>();
+		
+		for (Map.Entry<String, LongCounter> entry : this.counters.entrySet()) {
+			rv.put(entry.getKey(), entry.getValue().getCount());
+		}
+		
+		return rv;
+	}
+}
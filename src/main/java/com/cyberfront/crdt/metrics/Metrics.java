@@ -0,0 +1,254 @@
+/*
+ * Copyright (c) 2017 Cybernetic Frontiers LLC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package com.cyberfront.crdt.metrics;
+
+/**
+ * The Metrics class is where the CRDT runtime reports its metrics.  It holds the installed MetricsRegistry, along with
+ * the metrics taken from it, so that reporting a measurement costs a field read and an update of the metric rather than
+ * a lookup by name.  An InProcessRegistry is installed by default; installing null disables the metrics altogether,
+ * after which the hooks skip even reading the clock.  The hooks also feed the process wide totals kept by
+ * RuntimeMetrics while metrics are enabled.
+ */
+public class Metrics {
+	
+	/** Name of the counter of the number of times a document was rebuilt by replaying its operations */
+	public static final String TRIAL_REBUILDS = "crdt.trial.rebuilds";
+	
+	/** Name of the histogram of the number of operations replayed by each rebuild */
+	public static final String TRIAL_REPLAYED = "crdt.trial.replayed";
+	
+	/** Name of the histogram of the time, in nanoseconds, to apply a single operation to a document */
+	public static final String PATCH_APPLY_NANOS = "crdt.patch.apply.nanos";
+	
+	/** Name of the counter of the number of operations found invalid when applied to a document */
+	public static final String INVALID_OPERATIONS = "crdt.operations.invalid";
+	
+	/** Name of the histogram of the time, in nanoseconds, to diff two documents to generate an update */
+	public static final String DIFF_NANOS = "crdt.manager.diff.nanos";
+	
+	/** Name of the histogram of the time, in nanoseconds, to convert a document to the object it holds */
+	public static final String TREE_TO_VALUE_NANOS = "crdt.manager.treeToValue.nanos";
+
+	/**
+	 * The metrics taken from a single registry, installed together so they are always consistent with one another
+	 */
+	private static class Bound {
+		
+		/** The registry the metrics were taken from */
+		private final MetricsRegistry registry;
+		
+		/** Counter of document rebuilds */
+		private final Counter rebuilds;
+		
+		/** Histogram of the operations replayed by each rebuild */
+		private final Histogram replayed;
+		
+		/** Histogram of the time to apply an operation */
+		private final Histogram apply;
+		
+		/** Counter of invalid operations */
+		private final Counter invalid;
+		
+		/** Histogram of the time to diff documents */
+		private final Histogram diff;
+		
+		/** Histogram of the time to convert documents to objects */
+		private final Histogram treeToValue;
+		
+		/**
+		 * Take the metrics from the given registry
+		 *
+		 * @param registry The registry to take the metrics from
+		 */
+		private Bound(MetricsRegistry registry) {
+			this.registry = registry;
+			this.rebuilds = registry.counter(TRIAL_REBUILDS);
+			this.replayed = registry.histogram(TRIAL_REPLAYED);
+			this.apply = registry.histogram(PATCH_APPLY_NANOS);
+			this.invalid = registry.counter(INVALID_OPERATIONS);
+			this.diff = registry.histogram(DIFF_NANOS);
+			this.treeToValue = registry.histogram(TREE_TO_VALUE_NANOS);
+		}
+	}
+	
+	/** The metrics of the installed registry, or null if metrics are disabled */
+	private static volatile Bound bound = new Bound(new InProcessRegistry());
+
+	/**
+	 * Retrieve the installed registry
+	 *
+	 * @return The installed registry, or null if metrics are disabled
+	 */
+	public static MetricsRegistry getRegistry() {
+		Bound current = bound;
+		return null == current ? null : current.registry;
+	}
+
+	/**
+	 * Install the registry to report metrics to
+	 *
+	 * @param registry The registry to report metrics to, or null to disable metrics
+	 */
+	public static void setRegistry(MetricsRegistry registry) {
+		bound = null == registry ? null : new Bound(registry);
+	}
+
+	/**
+	 * Determine whether metrics are reported
+	 *
+	 * @return True exactly when a registry is installed
+	 */
+	public static boolean isEnabled() {
+		return null != bound;
+	}
+
+	/**
+	 * Start timing an activity
+	 *
+	 * @return The current value of the nanosecond clock, or zero if metrics are disabled
+	 */
+	public static long start() {
+		return null == bound ? 0L : System.nanoTime();
+	}
+
+	/**
+	 * Compute the time elapsed since an activity started
+	 *
+	 * @param current The metrics installed when the activity ended, or null if metrics are disabled
+	 * @param start The value returned by start() when the activity started
+	 * @return The nanoseconds elapsed, or zero if metrics are disabled or were disabled when the activity started
+	 */
+	private static long elapsed(Bound current, long start) {
+		return null == current || 0L == start ? 0L : System.nanoTime() - start;
+	}
+
+	/**
+	 * Report a document rebuilt by replaying its operations
+	 *
+	 * @param operations The number of operations replayed
+	 */
+	public static void rebuilt(long operations) {
+		Bound current = bound;
+		
+		if (null != current) {
+			current.rebuilds.increment();
+			current.replayed.record(operations);
+			RuntimeMetrics.getInstance().miss();
+		}
+	}
+
+	/**
+	 * Report an operation applied to a document
+	 *
+	 * @param start The value returned by start() before the operation was applied
+	 * @return The nanoseconds taken to apply the operation, or zero if metrics are disabled
+	 */
+	public static long applied(long start) {
+		Bound current = bound;
+		long rv = elapsed(current, start);
+		
+		if (null != current) {
+			current.apply.record(rv);
+		}
+		
+		return rv;
+	}
+
+	/**
+	 * Report an operation found invalid when applied to a document
+	 */
+	public static void invalid() {
+		Bound current = bound;
+		
+		if (null != current) {
+			current.invalid.increment();
+			RuntimeMetrics.getInstance().failed();
+		}
+	}
+
+	/**
+	 * Report a document read from its materialized copy without a rebuild
+	 */
+	public static void cacheHit() {
+		if (null != bound) {
+			RuntimeMetrics.getInstance().hit();
+		}
+	}
+
+	/**
+	 * Report a new CRDT manager
+	 */
+	public static void managed() {
+		if (null != bound) {
+			RuntimeMetrics.getInstance().managed();
+		}
+	}
+
+	/**
+	 * Report an operation delivered to a CRDT
+	 */
+	public static void ingested() {
+		if (null != bound) {
+			RuntimeMetrics.getInstance().ingested();
+		}
+	}
+
+	/**
+	 * Report a change to the operations held by a CRDT
+	 *
+	 * @param add The change in the size of the ADD set
+	 * @param rem The change in the size of the REMOVE set
+	 * @param live The change in the number of operations in the ADD set and not in the REMOVE set
+	 */
+	public static void stored(long add, long rem, long live) {
+		if (null != bound) {
+			RuntimeMetrics.getInstance().stored(add, rem, live);
+		}
+	}
+
+	/**
+	 * Report two documents diffed to generate an update
+	 *
+	 * @param start The value returned by start() before the documents were diffed
+	 */
+	public static void diffed(long start) {
+		Bound current = bound;
+		
+		if (null != current) {
+			current.diff.record(elapsed(current, start));
+		}
+	}
+
+	/**
+	 * Report a document converted to the object it holds
+	 *
+	 * @param start The value returned by start() before the document was converted
+	 */
+	public static void converted(long start) {
+		Bound current = bound;
+		
+		if (null != current) {
+			current.treeToValue.record(elapsed(current, start));
+		}
+	}
+}
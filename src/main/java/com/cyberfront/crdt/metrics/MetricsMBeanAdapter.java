@@ -0,0 +1,221 @@
+/*
+ * Copyright (c) 2017 Cybernetic Frontiers LLC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package com.cyberfront.crdt.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.DoubleSupplier;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.JMException;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanException;
+import javax.management.MBeanInfo;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.ReflectionException;
+
+import com.cyberfront.crdt.metrics.InProcessRegistry.LogHistogram;
+import com.cyberfront.crdt.metrics.InProcessRegistry.LongCounter;
+
+/**
+ * The MetricsMBeanAdapter publishes the metrics of an InProcessRegistry through JMX.  It is a read only DynamicMBean
+ * whose attributes are built from the registry each time they are listed, so metrics created after it was registered
+ * appear as well.  Each counter is an attribute holding its count, each gauge one holding its current value, and each
+ * histogram is a group of attributes named after it with the suffixes .count, .mean, .max, .p50 and .p99.
+ */
+public class MetricsMBeanAdapter implements DynamicMBean {
+	
+	/** The name the adapter is registered under by default */
+	public static final String OBJECT_NAME = "com.cyberfront.crdt:type=Metrics";
+	
+	/** The statistics published for each histogram, used as attribute name suffixes */
+	private static final String[] STATISTICS = { "count", "mean", "max", "p50", "p99" };
+	
+	/** The registry whose metrics are published */
+	private final InProcessRegistry registry;
+
+	/**
+	 * Instantiates a new adapter for the given registry
+	 *
+	 * @param registry The registry whose metrics are published
+	 */
+	public MetricsMBeanAdapter(InProcessRegistry registry) {
+		this.registry = registry;
+	}
+
+	/**
+	 * Register an adapter for the given registry with the platform MBean server, under the default name
+	 *
+	 * @param registry The registry whose metrics are published
+	 * @return The name the adapter was registered under
+	 * @throws JMException If the adapter could not be registered, such as when one already is
+	 */
+	public static ObjectName register(InProcessRegistry registry) throws JMException {
+		ObjectName rv = new ObjectName(OBJECT_NAME);
+		ManagementFactory.getPlatformMBeanServer().registerMBean(new MetricsMBeanAdapter(registry), rv);
+		return rv;
+	}
+
+	/**
+	 * Remove the adapter registered under the default name from the platform MBean server, if there is one
+	 *
+	 * @throws JMException If the adapter could not be removed
+	 */
+	public static void unregister() throws JMException {
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		ObjectName name = new ObjectName(OBJECT_NAME);
+		
+		if (server.isRegistered(name)) {
+			server.unregisterMBean(name);
+		}
+	}
+
+	/**
+	 * Retrieve the registry whose metrics are published
+	 *
+	 * @return The registry whose metrics are published
+	 */
+	public InProcessRegistry getRegistry() {
+		return this.registry;
+	}
+
+	/* (non-Javadoc)
+	 * @see javax.management.DynamicMBean#getAttribute(java.lang.String)
+	 */
+	@Override
+	public Object getAttribute(String attribute) throws AttributeNotFoundException, MBeanException, ReflectionException {
+		LongCounter counter = this.getRegistry().getCounters().get(attribute);
+		
+		if (null != counter) {
+			return counter.getCount();
+		}
+		
+		DoubleSupplier gauge = this.getRegistry().getGauges().get(attribute);
+		
+		if (null != gauge) {
+			return gauge.getAsDouble();
+		}
+		
+		int split = attribute.lastIndexOf('.');
+		LogHistogram histogram = split < 0 ? null : this.getRegistry().getHistograms().get(attribute.substring(0, split));
+		
+		if (null != histogram) {
+			switch (attribute.substring(split + 1)) {
+			case "count":
+				return histogram.getCount();
+			case "mean":
+				return histogram.getMean();
+			case "max":
+				return histogram.getMax();
+			case "p50":
+				return histogram.getPercentile(50.0);
+			case "p99":
+				return histogram.getPercentile(99.0);
+			default:
+				break;
+			}
+		}
+		
+		throw new AttributeNotFoundException("No such metric \"" + attribute + "\"");
+	}
+
+	/* (non-Javadoc)
+	 * @see javax.management.DynamicMBean#setAttribute(javax.management.Attribute)
+	 */
+	@Override
+	public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+		throw new AttributeNotFoundException("Metric \"" + attribute.getName() + "\" is read only");
+	}
+
+	/* (non-Javadoc)
+	 * @see javax.management.DynamicMBean#getAttributes(java.lang.String[])
+	 */
+	@Override
+	public AttributeList getAttributes(String[] attributes) {
+		AttributeList rv = new AttributeList();
+		
+		for (String attribute : attributes) {
+			try {
+				rv.add(new Attribute(attribute, this.getAttribute(attribute)));
+			} catch (JMException e) {
+				// Attributes which cannot be read are left out of the list, as the DynamicMBean contract allows
+			}
+		}
+		
+		return rv;
+	}
+
+	/* (non-Javadoc)
+	 * @see javax.management.DynamicMBean#setAttributes(javax.management.AttributeList)
+	 */
+	@Override
+	public AttributeList setAttributes(AttributeList attributes) {
+		return new AttributeList();
+	}
+
+	/* (non-Javadoc)
+	 * @see javax.management.DynamicMBean#invoke(java.lang.String, java.lang.Object[], java.lang.String[])
+	 */
+	@Override
+	public Object invoke(String actionName, Object[] params, String[] signature) throws ReflectionException {
+		throw new ReflectionException(new NoSuchMethodException(actionName), "No such operation \"" + actionName + "\"");
+	}
+
+	/* (non-Javadoc)
+	 * @see javax.management.DynamicMBean#getMBeanInfo()
+	 */
+	@Override
+	public MBeanInfo getMBeanInfo() {
+		List<MBeanAttributeInfo> attributes = new ArrayList<>();
+		
+		for (String name : this.getRegistry().getCounters().keySet()) {
+			attributes.add(new MBeanAttributeInfo(name, Long.class.getName(), "Counter " + name, true, false, false));
+		}
+		
+		for (String name : this.getRegistry().getGauges().keySet()) {
+			attributes.add(new MBeanAttributeInfo(name, Double.class.getName(), "Gauge " + name, true, false, false));
+		}
+		
+		for (Map.Entry<String, LogHistogram> entry : this.getRegistry().getHistograms().entrySet()) {
+			for (String statistic : STATISTICS) {
+				String type = "mean".equals(statistic) ? Double.class.getName() : Long.class.getName();
+				String name = entry.getKey() + "." + statistic;
+				attributes.add(new MBeanAttributeInfo(name, type, "Histogram " + entry.getKey() + " " + statistic, true, false, false));
+			}
+		}
+		
+		return new MBeanInfo(
+				this.getClass().getName(),
+				"Metrics of the CRDT runtime",
+				attributes.toArray(new MBeanAttributeInfo[attributes.size()]),
+				null,
+				null,
+				null);
+	}
+}
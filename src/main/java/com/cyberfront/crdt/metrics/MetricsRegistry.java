@@ -0,0 +1,58 @@
+/*
+ * Copyright (c) 2017 Cybernetic Frontiers LLC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package com.cyberfront.crdt.metrics;
+
+import java.util.function.DoubleSupplier;
+
+/**
+ * A MetricsRegistry is the service provider interface through which the CRDT runtime reports its metrics.  Each metric
+ * is looked up once by name, when the registry is installed with Metrics.setRegistry, so a registry need not make its
+ * lookups fast, only its Counters and Histograms.  Asking for the same name twice should return the same metric.
+ */
+public interface MetricsRegistry {
+
+	/**
+	 * Retrieve the counter with the given name, creating it if need be
+	 *
+	 * @param name The name of the counter
+	 * @return The counter with the given name
+	 */
+	public abstract Counter counter(String name);
+
+	/**
+	 * Retrieve the histogram with the given name, creating it if need be
+	 *
+	 * @param name The name of the histogram
+	 * @return The histogram with the given name
+	 */
+	public abstract Histogram histogram(String name);
+
+	/**
+	 * Register a gauge, whose value is read from the given supplier whenever the registry reports it, replacing any
+	 * gauge already registered with the same name
+	 *
+	 * @param name The name of the gauge
+	 * @param supplier The source of the value of the gauge, which must be safe to call from any thread
+	 */
+	public abstract void gauge(String name, DoubleSupplier supplier);
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright (c) 2017 Cybernetic Frontiers LLC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package com.cyberfront.crdt.metrics;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.function.DoubleSupplier;
+
+import com.cyberfront.crdt.metrics.InProcessRegistry.LogHistogram;
+import com.cyberfront.crdt.metrics.InProcessRegistry.LongCounter;
+
+/**
+ * The PrometheusExporter writes the metrics of an InProcessRegistry in the Prometheus text exposition format.  Names
+ * have each character Prometheus does not allow replaced by an underscore, counters are written with the _total suffix,
+ * gauges as they are, and histograms as summaries with their median and 99th percentile.  A dump to a file is written
+ * to a temporary file first and moved into place, so a collector reading the file never sees it half written.
+ */
+public class PrometheusExporter {
+
+	/**
+	 * Write the metrics of a registry in the Prometheus text format
+	 *
+	 * @param registry The registry whose metrics are written
+	 * @param writer The writer to write them to
+	 * @throws IOException If the metrics cannot be written
+	 */
+	public static void write(InProcessRegistry registry, Writer writer) throws IOException {
+		for (Map.Entry<String, LongCounter> entry : registry.getCounters().entrySet()) {
+			String name = sanitize(entry.getKey()) + "_total";
+			writer.write("# TYPE " + name + " counter\n");
+			writer.write(name + " " + entry.getValue().getCount() + "\n");
+		}
+		
+		for (Map.Entry<String, DoubleSupplier> entry : registry.getGauges().entrySet()) {
+			String name = sanitize(entry.getKey());
+			writer.write("# TYPE " + name + " gauge\n");
+			writer.write(name + " " + format(entry.getValue().getAsDouble()) + "\n");
+		}
+		
+		for (Map.Entry<String, LogHistogram> entry : registry.getHistograms().entrySet()) {
+			String name = sanitize(entry.getKey());
+			LogHistogram histogram = entry.getValue();
+			writer.write("# TYPE " + name + " summary\n");
+			writer.write(name + "{quantile=\"0.5\"} " + histogram.getPercentile(50.0) + "\n");
+			writer.write(name + "{quantile=\"0.99\"} " + histogram.getPercentile(99.0) + "\n");
+			writer.write(name + "_sum " + histogram.getSum() + "\n");
+			writer.write(name + "_count " + histogram.getCount() + "\n");
+		}
+	}
+
+	/**
+	 * Write the metrics of a registry in the Prometheus text format to a file, replacing it
+	 *
+	 * @param registry The registry whose metrics are written
+	 * @param file The file to write them to
+	 * @throws IOException If the file cannot be written
+	 */
+	public static void dump(InProcessRegistry registry, File file) throws IOException {
+		Path target = file.toPath().toAbsolutePath();
+		Path temporary = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".tmp");
+		
+		try {
+			try (Writer writer = Files.newBufferedWriter(temporary, StandardCharsets.UTF_8)) {
+				write(registry, writer);
+			}
+			
+			Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			Files.deleteIfExists(temporary);
+		}
+	}
+
+	/**
+	 * Convert a metric name to one Prometheus allows
+	 *
+	 * @param name The metric name
+	 * @return The name with each character other than a letter, digit, underscore or colon replaced by an underscore
+	 */
+	private static String sanitize(String name) {
+		StringBuilder sb = new StringBuilder(name.length());
+		
+		for (int i = 0; i < name.length(); ++i) {
+			char c = name.charAt(i);
+			boolean allowed = (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || '_' == c || ':' == c || (i > 0 && c >= '0' && c <= '9');
+			sb.append(allowed ? c : '_');
+		}
+		
+		return sb.toString();
+	}
+
+	/**
+	 * Format a gauge value as Prometheus expects
+	 *
+	 * @param value The value
+	 * @return The value, with infinities and NaN spelled as Prometheus spells them
+	 */
+	private static String format(double value) {
+		if (Double.isNaN(value)) {
+			return "NaN";
+		} else if (Double.isInfinite(value)) {
+			return value > 0 ? "+Inf" : "-Inf";
+		}
+		
+		return Double.toString(value);
+	}
+}
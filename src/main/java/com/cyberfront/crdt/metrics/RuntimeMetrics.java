@@ -0,0 +1,344 @@
+/*
+ * Copyright (c) 2017 Cybernetic Frontiers LLC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package com.cyberfront.crdt.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * The RuntimeMetrics class keeps process wide totals for the CRDT runtime: the CRDT managers created, the sizes of the
+ * ADD and REMOVE sets, the reads served from and missing the materialized documents, and the operations ingested and
+ * failing to apply, along with their rates.  The totals are LongAdders, fed by the hooks of the Metrics class, so they
+ * are cheap to update from any number of threads and are only summed when read.
+ * 
+ * The totals may be published through JMX, where this class is its own standard MBean, bound as gauges to any
+ * MetricsRegistry, and through that written out by the PrometheusExporter.  Sizes are of the operations inserted and
+ * not since cleared, so a CRDT dropped without being cleared continues to be counted.
+ */
+public class RuntimeMetrics implements RuntimeMetricsMBean {
+	
+	/** The name RuntimeMetrics is registered under in the platform MBean server */
+	public static final String OBJECT_NAME = "com.cyberfront.crdt:type=RuntimeMetrics";
+	
+	/** Prefix of the names of the gauges bound to a MetricsRegistry */
+	public static final String PREFIX = "crdt.runtime.";
+	
+	/**
+	 * A Rate measures how fast a total grows over sampling windows of at least a second, ending each window when the rate
+	 * is read.  This suits a scraper which reads the rate at a regular interval.
+	 */
+	private static class Rate {
+		
+		/** The shortest sampling window, in nanoseconds */
+		private static final long WINDOW = TimeUnit.SECONDS.toNanos(1L);
+		
+		/** The total whose rate is measured */
+		private final LongAdder total;
+		
+		/** The time the current window started */
+		private long windowStart = System.nanoTime();
+		
+		/** The total when the current window started */
+		private long windowTotal = 0L;
+		
+		/** The rate over the last completed window */
+		private double rate = 0.0;
+		
+		/**
+		 * Instantiates a new rate for the given total
+		 *
+		 * @param total The total whose rate is measured
+		 */
+		private Rate(LongAdder total) {
+			this.total = total;
+		}
+		
+		/**
+		 * Retrieve the rate, completing the current window if it has lasted long enough
+		 *
+		 * @return The growth of the total per second over the last completed window
+		 */
+		private synchronized double get() {
+			long now = System.nanoTime();
+			long elapsed = now - this.windowStart;
+			
+			if (elapsed >= WINDOW) {
+				long current = this.total.sum();
+				this.rate = (current - this.windowTotal) * (double) TimeUnit.SECONDS.toNanos(1L) / elapsed;
+				this.windowStart = now;
+				this.windowTotal = current;
+			}
+			
+			return this.rate;
+		}
+	}
+	
+	/** The process wide instance */
+	private static final RuntimeMetrics instance = new RuntimeMetrics();
+	
+	/** The number of CRDT managers created */
+	private final LongAdder managers = new LongAdder();
+	
+	/** The total size of the ADD sets */
+	private final LongAdder addSetSize = new LongAdder();
+	
+	/** The total size of the REMOVE sets */
+	private final LongAdder remSetSize = new LongAdder();
+	
+	/** The number of operations in ADD sets and not in the matching REMOVE sets */
+	private final LongAdder liveOperations = new LongAdder();
+	
+	/** The number of reads served from a materialized document */
+	private final LongAdder cacheHits = new LongAdder();
+	
+	/** The number of reads which rebuilt the document */
+	private final LongAdder cacheMisses = new LongAdder();
+	
+	/** The number of operations delivered to CRDTs */
+	private final LongAdder ingested = new LongAdder();
+	
+	/** The number of times an operation failed to apply */
+	private final LongAdder patchFailures = new LongAdder();
+	
+	/** The rate operations are delivered */
+	private final Rate ingestRate = new Rate(this.ingested);
+	
+	/** The rate operations fail to apply */
+	private final Rate patchFailureRate = new Rate(this.patchFailures);
+
+	/**
+	 * Instantiates the process wide instance
+	 */
+	private RuntimeMetrics() {
+	}
+
+	/**
+	 * Retrieve the process wide instance
+	 *
+	 * @return The process wide RuntimeMetrics
+	 */
+	public static RuntimeMetrics getInstance() {
+		return instance;
+	}
+
+	/**
+	 * Register the process wide instance with the platform MBean server, unless it already is
+	 *
+	 * @return The name it is registered under
+	 * @throws JMException If it could not be registered
+	 */
+	public static ObjectName register() throws JMException {
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		ObjectName rv = new ObjectName(OBJECT_NAME);
+		
+		if (!server.isRegistered(rv)) {
+			server.registerMBean(getInstance(), rv);
+		}
+		
+		return rv;
+	}
+
+	/**
+	 * Remove the process wide instance from the platform MBean server, if it is registered
+	 *
+	 * @throws JMException If it could not be removed
+	 */
+	public static void unregister() throws JMException {
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		ObjectName name = new ObjectName(OBJECT_NAME);
+		
+		if (server.isRegistered(name)) {
+			server.unregisterMBean(name);
+		}
+	}
+
+	/**
+	 * Bind each total and rate to the given registry as a gauge, named with the PREFIX
+	 *
+	 * @param registry The registry to bind the gauges to
+	 */
+	public void bindTo(MetricsRegistry registry) {
+		registry.gauge(PREFIX + "managers", this::getManagers);
+		registry.gauge(PREFIX + "operations.live", this::getLiveOperations);
+		registry.gauge(PREFIX + "set.add.size", this::getAddSetSize);
+		registry.gauge(PREFIX + "set.rem.size", this::getRemSetSize);
+		registry.gauge(PREFIX + "cache.hits", this::getCacheHits);
+		registry.gauge(PREFIX + "cache.misses", this::getCacheMisses);
+		registry.gauge(PREFIX + "cache.hit.ratio", this::getCacheHitRatio);
+		registry.gauge(PREFIX + "operations.ingested", this::getOperationsIngested);
+		registry.gauge(PREFIX + "operations.ingested.rate", this::getIngestRate);
+		registry.gauge(PREFIX + "patch.failures", this::getPatchFailures);
+		registry.gauge(PREFIX + "patch.failures.rate", this::getPatchFailureRate);
+	}
+
+	/**
+	 * Count a new CRDT manager
+	 */
+	void managed() {
+		this.managers.increment();
+	}
+
+	/**
+	 * Account for a change to the operations held by a CRDT
+	 *
+	 * @param add The change in the size of the ADD set
+	 * @param rem The change in the size of the REMOVE set
+	 * @param live The change in the number of live operations
+	 */
+	void stored(long add, long rem, long live) {
+		if (0L != add) {
+			this.addSetSize.add(add);
+		}
+		
+		if (0L != rem) {
+			this.remSetSize.add(rem);
+		}
+		
+		if (0L != live) {
+			this.liveOperations.add(live);
+		}
+	}
+
+	/**
+	 * Count a read served from a materialized document
+	 */
+	void hit() {
+		this.cacheHits.increment();
+	}
+
+	/**
+	 * Count a read which rebuilt the document
+	 */
+	void miss() {
+		this.cacheMisses.increment();
+	}
+
+	/**
+	 * Count an operation delivered to a CRDT
+	 */
+	void ingested() {
+		this.ingested.increment();
+	}
+
+	/**
+	 * Count an operation which failed to apply
+	 */
+	void failed() {
+		this.patchFailures.increment();
+	}
+
+	/* (non-Javadoc)
+	 * @see com.cyberfront.crdt.metrics.RuntimeMetricsMBean#getManagers()
+	 */
+	@Override
+	public long getManagers() {
+		return this.managers.sum();
+	}
+
+	/* (non-Javadoc)
+	 * @see com.cyberfront.crdt.metrics.RuntimeMetricsMBean#getLiveOperations()
+	 */
+	@Override
+	public long getLiveOperations() {
+		return this.liveOperations.sum();
+	}
+
+	/* (non-Javadoc)
+	 * @see com.cyberfront.crdt.metrics.RuntimeMetricsMBean#getAddSetSize()
+	 */
+	@Override
+	public long getAddSetSize() {
+		return this.addSetSize.sum();
+	}
+
+	/* (non-Javadoc)
+	 * @see com.cyberfront.crdt.metrics.RuntimeMetricsMBean#getRemSetSize()
+	 */
+	@Override
+	public long getRemSetSize() {
+		return this.remSetSize.sum();
+	}
+
+	/* (non-Javadoc)
+	 * @see com.cyberfront.crdt.metrics.RuntimeMetricsMBean#getCacheHits()
+	 */
+	@Override
+	public long getCacheHits() {
+		return this.cacheHits.sum();
+	}
+
+	/* (non-Javadoc)
+	 * @see com.cyberfront.crdt.metrics.RuntimeMetricsMBean#getCacheMisses()
+	 */
+	@Override
+	public long getCacheMisses() {
+		return this.cacheMisses.sum();
+	}
+
+	/* (non-Javadoc)
+	 * @see com.cyberfront.crdt.metrics.RuntimeMetricsMBean#getCacheHitRatio()
+	 */
+	@Override
+	public double getCacheHitRatio() {
+		long hits = this.getCacheHits();
+		long reads = hits + this.getCacheMisses();
+		return 0L == reads ? 0.0 : (double) hits / reads;
+	}
+
+	/* (non-Javadoc)
+	 * @see com.cyberfront.crdt.metrics.RuntimeMetricsMBean#getOperationsIngested()
+	 */
+	@Override
+	public long getOperationsIngested() {
+		return this.ingested.sum();
+	}
+
+	/* (non-Javadoc)
+	 * @see com.cyberfront.crdt.metrics.RuntimeMetricsMBean#getIngestRate()
+	 */
+	@Override
+	public double getIngestRate() {
+		return this.ingestRate.get();
+	}
+
+	/* (non-Javadoc)
+	 * @see com.cyberfront.crdt.metrics.RuntimeMetricsMBean#getPatchFailures()
+	 */
+	@Override
+	public long getPatchFailures() {
+		return this.patchFailures.sum();
+	}
+
+	/* (non-Javadoc)
+	 * @see com.cyberfront.crdt.metrics.RuntimeMetricsMBean#getPatchFailureRate()
+	 */
+	@Override
+	public double getPatchFailureRate() {
+		return this.patchFailureRate.get();
+	}
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2017 Cybernetic Frontiers LLC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package com.cyberfront.crdt.metrics;
+
+/**
+ * The RuntimeMetricsMBean interface lists the process wide gauges of the CRDT runtime published through JMX by
+ * RuntimeMetrics.  Each getter becomes a read only attribute named after it without the "get" prefix.
+ */
+public interface RuntimeMetricsMBean {
+
+	/**
+	 * Retrieve the number of CRDT managers created
+	 *
+	 * @return The number of CRDT managers created
+	 */
+	public abstract long getManagers();
+
+	/**
+	 * Retrieve the number of operations held in ADD sets and not cancelled by REMOVE sets
+	 *
+	 * @return The number of live operations
+	 */
+	public abstract long getLiveOperations();
+
+	/**
+	 * Retrieve the total size of the ADD sets
+	 *
+	 * @return The total size of the ADD sets
+	 */
+	public abstract long getAddSetSize();
+
+	/**
+	 * Retrieve the total size of the REMOVE sets
+	 *
+	 * @return The total size of the REMOVE sets
+	 */
+	public abstract long getRemSetSize();
+
+	/**
+	 * Retrieve the number of document reads served from a materialized document
+	 *
+	 * @return The number of cache hits
+	 */
+	public abstract long getCacheHits();
+
+	/**
+	 * Retrieve the number of document reads which replayed operations to rebuild the document
+	 *
+	 * @return The number of cache misses
+	 */
+	public abstract long getCacheMisses();
+
+	/**
+	 * Retrieve the fraction of document reads served from a materialized document
+	 *
+	 * @return The cache hit ratio, from 0 to 1, or 0 if no document has been read
+	 */
+	public abstract double getCacheHitRatio();
+
+	/**
+	 * Retrieve the number of operations delivered to CRDTs
+	 *
+	 * @return The number of operations ingested
+	 */
+	public abstract long getOperationsIngested();
+
+	/**
+	 * Retrieve the rate operations were delivered to CRDTs over the last completed sampling window
+	 *
+	 * @return The number of operations ingested per second
+	 */
+	public abstract double getIngestRate();
+
+	/**
+	 * Retrieve the number of times an operation failed to apply to a document
+	 *
+	 * @return The number of patch failures
+	 */
+	public abstract long getPatchFailures();
+
+	/**
+	 * Retrieve the rate operations failed to apply to documents over the last completed sampling window
+	 *
+	 * @return The number of patch failures per second
+	 */
+	public abstract double getPatchFailureRate();
+}
@@ -24,11 +24,19 @@ package com.cyberfront.crdt.operations;
 
 import java.io.IOException;
 import java.util.Collection;
+import java.util.Objects;
 import java.util.TreeSet;
+import java.util.UUID;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import com.cyberfront.crdt.causal.Dot;
+import com.cyberfront.crdt.persistent.PersistentNode;
+import com.cyberfront.crdt.support.JsonStreamable;
+import com.cyberfront.crdt.support.Pointer;
+import com.cyberfront.crdt.support.Support;
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.github.fge.jsonpatch.JsonPatchException;		// Use this with jsonpatch
@@ -41,10 +49,15 @@ import com.github.fge.jsonpatch.JsonPatchException;		// Use this with jsonpatch
  * 
  * These operations each have a timestamp which is used to order operations.  In the event two operations have the same timestamp, an operation
  * Id is used to break the tie. In a distributed setup, it is theoretically possible for two operations generated at different nodes to have both
- * same time stamp and the same ID number, which will lead to ambiguity if the should both appear in the same CRDT.  As a final tie breaker, the
- * hash value of the two operations will be used.
+ * same time stamp and the same ID number, which will lead to ambiguity if the should both appear in the same CRDT.  Such ties are broken by
+ * the replica which generated each operation, and as a final tie breaker, the hash value of the two operations will be used.
+ * 
+ * An operation may optionally carry a Dot, naming the replica which generated it and that replica's sequence number for
+ * the document.  The Dot is fixed when the operation is built, either by the OperationCodec or by copying an operation
+ * with copy(Dot).  The replica of the Dot is part of the identity of the operation, so it takes part in ordering and
+ * equality, while the sequence number does not.
  */
-public abstract class AbstractOperation implements Comparable<AbstractOperation> {
+public abstract class AbstractOperation implements Comparable<AbstractOperation>, JsonStreamable {
 	
 	/** Logger to use when displaying state information */
 	@SuppressWarnings("unused")
@@ -78,33 +91,45 @@ public abstract class AbstractOperation implements Comparable<AbstractOperation>
 	/** The ID associated with the operations */
 	private final Long operationId;
 	
-	/** The JSON operation associated with this operation */
-	private final JsonNode op;
+	/** Flag indicating whether newly created operations keep their JSON operation off heap */
+	private static volatile boolean offHeapPayloads = false;
+	
+	/** The payload holding the JSON operation associated with this operation */
+	private final Payload payload;
+	
+	/** The causal identity of the operation, or null if it was generated without causal metadata */
+	private final Dot dot;
+	
+	/** The estimated bytes retained by the JSON operation, or -1 if it has not been estimated yet */
+	private long patchBytes = -1L;
 	
 	/** The operation counter used to assign each operator a unique ID. */
 	private static Long operationCounter = 0L;
 	
 	/**
 	 * This constructor initializes elements of this abstract class instance given an operation and a 
-	 * timestamp associated with executing the operation.
+	 * timestamp associated with executing the operation.  The path and from pointers of the operation are
+	 * replaced in place with their interned instances, unless the operation is kept off heap.
 	 *
 	 * @param op The JSON operation associated with this AbstractOperation 
 	 * @param timeStamp The effective timestamp associated with the execution of this operation
 	 */
 	public AbstractOperation(JsonNode op, Long timeStamp) {
-		this(op, timeStamp, operationCounter++);
+		this(isOffHeapPayloads() ? Payload.of(op, true) : Payload.of(Pointer.internPatch(op), false), timeStamp, operationCounter++, null);
 	}
 	
 	/**
 	 * Fully specified operation constructor which directs the values of all elements in the class instance
-	 * @param op Operation details associated with the object
+	 * @param payload Payload holding the operation details associated with the object
 	 * @param timeStamp Timestamp of the operation
 	 * @param operationId Id for the operation
+	 * @param dot The Dot of the operation, or null if it carries no causal metadata
 	 */
-	private AbstractOperation(JsonNode op, Long timeStamp, Long operationId) {
+	AbstractOperation(Payload payload, Long timeStamp, Long operationId, Dot dot) {
 		this.timeStamp = timeStamp;
 		this.operationId = operationId;
-		this.op = op;
+		this.payload = payload;
+		this.dot = dot;
 	}
 
 	/**
@@ -113,7 +138,17 @@ public abstract class AbstractOperation implements Comparable<AbstractOperation>
 	 * @param src The source operation to copy
 	 */
 	protected AbstractOperation(AbstractOperation src) {
-		this(src.op, src.timeStamp, src.operationId);
+		this(src, src.dot);
+	}
+
+	/**
+	 * This is a copy constructor for duplicating some source AbstractOperation with the given Dot in place of its own
+	 *
+	 * @param src The source operation to copy
+	 * @param dot The Dot of the copy, or null if it carries no causal metadata
+	 */
+	protected AbstractOperation(AbstractOperation src, Dot dot) {
+		this(src.payload, src.timeStamp, src.operationId, dot);
 	}
 
 	/**
@@ -134,13 +169,89 @@ public abstract class AbstractOperation implements Comparable<AbstractOperation>
 		return this.operationId;
 	}
 
+	/**
+	 * Retrieve the causal identity of this operation
+	 *
+	 * @return The Dot of this operation, or null if it carries no causal metadata
+	 */
+	public Dot getDot() {
+		return this.dot;
+	}
+
+	/**
+	 * Retrieve the identifier of the replica which generated this operation
+	 *
+	 * @return The replica of the Dot of this operation, or null if it carries no causal metadata
+	 */
+	public UUID getReplica() {
+		return null == this.getDot() ? null : this.getDot().getReplica();
+	}
+
+	/**
+	 * Compare two replica identifiers, ordering an absent replica ahead of every other
+	 *
+	 * @param a The first replica identifier, or null if absent
+	 * @param b The second replica identifier, or null if absent
+	 * @return A negative value, zero or a positive value as the first replica is ordered before, with or after the second
+	 */
+	private static int compareReplica(UUID a, UUID b) {
+		if (null == a || null == b) {
+			return null == a ? (null == b ? 0 : -1) : 1;
+		}
+		
+		return a.compareTo(b);
+	}
+
 	/**
 	 * Retrieve the JSON operation this AbstractOperation holds 
 	 *
 	 * @return The JSON operation held in this AbstractOperation
 	 */
 	public JsonNode getOp() {
-		return this.op;
+		return this.payload.get();
+	}
+	
+	/**
+	 * Retrieve the payload holding the JSON operation
+	 *
+	 * @return The payload holding the JSON operation
+	 */
+	public Payload getPayload() {
+		return this.payload;
+	}
+	
+	/**
+	 * Determine whether newly created operations keep their JSON operation off heap
+	 *
+	 * @return True if and only if newly created operations keep their JSON operation off heap
+	 */
+	public static boolean isOffHeapPayloads() {
+		return offHeapPayloads;
+	}
+	
+	/**
+	 * Set whether newly created operations keep their JSON operation serialized off heap, leaving only their
+	 * identifier, timestamp, type and a handle on the heap.  The JSON operation is then decoded each time it is
+	 * retrieved.  Existing operations, and copies made of them, are not affected.
+	 *
+	 * @param offHeap Flag indicating whether newly created operations keep their JSON operation off heap
+	 */
+	public static void setOffHeapPayloads(boolean offHeap) {
+		offHeapPayloads = offHeap;
+	}
+	
+	/**
+	 * Retrieve the estimated heap bytes retained by the JSON operation.  The operation never changes, so it is estimated
+	 * only once.
+	 *
+	 * @return The estimated heap bytes retained by the JSON operation
+	 */
+	public long getPatchBytes() {
+		if (this.patchBytes < 0) {
+			this.patchBytes = this.getPayload().getHeapBytes();
+		}
+		
+		return this.patchBytes;
 	}
 	
 	/**
@@ -161,6 +272,48 @@ public abstract class AbstractOperation implements Comparable<AbstractOperation>
 	 */
 	public abstract JsonNode processOperation(JsonNode document) throws JsonPatchException, IOException;  // Use this with jsonpatch
 //	public abstract JsonNode processOperation(JsonNode document);               // Use this with zjsonpatch
+
+	/**
+	 * Process the operation on the persistent document presented and return the resulting document to the calling routine.  The
+	 * given document is not changed, and the result shares every node the operation leaves unchanged with it.
+	 *
+	 * @param document The persistent document to which the operation will be applied
+	 * @return The persistent document which results from applying the operation to the given document
+	 * @throws JsonPatchException results when the operation cannot be applied to the provided document
+	 */
+	public abstract PersistentNode processOperation(PersistentNode document) throws JsonPatchException;
+
+	/**
+	 * Process the operation on the document presented by changing it in place, and return the resulting document to the calling
+	 * routine.  If the operation cannot be applied the document is left unchanged.
+	 *
+	 * @param document The document to which the operation will be applied, which is owned by the caller and changed by the operation
+	 * @return The JSON document which results from applying the operation; this is the given document unless the operation replaces it
+	 * @throws JsonPatchException results when the operation cannot be applied to the provided document
+	 */
+	public abstract JsonNode processInPlace(JsonNode document) throws JsonPatchException;
+	
+	/**
+	 * Determine whether the operation applies cleanly to the document presented, without changing it.  Operations
+	 * without a patch always apply, so this is overridden only by those which have one.
+	 *
+	 * @param document The document to check the operation against, which is left unchanged
+	 * @return True exactly when processing the operation on the given document would succeed
+	 */
+	public boolean isApplicable(JsonNode document) {
+		return true;
+	}
+	
+	/**
+	 * Retrieve the scope of the operation, the deepest location of the document holding every change it makes without
+	 * being replaced itself.  Operations with disjoint scopes may be applied to the same document concurrently.  Only
+	 * updates are confined to part of the document, so this is overridden only by them.
+	 *
+	 * @return The reference tokens of the scope, or null if the operation may change the whole document
+	 */
+	public String[] getScope() {
+		return null;
+	}
 	
 	/**
 	 * This abstract method retrieves the enumerated type specification for the derived class instance 
@@ -176,6 +329,15 @@ public abstract class AbstractOperation implements Comparable<AbstractOperation>
 	 */
 	public abstract AbstractOperation copy();
 	
+	/**
+	 * Generate and return a copy of this instance carrying the given Dot.  This is how the replica generating an
+	 * operation stamps it, before the operation is delivered anywhere.
+	 *
+	 * @param dot The Dot of the copy
+	 * @return Returns a copy of this AbstractOperation carrying the given Dot
+	 */
+	public abstract AbstractOperation copy(Dot dot);
+	
 	/**
 	 * Generate and return a near copy of this instance.  All elements will be the same except the ID value
 	 *
@@ -204,6 +366,7 @@ public abstract class AbstractOperation implements Comparable<AbstractOperation>
 	public int compareTo(AbstractOperation o) {
 		int rv = Long.compare(this.getTimeStamp(), o.getTimeStamp());
 		rv = 0 == rv ? Long.compare(this.getOperationId(), o.getOperationId()) : rv;
+		rv = 0 == rv ? compareReplica(this.getReplica(), o.getReplica()) : rv;
 		rv = 0 == rv ? Integer.compare(this.hashCode(), o.hashCode()) : rv; 
 		
 		return rv;
@@ -225,7 +388,8 @@ public abstract class AbstractOperation implements Comparable<AbstractOperation>
 		return this.hashCode() == oper.hashCode() && 
 				Long.compare(this.getOperationId(), oper.getOperationId()) == 0	&&
 				Long.compare(this.getTimeStamp(), oper.getTimeStamp()) == 0	&&
-				this.getOp().equals(oper.getOp());
+				Objects.equals(this.getReplica(), oper.getReplica()) &&
+				this.getPayload().equals(oper.getPayload());
 	}
 	
 	/* (non-Javadoc)
@@ -237,26 +401,39 @@ public abstract class AbstractOperation implements Comparable<AbstractOperation>
 		
 		hash = hash * 13 + (null != this.getOperationId() ? this.getOperationId().hashCode() : 0);
 		hash = hash * 19 + (null != this.getTimeStamp() ? this.getTimeStamp().hashCode() : 0);
-		hash = hash * 23 + (null != this.getOp() ? this.getOp().hashCode() : 0);
+		hash = hash * 23 + this.getPayload().hashCode();
 		hash = hash * 29 + (null != this.getType() ? this.getType().hashCode() : 0);
+		hash = hash * 31 + (null != this.getReplica() ? this.getReplica().hashCode() : 0);
 		
 		return hash;
 	}
 
 	/**
-	 * This method is used to support the toString method by generating a string representation
-	 * of this AbstractOperation instance
+	 * Stream the fields of this instance to the given generator
 	 *
-	 * @return The string representation of this AbstractOperation
-	 */
-	protected String getSegment() {
-		StringBuilder sb = new StringBuilder();
-		sb.append("\"type\":\"" + this.getType().toString() + "\",");
-		sb.append("\"timeStamp\":" + this.getTimeStamp() + ",");
-		sb.append("\"operationId\":" + this.getOperationId() + ",");
-		sb.append("\"op\":" + (null == op ? "null" : this.getOp().toString()));
+	 * @param gen The generator to write to
+	 * @throws IOException If the generator fails to write
+	 */
+	protected void writeSegment(JsonGenerator gen) throws IOException {
+		gen.writeStringField("type", this.getType().toString());
+		gen.writeNumberField("timeStamp", this.getTimeStamp());
+		gen.writeNumberField("operationId", this.getOperationId());
+		if (null != this.getDot()) {
+			gen.writeFieldName("dot");
+			this.getDot().writeJson(gen);
+		}
+		gen.writeFieldName("op");
+		Support.writeJson(gen, this.getOp());
+	}
 
-		return sb.toString();
+	/* (non-Javadoc)
+	 * @see com.cyberfront.crdt.support.JsonStreamable#writeJson(com.fasterxml.jackson.core.JsonGenerator)
+	 */
+	@Override
+	public void writeJson(JsonGenerator gen) throws IOException {
+		gen.writeStartObject();
+		this.writeSegment(gen);
+		gen.writeEndObject();
 	}
 	
 	/* (non-Javadoc)
@@ -264,7 +441,7 @@ public abstract class AbstractOperation implements Comparable<AbstractOperation>
 	 */
 	@Override
 	public String toString() {
-		return "{" + this.getSegment() + "}";
+		return Support.toJson(this);
 	}
 	
 	public static Collection<AbstractOperation> copy(Collection<AbstractOperation> opList) {
@@ -26,6 +26,11 @@ package com.cyberfront.crdt.operations;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import com.cyberfront.crdt.causal.Dot;
+import com.cyberfront.crdt.operations.PatchInterpreter.Mode;
+import com.cyberfront.crdt.persistent.PersistentNode;
+import com.cyberfront.crdt.persistent.PersistentObject;
+import com.cyberfront.crdt.persistent.PersistentPatch;
 import com.fasterxml.jackson.databind.JsonNode;
 import java.io.IOException;				                // Use this with jsonpatch
 import com.github.fge.jsonpatch.JsonPatch;				// Use this with jsonpatch
@@ -64,6 +69,28 @@ public class CreateOperation extends AbstractOperation {
 	public CreateOperation(CreateOperation src) {
 		super(src);
 	}
+	
+	/**
+	 * Instantiates a copy of the given CreateOperation carrying the given Dot
+	 *
+	 * @param src The source CreateOperation to copy
+	 * @param dot The Dot of the copy
+	 */
+	public CreateOperation(CreateOperation src, Dot dot) {
+		super(src, dot);
+	}
+	
+	/**
+	 * Instantiates a CreateOperation from its decoded parts, as done by the OperationCodec
+	 *
+	 * @param payload The payload holding the operation
+	 * @param timeStamp The effective time stamp of the operation
+	 * @param operationId The identifier of the operation
+	 * @param dot The Dot of the operation, or null if it carries no causal metadata
+	 */
+	CreateOperation(Payload payload, Long timeStamp, Long operationId, Dot dot) {
+		super(payload, timeStamp, operationId, dot);
+	}
 
 	/* (non-Javadoc)
 	 * @see com.cyberfront.cmrdt.operations.AbstractOperation#processOperation(com.fasterxml.jackson.databind.JsonNode)
@@ -75,6 +102,30 @@ public class CreateOperation extends AbstractOperation {
 //		return JsonPatch.apply(this.getOp(), getMapper().createObjectNode());				// Use this with zjsonpatch
 	}
 
+	/* (non-Javadoc)
+	 * @see com.cyberfront.crdt.operations.AbstractOperation#processOperation(com.cyberfront.crdt.persistent.PersistentNode)
+	 */
+	@Override
+	public PersistentNode processOperation(PersistentNode document) throws JsonPatchException {
+		return PersistentPatch.apply(this.getOp(), PersistentObject.empty());
+	}
+
+	/* (non-Javadoc)
+	 * @see com.cyberfront.crdt.operations.AbstractOperation#processInPlace(com.fasterxml.jackson.databind.JsonNode)
+	 */
+	@Override
+	public JsonNode processInPlace(JsonNode document) throws JsonPatchException {
+		return PatchInterpreter.apply(this.getOp(), getMapper().createObjectNode(), Mode.IN_PLACE);
+	}
+
+	/* (non-Javadoc)
+	 * @see com.cyberfront.crdt.operations.AbstractOperation#isApplicable(com.fasterxml.jackson.databind.JsonNode)
+	 */
+	@Override
+	public boolean isApplicable(JsonNode document) {
+		return PatchInterpreter.validate(this.getOp(), getMapper().createObjectNode());
+	}
+
 	/* (non-Javadoc)
 	 * @see com.cyberfront.cmrdt.operations.AbstractOperation#getType()
 	 */
@@ -99,6 +150,14 @@ public class CreateOperation extends AbstractOperation {
 		return new CreateOperation(this);
 	}
 
+	/* (non-Javadoc)
+	 * @see com.cyberfront.crdt.operations.AbstractOperation#copy(com.cyberfront.crdt.causal.Dot)
+	 */
+	@Override
+	public AbstractOperation copy(Dot dot) {
+		return new CreateOperation(this, dot);
+	}
+
 	/* (non-Javadoc)
 	 * @see com.cyberfront.cmrdt.operations.AbstractOperation#copy()
 	 */
@@ -25,6 +25,8 @@ package com.cyberfront.crdt.operations;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import com.cyberfront.crdt.causal.Dot;
+import com.cyberfront.crdt.persistent.PersistentNode;
 import com.fasterxml.jackson.databind.JsonNode;
 
 /**
@@ -59,6 +61,28 @@ public class DeleteOperation extends AbstractOperation {
 		super(src);
 	}
 	
+	/**
+	 * Instantiates a copy of the given DeleteOperation carrying the given Dot
+	 *
+	 * @param src The source DeleteOperation to copy
+	 * @param dot The Dot of the copy
+	 */
+	public DeleteOperation(DeleteOperation src, Dot dot) {
+		super(src, dot);
+	}
+	
+	/**
+	 * Instantiates a DeleteOperation from its decoded parts, as done by the OperationCodec
+	 *
+	 * @param payload The payload holding the operation
+	 * @param timeStamp The effective time stamp of the operation
+	 * @param operationId The identifier of the operation
+	 * @param dot The Dot of the operation, or null if it carries no causal metadata
+	 */
+	DeleteOperation(Payload payload, Long timeStamp, Long operationId, Dot dot) {
+		super(payload, timeStamp, operationId, dot);
+	}
+	
 	/* (non-Javadoc)
 	 * @see com.cyberfront.cmrdt.operations.AbstractOperation#processOperation(com.fasterxml.jackson.databind.JsonNode)
 	 */
@@ -67,6 +91,22 @@ public class DeleteOperation extends AbstractOperation {
 		return null;
 	}
 
+	/* (non-Javadoc)
+	 * @see com.cyberfront.crdt.operations.AbstractOperation#processOperation(com.cyberfront.crdt.persistent.PersistentNode)
+	 */
+	@Override
+	public PersistentNode processOperation(PersistentNode document) {
+		return null;
+	}
+
+	/* (non-Javadoc)
+	 * @see com.cyberfront.crdt.operations.AbstractOperation#processInPlace(com.fasterxml.jackson.databind.JsonNode)
+	 */
+	@Override
+	public JsonNode processInPlace(JsonNode document) {
+		return null;
+	}
+
 	/* (non-Javadoc)
 	 * @see com.cyberfront.cmrdt.operations.AbstractOperation#equals(java.lang.Object)
 	 */
@@ -91,6 +131,14 @@ public class DeleteOperation extends AbstractOperation {
 		return new DeleteOperation(this);
 	}
 
+	/* (non-Javadoc)
+	 * @see com.cyberfront.crdt.operations.AbstractOperation#copy(com.cyberfront.crdt.causal.Dot)
+	 */
+	@Override
+	public AbstractOperation copy(Dot dot) {
+		return new DeleteOperation(this, dot);
+	}
+
 	/* (non-Javadoc)
 	 * @see com.cyberfront.cmrdt.operations.AbstractOperation#copy()
 	 */
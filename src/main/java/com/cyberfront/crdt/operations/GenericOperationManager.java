@@ -22,8 +22,11 @@
  */
 package com.cyberfront.crdt.operations;
 
+import java.io.IOException;
+
 import com.cyberfront.crdt.operations.AbstractOperation;
 import com.cyberfront.crdt.operations.OperationManager;
+import com.fasterxml.jackson.core.JsonGenerator;
 
 /**
  * The Class GenericOperationManager provides a mechanism for managing java types as a CRDT by wrapping an object by a collection
@@ -98,15 +101,11 @@ public class GenericOperationManager<T>
 	}
 	
 	/* (non-Javadoc)
-	 * @see com.cyberfront.cmrdt.support.BaseManager#getSegment()
+	 * @see com.cyberfront.crdt.operations.OperationManager#writeSegment(com.fasterxml.jackson.core.JsonGenerator)
 	 */
 	@Override
-	protected String getSegment() {
-		StringBuilder sb = new StringBuilder();
-		
-		sb.append(super.getSegment() + ",");
-		sb.append("\"objectClass\":\"" + this.getObjectClass().getName() + "\"");
-		
-		return sb.toString();
+	protected void writeSegment(JsonGenerator gen) throws IOException {
+		super.writeSegment(gen);
+		gen.writeStringField("objectClass", this.getObjectClass().getName());
 	}
 }
@@ -0,0 +1,235 @@
+/*
+ * Copyright (c) 2017 Cybernetic Frontiers LLC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package com.cyberfront.crdt.operations;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.UUID;
+
+import com.cyberfront.crdt.causal.Dot;
+import com.cyberfront.crdt.operations.AbstractOperation.OperationType;
+
+/**
+ * The OperationCodec class encodes operations into a compact binary form for transmission between nodes, and decodes
+ * them again.  The header of an encoded operation holds its type, timestamp, identifier and the hash of its JSON
+ * operation, all of which are decoded eagerly.  The JSON operation follows as serialized bytes, which are kept as they
+ * are by the decoded operation and parsed only when the operation is applied to a document.  Operations which are
+ * dropped, counted or compared therefore never pay for parsing their JSON operation.  An operation carrying a Dot has it
+ * written after the JSON operation.
+ */
+public class OperationCodec {
+
+	/** The length written in place of the JSON operation when the operation has none */
+	private static final int NO_PAYLOAD = -1;
+
+	/**
+	 * Write an operation to a binary output
+	 *
+	 * @param op The operation to write
+	 * @param out The output to write to
+	 * @throws IOException If the output cannot be written
+	 */
+	public static void encode(AbstractOperation op, DataOutput out) throws IOException {
+		out.writeByte(op.getType().ordinal());
+		out.writeLong(op.getTimeStamp());
+		out.writeLong(op.getOperationId());
+		out.writeInt(op.getPayload().hashCode());
+
+		byte[] data = op.getPayload().toBytes();
+
+		if (null == data) {
+			out.writeInt(NO_PAYLOAD);
+		} else {
+			out.writeInt(data.length);
+			out.write(data);
+		}
+
+		encodeDot(op.getDot(), out);
+	}
+
+	/**
+	 * Write the identity of an operation to a binary output: its type, timestamp, identifier, the hash of its JSON
+	 * operation and its Dot, without the JSON operation itself.  This is all a REMOVE set needs to hold of an operation
+	 * for it to order and be identified as the operation does.
+	 *
+	 * @param op The operation whose identity is to be written
+	 * @param out The output to write to
+	 * @throws IOException If the output cannot be written
+	 */
+	public static void encodeIdentity(AbstractOperation op, DataOutput out) throws IOException {
+		out.writeByte(op.getType().ordinal());
+		out.writeLong(op.getTimeStamp());
+		out.writeLong(op.getOperationId());
+		out.writeInt(op.getPayload().hashCode());
+		encodeDot(op.getDot(), out);
+	}
+
+	/**
+	 * Write an optional Dot to a binary output
+	 *
+	 * @param dot The Dot to write, which may be null
+	 * @param out The output to write to
+	 * @throws IOException If the output cannot be written
+	 */
+	private static void encodeDot(Dot dot, DataOutput out) throws IOException {
+		out.writeBoolean(null != dot);
+
+		if (null != dot) {
+			out.writeLong(dot.getReplica().getMostSignificantBits());
+			out.writeLong(dot.getReplica().getLeastSignificantBits());
+			out.writeLong(dot.getSequence());
+		}
+	}
+
+	/**
+	 * Read an operation from a binary input.  Its JSON operation is left serialized until it is first retrieved.
+	 *
+	 * @param in The input to read from
+	 * @return The operation read
+	 * @throws IOException If the input cannot be read or does not hold an encoded operation
+	 */
+	public static AbstractOperation decode(DataInput in) throws IOException {
+		int ordinal = in.readUnsignedByte();
+		long timeStamp = in.readLong();
+		long operationId = in.readLong();
+		int hash = in.readInt();
+		int length = in.readInt();
+		Payload payload;
+
+		if (NO_PAYLOAD == length) {
+			payload = Payload.of(null, false);
+		} else {
+			byte[] data = new byte[length];
+			in.readFully(data);
+			payload = Payload.encoded(data, hash);
+		}
+
+		return create(ordinal, payload, timeStamp, operationId, decodeDot(in));
+	}
+
+	/**
+	 * Read the identity of an operation written by encodeIdentity from a binary input.  The operation read has no JSON
+	 * operation, but keeps the hash of the one written, so it orders and is identified as the operation written was.
+	 *
+	 * @param in The input to read from
+	 * @return The operation read
+	 * @throws IOException If the input cannot be read or does not hold the identity of an operation
+	 */
+	public static AbstractOperation decodeIdentity(DataInput in) throws IOException {
+		int ordinal = in.readUnsignedByte();
+		long timeStamp = in.readLong();
+		long operationId = in.readLong();
+		int hash = in.readInt();
+
+		return create(ordinal, Payload.identity(hash), timeStamp, operationId, decodeDot(in));
+	}
+
+	/**
+	 * Instantiate an operation from its decoded parts
+	 *
+	 * @param ordinal The ordinal of the type of the operation
+	 * @param payload The payload holding the JSON operation
+	 * @param timeStamp The timestamp of the operation
+	 * @param operationId The identifier of the operation
+	 * @param dot The Dot of the operation, or null if it carries none
+	 * @return The operation
+	 * @throws IOException If the type is unknown
+	 */
+	private static AbstractOperation create(int ordinal, Payload payload, long timeStamp, long operationId, Dot dot) throws IOException {
+		if (ordinal >= OperationType.values().length) {
+			throw new IOException("Unknown operation type " + ordinal);
+		}
+
+		AbstractOperation rv;
+
+		switch (OperationType.values()[ordinal]) {
+		case CREATE:
+			rv = new CreateOperation(payload, timeStamp, operationId, dot);
+			break;
+		case READ:
+			rv = new ReadOperation(payload, timeStamp, operationId, dot);
+			break;
+		case UPDATE:
+			rv = new UpdateOperation(payload, timeStamp, operationId, dot);
+			break;
+		case DELETE:
+			rv = new DeleteOperation(payload, timeStamp, operationId, dot);
+			break;
+		default:
+			throw new IOException("Unknown operation type " + ordinal);
+		}
+
+		return rv;
+	}
+
+	/**
+	 * Read the optional Dot of an operation from a binary input
+	 *
+	 * @param in The input to read from
+	 * @return The Dot read, or null if the operation carries none
+	 * @throws IOException If the input cannot be read
+	 */
+	private static Dot decodeDot(DataInput in) throws IOException {
+		if (!in.readBoolean()) {
+			return null;
+		}
+
+		UUID replica = new UUID(in.readLong(), in.readLong());
+		return new Dot(replica, in.readLong());
+	}
+
+	/**
+	 * Encode an operation into a byte array
+	 *
+	 * @param op The operation to encode
+	 * @return The encoded operation
+	 * @throws IOException If the operation cannot be encoded
+	 */
+	public static byte[] encode(AbstractOperation op) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+		try (DataOutputStream out = new DataOutputStream(bytes)) {
+			encode(op, out);
+		}
+
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * Decode an operation from a byte array
+	 *
+	 * @param data The encoded operation
+	 * @return The operation decoded
+	 * @throws IOException If the bytes do not hold an encoded operation
+	 */
+	public static AbstractOperation decode(byte[] data) throws IOException {
+		try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(data))) {
+			return decode(in);
+		}
+	}
+}
@@ -0,0 +1,342 @@
+/*
+ * Copyright (c) 2017 Cybernetic Frontiers LLC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package com.cyberfront.crdt.operations;
+
+import java.util.Arrays;
+
+import com.cyberfront.crdt.operations.AbstractOperation.OperationType;
+
+/**
+ * The OperationColumns class holds the metadata of a sorted run of operations as a structure of arrays: parallel
+ * primitive arrays of their timestamps, identifiers, types and status bits, beside an array referring to the operations
+ * themselves, and so to their patches.  Counting the operations of a type, or selecting those up to a timestamp, is then
+ * a loop over primitive arrays which never touches the operations it passes over.
+ * 
+ * The columns hold every operation of the ADD set of a Two Set CRDT, with those also in its REMOVE set marked by the
+ * REMOVED status bit rather than left out, so that a removal marks an operation in place.  An operation sorting after
+ * every one held is appended in amortized constant time; an operation arriving out of order is refused, and the owner
+ * rebuilds the columns from its sets when they are next needed.
+ */
+public class OperationColumns {
+	
+	/** The status bit marking an operation which is also in the REMOVE set */
+	public static final byte REMOVED = 1;
+	
+	/** The capacity of the arrays of newly created, empty columns */
+	private static final int INITIAL_CAPACITY = 16;
+	
+	/** The types of operation, indexed by the values held in the types column */
+	private static final OperationType[] TYPES = OperationType.values();
+	
+	/** The timestamps of the operations */
+	private long[] stamps;
+	
+	/** The identifiers of the operations */
+	private long[] ids;
+	
+	/** The ordinals of the types of the operations */
+	private byte[] types;
+	
+	/** The status bits of the operations */
+	private byte[] status;
+	
+	/** The operations, which refer to their patches */
+	private AbstractOperation[] ops;
+	
+	/** The number of operations held */
+	private int size = 0;
+
+	/**
+	 * Instantiates new, empty columns
+	 */
+	public OperationColumns() {
+		this(INITIAL_CAPACITY);
+	}
+
+	/**
+	 * Instantiates new, empty columns with room for the given number of operations
+	 *
+	 * @param capacity The number of operations to make room for
+	 */
+	private OperationColumns(int capacity) {
+		capacity = Math.max(capacity, INITIAL_CAPACITY);
+		this.stamps = new long[capacity];
+		this.ids = new long[capacity];
+		this.types = new byte[capacity];
+		this.status = new byte[capacity];
+		this.ops = new AbstractOperation[capacity];
+	}
+
+	/**
+	 * Build the columns of the operations in an ADD set, marking those which are also in a REMOVE set.  Both are
+	 * sorted, so this is a single merged pass over them.
+	 *
+	 * @param addSet The operations of the ADD set
+	 * @param remSet The operations of the REMOVE set
+	 * @return The columns of the operations in the ADD set
+	 */
+	public static OperationColumns of(OperationLog addSet, OperationLog remSet) {
+		OperationColumns rv = new OperationColumns(addSet.size());
+		AbstractOperation[] removed = remSet.toArray(new AbstractOperation[remSet.size()]);
+		int r = 0;
+		
+		for (AbstractOperation op : addSet) {
+			while (r < removed.length && removed[r].compareTo(op) < 0) {
+				++r;
+			}
+			
+			rv.push(op, r < removed.length && 0 == removed[r].compareTo(op));
+		}
+		
+		return rv;
+	}
+
+	/**
+	 * Add an operation at the end of the columns, growing the arrays if they are full
+	 *
+	 * @param op The operation to add
+	 * @param removed Flag indicating whether the operation is in the REMOVE set
+	 */
+	private void push(AbstractOperation op, boolean removed) {
+		if (this.ops.length == this.size) {
+			int capacity = this.size + (this.size >> 1);
+			this.stamps = Arrays.copyOf(this.stamps, capacity);
+			this.ids = Arrays.copyOf(this.ids, capacity);
+			this.types = Arrays.copyOf(this.types, capacity);
+			this.status = Arrays.copyOf(this.status, capacity);
+			this.ops = Arrays.copyOf(this.ops, capacity);
+		}
+		
+		this.stamps[this.size] = op.getTimeStamp();
+		this.ids[this.size] = op.getOperationId();
+		this.types[this.size] = (byte) op.getType().ordinal();
+		this.status[this.size] = removed ? REMOVED : 0;
+		this.ops[this.size++] = op;
+	}
+
+	/**
+	 * Append an operation to the columns, if it sorts after every one held
+	 *
+	 * @param op The operation to append
+	 * @param removed Flag indicating whether the operation is already in the REMOVE set
+	 * @return True exactly when the operation was appended, and false if it sorts before the last one held
+	 */
+	public boolean append(AbstractOperation op, boolean removed) {
+		if (this.size > 0 && this.compare(op.getTimeStamp(), op, this.size - 1) <= 0) {
+			return false;
+		}
+		
+		this.push(op, removed);
+		return true;
+	}
+
+	/**
+	 * Mark an operation held in the columns as removed
+	 *
+	 * @param op The operation to mark
+	 * @return True exactly when the operation is held, and so was marked
+	 */
+	public boolean markRemoved(AbstractOperation op) {
+		int index = this.search(op.getTimeStamp(), op);
+		
+		if (index < 0) {
+			return false;
+		}
+		
+		this.status[index] |= REMOVED;
+		return true;
+	}
+
+	/**
+	 * Compare an operation with the one at a position in the columns
+	 *
+	 * @param stamp The timestamp of the operation
+	 * @param op The operation
+	 * @param index The position in the columns
+	 * @return A negative value, zero or a positive value as the operation sorts before, with or after the one held
+	 */
+	private int compare(long stamp, AbstractOperation op, int index) {
+		return stamp != this.stamps[index] ? Long.compare(stamp, this.stamps[index]) : op.compareTo(this.ops[index]);
+	}
+
+	/**
+	 * Search the columns for an operation
+	 *
+	 * @param stamp The timestamp of the operation
+	 * @param op The operation
+	 * @return The position of the operation if it is held, or otherwise (-(insertion point) - 1)
+	 */
+	private int search(long stamp, AbstractOperation op) {
+		int lo = 0;
+		int hi = this.size - 1;
+		
+		while (lo <= hi) {
+			int mid = (lo + hi) >>> 1;
+			int cmp = this.compare(stamp, op, mid);
+			
+			if (cmp > 0) {
+				lo = mid + 1;
+			} else if (cmp < 0) {
+				hi = mid - 1;
+			} else {
+				return mid;
+			}
+		}
+		
+		return -(lo + 1);
+	}
+
+	/**
+	 * Retrieve the number of operations held, including those marked as removed
+	 *
+	 * @return The number of operations held
+	 */
+	public int size() {
+		return this.size;
+	}
+
+	/**
+	 * Count the operations held which are not marked as removed
+	 *
+	 * @return The number of active operations
+	 */
+	public int countActive() {
+		int rv = 0;
+		
+		for (int i = 0; i < this.size; ++i) {
+			if (0 == (this.status[i] & REMOVED)) {
+				++rv;
+			}
+		}
+		
+		return rv;
+	}
+
+	/**
+	 * Count the operations of a type which are not marked as removed
+	 *
+	 * @param type The type of operation to count
+	 * @return The number of active operations of the type
+	 */
+	public long count(OperationType type) {
+		byte ordinal = (byte) type.ordinal();
+		long rv = 0;
+		
+		for (int i = 0; i < this.size; ++i) {
+			if (ordinal == this.types[i] && 0 == (this.status[i] & REMOVED)) {
+				++rv;
+			}
+		}
+		
+		return rv;
+	}
+
+	/**
+	 * Determine whether any operation of a type is not marked as removed
+	 *
+	 * @param type The type of operation to look for
+	 * @return True exactly when an active operation of the type is held
+	 */
+	public boolean contains(OperationType type) {
+		byte ordinal = (byte) type.ordinal();
+		
+		for (int i = 0; i < this.size; ++i) {
+			if (ordinal == this.types[i] && 0 == (this.status[i] & REMOVED)) {
+				return true;
+			}
+		}
+		
+		return false;
+	}
+
+	/**
+	 * Select the operations to replay to reach a timestamp: those not marked as removed, which are not READ operations
+	 * and whose timestamp is not after the one given.  They are appended to the log in order, so each is added in
+	 * constant time.
+	 *
+	 * @param timestamp The latest timestamp of an operation to select
+	 * @return A new log of the selected operations
+	 */
+	public OperationLog select(long timestamp) {
+		byte read = (byte) OperationType.READ.ordinal();
+		OperationLog rv = new OperationLog();
+		
+		for (int i = 0; i < this.size && this.stamps[i] <= timestamp; ++i) {
+			if (read != this.types[i] && 0 == (this.status[i] & REMOVED)) {
+				rv.add(this.ops[i]);
+			}
+		}
+		
+		return rv;
+	}
+
+	/**
+	 * Retrieve the timestamp of the operation at a position
+	 *
+	 * @param index The position of the operation
+	 * @return The timestamp of the operation
+	 */
+	public long getTimeStamp(int index) {
+		return this.stamps[index];
+	}
+
+	/**
+	 * Retrieve the identifier of the operation at a position
+	 *
+	 * @param index The position of the operation
+	 * @return The identifier of the operation
+	 */
+	public long getOperationId(int index) {
+		return this.ids[index];
+	}
+
+	/**
+	 * Retrieve the type of the operation at a position
+	 *
+	 * @param index The position of the operation
+	 * @return The type of the operation
+	 */
+	public OperationType getType(int index) {
+		return TYPES[this.types[index]];
+	}
+
+	/**
+	 * Retrieve the status bits of the operation at a position
+	 *
+	 * @param index The position of the operation
+	 * @return The status bits of the operation
+	 */
+	public byte getStatus(int index) {
+		return this.status[index];
+	}
+
+	/**
+	 * Retrieve the operation at a position
+	 *
+	 * @param index The position of the operation
+	 * @return The operation
+	 */
+	public AbstractOperation getOperation(int index) {
+		return this.ops[index];
+	}
+}
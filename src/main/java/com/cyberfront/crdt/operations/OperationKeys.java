@@ -0,0 +1,125 @@
+/*
+ * Copyright (c) 2017 Cybernetic Frontiers LLC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package com.cyberfront.crdt.operations;
+
+import com.cyberfront.crdt.causal.Dot;
+import com.cyberfront.crdt.support.LongTripleSet;
+
+/**
+ * The OperationKeys class is a set of operation identities, used to recognize an operation which has been seen before
+ * in constant time, without comparing it against the operations already held.  An operation carrying a Dot is
+ * identified by the replica and sequence number of the Dot, which no other operation shares.  Operation identifiers
+ * are only unique within the process which generated them, so an operation without a Dot is identified by its
+ * timestamp and identifier together with its type and the hash of its JSON operation, the same values
+ * AbstractOperation.compareTo orders it by, and two distinct operations which happen to share a timestamp and
+ * identifier are both kept.
+ */
+public class OperationKeys {
+
+	/** The identities of the operations carrying a Dot */
+	private LongTripleSet dotted;
+
+	/** The identities of the operations without a Dot */
+	private LongTripleSet undotted;
+
+	/**
+	 * Retrieve the identities of the operations carrying a Dot
+	 *
+	 * @return The identities of the operations carrying a Dot
+	 */
+	private LongTripleSet getDotted() {
+		if (null == this.dotted) {
+			this.dotted = new LongTripleSet();
+		}
+
+		return this.dotted;
+	}
+
+	/**
+	 * Retrieve the identities of the operations without a Dot
+	 *
+	 * @return The identities of the operations without a Dot
+	 */
+	private LongTripleSet getUndotted() {
+		if (null == this.undotted) {
+			this.undotted = new LongTripleSet();
+		}
+
+		return this.undotted;
+	}
+
+	/**
+	 * Combine the type of an operation and the hash of its JSON operation into a single value
+	 *
+	 * @param op The operation
+	 * @return The type and hash of the operation
+	 */
+	private static long typeAndHash(AbstractOperation op) {
+		return ((long) op.getType().ordinal() << 32) | (op.getPayload().hashCode() & 0xFFFFFFFFL);
+	}
+
+	/**
+	 * Insert the identity of an operation into the set
+	 *
+	 * @param op The operation whose identity is to be inserted
+	 * @return True exactly when the identity was not already in the set
+	 */
+	public boolean add(AbstractOperation op) {
+		Dot dot = op.getDot();
+
+		return null == dot
+				? this.getUndotted().add(op.getTimeStamp(), op.getOperationId(), typeAndHash(op))
+				: this.getDotted().add(dot.getReplica().getMostSignificantBits(), dot.getReplica().getLeastSignificantBits(), dot.getSequence());
+	}
+
+	/**
+	 * Determine whether the set holds the identity of an operation
+	 *
+	 * @param op The operation to look for
+	 * @return True exactly when the identity of the operation is in the set
+	 */
+	public boolean contains(AbstractOperation op) {
+		Dot dot = op.getDot();
+
+		return null == dot
+				? this.getUndotted().contains(op.getTimeStamp(), op.getOperationId(), typeAndHash(op))
+				: this.getDotted().contains(dot.getReplica().getMostSignificantBits(), dot.getReplica().getLeastSignificantBits(), dot.getSequence());
+	}
+
+	/**
+	 * Retrieve the number of identities in the set
+	 *
+	 * @return The number of identities in the set
+	 */
+	public int size() {
+		return (null == this.dotted ? 0 : this.dotted.size()) + (null == this.undotted ? 0 : this.undotted.size());
+	}
+
+	/**
+	 * Remove every identity from the set
+	 */
+	public void clear() {
+		this.dotted = null;
+		this.undotted = null;
+	}
+}
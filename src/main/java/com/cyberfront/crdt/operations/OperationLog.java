@@ -0,0 +1,480 @@
+/*
+ * Copyright (c) 2017 Cybernetic Frontiers LLC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package com.cyberfront.crdt.operations;
+
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * The OperationLog class is a sorted set of operations, ordered as AbstractOperation.compareTo orders them, built for
+ * logs whose operations almost always arrive in order.  The operations are held in a list of chunks, each a pair of
+ * parallel arrays holding up to CHUNK_CAPACITY operations and their timestamps.  An operation sorting after every other
+ * is appended to the last chunk in constant time.  One arriving out of order is found by binary search, first over the
+ * chunks and then within one, comparing the primitive timestamps and only falling back to compareTo when they tie, and
+ * is inserted by shifting the rest of its chunk, splitting the chunk first if it is full.  Iteration walks the arrays
+ * in order rather than chasing the pointers of a tree.
+ */
+public class OperationLog extends AbstractSet<AbstractOperation> {
+	
+	/** The largest number of operations held in a single chunk */
+	public static final int CHUNK_CAPACITY = 128;
+
+	/**
+	 * A Chunk holds a sorted run of operations, along with their timestamps in a parallel array
+	 */
+	private static class Chunk {
+		
+		/** The timestamps of the operations */
+		private final long[] stamps = new long[CHUNK_CAPACITY];
+		
+		/** The operations */
+		private final AbstractOperation[] ops = new AbstractOperation[CHUNK_CAPACITY];
+		
+		/** The number of operations in the chunk */
+		private int size = 0;
+		
+		/**
+		 * Compare an operation with the one at a position in the chunk
+		 *
+		 * @param stamp The timestamp of the operation
+		 * @param op The operation
+		 * @param index The position in the chunk
+		 * @return A negative value, zero or a positive value as the operation sorts before, with or after the one held
+		 */
+		private int compare(long stamp, AbstractOperation op, int index) {
+			return stamp != this.stamps[index] ? Long.compare(stamp, this.stamps[index]) : op.compareTo(this.ops[index]);
+		}
+		
+		/**
+		 * Search the chunk for an operation
+		 *
+		 * @param stamp The timestamp of the operation
+		 * @param op The operation
+		 * @return The position of the operation if it is held, or otherwise (-(insertion point) - 1)
+		 */
+		private int search(long stamp, AbstractOperation op) {
+			int lo = 0;
+			int hi = this.size - 1;
+			
+			while (lo <= hi) {
+				int mid = (lo + hi) >>> 1;
+				int cmp = this.compare(stamp, op, mid);
+				
+				if (cmp > 0) {
+					lo = mid + 1;
+				} else if (cmp < 0) {
+					hi = mid - 1;
+				} else {
+					return mid;
+				}
+			}
+			
+			return -(lo + 1);
+		}
+		
+		/**
+		 * Insert an operation at a position in the chunk, which must not be full
+		 *
+		 * @param index The position to insert at
+		 * @param stamp The timestamp of the operation
+		 * @param op The operation
+		 */
+		private void insert(int index, long stamp, AbstractOperation op) {
+			System.arraycopy(this.stamps, index, this.stamps, index + 1, this.size - index);
+			System.arraycopy(this.ops, index, this.ops, index + 1, this.size - index);
+			this.stamps[index] = stamp;
+			this.ops[index] = op;
+			++this.size;
+		}
+		
+		/**
+		 * Remove the operation at a position in the chunk
+		 *
+		 * @param index The position to remove
+		 */
+		private void remove(int index) {
+			System.arraycopy(this.stamps, index + 1, this.stamps, index, this.size - index - 1);
+			System.arraycopy(this.ops, index + 1, this.ops, index, this.size - index - 1);
+			this.ops[--this.size] = null;
+		}
+	}
+	
+	/** The chunks, in order, none of which is empty */
+	private final List<Chunk> chunks = new ArrayList<>();
+	
+	/** The number of operations held */
+	private int size = 0;
+
+	/**
+	 * Instantiates a new, empty log
+	 */
+	public OperationLog() {
+	}
+
+	/**
+	 * Instantiates a new log holding the given operations
+	 *
+	 * @param ops The operations to hold, which are appended in constant time each when they are already sorted
+	 */
+	public OperationLog(Collection<? extends AbstractOperation> ops) {
+		this.addAll(ops);
+	}
+
+	/**
+	 * Compute the difference of two logs in a single merged pass over both
+	 *
+	 * @param lhs The log to take operations from
+	 * @param rhs The log of operations to leave out
+	 * @return A new log holding the operations of lhs which are not in rhs
+	 */
+	public static OperationLog difference(OperationLog lhs, OperationLog rhs) {
+		OperationLog rv = new OperationLog();
+		Iterator<AbstractOperation> right = rhs.iterator();
+		AbstractOperation excluded = right.hasNext() ? right.next() : null;
+		
+		for (AbstractOperation op : lhs) {
+			while (null != excluded && excluded.compareTo(op) < 0) {
+				excluded = right.hasNext() ? right.next() : null;
+			}
+			
+			if (null == excluded || 0 != excluded.compareTo(op)) {
+				rv.append(op.getTimeStamp(), op);
+			}
+		}
+		
+		return rv;
+	}
+
+	/**
+	 * Find the first chunk whose last operation does not sort before the given one
+	 *
+	 * @param stamp The timestamp of the operation
+	 * @param op The operation
+	 * @return The index of the chunk, or the number of chunks if the operation sorts after every one held
+	 */
+	private int findChunk(long stamp, AbstractOperation op) {
+		int lo = 0;
+		int hi = this.chunks.size() - 1;
+		
+		while (lo <= hi) {
+			int mid = (lo + hi) >>> 1;
+			Chunk chunk = this.chunks.get(mid);
+			
+			if (chunk.compare(stamp, op, chunk.size - 1) > 0) {
+				lo = mid + 1;
+			} else {
+				hi = mid - 1;
+			}
+		}
+		
+		return lo;
+	}
+
+	/**
+	 * Append an operation known to sort after every one held
+	 *
+	 * @param stamp The timestamp of the operation
+	 * @param op The operation
+	 */
+	private void append(long stamp, AbstractOperation op) {
+		Chunk last = this.chunks.isEmpty() ? null : this.chunks.get(this.chunks.size() - 1);
+		
+		if (null == last || CHUNK_CAPACITY == last.size) {
+			last = new Chunk();
+			this.chunks.add(last);
+		}
+		
+		last.stamps[last.size] = stamp;
+		last.ops[last.size++] = op;
+		++this.size;
+	}
+
+	/**
+	 * Append an operation to the end of the log in constant time, provided it sorts after every operation held.  This
+	 * is how a log is built in bulk from operations already known to be in order, such as those of a snapshot.
+	 *
+	 * @param op The operation to append
+	 * @return True if the operation was appended, or false if it does not sort after every operation held
+	 */
+	public boolean append(AbstractOperation op) {
+		long stamp = op.getTimeStamp();
+		
+		if (this.size > 0) {
+			Chunk last = this.chunks.get(this.chunks.size() - 1);
+			
+			if (last.compare(stamp, op, last.size - 1) <= 0) {
+				return false;
+			}
+		}
+		
+		this.append(stamp, op);
+		return true;
+	}
+
+	/**
+	 * Remove the operation at a position, dropping its chunk if that leaves it empty
+	 *
+	 * @param chunkIndex The index of the chunk holding the operation
+	 * @param index The position of the operation in its chunk
+	 */
+	private void removeAt(int chunkIndex, int index) {
+		Chunk chunk = this.chunks.get(chunkIndex);
+		chunk.remove(index);
+		--this.size;
+		
+		if (0 == chunk.size) {
+			this.chunks.remove(chunkIndex);
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see java.util.AbstractCollection#add(java.lang.Object)
+	 */
+	@Override
+	public boolean add(AbstractOperation op) {
+		long stamp = op.getTimeStamp();
+		int chunkIndex = this.findChunk(stamp, op);
+		
+		if (this.chunks.size() == chunkIndex) {
+			this.append(stamp, op);
+			return true;
+		}
+		
+		Chunk chunk = this.chunks.get(chunkIndex);
+		int index = chunk.search(stamp, op);
+		
+		if (index >= 0) {
+			return false;
+		}
+		
+		index = -index - 1;
+		
+		if (CHUNK_CAPACITY == chunk.size) {
+			Chunk upper = new Chunk();
+			int half = CHUNK_CAPACITY / 2;
+			
+			System.arraycopy(chunk.stamps, half, upper.stamps, 0, CHUNK_CAPACITY - half);
+			System.arraycopy(chunk.ops, half, upper.ops, 0, CHUNK_CAPACITY - half);
+			upper.size = CHUNK_CAPACITY - half;
+			
+			for (int i = half; i < CHUNK_CAPACITY; ++i) {
+				chunk.ops[i] = null;
+			}
+			
+			chunk.size = half;
+			this.chunks.add(chunkIndex + 1, upper);
+			
+			if (index > half) {
+				chunk = upper;
+				index -= half;
+			}
+		}
+		
+		chunk.insert(index, stamp, op);
+		++this.size;
+		return true;
+	}
+
+	/* (non-Javadoc)
+	 * @see java.util.AbstractCollection#contains(java.lang.Object)
+	 */
+	@Override
+	public boolean contains(Object obj) {
+		if (!(obj instanceof AbstractOperation)) {
+			return false;
+		}
+		
+		AbstractOperation op = (AbstractOperation) obj;
+		long stamp = op.getTimeStamp();
+		int chunkIndex = this.findChunk(stamp, op);
+		
+		return chunkIndex < this.chunks.size() && this.chunks.get(chunkIndex).search(stamp, op) >= 0;
+	}
+
+	/* (non-Javadoc)
+	 * @see java.util.AbstractCollection#remove(java.lang.Object)
+	 */
+	@Override
+	public boolean remove(Object obj) {
+		if (!(obj instanceof AbstractOperation)) {
+			return false;
+		}
+		
+		AbstractOperation op = (AbstractOperation) obj;
+		long stamp = op.getTimeStamp();
+		int chunkIndex = this.findChunk(stamp, op);
+		int index = chunkIndex < this.chunks.size() ? this.chunks.get(chunkIndex).search(stamp, op) : -1;
+		
+		if (index < 0) {
+			return false;
+		}
+		
+		this.removeAt(chunkIndex, index);
+		return true;
+	}
+
+	/* (non-Javadoc)
+	 * @see java.util.AbstractCollection#clear()
+	 */
+	@Override
+	public void clear() {
+		this.chunks.clear();
+		this.size = 0;
+	}
+
+	/* (non-Javadoc)
+	 * @see java.util.AbstractCollection#size()
+	 */
+	@Override
+	public int size() {
+		return this.size;
+	}
+
+	/**
+	 * Retrieve the operation sorting first
+	 *
+	 * @return The first operation
+	 * @throws NoSuchElementException If the log is empty
+	 */
+	public AbstractOperation first() {
+		if (this.chunks.isEmpty()) {
+			throw new NoSuchElementException();
+		}
+		
+		return this.chunks.get(0).ops[0];
+	}
+
+	/**
+	 * Retrieve the operation sorting last
+	 *
+	 * @return The last operation
+	 * @throws NoSuchElementException If the log is empty
+	 */
+	public AbstractOperation last() {
+		if (this.chunks.isEmpty()) {
+			throw new NoSuchElementException();
+		}
+		
+		Chunk chunk = this.chunks.get(this.chunks.size() - 1);
+		return chunk.ops[chunk.size - 1];
+	}
+
+	/**
+	 * Retrieve the operations sorting after the given one, which need not be held
+	 *
+	 * @param op The operation to start after
+	 * @return A new list of the operations sorting after the given one, in order
+	 */
+	public List<AbstractOperation> after(AbstractOperation op) {
+		List<AbstractOperation> rv = new ArrayList<>();
+		long stamp = op.getTimeStamp();
+		int chunkIndex = this.findChunk(stamp, op);
+		
+		if (chunkIndex < this.chunks.size()) {
+			Chunk chunk = this.chunks.get(chunkIndex);
+			int index = chunk.search(stamp, op);
+			
+			for (int i = index >= 0 ? index + 1 : -index - 1; i < chunk.size; ++i) {
+				rv.add(chunk.ops[i]);
+			}
+			
+			for (int c = chunkIndex + 1; c < this.chunks.size(); ++c) {
+				chunk = this.chunks.get(c);
+				for (int i = 0; i < chunk.size; ++i) {
+					rv.add(chunk.ops[i]);
+				}
+			}
+		}
+		
+		return rv;
+	}
+
+	/* (non-Javadoc)
+	 * @see java.util.AbstractCollection#iterator()
+	 */
+	@Override
+	public Iterator<AbstractOperation> iterator() {
+		return new Iterator<AbstractOperation>() {
+			
+			/** The index of the chunk holding the next operation */
+			private int chunkIndex = 0;
+			
+			/** The position of the next operation in its chunk */
+			private int index = 0;
+			
+			/** Flag indicating whether the last operation returned may be removed */
+			private boolean removable = false;
+
+			@Override
+			public boolean hasNext() {
+				return this.chunkIndex < chunks.size();
+			}
+
+			@Override
+			public AbstractOperation next() {
+				if (!this.hasNext()) {
+					throw new NoSuchElementException();
+				}
+				
+				Chunk chunk = chunks.get(this.chunkIndex);
+				AbstractOperation rv = chunk.ops[this.index++];
+				
+				if (this.index == chunk.size) {
+					++this.chunkIndex;
+					this.index = 0;
+				}
+				
+				this.removable = true;
+				return rv;
+			}
+
+			@Override
+			public void remove() {
+				if (!this.removable) {
+					throw new IllegalStateException();
+				}
+				
+				if (0 == this.index) {
+					--this.chunkIndex;
+					this.index = chunks.get(this.chunkIndex).size;
+				}
+				
+				--this.index;
+				Chunk chunk = chunks.get(this.chunkIndex);
+				boolean emptied = 1 == chunk.size;
+				removeAt(this.chunkIndex, this.index);
+				
+				if (!emptied && this.index == chunk.size) {
+					++this.chunkIndex;
+					this.index = 0;
+				}
+				
+				this.removable = false;
+			}
+		};
+	}
+}
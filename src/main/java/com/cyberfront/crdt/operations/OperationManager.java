@@ -22,11 +22,17 @@
  */
 package com.cyberfront.crdt.operations;
 
+import java.io.IOException;
+
+import com.cyberfront.crdt.support.JsonStreamable;
+import com.cyberfront.crdt.support.Support;
+import com.fasterxml.jackson.core.JsonGenerator;
+
 /**
  * This is the base class for wrapping AbstractOperations.  It provides the basic functionality for associating various
  * elements of metadata associated with the operation bound to the derived manager class.  
  */
-public class OperationManager implements Comparable<OperationManager> {
+public class OperationManager implements Comparable<OperationManager>, JsonStreamable {
 	
 	/**
 	 * The Enum StatusType.
@@ -146,25 +152,33 @@ public class OperationManager implements Comparable<OperationManager> {
 	}
 	
 	/**
-	 * Get the string segment for rendering the OperationManager portions of this class instance 
+	 * Stream the fields of this instance to the given generator
 	 *
-	 * @return The string segment containing a rendering of the OperationManager portions of this class instance 
+	 * @param gen The generator to write to
+	 * @throws IOException If the generator fails to write
 	 */
-	protected String getSegment() {
-		StringBuilder sb = new StringBuilder();
-		
-		sb.append("\"operation\":" + this.getOperation().toString() + ",");
-		sb.append("\"status\":\"" + this.getStatus() + "\",");
-		sb.append("\"created\":" + this.isCreated() + ",");
-		sb.append("\"deleted\":" + this.isDeleted());
-		
-		return sb.toString();
+	protected void writeSegment(JsonGenerator gen) throws IOException {
+		gen.writeFieldName("operation");
+		Support.writeJson(gen, this.getOperation());
+		gen.writeStringField("status", String.valueOf(this.getStatus()));
+		gen.writeBooleanField("created", this.isCreated());
+		gen.writeBooleanField("deleted", this.isDeleted());
+	}
+
+	/* (non-Javadoc)
+	 * @see com.cyberfront.crdt.support.JsonStreamable#writeJson(com.fasterxml.jackson.core.JsonGenerator)
+	 */
+	@Override
+	public void writeJson(JsonGenerator gen) throws IOException {
+		gen.writeStartObject();
+		this.writeSegment(gen);
+		gen.writeEndObject();
 	}
 	
 	/* (non-Javadoc)
 	 * @see java.lang.Object#toString()
 	 */
 	public String toString() {
-		return "{" + this.getSegment() + "}";
+		return Support.toJson(this);
 	}
 }
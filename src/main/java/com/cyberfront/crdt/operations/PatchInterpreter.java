@@ -0,0 +1,589 @@
+/*
+ * Copyright (c) 2017 Cybernetic Frontiers LLC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package com.cyberfront.crdt.operations;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+
+import com.cyberfront.crdt.support.Pointer;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.MissingNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.github.fge.jackson.JsonNumEquals;
+import com.github.fge.jsonpatch.JsonPatchException;
+
+/**
+ * The PatchInterpreter class applies JSON Patch (RFC 6902) documents directly to a mutable JsonNode document, rather
+ * than to a copy of it as the com.github.fge.jsonpatch implementation does.  The semantics otherwise follow that
+ * implementation, so either may be used to materialize the same operations.  Values taken from a patch are copied into
+ * the document, so the document never shares nodes with the operations which built it.
+ * 
+ * Each patch operation is checked before it changes the document, so a failing patch operation changes nothing.  A
+ * patch holding several patch operations may still fail part way through, after its earlier patch operations have been
+ * applied.  The CHECKED mode guards against this by journaling the inverse of each change, and undoing them if any
+ * patch operation fails, so that a failing patch leaves the document as it found it.
+ * 
+ * The VALIDATE mode goes one step further, undoing every change whether or not the patch succeeds.  This checks a patch
+ * against a document at a cost proportional to the patch, rather than to the document.
+ */
+public class PatchInterpreter {
+
+	/**
+	 * The Mode enumeration lists the ways a patch may be applied
+	 */
+	public enum Mode {
+		
+		/** Apply the patch operations in place, leaving those which preceded a failing patch operation applied */
+		IN_PLACE,
+		
+		/** Apply the patch operations in place, undoing all of them if any patch operation fails */
+		CHECKED,
+		
+		/** Apply the patch operations in place, then undo all of them whether or not the patch succeeds */
+		VALIDATE
+	}
+
+	/** The document being patched, which is replaced when a patch operation targets the root of the document */
+	private JsonNode document;
+	
+	/** The inverse of each change made to the document, most recent first, or null if changes are not journaled */
+	private final Deque<Runnable> journal;
+	
+	/** Whether values taken from the patch are copied before being added to the document */
+	private final boolean copyValues;
+
+	/**
+	 * Instantiates a new interpreter for a single patch
+	 *
+	 * @param document The document to patch
+	 * @param mode The way the patch is to be applied
+	 */
+	private PatchInterpreter(JsonNode document, Mode mode) {
+		this.document = document;
+		this.journal = Mode.IN_PLACE == mode ? null : new ArrayDeque<>();
+		this.copyValues = Mode.VALIDATE != mode;
+	}
+
+	/**
+	 * Apply a JSON Patch to a document in place
+	 *
+	 * @param patch The JSON Patch, an array of patch operations
+	 * @param document The document to patch, which is changed by the patch
+	 * @param mode The way the patch is to be applied
+	 * @return The patched document, which is the given document unless the patch replaced the root of the document
+	 * @throws JsonPatchException If the patch is malformed or one of its operations cannot be applied to the document
+	 */
+	public static JsonNode apply(JsonNode patch, JsonNode document, Mode mode) throws JsonPatchException {
+		if (!patch.isArray()) {
+			throw new JsonPatchException("JSON Patch is not an array");
+		}
+
+		PatchInterpreter interpreter = new PatchInterpreter(document, mode);
+
+		try {
+			for (JsonNode operation : patch) {
+				interpreter.applyOperation(operation);
+			}
+		} catch (JsonPatchException e) {
+			interpreter.rollback();
+			throw e;
+		}
+
+		if (Mode.VALIDATE == mode) {
+			interpreter.rollback();
+		}
+
+		return interpreter.document;
+	}
+
+	/**
+	 * Determine whether a JSON Patch applies cleanly to a document, leaving the document unchanged.  Values are not
+	 * copied from the patch, since every change is undone before this returns.
+	 *
+	 * @param patch The JSON Patch, an array of patch operations
+	 * @param document The document to check the patch against
+	 * @return True exactly when every operation of the patch, test operations included, applies to the document
+	 */
+	public static boolean validate(JsonNode patch, JsonNode document) {
+		try {
+			apply(patch, document, Mode.VALIDATE);
+			return true;
+		} catch (JsonPatchException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Determine whether two JSON Patches may interfere with one another, so that the outcome of either could depend on
+	 * whether the other was applied first.  This is conservative: patches touching locations where one is within the
+	 * other, or sibling elements of what may be the same array, are taken to interfere, as are malformed patches.
+	 *
+	 * @param patch The first JSON Patch
+	 * @param other The second JSON Patch
+	 * @return False only when the patches touch disjoint parts of any document
+	 */
+	public static boolean interferes(JsonNode patch, JsonNode other) {
+		try {
+			List<String[]> paths = getPaths(patch);
+			
+			for (String[] path : getPaths(other)) {
+				for (String[] candidate : paths) {
+					if (Pointer.overlaps(path, candidate)) {
+						return true;
+					}
+				}
+			}
+		} catch (JsonPatchException e) {
+			return true;
+		}
+		
+		return false;
+	}
+
+	/**
+	 * Find the scope of a JSON Patch: the deepest location holding every location the patch reads or changes, without
+	 * being changed, added, removed or replaced itself.  Patches whose scopes are disjoint touch disjoint subtrees of any
+	 * document, and so may be applied to the same document concurrently.
+	 *
+	 * @param patch The JSON Patch
+	 * @return The reference tokens of the scope, which are empty when the patch changes the root or a child of the root,
+	 * or null if the patch is empty or malformed
+	 */
+	public static String[] scope(JsonNode patch) {
+		try {
+			List<String[]> paths = getPaths(patch);
+			
+			if (paths.isEmpty()) {
+				return null;
+			}
+			
+			String[] first = paths.get(0);
+			int length = first.length - 1;
+			
+			for (String[] path : paths) {
+				length = Math.min(length, path.length - 1);
+				
+				for (int i = 0; i < length; ++i) {
+					if (!first[i].equals(path[i])) {
+						length = i;
+						break;
+					}
+				}
+			}
+			
+			return Arrays.copyOf(first, Math.max(0, length));
+		} catch (JsonPatchException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Retrieve the reference tokens of every location a JSON Patch reads or changes
+	 *
+	 * @param patch The JSON Patch
+	 * @return The reference tokens of each path and from field of the patch
+	 * @throws JsonPatchException If the patch is malformed
+	 */
+	private static List<String[]> getPaths(JsonNode patch) throws JsonPatchException {
+		if (null == patch || !patch.isArray()) {
+			throw new JsonPatchException("JSON Patch is not an array");
+		}
+		
+		List<String[]> rv = new ArrayList<>();
+		
+		for (JsonNode operation : patch) {
+			rv.add(getPointer(operation, "path"));
+			if (operation.has("from")) {
+				rv.add(getPointer(operation, "from"));
+			}
+		}
+		
+		return rv;
+	}
+
+	/**
+	 * Undo every journaled change, returning the document to its state before the patch was applied
+	 */
+	private void rollback() {
+		if (null != this.journal) {
+			while (!this.journal.isEmpty()) {
+				this.journal.pop().run();
+			}
+		}
+	}
+
+	/**
+	 * Record the inverse of a change about to be made to the document
+	 *
+	 * @param undo The inverse of the change
+	 */
+	private void record(Runnable undo) {
+		if (null != this.journal) {
+			this.journal.push(undo);
+		}
+	}
+
+	/**
+	 * Replace the root of the document, journaling the previous root
+	 *
+	 * @param root The new root of the document
+	 */
+	private void replaceRoot(JsonNode root) {
+		JsonNode previous = this.document;
+		this.record(() -> this.document = previous);
+		this.document = root;
+	}
+
+	/**
+	 * Apply a single patch operation to the document
+	 *
+	 * @param operation The patch operation
+	 * @throws JsonPatchException If the operation is malformed or cannot be applied to the document
+	 */
+	private void applyOperation(JsonNode operation) throws JsonPatchException {
+		String op = getText(operation, "op");
+		String[] path = getPointer(operation, "path");
+
+		switch (op) {
+		case "add":
+			this.add(path, this.getValue(operation));
+			break;
+		case "remove":
+			this.remove(path);
+			break;
+		case "replace":
+			this.replace(path, this.getValue(operation));
+			break;
+		case "move":
+			this.move(getPointer(operation, "from"), path);
+			break;
+		case "copy":
+			this.copy(getPointer(operation, "from"), path);
+			break;
+		case "test":
+			this.test(path, getPatchValue(operation));
+			break;
+		default:
+			throw new JsonPatchException("Unknown JSON Patch operation \"" + op + "\"");
+		}
+	}
+
+	/**
+	 * Retrieve a text field of a patch operation
+	 *
+	 * @param operation The patch operation
+	 * @param name The name of the field
+	 * @return The text of the field
+	 * @throws JsonPatchException If the field is missing or is not text
+	 */
+	private static String getText(JsonNode operation, String name) throws JsonPatchException {
+		JsonNode field = operation.get(name);
+
+		if (null == field || !field.isTextual()) {
+			throw new JsonPatchException("JSON Patch operation is missing the \"" + name + "\" field: " + operation);
+		}
+
+		return field.textValue();
+	}
+
+	/**
+	 * Retrieve a JSON Pointer field of a patch operation, split into its interned reference tokens
+	 *
+	 * @param operation The patch operation
+	 * @param name The name of the field
+	 * @return The reference tokens of the pointer
+	 * @throws JsonPatchException If the field is missing or is not a valid JSON Pointer
+	 */
+	private static String[] getPointer(JsonNode operation, String name) throws JsonPatchException {
+		try {
+			return Pointer.tokens(getText(operation, name));
+		} catch (IllegalArgumentException e) {
+			throw new JsonPatchException(e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Retrieve the value field of a patch operation to add to the document, copied unless the changes are to be undone
+	 *
+	 * @param operation The patch operation
+	 * @return The value to add to the document
+	 * @throws JsonPatchException If the field is missing
+	 */
+	private JsonNode getValue(JsonNode operation) throws JsonPatchException {
+		JsonNode rv = getPatchValue(operation);
+		return this.copyValues ? rv.deepCopy() : rv;
+	}
+
+	/**
+	 * Retrieve the value field of a patch operation
+	 *
+	 * @param operation The patch operation
+	 * @return The value of the operation
+	 * @throws JsonPatchException If the field is missing
+	 */
+	private static JsonNode getPatchValue(JsonNode operation) throws JsonPatchException {
+		JsonNode value = operation.get("value");
+
+		if (null == value) {
+			throw new JsonPatchException("JSON Patch operation is missing the \"value\" field: " + operation);
+		}
+
+		return value;
+	}
+
+	/**
+	 * Retrieve the child of a node referenced by a JSON Pointer token
+	 *
+	 * @param node The node holding the child
+	 * @param token The reference token of the child
+	 * @return The child node, or null if there is no such child
+	 */
+	private static JsonNode child(JsonNode node, String token) {
+		if (node.isObject()) {
+			return node.get(token);
+		} else if (node.isArray()) {
+			int index = Pointer.toIndex(token);
+			return index < 0 ? null : node.get(index);
+		}
+
+		return null;
+	}
+
+	/**
+	 * Resolve the first count reference tokens of a JSON Pointer against the document
+	 *
+	 * @param tokens The reference tokens of the pointer
+	 * @param count The number of tokens to follow
+	 * @return The node the tokens refer to, or null if there is no such node
+	 */
+	private JsonNode resolve(String[] tokens, int count) {
+		JsonNode rv = this.document;
+
+		for (int i = 0; null != rv && i < count; ++i) {
+			rv = child(rv, tokens[i]);
+		}
+
+		return rv;
+	}
+
+	/**
+	 * Resolve the parent of the node a JSON Pointer refers to, which must be a container
+	 *
+	 * @param path The reference tokens of the pointer, of which there is at least one
+	 * @return The parent container
+	 * @throws JsonPatchException If the parent does not exist or is not a container
+	 */
+	private JsonNode parent(String[] path) throws JsonPatchException {
+		JsonNode rv = this.resolve(path, path.length - 1);
+
+		if (null == rv) {
+			throw new JsonPatchException("No such parent in target JSON document");
+		} else if (!rv.isContainerNode()) {
+			throw new JsonPatchException("Parent of node to add is not a container");
+		}
+
+		return rv;
+	}
+
+	/**
+	 * Add a value to the document, following the semantics of the JSON Patch add operation
+	 *
+	 * @param path The reference tokens of the location to add the value at
+	 * @param value The value to add, which becomes part of the document
+	 * @throws JsonPatchException If the value cannot be added at the location
+	 */
+	private void add(String[] path, JsonNode value) throws JsonPatchException {
+		if (0 == path.length) {
+			this.replaceRoot(value);
+			return;
+		}
+
+		JsonNode parent = this.parent(path);
+		String token = path[path.length - 1];
+
+		if (parent.isObject()) {
+			ObjectNode object = (ObjectNode) parent;
+			JsonNode previous = object.replace(token, value);
+			this.record(() -> {
+				if (null == previous) {
+					object.remove(token);
+				} else {
+					object.set(token, previous);
+				}
+			});
+			return;
+		}
+
+		ArrayNode array = (ArrayNode) parent;
+		int index = "-".equals(token) ? array.size() : Pointer.toIndex(token);
+
+		if (index < 0 || index > array.size()) {
+			throw new JsonPatchException("No such index \"" + token + "\" in target array");
+		}
+
+		array.insert(index, value);
+		this.record(() -> array.remove(index));
+	}
+
+	/**
+	 * Remove a value from the document, following the semantics of the JSON Patch remove operation
+	 *
+	 * @param path The reference tokens of the value to remove
+	 * @return The value removed
+	 * @throws JsonPatchException If there is no value at the location
+	 */
+	private JsonNode remove(String[] path) throws JsonPatchException {
+		if (0 == path.length) {
+			JsonNode previous = this.document;
+			this.replaceRoot(MissingNode.getInstance());
+			return previous;
+		} else if (null == this.resolve(path, path.length)) {
+			throw new JsonPatchException("No such path in target JSON document");
+		}
+
+		JsonNode parent = this.parent(path);
+		String token = path[path.length - 1];
+
+		if (parent.isObject()) {
+			ObjectNode object = (ObjectNode) parent;
+			JsonNode previous = object.remove(token);
+			this.record(() -> object.set(token, previous));
+			return previous;
+		}
+
+		ArrayNode array = (ArrayNode) parent;
+		int index = Pointer.toIndex(token);
+		JsonNode previous = array.remove(index);
+		this.record(() -> array.insert(index, previous));
+		return previous;
+	}
+
+	/**
+	 * Replace a value in the document, following the semantics of the JSON Patch replace operation
+	 *
+	 * @param path The reference tokens of the value to replace
+	 * @param value The replacement value, which becomes part of the document
+	 * @throws JsonPatchException If there is no value at the location
+	 */
+	private void replace(String[] path, JsonNode value) throws JsonPatchException {
+		if (null == this.resolve(path, path.length)) {
+			throw new JsonPatchException("No such path in target JSON document");
+		} else if (0 == path.length) {
+			this.replaceRoot(value);
+			return;
+		}
+
+		JsonNode parent = this.parent(path);
+		String token = path[path.length - 1];
+
+		if (parent.isObject()) {
+			ObjectNode object = (ObjectNode) parent;
+			JsonNode previous = object.replace(token, value);
+			this.record(() -> object.set(token, previous));
+		} else {
+			ArrayNode array = (ArrayNode) parent;
+			int index = Pointer.toIndex(token);
+			JsonNode previous = array.set(index, value);
+			this.record(() -> array.set(index, previous));
+		}
+	}
+
+	/**
+	 * Move a value within the document, following the semantics of the JSON Patch move operation
+	 *
+	 * @param from The reference tokens of the value to move
+	 * @param path The reference tokens of the location to move the value to
+	 * @throws JsonPatchException If there is no value to move, or it cannot be added at the new location
+	 */
+	private void move(String[] from, String[] path) throws JsonPatchException {
+		if (Arrays.equals(from, path)) {
+			return;
+		} else if (null == this.resolve(from, from.length)) {
+			throw new JsonPatchException("No such path in target JSON document");
+		}
+
+		JsonNode value = this.remove(from);
+
+		try {
+			this.add(path, value);
+		} catch (JsonPatchException e) {
+			if (null == this.journal) {
+				this.undoRemove(from, value);
+			}
+			throw e;
+		}
+	}
+
+	/**
+	 * Put back a value removed by a move whose add failed, so that a failing move changes nothing even when changes are
+	 * not journaled
+	 *
+	 * @param from The reference tokens of the value removed
+	 * @param value The value removed
+	 * @throws JsonPatchException If the value cannot be put back, which cannot happen for a value just removed
+	 */
+	private void undoRemove(String[] from, JsonNode value) throws JsonPatchException {
+		if (0 == from.length) {
+			this.document = value;
+		} else {
+			this.add(from, value);
+		}
+	}
+
+	/**
+	 * Copy a value within the document, following the semantics of the JSON Patch copy operation
+	 *
+	 * @param from The reference tokens of the value to copy
+	 * @param path The reference tokens of the location to copy the value to
+	 * @throws JsonPatchException If there is no value to copy, or it cannot be added at the new location
+	 */
+	private void copy(String[] from, String[] path) throws JsonPatchException {
+		JsonNode value = this.resolve(from, from.length);
+
+		if (null == value) {
+			throw new JsonPatchException("No such path in target JSON document");
+		}
+
+		this.add(path, value.deepCopy());
+	}
+
+	/**
+	 * Test a value in the document, following the semantics of the JSON Patch test operation.  Numbers are compared by
+	 * value, regardless of their representation.
+	 *
+	 * @param path The reference tokens of the value to test
+	 * @param expected The value expected at the location
+	 * @throws JsonPatchException If the value at the location differs from the expected value
+	 */
+	private void test(String[] path, JsonNode expected) throws JsonPatchException {
+		JsonNode actual = this.resolve(path, path.length);
+
+		if (null == actual || !JsonNumEquals.getInstance().equivalent(actual, expected)) {
+			throw new JsonPatchException("Value differs from expectations");
+		}
+	}
+}
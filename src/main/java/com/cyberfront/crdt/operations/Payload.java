@@ -0,0 +1,386 @@
+/*
+ * Copyright (c) 2017 Cybernetic Frontiers LLC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package com.cyberfront.crdt.operations;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+
+import com.cyberfront.crdt.support.MemoryEstimate;
+import com.cyberfront.crdt.support.SlabArena;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * The Payload class holds the JSON operation of an AbstractOperation.  A payload either keeps the JsonNode on the heap,
+ * or keeps it serialized in a process wide off heap SlabArena and decodes it each time it is retrieved, which leaves
+ * only a buffer referring to the serialized bytes on the heap.  The off heap bytes live as long as that buffer does, so
+ * they are freed with the slab holding them once the operations stored there, whether removed, compacted or belonging
+ * to discarded CRDTs, are no longer reachable.  The hash of the JSON operation is computed once, when the payload is built, so hashing
+ * and ordering operations never needs to decode the payload.
+ */
+public abstract class Payload {
+
+	/** The ObjectMapper used to serialize and decode off heap payloads */
+	private static final ObjectMapper mapper = new ObjectMapper();
+
+	/** The arena holding the off heap payloads */
+	private static final SlabArena arena = new SlabArena();
+
+	/** The estimated heap bytes of the direct ByteBuffer an off heap payload refers to its bytes through */
+	private static final long BUFFER_BYTES = MemoryEstimate.align(MemoryEstimate.HEADER_BYTES + 48L);
+
+	/** The hash of the JSON operation */
+	private final int hash;
+
+	/**
+	 * The HeapPayload class keeps the JSON operation on the heap
+	 */
+	private static final class HeapPayload extends Payload {
+		/** The JSON operation */
+		private final JsonNode op;
+
+		/**
+		 * Instantiates a new heap payload
+		 *
+		 * @param op The JSON operation
+		 */
+		public HeapPayload(JsonNode op) {
+			this(op, null == op ? 0 : op.hashCode());
+		}
+
+		/**
+		 * Instantiates a new heap payload with the given hash
+		 *
+		 * @param op The JSON operation
+		 * @param hash The hash of the JSON operation
+		 */
+		public HeapPayload(JsonNode op, int hash) {
+			super(hash);
+			this.op = op;
+		}
+
+		/* (non-Javadoc)
+		 * @see com.cyberfront.crdt.operations.Payload#get()
+		 */
+		@Override
+		public JsonNode get() {
+			return this.op;
+		}
+
+		/* (non-Javadoc)
+		 * @see com.cyberfront.crdt.operations.Payload#getHeapBytes()
+		 */
+		@Override
+		public long getHeapBytes() {
+			return MemoryEstimate.sizeOf(this.op);
+		}
+
+		/* (non-Javadoc)
+		 * @see com.cyberfront.crdt.operations.Payload#isOffHeap()
+		 */
+		@Override
+		public boolean isOffHeap() {
+			return false;
+		}
+	}
+
+	/**
+	 * The OffHeapPayload class keeps the JSON operation serialized in the off heap arena
+	 */
+	private static final class OffHeapPayload extends Payload {
+		/** The serialized JSON operation in the arena */
+		private final ByteBuffer data;
+
+		/**
+		 * Instantiates a new off heap payload
+		 *
+		 * @param op The JSON operation, which is serialized into the arena and not retained
+		 * @throws IOException If the operation cannot be serialized
+		 */
+		public OffHeapPayload(JsonNode op) throws IOException {
+			super(op.hashCode());
+			this.data = arena.store(mapper.writeValueAsBytes(op));
+		}
+
+		/* (non-Javadoc)
+		 * @see com.cyberfront.crdt.operations.Payload#get()
+		 */
+		@Override
+		public JsonNode get() {
+			try (InputStream in = SlabArena.open(this.data)) {
+				return mapper.readTree(in);
+			} catch (IOException e) {
+				throw new UncheckedIOException("Off heap payload could not be decoded", e);
+			}
+		}
+
+		/* (non-Javadoc)
+		 * @see com.cyberfront.crdt.operations.Payload#toBytes()
+		 */
+		@Override
+		byte[] toBytes() throws IOException {
+			byte[] rv = new byte[this.data.capacity()];
+
+			try (DataInputStream in = new DataInputStream(SlabArena.open(this.data))) {
+				in.readFully(rv);
+			}
+
+			return rv;
+		}
+
+		/* (non-Javadoc)
+		 * @see com.cyberfront.crdt.operations.Payload#getHeapBytes()
+		 */
+		@Override
+		public long getHeapBytes() {
+			return MemoryEstimate.align(MemoryEstimate.HEADER_BYTES + 4L + MemoryEstimate.REFERENCE_BYTES) + BUFFER_BYTES;
+		}
+
+		/* (non-Javadoc)
+		 * @see com.cyberfront.crdt.operations.Payload#isOffHeap()
+		 */
+		@Override
+		public boolean isOffHeap() {
+			return true;
+		}
+
+		/* (non-Javadoc)
+		 * @see com.cyberfront.crdt.operations.Payload#equals(java.lang.Object)
+		 */
+		@Override
+		public boolean equals(Object obj) {
+			return (obj instanceof OffHeapPayload && this.data == ((OffHeapPayload) obj).data) || super.equals(obj);
+		}
+	}
+
+	/**
+	 * The EncodedPayload class keeps the JSON operation as the serialized bytes it was received in, and parses them the
+	 * first time the operation is retrieved.  The bytes are dropped once parsed.
+	 */
+	private static final class EncodedPayload extends Payload {
+		/** The serialized JSON operation, or null once it has been parsed */
+		private byte[] data;
+
+		/** The parsed JSON operation, or null until it is first retrieved */
+		private JsonNode op;
+
+		/**
+		 * Instantiates a new encoded payload
+		 *
+		 * @param data The serialized JSON operation
+		 * @param hash The hash of the JSON operation, as computed by the sender
+		 */
+		public EncodedPayload(byte[] data, int hash) {
+			super(hash);
+			this.data = data;
+		}
+
+		/* (non-Javadoc)
+		 * @see com.cyberfront.crdt.operations.Payload#get()
+		 */
+		@Override
+		public synchronized JsonNode get() {
+			if (null == this.op) {
+				try {
+					this.op = mapper.readTree(this.data);
+					this.data = null;
+				} catch (IOException e) {
+					throw new UncheckedIOException("Encoded payload could not be parsed", e);
+				}
+			}
+
+			return this.op;
+		}
+
+		/* (non-Javadoc)
+		 * @see com.cyberfront.crdt.operations.Payload#getHeapBytes()
+		 */
+		@Override
+		public synchronized long getHeapBytes() {
+			return null == this.op
+					? MemoryEstimate.align(MemoryEstimate.HEADER_BYTES + 4L + this.data.length)
+					: MemoryEstimate.sizeOf(this.op);
+		}
+
+		/* (non-Javadoc)
+		 * @see com.cyberfront.crdt.operations.Payload#isOffHeap()
+		 */
+		@Override
+		public boolean isOffHeap() {
+			return false;
+		}
+
+		/* (non-Javadoc)
+		 * @see com.cyberfront.crdt.operations.Payload#toBytes()
+		 */
+		@Override
+		synchronized byte[] toBytes() throws IOException {
+			return null == this.data ? serialize(this.op) : this.data;
+		}
+
+		/* (non-Javadoc)
+		 * @see com.cyberfront.crdt.operations.Payload#isParsed()
+		 */
+		@Override
+		public synchronized boolean isParsed() {
+			return null != this.op;
+		}
+	}
+
+	/**
+	 * Instantiates a new payload
+	 *
+	 * @param hash The hash of the JSON operation
+	 */
+	private Payload(int hash) {
+		this.hash = hash;
+	}
+
+	/**
+	 * Build a payload holding the given JSON operation
+	 *
+	 * @param op The JSON operation, which may be null
+	 * @param offHeap Flag indicating whether to serialize the operation into the off heap arena
+	 * @return The payload holding the JSON operation
+	 */
+	public static Payload of(JsonNode op, boolean offHeap) {
+		if (!offHeap || null == op) {
+			return new HeapPayload(op);
+		}
+
+		try {
+			return new OffHeapPayload(op);
+		} catch (IOException e) {
+			throw new UncheckedIOException("Payload could not be serialized off heap", e);
+		}
+	}
+
+	/**
+	 * Build a payload holding a serialized JSON operation, which is parsed only when first retrieved
+	 *
+	 * @param data The serialized JSON operation
+	 * @param hash The hash of the JSON operation
+	 * @return The payload holding the serialized JSON operation
+	 */
+	public static Payload encoded(byte[] data, int hash) {
+		return new EncodedPayload(data, hash);
+	}
+
+	/**
+	 * Build a payload holding no JSON operation but the hash of one, for an operation kept only by its identity
+	 *
+	 * @param hash The hash of the JSON operation
+	 * @return The payload holding the hash alone
+	 */
+	public static Payload identity(int hash) {
+		return new HeapPayload(null, hash);
+	}
+
+	/**
+	 * Serialize a JSON operation
+	 *
+	 * @param op The JSON operation to serialize
+	 * @return The serialized JSON operation
+	 * @throws IOException If the operation cannot be serialized
+	 */
+	public static byte[] serialize(JsonNode op) throws IOException {
+		return mapper.writeValueAsBytes(op);
+	}
+
+	/**
+	 * Retrieve the serialized JSON operation, reusing the serialized form held by the payload where there is one, so
+	 * that relaying an operation does not parse it
+	 *
+	 * @return The serialized JSON operation, or null if there is no JSON operation
+	 * @throws IOException If the operation cannot be serialized
+	 */
+	byte[] toBytes() throws IOException {
+		JsonNode op = this.get();
+		return null == op ? null : serialize(op);
+	}
+
+	/**
+	 * Determine whether the JSON operation is available without parsing or decoding it
+	 *
+	 * @return True unless the JSON operation is still held only in serialized form
+	 */
+	public boolean isParsed() {
+		return !this.isOffHeap();
+	}
+
+	/**
+	 * Retrieve the arena holding the off heap payloads
+	 *
+	 * @return The arena holding the off heap payloads
+	 */
+	public static SlabArena getArena() {
+		return arena;
+	}
+
+	/**
+	 * Retrieve the JSON operation.  An off heap payload decodes a new JsonNode on each call.
+	 *
+	 * @return The JSON operation, which may be null
+	 */
+	public abstract JsonNode get();
+
+	/**
+	 * Retrieve the estimated bytes this payload retains on the heap
+	 *
+	 * @return The estimated bytes retained on the heap
+	 */
+	public abstract long getHeapBytes();
+
+	/**
+	 * Determine whether the JSON operation is held off heap
+	 *
+	 * @return True if and only if the JSON operation is held off heap
+	 */
+	public abstract boolean isOffHeap();
+
+	/* (non-Javadoc)
+	 * @see java.lang.Object#equals(java.lang.Object)
+	 */
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		} else if (!(obj instanceof Payload) || this.hash != ((Payload) obj).hash) {
+			return false;
+		}
+
+		JsonNode op = this.get();
+		return null == op ? null == ((Payload) obj).get() : op.equals(((Payload) obj).get());
+	}
+
+	/* (non-Javadoc)
+	 * @see java.lang.Object#hashCode()
+	 */
+	@Override
+	public int hashCode() {
+		return this.hash;
+	}
+}
@@ -25,6 +25,8 @@ package com.cyberfront.crdt.operations;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import com.cyberfront.crdt.causal.Dot;
+import com.cyberfront.crdt.persistent.PersistentNode;
 import com.fasterxml.jackson.databind.JsonNode;
 
 /**
@@ -57,6 +59,28 @@ public class ReadOperation extends AbstractOperation {
 		super(src);
 	}
 	
+	/**
+	 * Instantiates a copy of the given ReadOperation carrying the given Dot
+	 *
+	 * @param src The source ReadOperation to copy
+	 * @param dot The Dot of the copy
+	 */
+	public ReadOperation(ReadOperation src, Dot dot) {
+		super(src, dot);
+	}
+	
+	/**
+	 * Instantiates a ReadOperation from its decoded parts, as done by the OperationCodec
+	 *
+	 * @param payload The payload holding the operation
+	 * @param timeStamp The effective time stamp of the operation
+	 * @param operationId The identifier of the operation
+	 * @param dot The Dot of the operation, or null if it carries no causal metadata
+	 */
+	ReadOperation(Payload payload, Long timeStamp, Long operationId, Dot dot) {
+		super(payload, timeStamp, operationId, dot);
+	}
+	
 	/* (non-Javadoc)
 	 * @see com.cyberfront.cmrdt.operations.AbstractOperation#processOperation(com.fasterxml.jackson.databind.JsonNode)
 	 */
@@ -64,6 +88,22 @@ public class ReadOperation extends AbstractOperation {
 	public JsonNode processOperation(JsonNode document) {
 		return document;
 	}
+
+	/* (non-Javadoc)
+	 * @see com.cyberfront.crdt.operations.AbstractOperation#processOperation(com.cyberfront.crdt.persistent.PersistentNode)
+	 */
+	@Override
+	public PersistentNode processOperation(PersistentNode document) {
+		return document;
+	}
+
+	/* (non-Javadoc)
+	 * @see com.cyberfront.crdt.operations.AbstractOperation#processInPlace(com.fasterxml.jackson.databind.JsonNode)
+	 */
+	@Override
+	public JsonNode processInPlace(JsonNode document) {
+		return document;
+	}
 	
 	/* (non-Javadoc)
 	 * @see com.cyberfront.cmrdt.operations.AbstractOperation#equals(java.lang.Object)
@@ -89,6 +129,14 @@ public class ReadOperation extends AbstractOperation {
 		return new ReadOperation(this);
 	}
 
+	/* (non-Javadoc)
+	 * @see com.cyberfront.crdt.operations.AbstractOperation#copy(com.cyberfront.crdt.causal.Dot)
+	 */
+	@Override
+	public AbstractOperation copy(Dot dot) {
+		return new ReadOperation(this, dot);
+	}
+
 	/* (non-Javadoc)
 	 * @see com.cyberfront.cmrdt.operations.AbstractOperation#copy()
 	 */
@@ -26,6 +26,10 @@ package com.cyberfront.crdt.operations;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import com.cyberfront.crdt.causal.Dot;
+import com.cyberfront.crdt.operations.PatchInterpreter.Mode;
+import com.cyberfront.crdt.persistent.PersistentNode;
+import com.cyberfront.crdt.persistent.PersistentPatch;
 import com.fasterxml.jackson.databind.JsonNode;
 
 import java.io.IOException;                             // Use this with jsonpatch
@@ -65,6 +69,28 @@ public class UpdateOperation extends AbstractOperation {
 		super(src);
 	}
 	
+	/**
+	 * Instantiates a copy of the given UpdateOperation carrying the given Dot
+	 *
+	 * @param src The source UpdateOperation to copy
+	 * @param dot The Dot of the copy
+	 */
+	public UpdateOperation(UpdateOperation src, Dot dot) {
+		super(src, dot);
+	}
+	
+	/**
+	 * Instantiates a UpdateOperation from its decoded parts, as done by the OperationCodec
+	 *
+	 * @param payload The payload holding the operation
+	 * @param timeStamp The effective time stamp of the operation
+	 * @param operationId The identifier of the operation
+	 * @param dot The Dot of the operation, or null if it carries no causal metadata
+	 */
+	UpdateOperation(Payload payload, Long timeStamp, Long operationId, Dot dot) {
+		super(payload, timeStamp, operationId, dot);
+	}
+	
 	/* (non-Javadoc)
 	 * @see com.cyberfront.cmrdt.operations.AbstractOperation#processOperation(com.fasterxml.jackson.databind.JsonNode)
 	 */
@@ -77,6 +103,42 @@ public class UpdateOperation extends AbstractOperation {
 //				: JsonPatch.apply(this.getOp(), document);				// Use this with zjsonpatch
 	}
 
+	/* (non-Javadoc)
+	 * @see com.cyberfront.crdt.operations.AbstractOperation#processOperation(com.cyberfront.crdt.persistent.PersistentNode)
+	 */
+	@Override
+	public PersistentNode processOperation(PersistentNode document) throws JsonPatchException {
+		return null == document
+				? null
+				: PersistentPatch.apply(this.getOp(), document);
+	}
+
+	/* (non-Javadoc)
+	 * @see com.cyberfront.crdt.operations.AbstractOperation#processInPlace(com.fasterxml.jackson.databind.JsonNode)
+	 */
+	@Override
+	public JsonNode processInPlace(JsonNode document) throws JsonPatchException {
+		return null == document
+				? null
+				: PatchInterpreter.apply(this.getOp(), document, Mode.CHECKED);
+	}
+
+	/* (non-Javadoc)
+	 * @see com.cyberfront.crdt.operations.AbstractOperation#isApplicable(com.fasterxml.jackson.databind.JsonNode)
+	 */
+	@Override
+	public boolean isApplicable(JsonNode document) {
+		return null == document || PatchInterpreter.validate(this.getOp(), document);
+	}
+
+	/* (non-Javadoc)
+	 * @see com.cyberfront.crdt.operations.AbstractOperation#getScope()
+	 */
+	@Override
+	public String[] getScope() {
+		return PatchInterpreter.scope(this.getOp());
+	}
+
 	/* (non-Javadoc)
 	 * @see com.cyberfront.cmrdt.operations.AbstractOperation#equals(java.lang.Object)
 	 */
@@ -101,6 +163,14 @@ public class UpdateOperation extends AbstractOperation {
 		return new UpdateOperation(this);
 	}
 
+	/* (non-Javadoc)
+	 * @see com.cyberfront.crdt.operations.AbstractOperation#copy(com.cyberfront.crdt.causal.Dot)
+	 */
+	@Override
+	public AbstractOperation copy(Dot dot) {
+		return new UpdateOperation(this, dot);
+	}
+
 	/* (non-Javadoc)
 	 * @see com.cyberfront.cmrdt.operations.AbstractOperation#copy()
 	 */
@@ -0,0 +1,194 @@
+/*
+ * Copyright (c) 2017 Cybernetic Frontiers LLC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package com.cyberfront.crdt.persistent;
+
+import com.cyberfront.crdt.support.Pointer;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+
+/**
+ * The PersistentArray class holds a JSON array as a persistent vector of values.
+ */
+public final class PersistentArray extends PersistentNode {
+
+	/** The empty array */
+	private static final PersistentArray EMPTY = new PersistentArray(PersistentVector.empty());
+
+	/** The elements of the array */
+	private final PersistentVector<PersistentNode> elements;
+
+	/**
+	 * Instantiates a new persistent array
+	 *
+	 * @param elements The elements of the array
+	 */
+	private PersistentArray(PersistentVector<PersistentNode> elements) {
+		this.elements = elements;
+	}
+
+	/**
+	 * Retrieve the empty array
+	 *
+	 * @return The empty array
+	 */
+	public static PersistentArray empty() {
+		return EMPTY;
+	}
+
+	/**
+	 * Retrieve the elements of the array
+	 *
+	 * @return The elements of the array
+	 */
+	public PersistentVector<PersistentNode> getElements() {
+		return this.elements;
+	}
+
+	/**
+	 * Retrieve the element with the given index
+	 *
+	 * @param index The index of the element
+	 * @return The element with the given index
+	 */
+	public PersistentNode get(int index) {
+		return this.getElements().get(index);
+	}
+
+	/**
+	 * Produce an array with the element at the given index replaced
+	 *
+	 * @param index The index of the element to replace
+	 * @param value The replacement element
+	 * @return The new array
+	 */
+	public PersistentArray set(int index, PersistentNode value) {
+		return new PersistentArray(this.getElements().set(index, value));
+	}
+
+	/**
+	 * Produce an array with the given element appended
+	 *
+	 * @param value The element to append
+	 * @return The new array
+	 */
+	public PersistentArray append(PersistentNode value) {
+		return new PersistentArray(this.getElements().append(value));
+	}
+
+	/**
+	 * Produce an array with an element inserted at the given index
+	 *
+	 * @param index The index to insert the element at
+	 * @param value The element to insert
+	 * @return The new array
+	 */
+	public PersistentArray insert(int index, PersistentNode value) {
+		return new PersistentArray(this.getElements().insert(index, value));
+	}
+
+	/**
+	 * Produce an array with the element at the given index removed
+	 *
+	 * @param index The index of the element to remove
+	 * @return The new array
+	 */
+	public PersistentArray remove(int index) {
+		return new PersistentArray(this.getElements().remove(index));
+	}
+
+	/* (non-Javadoc)
+	 * @see com.cyberfront.crdt.persistent.PersistentNode#get(java.lang.String)
+	 */
+	@Override
+	public PersistentNode get(String token) {
+		int index = Pointer.toIndex(token);
+		return index < 0 || index >= this.size() ? null : this.get(index);
+	}
+
+	/* (non-Javadoc)
+	 * @see com.cyberfront.crdt.persistent.PersistentNode#with(java.lang.String, com.cyberfront.crdt.persistent.PersistentNode)
+	 */
+	@Override
+	public PersistentArray with(String token, PersistentNode value) {
+		return this.set(Pointer.toIndex(token), value);
+	}
+
+	/* (non-Javadoc)
+	 * @see com.cyberfront.crdt.persistent.PersistentNode#size()
+	 */
+	@Override
+	public int size() {
+		return this.getElements().size();
+	}
+
+	/* (non-Javadoc)
+	 * @see com.cyberfront.crdt.persistent.PersistentNode#toJsonNode()
+	 */
+	@Override
+	public JsonNode toJsonNode() {
+		ArrayNode rv = JsonNodeFactory.instance.arrayNode();
+
+		for (PersistentNode element : this.getElements()) {
+			rv.add(element.toJsonNode());
+		}
+
+		return rv;
+	}
+
+	/* (non-Javadoc)
+	 * @see java.lang.Object#equals(java.lang.Object)
+	 */
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		} else if (!(obj instanceof PersistentArray) || this.size() != ((PersistentArray) obj).size()) {
+			return false;
+		}
+
+		PersistentArray other = (PersistentArray) obj;
+
+		for (int i = 0; i < this.size(); ++i) {
+			if (!this.get(i).equals(other.get(i))) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	/* (non-Javadoc)
+	 * @see java.lang.Object#hashCode()
+	 */
+	@Override
+	public int hashCode() {
+		int hash = 1;
+
+		for (PersistentNode element : this.getElements()) {
+			hash = hash * 31 + element.hashCode();
+		}
+
+		return hash;
+	}
+}
@@ -0,0 +1,546 @@
+/*
+ * Copyright (c) 2017 Cybernetic Frontiers LLC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package com.cyberfront.crdt.persistent;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The PersistentHashMap class is an immutable hash array mapped trie.  Each level of the trie consumes five bits of
+ * the key hash, and keeps only the slots in use, indexed through a bitmap.  Adding or removing a key copies only the
+ * nodes on the path from the root to the key, so every earlier version of the map remains valid and shares all of its
+ * unchanged nodes with the new one.  Keys whose hashes collide completely are kept together in a collision node.
+ *
+ * @param <K> The type of the keys in the map
+ * @param <V> The type of the values in the map
+ */
+public final class PersistentHashMap<K, V> implements Iterable<Map.Entry<K, V>> {
+
+	/** The number of hash bits consumed at each level of the trie */
+	private static final int BITS = 5;
+
+	/** The mask selecting the hash bits consumed at a single level of the trie */
+	private static final int MASK = (1 << BITS) - 1;
+
+	/** The empty map, shared by all key and value types */
+	private static final PersistentHashMap<?, ?> EMPTY = new PersistentHashMap<>(null, 0);
+
+	/**
+	 * The Leaf class holds a single key and value pair along with the hash of the key
+	 *
+	 * @param <K> The type of the key
+	 * @param <V> The type of the value
+	 */
+	private static final class Leaf<K, V> extends AbstractMap.SimpleImmutableEntry<K, V> {
+		/** Serialization version */
+		private static final long serialVersionUID = 1L;
+
+		/** The hash of the key */
+		private final int hash;
+
+		/**
+		 * Instantiates a new leaf
+		 *
+		 * @param hash The hash of the key
+		 * @param key The key
+		 * @param value The value
+		 */
+		public Leaf(int hash, K key, V value) {
+			super(key, value);
+			this.hash = hash;
+		}
+	}
+
+	/**
+	 * The Node class is the base of the interior nodes of the trie
+	 *
+	 * @param <K> The type of the keys in the node
+	 * @param <V> The type of the values in the node
+	 */
+	private static abstract class Node<K, V> {
+		/**
+		 * Find the leaf holding the given key
+		 *
+		 * @param shift The number of hash bits consumed above this node
+		 * @param hash The hash of the key
+		 * @param key The key to find
+		 * @return The leaf holding the key, or null if the key is not present
+		 */
+		public abstract Leaf<K, V> find(int shift, int hash, Object key);
+
+		/**
+		 * Produce a node which also holds the given leaf, replacing any leaf with the same key
+		 *
+		 * @param shift The number of hash bits consumed above this node
+		 * @param leaf The leaf to hold
+		 * @return The new node, or this node if it already held an identical leaf
+		 */
+		public abstract Node<K, V> assoc(int shift, Leaf<K, V> leaf);
+
+		/**
+		 * Produce a node which no longer holds the given key
+		 *
+		 * @param shift The number of hash bits consumed above this node
+		 * @param hash The hash of the key
+		 * @param key The key to remove
+		 * @return The new node, this node if the key was not present, or null if the new node would be empty
+		 */
+		public abstract Node<K, V> dissoc(int shift, int hash, Object key);
+
+		/**
+		 * Add every leaf held beneath this node to the given list
+		 *
+		 * @param leaves The list to add the leaves to
+		 */
+		public abstract void collect(List<Map.Entry<K, V>> leaves);
+	}
+
+	/**
+	 * The BitmapNode class is a node which holds a slot for each distinct value of the hash bits consumed at its level.
+	 * Each slot holds either a leaf or a child node.
+	 *
+	 * @param <K> The type of the keys in the node
+	 * @param <V> The type of the values in the node
+	 */
+	private static final class BitmapNode<K, V> extends Node<K, V> {
+		/** The bitmap of the slots in use */
+		private final int bitmap;
+
+		/** The slots in use, in bit order */
+		private final Object[] slots;
+
+		/**
+		 * Instantiates a new bitmap node
+		 *
+		 * @param bitmap The bitmap of the slots in use
+		 * @param slots The slots in use, in bit order
+		 */
+		public BitmapNode(int bitmap, Object[] slots) {
+			this.bitmap = bitmap;
+			this.slots = slots;
+		}
+
+		/**
+		 * Compute the position of a slot within the array of slots in use
+		 *
+		 * @param bit The bit of the slot
+		 * @return The position of the slot
+		 */
+		private int index(int bit) {
+			return Integer.bitCount(this.bitmap & (bit - 1));
+		}
+
+		/* (non-Javadoc)
+		 * @see com.cyberfront.crdt.persistent.PersistentHashMap.Node#find(int, int, java.lang.Object)
+		 */
+		@Override
+		@SuppressWarnings("unchecked")
+		public Leaf<K, V> find(int shift, int hash, Object key) {
+			int bit = 1 << ((hash >>> shift) & MASK);
+
+			if (0 == (this.bitmap & bit)) {
+				return null;
+			}
+
+			Object slot = this.slots[this.index(bit)];
+
+			if (slot instanceof Node) {
+				return ((Node<K, V>) slot).find(shift + BITS, hash, key);
+			}
+
+			Leaf<K, V> leaf = (Leaf<K, V>) slot;
+			return leaf.hash == hash && leaf.getKey().equals(key) ? leaf : null;
+		}
+
+		/* (non-Javadoc)
+		 * @see com.cyberfront.crdt.persistent.PersistentHashMap.Node#assoc(int, com.cyberfront.crdt.persistent.PersistentHashMap.Leaf)
+		 */
+		@Override
+		@SuppressWarnings("unchecked")
+		public Node<K, V> assoc(int shift, Leaf<K, V> leaf) {
+			int bit = 1 << ((leaf.hash >>> shift) & MASK);
+			int index = this.index(bit);
+
+			if (0 == (this.bitmap & bit)) {
+				Object[] copy = new Object[this.slots.length + 1];
+				System.arraycopy(this.slots, 0, copy, 0, index);
+				copy[index] = leaf;
+				System.arraycopy(this.slots, index, copy, index + 1, this.slots.length - index);
+				return new BitmapNode<>(this.bitmap | bit, copy);
+			}
+
+			Object slot = this.slots[index];
+			Object replacement;
+
+			if (slot instanceof Node) {
+				replacement = ((Node<K, V>) slot).assoc(shift + BITS, leaf);
+			} else {
+				Leaf<K, V> existing = (Leaf<K, V>) slot;
+
+				if (existing.hash == leaf.hash && existing.getKey().equals(leaf.getKey())) {
+					replacement = existing.getValue() == leaf.getValue() ? existing : leaf;
+				} else {
+					replacement = merge(shift + BITS, existing, leaf);
+				}
+			}
+
+			if (replacement == slot) {
+				return this;
+			}
+
+			Object[] copy = this.slots.clone();
+			copy[index] = replacement;
+			return new BitmapNode<>(this.bitmap, copy);
+		}
+
+		/* (non-Javadoc)
+		 * @see com.cyberfront.crdt.persistent.PersistentHashMap.Node#dissoc(int, int, java.lang.Object)
+		 */
+		@Override
+		@SuppressWarnings("unchecked")
+		public Node<K, V> dissoc(int shift, int hash, Object key) {
+			int bit = 1 << ((hash >>> shift) & MASK);
+
+			if (0 == (this.bitmap & bit)) {
+				return this;
+			}
+
+			int index = this.index(bit);
+			Object slot = this.slots[index];
+			Object replacement;
+
+			if (slot instanceof Node) {
+				replacement = ((Node<K, V>) slot).dissoc(shift + BITS, hash, key);
+			} else {
+				Leaf<K, V> leaf = (Leaf<K, V>) slot;
+				replacement = leaf.hash == hash && leaf.getKey().equals(key) ? null : leaf;
+			}
+
+			if (replacement == slot) {
+				return this;
+			} else if (null != replacement) {
+				Object[] copy = this.slots.clone();
+				copy[index] = replacement;
+				return new BitmapNode<>(this.bitmap, copy);
+			} else if (1 == this.slots.length) {
+				return null;
+			}
+
+			Object[] copy = new Object[this.slots.length - 1];
+			System.arraycopy(this.slots, 0, copy, 0, index);
+			System.arraycopy(this.slots, index + 1, copy, index, copy.length - index);
+			return new BitmapNode<>(this.bitmap & ~bit, copy);
+		}
+
+		/* (non-Javadoc)
+		 * @see com.cyberfront.crdt.persistent.PersistentHashMap.Node#collect(java.util.List)
+		 */
+		@Override
+		@SuppressWarnings("unchecked")
+		public void collect(List<Map.Entry<K, V>> leaves) {
+			for (Object slot : this.slots) {
+				if (slot instanceof Node) {
+					((Node<K, V>) slot).collect(leaves);
+				} else {
+					leaves.add((Leaf<K, V>) slot);
+				}
+			}
+		}
+	}
+
+	/**
+	 * The CollisionNode class holds the leaves of keys whose hashes are identical
+	 *
+	 * @param <K> The type of the keys in the node
+	 * @param <V> The type of the values in the node
+	 */
+	private static final class CollisionNode<K, V> extends Node<K, V> {
+		/** The hash shared by all of the keys in the node */
+		private final int hash;
+
+		/** The leaves of the node */
+		private final Leaf<K, V>[] leaves;
+
+		/**
+		 * Instantiates a new collision node
+		 *
+		 * @param hash The hash shared by all of the keys in the node
+		 * @param leaves The leaves of the node
+		 */
+		public CollisionNode(int hash, Leaf<K, V>[] leaves) {
+			this.hash = hash;
+			this.leaves = leaves;
+		}
+
+		/**
+		 * Find the position of the leaf holding the given key
+		 *
+		 * @param key The key to find
+		 * @return The position of the leaf, or -1 if the key is not present
+		 */
+		private int indexOf(Object key) {
+			for (int i = 0; i < this.leaves.length; ++i) {
+				if (this.leaves[i].getKey().equals(key)) {
+					return i;
+				}
+			}
+
+			return -1;
+		}
+
+		/* (non-Javadoc)
+		 * @see com.cyberfront.crdt.persistent.PersistentHashMap.Node#find(int, int, java.lang.Object)
+		 */
+		@Override
+		public Leaf<K, V> find(int shift, int hash, Object key) {
+			int index = hash == this.hash ? this.indexOf(key) : -1;
+			return index < 0 ? null : this.leaves[index];
+		}
+
+		/* (non-Javadoc)
+		 * @see com.cyberfront.crdt.persistent.PersistentHashMap.Node#assoc(int, com.cyberfront.crdt.persistent.PersistentHashMap.Leaf)
+		 */
+		@Override
+		public Node<K, V> assoc(int shift, Leaf<K, V> leaf) {
+			if (leaf.hash != this.hash) {
+				Object[] slots = { this };
+				return new BitmapNode<K, V>(1 << ((this.hash >>> shift) & MASK), slots).assoc(shift, leaf);
+			}
+
+			int index = this.indexOf(leaf.getKey());
+			Leaf<K, V>[] copy;
+
+			if (index < 0) {
+				copy = Arrays.copyOf(this.leaves, this.leaves.length + 1);
+				copy[this.leaves.length] = leaf;
+			} else if (this.leaves[index].getValue() == leaf.getValue()) {
+				return this;
+			} else {
+				copy = this.leaves.clone();
+				copy[index] = leaf;
+			}
+
+			return new CollisionNode<>(this.hash, copy);
+		}
+
+		/* (non-Javadoc)
+		 * @see com.cyberfront.crdt.persistent.PersistentHashMap.Node#dissoc(int, int, java.lang.Object)
+		 */
+		@Override
+		public Node<K, V> dissoc(int shift, int hash, Object key) {
+			int index = hash == this.hash ? this.indexOf(key) : -1;
+
+			if (index < 0) {
+				return this;
+			} else if (1 == this.leaves.length) {
+				return null;
+			}
+
+			Leaf<K, V>[] copy = leaves(this.leaves.length - 1);
+			System.arraycopy(this.leaves, 0, copy, 0, index);
+			System.arraycopy(this.leaves, index + 1, copy, index, copy.length - index);
+			return new CollisionNode<>(this.hash, copy);
+		}
+
+		/* (non-Javadoc)
+		 * @see com.cyberfront.crdt.persistent.PersistentHashMap.Node#collect(java.util.List)
+		 */
+		@Override
+		public void collect(List<Map.Entry<K, V>> leaves) {
+			leaves.addAll(Arrays.asList(this.leaves));
+		}
+	}
+
+	/** The root node of the trie, or null if the map is empty */
+	private final Node<K, V> root;
+
+	/** The number of keys in the map */
+	private final int size;
+
+	/**
+	 * Instantiates a new map
+	 *
+	 * @param root The root node of the trie
+	 * @param size The number of keys in the map
+	 */
+	private PersistentHashMap(Node<K, V> root, int size) {
+		this.root = root;
+		this.size = size;
+	}
+
+	/**
+	 * Retrieve the empty map
+	 *
+	 * @param <K> The type of the keys in the map
+	 * @param <V> The type of the values in the map
+	 * @return The empty map
+	 */
+	@SuppressWarnings("unchecked")
+	public static <K, V> PersistentHashMap<K, V> empty() {
+		return (PersistentHashMap<K, V>) EMPTY;
+	}
+
+	/**
+	 * Allocate an array of leaves, which cannot be created directly since Leaf is generic
+	 *
+	 * @param length The length of the array
+	 * @param <K> The type of the keys of the leaves
+	 * @param <V> The type of the values of the leaves
+	 * @return The new array
+	 */
+	@SuppressWarnings("unchecked")
+	private static <K, V> Leaf<K, V>[] leaves(int length) {
+		return (Leaf<K, V>[]) new Leaf<?, ?>[length];
+	}
+
+	/**
+	 * Build the smallest node holding two leaves with distinct keys
+	 *
+	 * @param shift The number of hash bits consumed above the node
+	 * @param a The first leaf
+	 * @param b The second leaf
+	 * @param <K> The type of the keys in the node
+	 * @param <V> The type of the values in the node
+	 * @return The node holding both leaves
+	 */
+	private static <K, V> Node<K, V> merge(int shift, Leaf<K, V> a, Leaf<K, V> b) {
+		if (a.hash == b.hash) {
+			Leaf<K, V>[] pair = leaves(2);
+			pair[0] = a;
+			pair[1] = b;
+			return new CollisionNode<>(a.hash, pair);
+		}
+
+		int bitA = 1 << ((a.hash >>> shift) & MASK);
+		int bitB = 1 << ((b.hash >>> shift) & MASK);
+
+		if (bitA == bitB) {
+			return new BitmapNode<>(bitA, new Object[] { merge(shift + BITS, a, b) });
+		}
+
+		return new BitmapNode<>(bitA | bitB, Integer.compareUnsigned(bitA, bitB) < 0 ? new Object[] { a, b } : new Object[] { b, a });
+	}
+
+	/**
+	 * Compute the hash used to place a key in the trie
+	 *
+	 * @param key The key
+	 * @return The hash of the key
+	 */
+	private static int hash(Object key) {
+		int h = key.hashCode();
+		return h ^ (h >>> 16);
+	}
+
+	/**
+	 * Retrieve the number of keys in the map
+	 *
+	 * @return The number of keys in the map
+	 */
+	public int size() {
+		return this.size;
+	}
+
+	/**
+	 * Determine whether the map is empty
+	 *
+	 * @return True if and only if the map holds no keys
+	 */
+	public boolean isEmpty() {
+		return 0 == this.size;
+	}
+
+	/**
+	 * Retrieve the value of the given key
+	 *
+	 * @param key The key to look up
+	 * @return The value of the key, or null if the key is not present
+	 */
+	public V get(Object key) {
+		Leaf<K, V> leaf = null == this.root ? null : this.root.find(0, hash(key), key);
+		return null == leaf ? null : leaf.getValue();
+	}
+
+	/**
+	 * Determine whether the map holds the given key
+	 *
+	 * @param key The key to look up
+	 * @return True if and only if the key is present
+	 */
+	public boolean containsKey(Object key) {
+		return null != this.root && null != this.root.find(0, hash(key), key);
+	}
+
+	/**
+	 * Produce a map which relates the given key to the given value, sharing everything off the path to the key with
+	 * this map
+	 *
+	 * @param key The key
+	 * @param value The value
+	 * @return The new map, or this map if it already related the key to the very same value
+	 */
+	public PersistentHashMap<K, V> with(K key, V value) {
+		Leaf<K, V> leaf = new Leaf<>(hash(key), key, value);
+
+		if (null == this.root) {
+			Object[] slots = { leaf };
+			return new PersistentHashMap<>(new BitmapNode<>(1 << (leaf.hash & MASK), slots), 1);
+		}
+
+		Node<K, V> node = this.root.assoc(0, leaf);
+		return node == this.root ? this : new PersistentHashMap<>(node, this.containsKey(key) ? this.size : this.size + 1);
+	}
+
+	/**
+	 * Produce a map which does not hold the given key, sharing everything off the path to the key with this map
+	 *
+	 * @param key The key to remove
+	 * @return The new map, or this map if the key was not present
+	 */
+	public PersistentHashMap<K, V> without(Object key) {
+		if (null == this.root) {
+			return this;
+		}
+
+		Node<K, V> node = this.root.dissoc(0, hash(key), key);
+		return node == this.root ? this : new PersistentHashMap<>(node, this.size - 1);
+	}
+
+	/* (non-Javadoc)
+	 * @see java.lang.Iterable#iterator()
+	 */
+	@Override
+	public Iterator<Map.Entry<K, V>> iterator() {
+		List<Map.Entry<K, V>> leaves = new ArrayList<>(this.size);
+
+		if (null != this.root) {
+			this.root.collect(leaves);
+		}
+
+		return leaves.iterator();
+	}
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright (c) 2017 Cybernetic Frontiers LLC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package com.cyberfront.crdt.persistent;
+
+import java.util.Iterator;
+import java.util.Map;
+
+import com.cyberfront.crdt.support.Pointer;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ValueNode;
+
+/**
+ * The PersistentNode class is the base of an immutable JSON document model whose objects and arrays are held in
+ * persistent tries.  Changing a document produces a new document which copies only the nodes on the path from the root
+ * to the change, and shares every other node with the original.  Earlier versions of a document therefore remain valid
+ * and cost nothing beyond the nodes which differ.
+ */
+public abstract class PersistentNode {
+
+	/**
+	 * Build the persistent equivalent of a JsonNode document.  The JsonNode is not retained, so later changes to it do
+	 * not affect the result.  Field names are interned, so documents with the same fields share their names.
+	 *
+	 * @param node The JsonNode document to convert
+	 * @return The equivalent persistent document, or null if the node is null
+	 */
+	public static PersistentNode from(JsonNode node) {
+		if (null == node) {
+			return null;
+		} else if (node.isObject()) {
+			PersistentObject rv = PersistentObject.empty();
+			for (Iterator<Map.Entry<String, JsonNode>> it = node.fields(); it.hasNext();) {
+				Map.Entry<String, JsonNode> field = it.next();
+				rv = rv.with(Pointer.intern(field.getKey()), from(field.getValue()));
+			}
+			return rv;
+		} else if (node.isArray()) {
+			PersistentArray rv = PersistentArray.empty();
+			for (JsonNode element : node) {
+				rv = rv.append(from(element));
+			}
+			return rv;
+		}
+
+		return new PersistentValue((ValueNode) node);
+	}
+
+	/**
+	 * Build a mutable JsonNode equivalent of this document.  Each call builds its objects and arrays afresh, and scalar
+	 * values are immutable, so callers are free to change the result.
+	 *
+	 * @return The JsonNode equivalent of this document
+	 */
+	public abstract JsonNode toJsonNode();
+
+	/**
+	 * Retrieve the child of this node referenced by a JSON Pointer token
+	 *
+	 * @param token The reference token of the child
+	 * @return The child node, or null if this node has no such child
+	 */
+	public abstract PersistentNode get(String token);
+
+	/**
+	 * Produce a node which replaces an existing child of this node.  This node is not changed.
+	 *
+	 * @param token The reference token of the child to replace
+	 * @param value The replacement child
+	 * @return The new node
+	 */
+	public abstract PersistentNode with(String token, PersistentNode value);
+
+	/**
+	 * Retrieve the number of children of this node
+	 *
+	 * @return The number of children of this node
+	 */
+	public abstract int size();
+
+	/**
+	 * Resolve a sequence of JSON Pointer tokens against this node
+	 *
+	 * @param tokens The reference tokens to follow
+	 * @return The node the tokens refer to, or null if there is no such node
+	 */
+	public PersistentNode at(String[] tokens) {
+		PersistentNode rv = this;
+
+		for (int i = 0; null != rv && i < tokens.length; ++i) {
+			rv = rv.get(tokens[i]);
+		}
+
+		return rv;
+	}
+
+	/* (non-Javadoc)
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return this.toJsonNode().toString();
+	}
+}
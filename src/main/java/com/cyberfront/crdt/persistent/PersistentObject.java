@@ -0,0 +1,173 @@
+/*
+ * Copyright (c) 2017 Cybernetic Frontiers LLC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package com.cyberfront.crdt.persistent;
+
+import java.util.Map;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * The PersistentObject class holds a JSON object as a persistent hash map from field names to values.  Fields are not
+ * kept in insertion order; as with JSON objects in general, the order of the fields carries no meaning.
+ */
+public final class PersistentObject extends PersistentNode {
+
+	/** The empty object */
+	private static final PersistentObject EMPTY = new PersistentObject(PersistentHashMap.empty());
+
+	/** The fields of the object */
+	private final PersistentHashMap<String, PersistentNode> fields;
+
+	/**
+	 * Instantiates a new persistent object
+	 *
+	 * @param fields The fields of the object
+	 */
+	private PersistentObject(PersistentHashMap<String, PersistentNode> fields) {
+		this.fields = fields;
+	}
+
+	/**
+	 * Retrieve the empty object
+	 *
+	 * @return The empty object
+	 */
+	public static PersistentObject empty() {
+		return EMPTY;
+	}
+
+	/**
+	 * Retrieve the fields of the object
+	 *
+	 * @return The fields of the object
+	 */
+	public PersistentHashMap<String, PersistentNode> getFields() {
+		return this.fields;
+	}
+
+	/**
+	 * Determine whether the object has a field with the given name
+	 *
+	 * @param name The name of the field
+	 * @return True if and only if the object has the field
+	 */
+	public boolean has(String name) {
+		return this.getFields().containsKey(name);
+	}
+
+	/**
+	 * Produce an object which also has the given field, replacing any field with the same name
+	 *
+	 * @param name The name of the field
+	 * @param value The value of the field
+	 * @return The new object
+	 */
+	@Override
+	public PersistentObject with(String name, PersistentNode value) {
+		PersistentHashMap<String, PersistentNode> fields = this.getFields().with(name, value);
+		return fields == this.getFields() ? this : new PersistentObject(fields);
+	}
+
+	/**
+	 * Produce an object which does not have a field with the given name
+	 *
+	 * @param name The name of the field to remove
+	 * @return The new object
+	 */
+	public PersistentObject without(String name) {
+		PersistentHashMap<String, PersistentNode> fields = this.getFields().without(name);
+		return fields == this.getFields() ? this : new PersistentObject(fields);
+	}
+
+	/* (non-Javadoc)
+	 * @see com.cyberfront.crdt.persistent.PersistentNode#get(java.lang.String)
+	 */
+	@Override
+	public PersistentNode get(String token) {
+		return this.getFields().get(token);
+	}
+
+	/* (non-Javadoc)
+	 * @see com.cyberfront.crdt.persistent.PersistentNode#size()
+	 */
+	@Override
+	public int size() {
+		return this.getFields().size();
+	}
+
+	/* (non-Javadoc)
+	 * @see com.cyberfront.crdt.persistent.PersistentNode#toJsonNode()
+	 */
+	@Override
+	public JsonNode toJsonNode() {
+		ObjectNode rv = JsonNodeFactory.instance.objectNode();
+
+		for (Map.Entry<String, PersistentNode> field : this.getFields()) {
+			rv.set(field.getKey(), field.getValue().toJsonNode());
+		}
+
+		return rv;
+	}
+
+	/* (non-Javadoc)
+	 * @see java.lang.Object#equals(java.lang.Object)
+	 */
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		} else if (!(obj instanceof PersistentObject)) {
+			return false;
+		}
+
+		PersistentObject other = (PersistentObject) obj;
+
+		if (this.size() != other.size()) {
+			return false;
+		}
+
+		for (Map.Entry<String, PersistentNode> field : this.getFields()) {
+			if (!field.getValue().equals(other.get(field.getKey()))) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	/* (non-Javadoc)
+	 * @see java.lang.Object#hashCode()
+	 */
+	@Override
+	public int hashCode() {
+		int hash = 0;
+
+		for (Map.Entry<String, PersistentNode> field : this.getFields()) {
+			hash += field.getKey().hashCode() ^ field.getValue().hashCode();
+		}
+
+		return hash;
+	}
+}
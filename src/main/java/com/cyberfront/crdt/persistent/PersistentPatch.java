@@ -0,0 +1,324 @@
+/*
+ * Copyright (c) 2017 Cybernetic Frontiers LLC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package com.cyberfront.crdt.persistent;
+
+import java.util.Arrays;
+
+import com.cyberfront.crdt.support.Pointer;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.MissingNode;
+import com.github.fge.jackson.JsonNumEquals;
+import com.github.fge.jsonpatch.JsonPatchException;
+
+/**
+ * The PersistentPatch class applies JSON Patch (RFC 6902) documents to persistent documents.  The semantics follow
+ * those of the com.github.fge.jsonpatch implementation used by the operations, so either may be used to materialize
+ * the same operations.  Unlike that implementation, the source document is never copied; each patch operation copies
+ * only the path from the root to the node it changes.
+ */
+public class PersistentPatch {
+
+	/**
+	 * The Edit interface describes a change made to the parent of the node a patch operation refers to
+	 */
+	@FunctionalInterface
+	private interface Edit {
+		/**
+		 * Produce the changed parent node
+		 *
+		 * @param parent The parent node to change
+		 * @param token The reference token of the node within the parent
+		 * @return The changed parent node
+		 * @throws JsonPatchException If the change cannot be made
+		 */
+		public abstract PersistentNode apply(PersistentNode parent, String token) throws JsonPatchException;
+	}
+
+	/**
+	 * Apply a JSON Patch to a persistent document.  The document is not changed.
+	 *
+	 * @param patch The JSON Patch, an array of patch operations
+	 * @param document The document to patch
+	 * @return The patched document, sharing every unchanged node with the source document
+	 * @throws JsonPatchException If the patch is malformed or an operation cannot be applied to the document
+	 */
+	public static PersistentNode apply(JsonNode patch, PersistentNode document) throws JsonPatchException {
+		if (!patch.isArray()) {
+			throw new JsonPatchException("JSON Patch is not an array");
+		}
+
+		PersistentNode rv = document;
+
+		for (JsonNode operation : patch) {
+			rv = applyOperation(operation, rv);
+		}
+
+		return rv;
+	}
+
+	/**
+	 * Apply a single patch operation to a persistent document
+	 *
+	 * @param operation The patch operation
+	 * @param document The document to patch
+	 * @return The patched document
+	 * @throws JsonPatchException If the operation is malformed or cannot be applied to the document
+	 */
+	private static PersistentNode applyOperation(JsonNode operation, PersistentNode document) throws JsonPatchException {
+		String op = getText(operation, "op");
+		String[] path = getPointer(operation, "path");
+
+		switch (op) {
+		case "add":
+			return add(document, path, PersistentNode.from(getValue(operation)));
+		case "remove":
+			return remove(document, path);
+		case "replace":
+			return replace(document, path, PersistentNode.from(getValue(operation)));
+		case "move":
+			return move(document, getPointer(operation, "from"), path);
+		case "copy":
+			return copy(document, getPointer(operation, "from"), path);
+		case "test":
+			return test(document, path, getValue(operation));
+		default:
+			throw new JsonPatchException("Unknown JSON Patch operation \"" + op + "\"");
+		}
+	}
+
+	/**
+	 * Retrieve a text field of a patch operation
+	 *
+	 * @param operation The patch operation
+	 * @param name The name of the field
+	 * @return The text of the field
+	 * @throws JsonPatchException If the field is missing or is not text
+	 */
+	private static String getText(JsonNode operation, String name) throws JsonPatchException {
+		JsonNode field = operation.get(name);
+
+		if (null == field || !field.isTextual()) {
+			throw new JsonPatchException("JSON Patch operation is missing the \"" + name + "\" field: " + operation);
+		}
+
+		return field.textValue();
+	}
+
+	/**
+	 * Retrieve a JSON Pointer field of a patch operation, split into its interned reference tokens
+	 *
+	 * @param operation The patch operation
+	 * @param name The name of the field
+	 * @return The reference tokens of the pointer
+	 * @throws JsonPatchException If the field is missing or is not a valid JSON Pointer
+	 */
+	private static String[] getPointer(JsonNode operation, String name) throws JsonPatchException {
+		try {
+			return Pointer.tokens(getText(operation, name));
+		} catch (IllegalArgumentException e) {
+			throw new JsonPatchException(e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Retrieve the value field of a patch operation
+	 *
+	 * @param operation The patch operation
+	 * @return The value of the operation
+	 * @throws JsonPatchException If the field is missing
+	 */
+	private static JsonNode getValue(JsonNode operation) throws JsonPatchException {
+		JsonNode value = operation.get("value");
+
+		if (null == value) {
+			throw new JsonPatchException("JSON Patch operation is missing the \"value\" field: " + operation);
+		}
+
+		return value;
+	}
+
+	/**
+	 * Copy the path from the root of a document to the parent of the node the given tokens refer to, and apply an edit
+	 * to that parent
+	 *
+	 * @param node The node to copy
+	 * @param tokens The reference tokens of the node to change
+	 * @param depth The number of tokens already followed to reach the given node
+	 * @param edit The change to make to the parent
+	 * @return The copied node
+	 * @throws JsonPatchException If the parent does not exist or the edit cannot be made
+	 */
+	private static PersistentNode edit(PersistentNode node, String[] tokens, int depth, Edit edit) throws JsonPatchException {
+		if (depth == tokens.length - 1) {
+			return edit.apply(node, tokens[depth]);
+		}
+
+		PersistentNode child = node.get(tokens[depth]);
+
+		if (null == child) {
+			throw new JsonPatchException("No such parent in target JSON document");
+		}
+
+		return node.with(tokens[depth], edit(child, tokens, depth + 1, edit));
+	}
+
+	/**
+	 * Add a value to a document, following the semantics of the JSON Patch add operation
+	 *
+	 * @param document The document to change
+	 * @param path The reference tokens of the location to add the value at
+	 * @param value The value to add
+	 * @return The changed document
+	 * @throws JsonPatchException If the value cannot be added at the location
+	 */
+	private static PersistentNode add(PersistentNode document, String[] path, PersistentNode value) throws JsonPatchException {
+		if (0 == path.length) {
+			return value;
+		}
+
+		return edit(document, path, 0, (parent, token) -> {
+			if (parent instanceof PersistentObject) {
+				return ((PersistentObject) parent).with(token, value);
+			} else if (!(parent instanceof PersistentArray)) {
+				throw new JsonPatchException("Parent of node to add is not a container");
+			}
+
+			PersistentArray array = (PersistentArray) parent;
+
+			if ("-".equals(token)) {
+				return array.append(value);
+			}
+
+			int index = Pointer.toIndex(token);
+
+			if (index < 0 || index > array.size()) {
+				throw new JsonPatchException("No such index \"" + token + "\" in target array");
+			}
+
+			return array.insert(index, value);
+		});
+	}
+
+	/**
+	 * Remove a value from a document, following the semantics of the JSON Patch remove operation
+	 *
+	 * @param document The document to change
+	 * @param path The reference tokens of the value to remove
+	 * @return The changed document
+	 * @throws JsonPatchException If there is no value at the location
+	 */
+	private static PersistentNode remove(PersistentNode document, String[] path) throws JsonPatchException {
+		if (0 == path.length) {
+			return new PersistentValue(MissingNode.getInstance());
+		} else if (null == document.at(path)) {
+			throw new JsonPatchException("No such path in target JSON document");
+		}
+
+		return edit(document, path, 0, (parent, token) ->
+			parent instanceof PersistentObject
+					? ((PersistentObject) parent).without(token)
+					: ((PersistentArray) parent).remove(Pointer.toIndex(token)));
+	}
+
+	/**
+	 * Replace a value in a document, following the semantics of the JSON Patch replace operation
+	 *
+	 * @param document The document to change
+	 * @param path The reference tokens of the value to replace
+	 * @param value The replacement value
+	 * @return The changed document
+	 * @throws JsonPatchException If there is no value at the location
+	 */
+	private static PersistentNode replace(PersistentNode document, String[] path, PersistentNode value) throws JsonPatchException {
+		if (null == document.at(path)) {
+			throw new JsonPatchException("No such path in target JSON document");
+		} else if (0 == path.length) {
+			return value;
+		}
+
+		return edit(document, path, 0, (parent, token) -> parent.with(token, value));
+	}
+
+	/**
+	 * Move a value within a document, following the semantics of the JSON Patch move operation
+	 *
+	 * @param document The document to change
+	 * @param from The reference tokens of the value to move
+	 * @param path The reference tokens of the location to move the value to
+	 * @return The changed document
+	 * @throws JsonPatchException If there is no value to move, or it cannot be added at the new location
+	 */
+	private static PersistentNode move(PersistentNode document, String[] from, String[] path) throws JsonPatchException {
+		if (Arrays.equals(from, path)) {
+			return document;
+		}
+
+		PersistentNode value = document.at(from);
+
+		if (null == value) {
+			throw new JsonPatchException("No such path in target JSON document");
+		}
+
+		return add(remove(document, from), path, value);
+	}
+
+	/**
+	 * Copy a value within a document, following the semantics of the JSON Patch copy operation.  The copy shares the
+	 * nodes of the original value, which is safe since neither can change.
+	 *
+	 * @param document The document to change
+	 * @param from The reference tokens of the value to copy
+	 * @param path The reference tokens of the location to copy the value to
+	 * @return The changed document
+	 * @throws JsonPatchException If there is no value to copy, or it cannot be added at the new location
+	 */
+	private static PersistentNode copy(PersistentNode document, String[] from, String[] path) throws JsonPatchException {
+		PersistentNode value = document.at(from);
+
+		if (null == value) {
+			throw new JsonPatchException("No such path in target JSON document");
+		}
+
+		return add(document, path, value);
+	}
+
+	/**
+	 * Test a value in a document, following the semantics of the JSON Patch test operation.  Numbers are compared by
+	 * value, regardless of their representation.
+	 *
+	 * @param document The document to test
+	 * @param path The reference tokens of the value to test
+	 * @param expected The value expected at the location
+	 * @return The unchanged document
+	 * @throws JsonPatchException If the value at the location differs from the expected value
+	 */
+	private static PersistentNode test(PersistentNode document, String[] path, JsonNode expected) throws JsonPatchException {
+		PersistentNode actual = document.at(path);
+
+		if (null == actual || !JsonNumEquals.getInstance().equivalent(actual.toJsonNode(), expected)) {
+			throw new JsonPatchException("Value differs from expectations");
+		}
+
+		return document;
+	}
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 2017 Cybernetic Frontiers LLC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package com.cyberfront.crdt.persistent;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ValueNode;
+
+/**
+ * The PersistentValue class holds a scalar JSON value.  Jackson value nodes are already immutable, so the value is
+ * shared rather than copied.
+ */
+public final class PersistentValue extends PersistentNode {
+
+	/** The scalar value held */
+	private final ValueNode value;
+
+	/**
+	 * Instantiates a new persistent value
+	 *
+	 * @param value The scalar value to hold
+	 */
+	public PersistentValue(ValueNode value) {
+		this.value = value;
+	}
+
+	/**
+	 * Retrieve the scalar value held
+	 *
+	 * @return The scalar value held
+	 */
+	public ValueNode getValue() {
+		return this.value;
+	}
+
+	/* (non-Javadoc)
+	 * @see com.cyberfront.crdt.persistent.PersistentNode#toJsonNode()
+	 */
+	@Override
+	public JsonNode toJsonNode() {
+		return this.getValue();
+	}
+
+	/* (non-Javadoc)
+	 * @see com.cyberfront.crdt.persistent.PersistentNode#get(java.lang.String)
+	 */
+	@Override
+	public PersistentNode get(String token) {
+		return null;
+	}
+
+	/* (non-Javadoc)
+	 * @see com.cyberfront.crdt.persistent.PersistentNode#with(java.lang.String, com.cyberfront.crdt.persistent.PersistentNode)
+	 */
+	@Override
+	public PersistentNode with(String token, PersistentNode value) {
+		throw new UnsupportedOperationException("A scalar value has no children");
+	}
+
+	/* (non-Javadoc)
+	 * @see com.cyberfront.crdt.persistent.PersistentNode#size()
+	 */
+	@Override
+	public int size() {
+		return 0;
+	}
+
+	/* (non-Javadoc)
+	 * @see java.lang.Object#equals(java.lang.Object)
+	 */
+	@Override
+	public boolean equals(Object obj) {
+		return this == obj || (obj instanceof PersistentValue && this.getValue().equals(((PersistentValue) obj).getValue()));
+	}
+
+	/* (non-Javadoc)
+	 * @see java.lang.Object#hashCode()
+	 */
+	@Override
+	public int hashCode() {
+		return this.getValue().hashCode();
+	}
+}
@@ -0,0 +1,335 @@
+/*
+ * Copyright (c) 2017 Cybernetic Frontiers LLC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package com.cyberfront.crdt.persistent;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * The PersistentVector class is an immutable list held in a trie with thirty two way branching.  Replacing or
+ * appending an element copies only the nodes on the path from the root to the element, so every earlier version of the
+ * vector remains valid and shares all of its unchanged nodes with the new one.  Inserting or removing an element in the
+ * middle of the vector shares every leaf in front of the element, and rebuilds the remainder.
+ *
+ * @param <E> The type of the elements in the vector
+ */
+public final class PersistentVector<E> implements Iterable<E> {
+
+	/** The number of index bits consumed at each level of the trie */
+	private static final int BITS = 5;
+
+	/** The branching factor of the trie */
+	private static final int WIDTH = 1 << BITS;
+
+	/** The mask selecting the index bits consumed at a single level of the trie */
+	private static final int MASK = WIDTH - 1;
+
+	/** The empty vector, shared by all element types */
+	private static final PersistentVector<?> EMPTY = new PersistentVector<>(new Object[0], 0, 0);
+
+	/** The root node of the trie; interior nodes hold arrays of child nodes and leaves hold arrays of elements */
+	private final Object[] root;
+
+	/** The number of index bits consumed beneath the root node */
+	private final int shift;
+
+	/** The number of elements in the vector */
+	private final int size;
+
+	/**
+	 * Instantiates a new vector
+	 *
+	 * @param root The root node of the trie
+	 * @param shift The number of index bits consumed beneath the root node
+	 * @param size The number of elements in the vector
+	 */
+	private PersistentVector(Object[] root, int shift, int size) {
+		this.root = root;
+		this.shift = shift;
+		this.size = size;
+	}
+
+	/**
+	 * Retrieve the empty vector
+	 *
+	 * @param <E> The type of the elements in the vector
+	 * @return The empty vector
+	 */
+	@SuppressWarnings("unchecked")
+	public static <E> PersistentVector<E> empty() {
+		return (PersistentVector<E>) EMPTY;
+	}
+
+	/**
+	 * Retrieve the number of elements in the vector
+	 *
+	 * @return The number of elements in the vector
+	 */
+	public int size() {
+		return this.size;
+	}
+
+	/**
+	 * Determine whether the vector is empty
+	 *
+	 * @return True if and only if the vector holds no elements
+	 */
+	public boolean isEmpty() {
+		return 0 == this.size;
+	}
+
+	/**
+	 * Verify an index refers to an element of the vector
+	 *
+	 * @param index The index to verify
+	 * @param limit The largest index allowed
+	 */
+	private static void checkIndex(int index, int limit) {
+		if (index < 0 || index > limit) {
+			throw new IndexOutOfBoundsException("Index " + index + " outside of range [0, " + limit + "]");
+		}
+	}
+
+	/**
+	 * Retrieve the leaf holding the element with the given index
+	 *
+	 * @param index The index of the element
+	 * @return The leaf holding the element
+	 */
+	private Object[] leafFor(int index) {
+		Object[] node = this.root;
+
+		for (int level = this.shift; level > 0; level -= BITS) {
+			node = (Object[]) node[(index >>> level) & MASK];
+		}
+
+		return node;
+	}
+
+	/**
+	 * Retrieve the element with the given index
+	 *
+	 * @param index The index of the element
+	 * @return The element with the given index
+	 */
+	@SuppressWarnings("unchecked")
+	public E get(int index) {
+		checkIndex(index, this.size - 1);
+		return (E) this.leafFor(index)[index & MASK];
+	}
+
+	/**
+	 * Produce a vector with the element at the given index replaced
+	 *
+	 * @param index The index of the element to replace
+	 * @param element The replacement element
+	 * @return The new vector, sharing every node off the path to the element with this vector
+	 */
+	public PersistentVector<E> set(int index, E element) {
+		checkIndex(index, this.size - 1);
+		return new PersistentVector<>(replace(this.root, this.shift, index, element), this.shift, this.size);
+	}
+
+	/**
+	 * Copy the path to an element, replacing the element in the copied leaf
+	 *
+	 * @param node The node to copy
+	 * @param level The number of index bits consumed beneath the node
+	 * @param index The index of the element
+	 * @param element The replacement element
+	 * @return The copied node
+	 */
+	private static Object[] replace(Object[] node, int level, int index, Object element) {
+		Object[] copy = node.clone();
+
+		if (0 == level) {
+			copy[index & MASK] = element;
+		} else {
+			int slot = (index >>> level) & MASK;
+			copy[slot] = replace((Object[]) node[slot], level - BITS, index, element);
+		}
+
+		return copy;
+	}
+
+	/**
+	 * Produce a vector with the given element appended
+	 *
+	 * @param element The element to append
+	 * @return The new vector, sharing every node off the path to the new element with this vector
+	 */
+	public PersistentVector<E> append(E element) {
+		if (this.size == 1 << (this.shift + BITS)) {
+			Object[] root = { this.root, path(this.shift, element) };
+			return new PersistentVector<>(root, this.shift + BITS, this.size + 1);
+		}
+
+		return new PersistentVector<>(push(this.root, this.shift, this.size, element), this.shift, this.size + 1);
+	}
+
+	/**
+	 * Build a chain of new nodes leading to a leaf holding a single element
+	 *
+	 * @param level The number of index bits consumed beneath the top of the chain
+	 * @param element The element to hold
+	 * @return The top node of the chain
+	 */
+	private static Object[] path(int level, Object element) {
+		return 0 == level ? new Object[] { element } : new Object[] { path(level - BITS, element) };
+	}
+
+	/**
+	 * Copy the path to the end of a node, adding an element in the last position
+	 *
+	 * @param node The node to copy
+	 * @param level The number of index bits consumed beneath the node
+	 * @param index The index of the new element
+	 * @param element The element to add
+	 * @return The copied node
+	 */
+	private static Object[] push(Object[] node, int level, int index, Object element) {
+		int slot = (index >>> level) & MASK;
+
+		if (slot == node.length) {
+			Object[] copy = Arrays.copyOf(node, slot + 1);
+			copy[slot] = 0 == level ? element : path(level - BITS, element);
+			return copy;
+		}
+
+		Object[] copy = node.clone();
+		copy[slot] = push((Object[]) node[slot], level - BITS, index, element);
+		return copy;
+	}
+
+	/**
+	 * Produce a vector holding only the first count elements of this vector.  Every full leaf in front of the cut is
+	 * shared with this vector.
+	 *
+	 * @param count The number of elements to keep
+	 * @return The new vector
+	 */
+	public PersistentVector<E> take(int count) {
+		checkIndex(count, this.size);
+
+		if (count == this.size) {
+			return this;
+		} else if (0 == count) {
+			return empty();
+		}
+
+		Object[] node = this.root;
+		int level = this.shift;
+
+		while (level > 0 && count <= 1 << level) {
+			node = (Object[]) node[0];
+			level -= BITS;
+		}
+
+		return new PersistentVector<>(truncate(node, level, count - 1), level, count);
+	}
+
+	/**
+	 * Copy the path to an element, dropping everything beyond it
+	 *
+	 * @param node The node to copy
+	 * @param level The number of index bits consumed beneath the node
+	 * @param last The index of the last element to keep
+	 * @return The copied node
+	 */
+	private static Object[] truncate(Object[] node, int level, int last) {
+		int slot = (last >>> level) & MASK;
+		Object[] copy = Arrays.copyOf(node, slot + 1);
+
+		if (level > 0) {
+			copy[slot] = truncate((Object[]) node[slot], level - BITS, last);
+		}
+
+		return copy;
+	}
+
+	/**
+	 * Produce a vector with an element inserted at the given index, shifting the elements behind it
+	 *
+	 * @param index The index to insert the element at
+	 * @param element The element to insert
+	 * @return The new vector
+	 */
+	public PersistentVector<E> insert(int index, E element) {
+		checkIndex(index, this.size);
+		PersistentVector<E> rc = this.take(index).append(element);
+
+		for (int i = index; i < this.size; ++i) {
+			rc = rc.append(this.get(i));
+		}
+
+		return rc;
+	}
+
+	/**
+	 * Produce a vector with the element at the given index removed, shifting the elements behind it
+	 *
+	 * @param index The index of the element to remove
+	 * @return The new vector
+	 */
+	public PersistentVector<E> remove(int index) {
+		checkIndex(index, this.size - 1);
+		PersistentVector<E> rc = this.take(index);
+
+		for (int i = index + 1; i < this.size; ++i) {
+			rc = rc.append(this.get(i));
+		}
+
+		return rc;
+	}
+
+	/* (non-Javadoc)
+	 * @see java.lang.Iterable#iterator()
+	 */
+	@Override
+	public Iterator<E> iterator() {
+		return new Iterator<E>() {
+			private int index = 0;
+			private Object[] leaf = null;
+
+			@Override
+			public boolean hasNext() {
+				return this.index < size;
+			}
+
+			@Override
+			@SuppressWarnings("unchecked")
+			public E next() {
+				if (!this.hasNext()) {
+					throw new NoSuchElementException();
+				}
+
+				if (0 == (this.index & MASK)) {
+					this.leaf = leafFor(this.index);
+				}
+
+				return (E) this.leaf[this.index++ & MASK];
+			}
+		};
+	}
+}
@@ -1,6 +1,7 @@
 package com.cyberfront.crdt.sample.manager;
 
 import com.cyberfront.crdt.CRDTManager;
+import com.cyberfront.crdt.causal.HybridLogicalClock;
 import com.cyberfront.crdt.operations.CreateOperation;
 import com.cyberfront.crdt.operations.DeleteOperation;
 import com.cyberfront.crdt.operations.OperationManager;
@@ -11,26 +12,42 @@ import com.fasterxml.jackson.databind.JsonNode;
 
 public class JsonManager extends CRDTManager {
 	public JsonManager(JsonNode document, long timestamp) {
-		CreateOperation create = CRDTManager.generateCreateOperation(document, timestamp);
+		CreateOperation create = this.createOperation(document, timestamp);
 		OperationManager mgr = new OperationManager(StatusType.APPROVED, create);
 		this.push(mgr);
 	}
 
+	public JsonManager(JsonNode document) {
+		this(document, HybridLogicalClock.getInstance().now());
+	}
+
+	public JsonNode read() {
+		return this.read(this.nextTimestamp());
+	}
+
 	public JsonNode read(long timestamp) {
-		ReadOperation read = CRDTManager.generateReadOperation(timestamp);
+		ReadOperation read = this.readOperation(timestamp);
 		OperationManager mgr = new OperationManager(StatusType.APPROVED, read);
 		this.push(mgr);
 		return this.getCrdt().getDocument(timestamp);
 	}
 	
+	public void update(JsonNode document) {
+		this.update(document, this.nextTimestamp());
+	}
+	
 	public void update(JsonNode document, long timestamp) {
-		UpdateOperation update = CRDTManager.generateUpdateOperation(this.getCrdt().getDocument(timestamp), document, timestamp);
+		UpdateOperation update = this.updateOperation(this.getCrdt().getDocument(timestamp), document, timestamp);
 		OperationManager mgr = new OperationManager(StatusType.APPROVED, update);
 		this.push(mgr);
 	}
 	
+	public void delete() {
+		this.delete(this.nextTimestamp());
+	}
+	
 	public void delete(long timestamp) {
-		DeleteOperation delete = CRDTManager.generateDeleteOperation(timestamp);
+		DeleteOperation delete = this.deleteOperation(timestamp);
 		OperationManager mgr = new OperationManager(StatusType.APPROVED, delete);
 		this.push(mgr);
 	}
@@ -22,25 +22,27 @@
  */
 package com.cyberfront.crdt.sample.simlation;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.io.IOException;
 import java.util.Map;
-import java.util.TreeMap;
 import java.util.UUID;
 
 import com.cyberfront.crdt.sample.data.AbstractDataType;
+import com.cyberfront.crdt.support.IndexedMap;
+import com.cyberfront.crdt.support.JsonStreamable;
+import com.cyberfront.crdt.support.MemoryEstimate;
 import com.cyberfront.crdt.support.Support;
+import com.fasterxml.jackson.core.JsonGenerator;
 
 /**
  * The AbstractNode class establishes a base framework for derived classes to draw upon to manage a collection of CRDT objects
  */
-public abstract class AbstractNode {
+public abstract class AbstractNode implements JsonStreamable {
 	
 	/** The node identifier. */
 	private final UUID id;
 	
 	/** The datastore containinf all of the CRDT instances for this node.. */
-	private Map<UUID, SimCRDTManager<? extends AbstractDataType>> datastore;
+	private IndexedMap<UUID, SimCRDTManager<? extends AbstractDataType>> datastore;
 
 	/**
 	 * Instantiates a new abstract node.
@@ -66,9 +68,9 @@ public abstract class AbstractNode {
 	 *
 	 * @return the datastore
 	 */
-	public Map<UUID, SimCRDTManager<? extends AbstractDataType>> getDatastore() {
+	public IndexedMap<UUID, SimCRDTManager<? extends AbstractDataType>> getDatastore() {
 		if (null == datastore) {
-			this.datastore = new TreeMap<>();
+			this.datastore = new IndexedMap<>();
 		}
 		
 		return this.datastore;
@@ -85,6 +87,22 @@ public abstract class AbstractNode {
 		this.getDatastore().clear();
 	}
 	
+	/**
+	 * Retrieve the estimated memory retained by all of the CRDT instances in the datastore.  Each CRDT maintains its own
+	 * estimate as operations arrive, so this only sums them.
+	 *
+	 * @return The estimated memory retained by the datastore
+	 */
+	public MemoryEstimate getMemoryEstimate() {
+		MemoryEstimate rv = MemoryEstimate.EMPTY;
+		
+		for (int i = 0; i < this.getDatastore().size(); ++i) {
+			rv = rv.add(this.getDatastore().getValue(i).getMemoryEstimate());
+		}
+		
+		return rv;
+	}
+	
 	/**
 	 * Adds a new CRDT to the node
 	 *
@@ -100,8 +118,7 @@ public abstract class AbstractNode {
 	 * @return The randomly selected CRDT Identifier value
 	 */
 	public UUID pickCrdtId() {
-		List<UUID> idList = new ArrayList<>(this.getDatastore().keySet());
-		return idList.isEmpty() ? null : idList.get(Support.getRandom().nextInt(idList.size()));
+		return this.getDatastore().pickKey(Support.getRandom());
 	}
 	
 	/**
@@ -110,46 +127,33 @@ public abstract class AbstractNode {
 	 * @return The randomly slected CRDT manager
 	 */
 	public SimCRDTManager<? extends AbstractDataType> pickCRDT() {
-		return this.getDatastore().get(this.pickCrdtId());
+		return this.getDatastore().pickValue(Support.getRandom());
 	}
 	
 	/**
-	 * TODO: replace this with JAXB / Jackson conversion rather than doing it this way
-	 * Convert the data store to a string value
+	 * Stream the fields of this instance to the given generator
 	 *
-	 * @return A string representation of the entire datastore.
+	 * @param gen The generator to write to
+	 * @throws IOException If the generator fails to write
 	 */
-	private String datastoreToString() {
-		StringBuilder sb = new StringBuilder();
-		char separator = '{';
-		
-		if (this.getDatastore().isEmpty()) {
-			sb.append(separator);
-		} else {
-			for (Map.Entry<UUID, SimCRDTManager<? extends AbstractDataType>> entry : this.getDatastore().entrySet()) {
-				sb.append(separator + "\"" + entry.getKey() + "\":" + entry.getValue().toString());
-				separator = ',';
-			}
+	protected void writeSegment(JsonGenerator gen) throws IOException {
+		gen.writeStringField("nodeId", this.getId().toString());
+		gen.writeObjectFieldStart("datastore");
+		for (Map.Entry<UUID, SimCRDTManager<? extends AbstractDataType>> entry : this.getDatastore().entrySet()) {
+			gen.writeFieldName(entry.getKey().toString());
+			entry.getValue().writeJson(gen);
 		}
-		
-		sb.append("}");
-		
-		return sb.toString();
+		gen.writeEndObject();
 	}
-	
-	/**
-	 * TODO: replace this with JAXB / Jackson conversion rather than doing it this way
-	 * Get a partial JSON formated representation of the AbstractNode.  
-	 *
-	 * @return The JSON formated string representation of this AbstractNode instance
+
+	/* (non-Javadoc)
+	 * @see com.cyberfront.crdt.support.JsonStreamable#writeJson(com.fasterxml.jackson.core.JsonGenerator)
 	 */
-	protected String getSegment() {
-		StringBuilder sb = new StringBuilder();
-		
-		sb.append("\"nodeId\":\"" + this.getId().toString()  + "\",");
-		sb.append("\"datastore\":" + this.datastoreToString());
-		
-		return sb.toString();
+	@Override
+	public void writeJson(JsonGenerator gen) throws IOException {
+		gen.writeStartObject();
+		this.writeSegment(gen);
+		gen.writeEndObject();
 	}
 
 	/* (non-Javadoc)
@@ -157,12 +161,6 @@ public abstract class AbstractNode {
 	 */
 	@Override
 	public String toString() {
-		StringBuilder sb = new StringBuilder();
-		
-		sb.append("{");
-		sb.append(this.getSegment());
-		sb.append("}");
-		
-		return sb.toString();
+		return Support.toJson(this);
 	}
 }
@@ -22,6 +22,8 @@
  */
 package com.cyberfront.crdt.sample.simlation;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.Collection;
 import java.util.Map;
 import java.util.TreeMap;
@@ -34,17 +36,20 @@ import org.apache.logging.log4j.Logger;
 import com.cyberfront.crdt.operations.AbstractOperation;
 import com.cyberfront.crdt.sample.data.AbstractDataType;
 import com.cyberfront.crdt.sample.data.Factory;
+import com.cyberfront.crdt.support.IndexedMap;
+import com.cyberfront.crdt.support.JsonStreamable;
+import com.cyberfront.crdt.support.MemoryEstimate;
 import com.cyberfront.crdt.support.Support;
+import com.fasterxml.jackson.core.JsonGenerator;
 
 /**
  * The Executive class is used to manage the overall execution of the simulation of a distributed CRDT data store. Each of the 
  * distributed nodes are intended to have identical values for the objects managed within each CRDT at the conclusion of the
  * test.
  */
-public class Executive {
+public class Executive implements JsonStreamable {
 	
 	/** The logger to log elements to the Log4J output */
-	@SuppressWarnings("unused")
 	private Logger logger = LogManager.getLogger(AbstractOperation.class);
 
 	/** Defines the default number of nodes for a given simulation if not specified. */
@@ -87,7 +92,7 @@ public class Executive {
 	private static Executive instance;
 
 	/** The nodes the executive is managing */
-	private Map<UUID, Node> nodes;
+	private IndexedMap<UUID, Node> nodes;
 	
 	/** A queue which manages messages awaiting delivery */
 	private MessageRouter router;
@@ -116,6 +121,12 @@ public class Executive {
 	/** A map relating a CRDT name to the name of the node which manages it */
 	private Map<UUID, UUID> crdtLookup;
 	
+	/** The measurements collected over the most recent run of the simulation */
+	private SimulationMetrics metrics;
+	
+	/** The name of the file the measurements are exported to at the end of each run, or null to skip the export */
+	private String metricsFile;
+	
 	/**
 	 * Instantiates a new executive using the default parameters
 	 */
@@ -132,9 +143,9 @@ public class Executive {
 	 *
 	 * @return A map of all the nodes currently being managed
 	 */
-	public Map<UUID, Node> getNodes() {
+	public IndexedMap<UUID, Node> getNodes() {
 		if (null == this.nodes) {
-			this.nodes = new TreeMap<>();
+			this.nodes = new IndexedMap<>();
 		}
 		
 		return nodes;
@@ -148,7 +159,7 @@ public class Executive {
 	public void addNode(Node node) {
 		this.getNodes().put(node.getId(), node);
 	}
-	
+
 	/**
 	 * Retrieve the node of the given name
 	 *
@@ -159,6 +170,21 @@ public class Executive {
 		return this.getNodes().get(id);
 	}
 	
+	/**
+	 * Retrieve the estimated memory retained by the datastores of all of the nodes
+	 *
+	 * @return The estimated memory retained by all of the datastores
+	 */
+	public MemoryEstimate getMemoryEstimate() {
+		MemoryEstimate rv = MemoryEstimate.EMPTY;
+		
+		for (int i = 0; i < this.getNodes().size(); ++i) {
+			rv = rv.add(this.getNodes().getValue(i).getMemoryEstimate());
+		}
+		
+		return rv;
+	}
+	
 	/**
 	 * Retrieve the message router associated with this Executive instance
 	 *
@@ -172,6 +198,38 @@ public class Executive {
 		return router;
 	}
 	
+	/**
+	 * Retrieve the measurements collected over the most recent run of the simulation
+	 *
+	 * @return The simulation metrics
+	 */
+	public SimulationMetrics getMetrics() {
+		if (null == this.metrics) {
+			this.metrics = new SimulationMetrics();
+		}
+		
+		return this.metrics;
+	}
+	
+	/**
+	 * Retrieve the name of the file the measurements are exported to at the end of each run
+	 *
+	 * @return The name of the metrics file, or null if the measurements are not exported
+	 */
+	public String getMetricsFile() {
+		return this.metricsFile;
+	}
+	
+	/**
+	 * Set the name of the file the measurements are exported to at the end of each run.  A ".csv" file accumulates a row
+	 * per run, while any other file is overwritten with the measurements of the latest run in JSON format.
+	 *
+	 * @param metricsFile The name of the metrics file, or null to skip the export
+	 */
+	public void setMetricsFile(String metricsFile) {
+		this.metricsFile = metricsFile;
+	}
+	
 	/**
 	 * Retrieve the static executive instance
 	 *
@@ -365,20 +423,9 @@ public class Executive {
 	 * @return The randomly chosen node
 	 */
 	public Node pickNode() {
-		if (this.getNodes().size() == 0) {
-			return null;
-		}
-		
-		int pick = Support.getRandom().nextInt(this.getNodes().size());
-		
-		for (Map.Entry<UUID, Node> entry : this.getNodes().entrySet()) {
-			if (pick-- <= 0) {
-				return entry.getValue();
-			}
-		}
-		
-		return null;
+		return this.getNodes().pickValue(Support.getRandom());
 	}
+
 	
 	/**
 	 * Create a new object with the specified node as the owner.  Generate and return the message set required to ensure all 
@@ -468,10 +515,11 @@ public class Executive {
 	}
 	
 	/**
-	 * Deliver the next message in the delivery queue to the node which is the intended recipient.  Delivery of this next message
-	 * may result in generation of a number of additional messages which are passed back to the calling routine.
+	 * Deliver the next message in the delivery queue to the node which is the intended recipient, along with any other messages
+	 * due at the same time for the same node and object.  Delivery of this next batch of messages may result in generation of a
+	 * number of additional messages which are passed back to the calling routine.
 	 *
-	 * @return The collection of messages which results from delivery of the next message in the delivery queue
+	 * @return The collection of messages which results from delivery of the next batch of messages in the delivery queue
 	 */
 	private Collection<Message<? extends AbstractDataType>> doDeliver() {
 		Collection<Message<? extends AbstractDataType>> rv;
@@ -520,9 +568,11 @@ public class Executive {
 	}
 	
 	/**
-	 * Execute the simulation with the settings given. 
+	 * Execute the simulation with the settings given.  Measurements are collected over the run, and exported to the
+	 * metrics file, if one is set, once it completes.
 	 */
 	public void execute() {
+		this.getMetrics().start();
 		this.generateNodes();
 		
 		while (this.eventCount() > 0) {
@@ -530,6 +580,17 @@ public class Executive {
 			EventType event = this.pickEvent();
 			Collection<Message<? extends AbstractDataType>> messages = this.handleEvent(event, node);
 			this.transmit(messages);
+			this.getMetrics().recordEvent(event, this.getTimestamp(), !messages.isEmpty(), this.getDeliveryCount());
+		}
+		
+		this.getMetrics().stop(this.getTimestamp(), this.getRouter().getDeliveredCount(), this.getNodes().values());
+		
+		if (null != this.getMetricsFile()) {
+			try {
+				this.getMetrics().export(this.getMetricsFile());
+			} catch (IOException e) {
+				logger.error("Unable to export simulation metrics to " + this.getMetricsFile(), e);
+			}
 		}
 	}
 
@@ -538,8 +599,7 @@ public class Executive {
 	 */
 	private void generateNodes() {
 		for (int i=0; i<this.getNodeCount(); ++i) {
-			Node node = new Node();
-			this.getNodes().put(node.getId(), node);
+			this.addNode(new Node());
 		}
 	}
 
@@ -590,6 +650,7 @@ public class Executive {
 		this.getNodes().clear();
 		this.getRouter().clear();
 		this.getCrdtLookup().clear();
+		this.getMetrics().clear();
 	}
 
 	/**
@@ -628,25 +689,36 @@ public class Executive {
 	}
 
 	/**
-	 * Return a segment needed to generate the serialized version of the Executive.  The format is JSON-like
-	 * @return The segment containing a string serialization of the Executiv in a JSON-like format.
+	 * Stream the fields of this instance to the given generator
+	 *
+	 * @param gen The generator to write to
+	 * @throws IOException If the generator fails to write
 	 */
-	protected String getSegment() {
-		StringBuilder sb = new StringBuilder();
-		
-		sb.append("\"createCount\":" + this.getCreateCount() + ",");
-		sb.append("\"deleteCount\":" + this.getDeleteCount() + ",");
-		sb.append("\"deliveryCount\":" + this.getDeliveryCount() + ",");
-		sb.append("\"nodeCount\":" + this.getNodeCount() + ",");
-		sb.append("\"readCount\":" + this.getReadCount() + ",");
-		sb.append("\"updateCount\":" + this.getUpdateCount() + ",");
-		sb.append("\"rejectProbability\":" + this.getRejectProbability() + ",");
-		sb.append("\"updateProbability\":" + this.getUpdateProbability() + ",");
-		sb.append("\"router\":" + this.getRouter().toString() + ",");
-		sb.append("\"crdtLookup\":" + Support.convert(this.getCrdtLookup()) + ",");
-		sb.append("\"nodes\":" + Support.convert(this.getNodes()));
-		
-		return sb.toString();
+	protected void writeSegment(JsonGenerator gen) throws IOException {
+		gen.writeNumberField("createCount", this.getCreateCount());
+		gen.writeNumberField("deleteCount", this.getDeleteCount());
+		gen.writeNumberField("deliveryCount", this.getDeliveryCount());
+		gen.writeNumberField("nodeCount", this.getNodeCount());
+		gen.writeNumberField("readCount", this.getReadCount());
+		gen.writeNumberField("updateCount", this.getUpdateCount());
+		gen.writeNumberField("rejectProbability", this.getRejectProbability());
+		gen.writeNumberField("updateProbability", this.getUpdateProbability());
+		gen.writeFieldName("router");
+		this.getRouter().writeJson(gen);
+		gen.writeFieldName("crdtLookup");
+		Support.writeJson(gen, this.getCrdtLookup());
+		gen.writeFieldName("nodes");
+		Support.writeJson(gen, this.getNodes());
+	}
+
+	/* (non-Javadoc)
+	 * @see com.cyberfront.crdt.support.JsonStreamable#writeJson(com.fasterxml.jackson.core.JsonGenerator)
+	 */
+	@Override
+	public void writeJson(JsonGenerator gen) throws IOException {
+		gen.writeStartObject();
+		this.writeSegment(gen);
+		gen.writeEndObject();
 	}
 	
 	/* (non-Javadoc)
@@ -654,7 +726,24 @@ public class Executive {
 	 */
 	@Override
 	public String toString() {
-		return "{" + this.getSegment() + "}";
+		return Support.toJson(this);
+	}
+	
+	/**
+	 * Stream the state of the Executive, including every node and pending message, as JSON to a new temporary file.
+	 * This is intended for diagnostics, and uses a constant amount of memory however large the simulation grows.
+	 *
+	 * @return The file written, or null if it could not be written
+	 */
+	public File dump() {
+		try {
+			File file = File.createTempFile("executive", ".json");
+			Support.writeJson(this, file);
+			return file;
+		} catch (IOException e) {
+			logger.error("Unable to write the executive state", e);
+			return null;
+		}
 	}
 	
 	public void checkMessageConsistency() {
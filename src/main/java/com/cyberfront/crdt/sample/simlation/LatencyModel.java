@@ -0,0 +1,87 @@
+/*
+ * Copyright (c) 2017 Cybernetic Frontiers LLC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package com.cyberfront.crdt.sample.simlation;
+
+import java.util.Random;
+
+/**
+ * The LatencyModel interface describes the distribution of the time a message spends in transit across a single link
+ * of the simulated network.  Static factory methods are provided for the commonly used distributions.
+ */
+@FunctionalInterface
+public interface LatencyModel {
+	/**
+	 * Draw a single transit time from the distribution
+	 *
+	 * @param rnd The random number generator to draw the sample from
+	 * @return The transit time drawn, which is never negative
+	 */
+	public abstract long sample(Random rnd);
+
+	/**
+	 * Build a latency model which always produces the same transit time
+	 *
+	 * @param latency The transit time to produce
+	 * @return The constant latency model
+	 */
+	public static LatencyModel constant(long latency) {
+		return rnd -> latency;
+	}
+
+	/**
+	 * Build a latency model which draws transit times uniformly from the range [min, max)
+	 *
+	 * @param min The smallest transit time which may be produced
+	 * @param max The upper bound, exclusive, of the transit times which may be produced
+	 * @return The uniform latency model
+	 */
+	public static LatencyModel uniform(long min, long max) {
+		if (max <= min || max - min > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("Invalid uniform latency range [" + min + ", " + max + ")");
+		}
+
+		int range = (int) (max - min);
+		return rnd -> min + rnd.nextInt(range);
+	}
+
+	/**
+	 * Build a latency model which draws exponentially distributed transit times
+	 *
+	 * @param mean The mean transit time
+	 * @return The exponential latency model
+	 */
+	public static LatencyModel exponential(double mean) {
+		return rnd -> Math.round(-mean * Math.log(1.0 - rnd.nextDouble()));
+	}
+
+	/**
+	 * Build a latency model which draws normally distributed transit times, truncated at zero
+	 *
+	 * @param mean The mean transit time
+	 * @param deviation The standard deviation of the transit time
+	 * @return The normal latency model
+	 */
+	public static LatencyModel normal(double mean, double deviation) {
+		return rnd -> Math.max(0L, Math.round(mean + deviation * rnd.nextGaussian()));
+	}
+}
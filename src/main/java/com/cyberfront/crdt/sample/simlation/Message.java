@@ -22,7 +22,10 @@
  */
 package com.cyberfront.crdt.sample.simlation;
 
+import java.io.IOException;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
 import java.util.UUID;
 import java.util.stream.Collectors;
 
@@ -32,7 +35,9 @@ import org.apache.logging.log4j.Logger;
 import com.cyberfront.crdt.operations.AbstractOperation.OperationType;
 import com.cyberfront.crdt.operations.OperationManager.StatusType;
 import com.cyberfront.crdt.sample.data.AbstractDataType;
+import com.cyberfront.crdt.support.JsonStreamable;
 import com.cyberfront.crdt.support.Support;
+import com.fasterxml.jackson.core.JsonGenerator;
 
 /**
  * The Message class encapsulates a delivery mechanism for moving an operation generated at one node on a particular CRDT object
@@ -41,7 +46,7 @@ import com.cyberfront.crdt.support.Support;
  *
  * @param <T> The generic type of the object the operations is intended to operate upon
  */
-public final class Message<T extends AbstractDataType> implements Comparable<Message<? extends AbstractDataType>> {
+public final class Message<T extends AbstractDataType> implements Comparable<Message<? extends AbstractDataType>>, JsonStreamable {
 	/** A logger for writing to the local log output. */
 	@SuppressWarnings("unused")
 	private static final Logger logger = LogManager.getLogger(Message.class);
@@ -55,11 +60,17 @@ public final class Message<T extends AbstractDataType> implements Comparable<Mes
 	/** The source node identifier */
 	private final UUID srcNodeId;
 	
+	/** The identifier of the node which sent this message, which is a relay rather than the source for gossiped messages */
+	private final UUID senderNodeId;
+	
+	/** The nodes the destination relays the message on to, when it is gossiped */
+	private final List<UUID> span;
+	
 	/** The operation manager to deliver to the destination node */
 	private final SimOperationManager<T> mgr;
 	
 	/**
-	 * Instantiates a new message.
+	 * Instantiates a new message sent directly from its source node.
 	 *
 	 * @param srcNodeId Name of the source node for the message
 	 * @param dstNodeId Name of the message destination node
@@ -67,10 +78,27 @@ public final class Message<T extends AbstractDataType> implements Comparable<Mes
 	 * @param timestamp The scheduled delivery time stamp
 	 */
 	public Message(UUID srcNodeId, UUID dstNodeId, SimOperationManager<T> mgr, Long timestamp) {
+		this(srcNodeId, srcNodeId, dstNodeId, mgr, timestamp, Collections.emptyList());
+	}
+	
+	/**
+	 * Instantiates a new message which is gossiped, and so may be sent by a node relaying it from its source and may in
+	 * turn be relayed by its destination
+	 *
+	 * @param srcNodeId Name of the source node for the message
+	 * @param senderNodeId Name of the node sending the message, which is either the source or a node relaying it
+	 * @param dstNodeId Name of the message destination node
+	 * @param mgr Operation manager containing the operation details to pass from the source to destination node
+	 * @param timestamp The scheduled delivery time stamp
+	 * @param span The nodes the destination relays the message on to
+	 */
+	public Message(UUID srcNodeId, UUID senderNodeId, UUID dstNodeId, SimOperationManager<T> mgr, Long timestamp, List<UUID> span) {
 		this.srcNodeId = srcNodeId;
+		this.senderNodeId = senderNodeId;
 		this.dstNodeId = dstNodeId;
-		this.mgr = mgr.copy();
+		this.mgr = Executive.getExecutive().getRouter().getNetwork().transmit(mgr);
 		this.deliveryTime  = timestamp;
+		this.span = span;
 	}
 	
 	/**
@@ -84,7 +112,7 @@ public final class Message<T extends AbstractDataType> implements Comparable<Mes
 		this(srcNodeId,
 			dstNodeId,
 			 mgr,
-			 Executive.getExecutive().getTimestamp() + Support.getRandom().nextInt(65536)
+			 Executive.getExecutive().getRouter().getNetwork().getDeliveryTime(srcNodeId, dstNodeId, Executive.getExecutive().getTimestamp())
 		);
 	}
 	
@@ -94,10 +122,23 @@ public final class Message<T extends AbstractDataType> implements Comparable<Mes
 	 * @param src The source Message to copy
 	 */
 	private Message(Message<T> src) {
-		this(src.getSource(),
-			src.getDestination(),
-			src.getManager(),
-			src.getDeliveryTime());
+		this(src, src.getDeliveryTime());
+	}
+	
+	/**
+	 * Instantiates a copy of a source Message instance which is delivered at a different time.  The copy carries the
+	 * operation manager the source already carries, so it is not transmitted across the network again.
+	 *
+	 * @param src The source Message to copy
+	 * @param deliveryTime The delivery time stamp of the copy
+	 */
+	private Message(Message<T> src, Long deliveryTime) {
+		this.srcNodeId = src.getSource();
+		this.senderNodeId = src.getSender();
+		this.dstNodeId = src.getDestination();
+		this.mgr = src.getManager();
+		this.deliveryTime = deliveryTime;
+		this.span = src.getSpan();
 	}
 	
 	/**
@@ -114,6 +155,20 @@ public final class Message<T extends AbstractDataType> implements Comparable<Mes
 	 */
 	public UUID getSource() { return this.srcNodeId; }
 
+	/**
+	 * Gets the identifier of the node which sent the message, which differs from the source when the message is relayed
+	 *
+	 * @return the sender node identifier
+	 */
+	public UUID getSender() { return this.senderNodeId; }
+
+	/**
+	 * Gets the nodes the destination relays the message on to when it is gossiped
+	 *
+	 * @return the nodes to relay the message to, which is empty unless the message is gossiped
+	 */
+	public List<UUID> getSpan() { return this.span; }
+
 	/**
 	 * Gets the operation manager to be delivered
 	 *
@@ -139,19 +194,38 @@ public final class Message<T extends AbstractDataType> implements Comparable<Mes
 	}
 	
 	/**
-	 * Gets a segment for the class instance to show the value of the various fields
+	 * Build and return a copy of this message which is to be delivered at a different time
+	 * 
+	 * @param deliveryTime Delivery time stamp of the copy
+	 * @return Copy of this message with the given delivery time
+	 */
+	public Message<T> copy(Long deliveryTime) {
+		return new Message<>(this, deliveryTime);
+	}
+	
+	/**
+	 * Stream the fields of this instance to the given generator
 	 *
-	 * @return The String segment containing the value of the various fields formatted as a JSON string
+	 * @param gen The generator to write to
+	 * @throws IOException If the generator fails to write
 	 */
-	protected String getSegment() {
-		StringBuilder sb = new StringBuilder();
+	protected void writeSegment(JsonGenerator gen) throws IOException {
+		gen.writeStringField("source", String.valueOf(this.getSource()));
+		gen.writeStringField("sender", String.valueOf(this.getSender()));
+		gen.writeStringField("destination", String.valueOf(this.getDestination()));
+		gen.writeNumberField("deliveryTime", this.getDeliveryTime());
+		gen.writeFieldName("manager");
+		Support.writeJson(gen, this.getManager());
+	}
 
-		sb.append("\"source\":\"" + this.getSource() + "\",");
-		sb.append("\"destination\":\"" + this.getDestination() + "\",");
-		sb.append("\"deliveryTime\":" + this.getDeliveryTime() + ",");
-		sb.append("\"manager\":" + this.getManager().toString());
-		
-		return sb.toString();
+	/* (non-Javadoc)
+	 * @see com.cyberfront.crdt.support.JsonStreamable#writeJson(com.fasterxml.jackson.core.JsonGenerator)
+	 */
+	@Override
+	public void writeJson(JsonGenerator gen) throws IOException {
+		gen.writeStartObject();
+		this.writeSegment(gen);
+		gen.writeEndObject();
 	}
 
 	/* (non-Javadoc)
@@ -213,13 +287,7 @@ public final class Message<T extends AbstractDataType> implements Comparable<Mes
 	 */
 	@Override
 	public String toString() {
-		StringBuilder sb = new StringBuilder();
-		
-		sb.append('{');
-		sb.append(this.getSegment());
-		sb.append('}');
-		
-		return sb.toString();
+		return Support.toJson(this);
 	}
 
 	/**
@@ -22,7 +22,10 @@
  */
 package com.cyberfront.crdt.sample.simlation;
 
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 import java.util.PriorityQueue;
 import java.util.TreeSet;
 
@@ -30,13 +33,15 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import com.cyberfront.crdt.sample.data.AbstractDataType;
+import com.cyberfront.crdt.support.JsonStreamable;
 import com.cyberfront.crdt.support.Support;
+import com.fasterxml.jackson.core.JsonGenerator;
 
 /**
  * The MessageRouter class is responsible for message delivery to the correct node in the distributed environment.  Messages are inserted 
  * into the message priority queue asynchronously 
  */
-public class MessageRouter {
+public class MessageRouter implements JsonStreamable {
 	/** A logger for writing to the local log output. */
 	@SuppressWarnings("unused")
 	private static final Logger logger = LogManager.getLogger(MessageRouter.class);
@@ -47,6 +52,15 @@ public class MessageRouter {
 	/** A priority queue ordered byt message time stamp */
 	private PriorityQueue<Message<? extends AbstractDataType>> messages;
 	
+	/** The network model used to determine message delivery times */
+	private NetworkModel network;
+	
+	/** The number of duplicate messages the receiving nodes discarded on delivery */
+	private long discardCount = 0L;
+	
+	/** The number of messages delivered, including duplicates */
+	private long deliveredCount = 0L;
+	
 	/**
 	 * Retrieve priority queue containing the messages which are pending delivery
 	 *
@@ -60,6 +74,53 @@ public class MessageRouter {
 		return this.messages;
 	}
 
+	/**
+	 * Retrieve the network model used to determine message delivery times
+	 *
+	 * @return The network model
+	 */
+	public NetworkModel getNetwork() {
+		if (null == this.network) {
+			this.network = new NetworkModel();
+		}
+		
+		return this.network;
+	}
+
+	/**
+	 * Replace the network model used to determine message delivery times
+	 *
+	 * @param network The new network model
+	 */
+	public void setNetwork(NetworkModel network) {
+		this.network = network;
+	}
+
+	/**
+	 * Retrieve the number of duplicate messages the receiving nodes discarded on delivery
+	 *
+	 * @return The number of duplicate messages discarded
+	 */
+	public long getDiscardCount() {
+		return this.discardCount;
+	}
+
+	/**
+	 * Count a duplicate message the receiving node discarded because its CRDT already held the operation
+	 */
+	void discard() {
+		++this.discardCount;
+	}
+
+	/**
+	 * Retrieve the number of messages delivered, including the duplicates the receiving nodes discarded
+	 *
+	 * @return The number of messages delivered
+	 */
+	public long getDeliveredCount() {
+		return this.deliveredCount;
+	}
+
 	/**
 	 * Retrieve the current time stamp value which equates to the timestamp of the most recent message delivered or 
 	 * being delivered
@@ -98,7 +159,9 @@ public class MessageRouter {
 	/**
 	 * Deliver the next message with a probability the owning node will reject the update the message contains.
 	 * Rejections are for Create, Update and Delete operations, though in practice, Creates are only performed on 
-	 * the owning node, so those don't actually get rejected. 
+	 * the owning node, so those don't actually get rejected.  Every other message which is due by the delivery time
+	 * of the next message and which is bound for the same node and object is delivered along with it as a single
+	 * batch, so the destination CRDT is only updated and materialized once for the entire batch.
 	 *
 	 * @param pReject Probability the owning node will reject the  message payload
 	 * @return The collection of messages to forward to other nodes in response to handling the
@@ -106,25 +169,65 @@ public class MessageRouter {
 	 */
 	public Collection<Message <? extends AbstractDataType>> deliverNextMessage(Double pReject) {
 		Collection<Message <? extends AbstractDataType>> rv;
-		if (this.isEmpty()) {
+		List<Message<? extends AbstractDataType>> batch = this.pollBatch();
+
+		if (batch.isEmpty()) {
 			rv =  new TreeSet<>();
 		} else {
-			Message<? extends AbstractDataType> msg = this.getMessages().poll();
-			this.setTimestamp(msg.getDeliveryTime());
-			Node node = Executive.getExecutive().getNode(msg.getDestination());
-			rv = node.push(msg, pReject);
+			Node node = Executive.getExecutive().getNode(batch.get(0).getDestination());
+			this.deliveredCount += batch.size();
+			rv = node.push(batch, pReject);
 		}
 
 		return rv;
 	}
 
+	/**
+	 * Remove the next message from the queue, advance the current timestamp to its delivery time, and collect every
+	 * other message due by that time which is bound for the same destination node and object.  Messages due at the
+	 * same time but bound elsewhere are returned to the queue.  Duplicate messages are delivered like any other, and left
+	 * for the receiving CRDT to reject.
+	 *
+	 * @return The batch of messages to deliver, in delivery order, with the next message in the queue first, or an
+	 * empty batch if the queue is empty
+	 */
+	private List<Message<? extends AbstractDataType>> pollBatch() {
+		List<Message<? extends AbstractDataType>> batch = new ArrayList<>();
+		List<Message<? extends AbstractDataType>> deferred = new ArrayList<>();
+		Message<? extends AbstractDataType> first = this.getMessages().poll();
+
+		if (null == first) {
+			return batch;
+		}
+
+		this.setTimestamp(first.getDeliveryTime());
+		batch.add(first);
+
+		while (!this.isEmpty() && this.getMessages().peek().getDeliveryTime() <= this.getTimestamp()) {
+			Message<? extends AbstractDataType> msg = this.getMessages().poll();
+
+			if (first.getDestination().equals(msg.getDestination()) &&
+				first.getManager().getObjectId().equals(msg.getManager().getObjectId())) {
+				batch.add(msg);
+			} else {
+				deferred.add(msg);
+			}
+		}
+		
+		this.getMessages().addAll(deferred);
+		
+		return batch;
+	}
+
 	/**
 	 * Add a collection of messages to the message queue.
 	 *
 	 * @param messages the collection of messages to add to the message queue
 	 */
 	public void add(Collection<Message<? extends AbstractDataType>> messages) {
-		this.getMessages().addAll(messages);
+		for (Message<? extends AbstractDataType> message : messages) {
+			this.addMessage(message);
+		}
 	}
 	
 	/**
@@ -133,28 +236,60 @@ public class MessageRouter {
 	 * @param message The message to add to the message queue
 	 */
 	public void add(Message<AbstractDataType> message) {
+		this.addMessage(message);
+	}
+	
+	/**
+	 * Adds a single message to the message queue, along with a duplicate of it if the network model duplicates it.  The
+	 * duplicate is sent by the same node at the same time as the message, over the same link.
+	 *
+	 * @param message The message to add to the message queue
+	 */
+	private void addMessage(Message<? extends AbstractDataType> message) {
+		Long duplicateTime = this.getNetwork().getDuplicateTime(message.getSender(), message.getDestination(), this.getTimestamp());
+		
 		this.getMessages().add(message);
+		
+		if (null != duplicateTime) {
+			this.getMessages().add(message.copy(duplicateTime));
+		}
 	}
 	
 	/**
-	 * Clear the message queue and reset the timestamp to 0
+	 * Clear the message queue, reset the timestamp to 0 and reset the state of the network model, though not its
+	 * configuration
 	 */
 	public void clear() {
 		this.setTimestamp(0L);
 		this.getMessages().clear();
+		this.getNetwork().reset();
+		this.discardCount = 0L;
+		this.deliveredCount = 0L;
 	}
 
 	/**
-	 * Generate and return the JSON formated segment for the elements comprising this MessageRouter instance  
-	 * @return the JSON formated segment for the elements comprising this MessageRouter instance
+	 * Stream the fields of this instance to the given generator
+	 *
+	 * @param gen The generator to write to
+	 * @throws IOException If the generator fails to write
 	 */
-	protected String getSegment() {
-		StringBuilder sb = new StringBuilder();
-		
-		sb.append("\"timestamp\":" + this.getTimestamp() + ",");
-		sb.append("\"messages\":" + Support.convert(this.getMessages()));
-		
-		return sb.toString();
+	protected void writeSegment(JsonGenerator gen) throws IOException {
+		gen.writeNumberField("timestamp", this.getTimestamp());
+		gen.writeNumberField("discardCount", this.getDiscardCount());
+		gen.writeFieldName("network");
+		this.getNetwork().writeJson(gen);
+		gen.writeFieldName("messages");
+		Support.writeJson(gen, this.getMessages());
+	}
+
+	/* (non-Javadoc)
+	 * @see com.cyberfront.crdt.support.JsonStreamable#writeJson(com.fasterxml.jackson.core.JsonGenerator)
+	 */
+	@Override
+	public void writeJson(JsonGenerator gen) throws IOException {
+		gen.writeStartObject();
+		this.writeSegment(gen);
+		gen.writeEndObject();
 	}
 	
 	/* (non-Javadoc)
@@ -162,7 +297,7 @@ public class MessageRouter {
 	 */
 	@Override
 	public String toString() {
-		return "{" + this.getSegment() + "}";
+		return Support.toJson(this);
 	}
 	
 	/**
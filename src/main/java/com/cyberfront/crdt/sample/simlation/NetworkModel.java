@@ -0,0 +1,681 @@
+/*
+ * Copyright (c) 2017 Cybernetic Frontiers LLC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package com.cyberfront.crdt.sample.simlation;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.cyberfront.crdt.sample.data.AbstractDataType;
+import com.cyberfront.crdt.support.JsonStreamable;
+import com.cyberfront.crdt.support.Support;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+/**
+ * The NetworkModel class determines when messages sent between simulated nodes arrive.  Nodes are assigned to regions,
+ * and each ordered pair of regions may be given its own link with a latency distribution and a per message transmission
+ * time, the latter of which caps the bandwidth of the link since messages on the link are transmitted one after
+ * another.  Nodes may be assigned to regions explicitly, or spread across a number of generated regions by their
+ * identifiers, which allows a network to be configured before the nodes of a simulation exist.  Partitions separate
+ * groups of regions for a span of time, holding messages across the partition until it heals.  Messages may be
+ * dropped, in which case they are retransmitted after a timeout, or duplicated, in which case the MessageRouter delivers
+ * the extra copy to a receiver whose CRDT rejects it as already held.  Finally, rather than
+ * broadcasting an operation directly from its source to every node, the operation may be gossiped along a tree with a
+ * fixed fan-out.  The source then only sends to its children in the tree, and every other node relays the operation to
+ * its own children once it receives it, so the source's load is bounded by the fan-out while the relays are counted as
+ * messages in their own right.  Each relayed message still names the node which originated it, along with its sender.
+ *
+ * The default model has a single region, no partitions, drops or duplicates, and broadcasts every operation with a
+ * transit time drawn uniformly from [0, 65536).
+ */
+public class NetworkModel implements JsonStreamable {
+	/** A logger for writing to the local log output. */
+	@SuppressWarnings("unused")
+	private static final Logger logger = LogManager.getLogger(NetworkModel.class);
+
+	/** The region assigned to nodes which have not been explicitly assigned to one */
+	public static final String DEFAULT_REGION = "default";
+
+	/** The default time to wait before retransmitting a dropped message */
+	public static final long DEFAULT_RETRANSMIT_TIMEOUT = 65536L;
+
+	/**
+	 * The Link class describes the link between the nodes of one region and those of another
+	 */
+	private static class Link {
+		/** The distribution of transit times over the link */
+		private final LatencyModel latency;
+
+		/** The time needed to put a single message onto the link */
+		private final long transmissionTime;
+
+		/** The time at which the link is next free to transmit a message */
+		private long busyUntil = 0L;
+
+		/**
+		 * Instantiates a new link
+		 *
+		 * @param latency The distribution of transit times over the link
+		 * @param transmissionTime The time needed to put a single message onto the link
+		 */
+		public Link(LatencyModel latency, long transmissionTime) {
+			this.latency = latency;
+			this.transmissionTime = transmissionTime;
+		}
+
+		/**
+		 * Reserve the link to transmit a message which is ready to be sent at the given time
+		 *
+		 * @param ready The time the message is ready to be sent
+		 * @return The time at which the message has been completely transmitted onto the link
+		 */
+		public long reserve(long ready) {
+			long start = Math.max(ready, this.busyUntil);
+			this.busyUntil = start + this.transmissionTime;
+			return this.busyUntil;
+		}
+	}
+
+	/**
+	 * The Partition class describes a span of time during which the nodes in the regions on one side of the partition
+	 * are unable to communicate with the nodes on the other side.
+	 */
+	private static class Partition {
+		/** The regions on one side of the partition */
+		private final Set<String> side;
+
+		/** The time at which the partition starts */
+		private final long start;
+
+		/** The time at which the partition heals */
+		private final long heal;
+
+		/**
+		 * Instantiates a new partition
+		 *
+		 * @param side The regions on one side of the partition
+		 * @param start The time at which the partition starts
+		 * @param heal The time at which the partition heals
+		 */
+		public Partition(Collection<String> side, long start, long heal) {
+			this.side = new HashSet<>(side);
+			this.start = start;
+			this.heal = heal;
+		}
+
+		/**
+		 * Determine the earliest time at or after the given one at which a message can cross from the source region to
+		 * the destination region
+		 *
+		 * @param src The source region
+		 * @param dst The destination region
+		 * @param time The time the message is ready to cross
+		 * @return The earliest time the message can cross the partition
+		 */
+		public long hold(String src, String dst, long time) {
+			boolean separated = this.side.contains(src) != this.side.contains(dst);
+			return separated && this.start <= time && time < this.heal ? this.heal : time;
+		}
+	}
+
+	/** The distribution of transit times for region pairs which have no link defined */
+	private LatencyModel defaultLatency = LatencyModel.uniform(0L, 65536L);
+
+	/** The region of each node which was explicitly assigned to one */
+	private Map<UUID, String> regions;
+
+	/** The number of generated regions nodes without an explicit region are spread across */
+	private int regionCount = 0;
+
+	/** The links between regions, indexed by source region and then by destination region */
+	private Map<String, Map<String, Link>> links;
+
+	/** The partitions of the network */
+	private List<Partition> partitions;
+
+	/** The probability a message is dropped on each attempt to send it */
+	private double dropProbability = 0.0;
+
+	/** The time to wait before retransmitting a dropped message */
+	private long retransmitTimeout = DEFAULT_RETRANSMIT_TIMEOUT;
+
+	/** The probability a message is delivered twice */
+	private double duplicateProbability = 0.0;
+
+	/** The number of nodes each node forwards an operation to, or zero to broadcast every operation from its source */
+	private int fanout = 0;
+
+	/** The number of messages sent between distinct nodes, including retransmissions and relays */
+	private long sentCount = 0L;
+
+	/** The number of messages relayed by nodes other than the source of the operation they carry */
+	private long relayCount = 0L;
+
+	/** The number of messages dropped */
+	private long dropCount = 0L;
+
+	/** Flag indicating whether operations are encoded to bytes and decoded again as they cross the network */
+	private boolean wireEncoding = false;
+
+	/** The number of bytes of encoded operations sent across the network */
+	private long encodedBytes = 0L;
+
+	/** The number of duplicate messages generated */
+	private long duplicateCount = 0L;
+
+	/**
+	 * Retrieve the latency model for region pairs which have no link defined
+	 *
+	 * @return The default latency model
+	 */
+	public LatencyModel getDefaultLatency() {
+		return this.defaultLatency;
+	}
+
+	/**
+	 * Set the latency model for region pairs which have no link defined
+	 *
+	 * @param defaultLatency The new default latency model
+	 */
+	public void setDefaultLatency(LatencyModel defaultLatency) {
+		this.defaultLatency = defaultLatency;
+	}
+
+	/**
+	 * Retrieve the map of explicit node region assignments
+	 *
+	 * @return The map of explicit node region assignments
+	 */
+	private Map<UUID, String> getRegions() {
+		if (null == this.regions) {
+			this.regions = new TreeMap<>();
+		}
+
+		return this.regions;
+	}
+
+	/**
+	 * Retrieve the links between regions
+	 *
+	 * @return The links between regions
+	 */
+	private Map<String, Map<String, Link>> getLinks() {
+		if (null == this.links) {
+			this.links = new TreeMap<>();
+		}
+
+		return this.links;
+	}
+
+	/**
+	 * Retrieve the partitions of the network
+	 *
+	 * @return The partitions of the network
+	 */
+	private List<Partition> getPartitions() {
+		if (null == this.partitions) {
+			this.partitions = new ArrayList<>();
+		}
+
+		return this.partitions;
+	}
+
+	/**
+	 * Assign a node to a region
+	 *
+	 * @param nodeId The identifier of the node to assign
+	 * @param region The region to assign the node to
+	 */
+	public void setRegion(UUID nodeId, String region) {
+		this.getRegions().put(nodeId, region);
+	}
+
+	/**
+	 * Retrieve the number of generated regions nodes without an explicit region are spread across
+	 *
+	 * @return The number of generated regions
+	 */
+	public int getRegionCount() {
+		return this.regionCount;
+	}
+
+	/**
+	 * Set the number of generated regions nodes without an explicit region are spread across
+	 *
+	 * @param regionCount The new number of generated regions, or zero to place those nodes in the default region
+	 */
+	public void setRegionCount(int regionCount) {
+		this.regionCount = regionCount;
+	}
+
+	/**
+	 * Retrieve the name of one of the generated regions
+	 *
+	 * @param index The index of the generated region
+	 * @return The name of the generated region
+	 */
+	public static String getRegionName(int index) {
+		return "region" + index;
+	}
+
+	/**
+	 * Retrieve the region of a node
+	 *
+	 * @param nodeId The identifier of the node
+	 * @return The region the node is assigned to
+	 */
+	public String getRegion(UUID nodeId) {
+		String region = this.getRegions().get(nodeId);
+
+		if (null == region) {
+			region = this.getRegionCount() > 0
+					? getRegionName(Math.floorMod(nodeId.hashCode(), this.getRegionCount()))
+					: DEFAULT_REGION;
+		}
+
+		return region;
+	}
+
+	/**
+	 * Define the link used by messages sent from the nodes of one region to the nodes of another.  Links are directed,
+	 * so the reverse link must be defined separately.
+	 *
+	 * @param srcRegion The region of the sending nodes
+	 * @param dstRegion The region of the receiving nodes
+	 * @param latency The distribution of transit times over the link
+	 * @param transmissionTime The time needed to put a single message onto the link, or zero for unlimited bandwidth
+	 */
+	public void setLink(String srcRegion, String dstRegion, LatencyModel latency, long transmissionTime) {
+		Map<String, Link> dstLinks = this.getLinks().get(srcRegion);
+
+		if (null == dstLinks) {
+			dstLinks = new TreeMap<>();
+			this.getLinks().put(srcRegion, dstLinks);
+		}
+
+		dstLinks.put(dstRegion, new Link(latency, transmissionTime));
+	}
+
+	/**
+	 * Retrieve the link used by messages from one node to another
+	 *
+	 * @param src The source node identifier
+	 * @param dst The destination node identifier
+	 * @return The link between the regions of the two nodes, or null if none was defined
+	 */
+	private Link getLink(UUID src, UUID dst) {
+		Map<String, Link> dstLinks = this.getLinks().get(this.getRegion(src));
+		return null == dstLinks ? null : dstLinks.get(this.getRegion(dst));
+	}
+
+	/**
+	 * Add a partition separating the nodes of the given regions from all the others between the start and heal times
+	 *
+	 * @param side The regions on one side of the partition
+	 * @param start The time at which the partition starts
+	 * @param heal The time at which the partition heals
+	 */
+	public void addPartition(Collection<String> side, long start, long heal) {
+		this.getPartitions().add(new Partition(side, start, heal));
+	}
+
+	/**
+	 * Retrieve the probability a message is dropped on each attempt to send it
+	 *
+	 * @return The drop probability
+	 */
+	public double getDropProbability() {
+		return this.dropProbability;
+	}
+
+	/**
+	 * Set the probability a message is dropped on each attempt to send it
+	 *
+	 * @param dropProbability The new drop probability, which must be less than one
+	 */
+	public void setDropProbability(double dropProbability) {
+		this.dropProbability = dropProbability;
+	}
+
+	/**
+	 * Retrieve the time to wait before retransmitting a dropped message
+	 *
+	 * @return The retransmit timeout
+	 */
+	public long getRetransmitTimeout() {
+		return this.retransmitTimeout;
+	}
+
+	/**
+	 * Set the time to wait before retransmitting a dropped message
+	 *
+	 * @param retransmitTimeout The new retransmit timeout
+	 */
+	public void setRetransmitTimeout(long retransmitTimeout) {
+		this.retransmitTimeout = retransmitTimeout;
+	}
+
+	/**
+	 * Retrieve the probability a message is delivered twice
+	 *
+	 * @return The duplicate probability
+	 */
+	public double getDuplicateProbability() {
+		return this.duplicateProbability;
+	}
+
+	/**
+	 * Set the probability a message is delivered twice
+	 *
+	 * @param duplicateProbability The new duplicate probability
+	 */
+	public void setDuplicateProbability(double duplicateProbability) {
+		this.duplicateProbability = duplicateProbability;
+	}
+
+	/**
+	 * Retrieve the number of nodes each node forwards an operation to
+	 *
+	 * @return The gossip fan-out, or zero when operations are broadcast from their source
+	 */
+	public int getFanout() {
+		return this.fanout;
+	}
+
+	/**
+	 * Set the number of nodes each node forwards an operation to
+	 *
+	 * @param fanout The new gossip fan-out, or zero to broadcast operations from their source
+	 */
+	public void setFanout(int fanout) {
+		this.fanout = fanout;
+	}
+
+	/**
+	 * Retrieve the number of messages sent between distinct nodes, including retransmissions
+	 *
+	 * @return The number of messages sent
+	 */
+	public long getSentCount() {
+		return this.sentCount;
+	}
+
+	/**
+	 * Retrieve the number of messages relayed by nodes other than the source of the operation they carry
+	 *
+	 * @return The number of messages relayed
+	 */
+	public long getRelayCount() {
+		return this.relayCount;
+	}
+
+	/**
+	 * Retrieve the number of messages dropped
+	 *
+	 * @return The number of messages dropped
+	 */
+	public long getDropCount() {
+		return this.dropCount;
+	}
+
+	/**
+	 * Retrieve the number of duplicate messages generated
+	 *
+	 * @return The number of duplicate messages generated
+	 */
+	public long getDuplicateCount() {
+		return this.duplicateCount;
+	}
+
+	/**
+	 * Determine whether operations are encoded to bytes and decoded again as they cross the network
+	 *
+	 * @return True if and only if operations are encoded as they cross the network
+	 */
+	public boolean isWireEncoding() {
+		return this.wireEncoding;
+	}
+
+	/**
+	 * Set whether operations are encoded to bytes and decoded again as they cross the network, as they would be between
+	 * processes.  Decoded operations parse their JSON operation only when it is applied to a document.
+	 *
+	 * @param wireEncoding Flag indicating whether operations are encoded as they cross the network
+	 */
+	public void setWireEncoding(boolean wireEncoding) {
+		this.wireEncoding = wireEncoding;
+	}
+
+	/**
+	 * Retrieve the number of bytes of encoded operations sent across the network
+	 *
+	 * @return The number of bytes of encoded operations sent
+	 */
+	public long getEncodedBytes() {
+		return this.encodedBytes;
+	}
+
+	/**
+	 * Produce the operation manager received at the far end of the network for one sent from this end.  With wire
+	 * encoding the manager is encoded and decoded, and otherwise it is copied.
+	 *
+	 * @param mgr The operation manager sent
+	 * @param <T> The type of object to which the operation applies
+	 * @return The operation manager received
+	 */
+	public <T extends AbstractDataType> SimOperationManager<T> transmit(SimOperationManager<T> mgr) {
+		if (!this.isWireEncoding()) {
+			return mgr.copy();
+		}
+
+		try {
+			byte[] data = mgr.encode();
+			this.encodedBytes += data.length;
+			return SimOperationManager.decode(data, mgr.getObjectClass());
+		} catch (IOException e) {
+			throw new UncheckedIOException("Operation could not be sent across the network", e);
+		}
+	}
+
+	/**
+	 * Reset the state which changes as messages are sent, namely the link reservations and the message counts, while
+	 * keeping the configuration of the network
+	 */
+	public void reset() {
+		for (Map<String, Link> dstLinks : this.getLinks().values()) {
+			for (Link link : dstLinks.values()) {
+				link.busyUntil = 0L;
+			}
+		}
+
+		this.sentCount = 0L;
+		this.relayCount = 0L;
+		this.dropCount = 0L;
+		this.duplicateCount = 0L;
+		this.encodedBytes = 0L;
+	}
+
+	/**
+	 * Determine the time at which a message sent from one node to another at the given time is delivered.  A message
+	 * a node sends to itself is only subject to the transit time of the link.
+	 *
+	 * @param src The source node identifier
+	 * @param dst The destination node identifier
+	 * @param sendTime The time the message is sent
+	 * @return The time at which the message is delivered
+	 */
+	public long getDeliveryTime(UUID src, UUID dst, long sendTime) {
+		Random rnd = Support.getRandom();
+		Link link = this.getLink(src, dst);
+		LatencyModel latency = null == link ? this.getDefaultLatency() : link.latency;
+		long time = sendTime;
+
+		if (!src.equals(dst)) {
+			boolean dropped;
+
+			do {
+				time = this.hold(src, dst, time);
+
+				if (null != link && link.transmissionTime > 0) {
+					time = link.reserve(time);
+				}
+
+				++this.sentCount;
+				dropped = this.getDropProbability() > 0.0 && rnd.nextDouble() < this.getDropProbability();
+
+				if (dropped) {
+					++this.dropCount;
+					time += this.getRetransmitTimeout();
+				}
+			} while (dropped);
+		}
+
+		return time + latency.sample(rnd);
+	}
+
+	/**
+	 * Determine the earliest time at or after the given one at which a message can pass every partition between the
+	 * source and destination nodes
+	 *
+	 * @param src The source node identifier
+	 * @param dst The destination node identifier
+	 * @param time The time the message is ready to be sent
+	 * @return The earliest time the message can be sent
+	 */
+	private long hold(UUID src, UUID dst, long time) {
+		String srcRegion = this.getRegion(src);
+		String dstRegion = this.getRegion(dst);
+		long held;
+
+		do {
+			held = time;
+			for (Partition partition : this.getPartitions()) {
+				time = partition.hold(srcRegion, dstRegion, time);
+			}
+		} while (held != time);
+
+		return time;
+	}
+
+	/**
+	 * Split the nodes a gossiped operation is still to reach below the node sending it into the subtrees of its
+	 * children.  The nodes are divided into as many contiguous runs as the fan-out, the first node of each run being a
+	 * child of the sender and the rest of the run being the nodes that child relays the operation on to.
+	 *
+	 * @param span The nodes below the sender in the gossip tree
+	 * @return The nodes below each child of the sender, indexed by the child, in the order the nodes were given
+	 */
+	public Map<UUID, List<UUID>> split(List<UUID> span) {
+		Map<UUID, List<UUID>> rv = new LinkedHashMap<>();
+		int size = (span.size() + Math.max(1, this.getFanout()) - 1) / Math.max(1, this.getFanout());
+
+		for (int i = 0; i < span.size(); i += size) {
+			rv.put(span.get(i), span.subList(i + 1, Math.min(span.size(), i + size)));
+		}
+
+		return rv;
+	}
+
+	/**
+	 * Determine the time at which a message relayed by a node other than the source of its operation is delivered,
+	 * counting it as a relay
+	 *
+	 * @param sender The identifier of the node relaying the message
+	 * @param dst The destination node identifier
+	 * @param sendTime The time the message is relayed
+	 * @return The time at which the message is delivered
+	 */
+	public long relay(UUID sender, UUID dst, long sendTime) {
+		++this.relayCount;
+		return this.getDeliveryTime(sender, dst, sendTime);
+	}
+
+	/**
+	 * Randomly determine whether a message is to be duplicated, and if so when the copy arrives.  The copy is sent along
+	 * with the original, so it is subject to the latency and transmission time of the same link, is held by the same
+	 * partitions, and is counted as a message sent.
+	 *
+	 * @param src The identifier of the node sending the message
+	 * @param dst The destination node identifier
+	 * @param sendTime The time the message is sent
+	 * @return The time at which the duplicate is delivered, or null if the message is not duplicated
+	 */
+	public Long getDuplicateTime(UUID src, UUID dst, long sendTime) {
+		if (this.getDuplicateProbability() <= 0.0 || Support.getRandom().nextDouble() >= this.getDuplicateProbability()) {
+			return null;
+		}
+
+		++this.duplicateCount;
+		return this.getDeliveryTime(src, dst, sendTime);
+	}
+
+	/**
+	 * Stream the fields of this instance to the given generator
+	 *
+	 * @param gen The generator to write to
+	 * @throws IOException If the generator fails to write
+	 */
+	protected void writeSegment(JsonGenerator gen) throws IOException {
+		gen.writeNumberField("regionCount", this.getRegionCount());
+		gen.writeNumberField("partitionCount", this.getPartitions().size());
+		gen.writeNumberField("dropProbability", this.getDropProbability());
+		gen.writeNumberField("duplicateProbability", this.getDuplicateProbability());
+		gen.writeNumberField("fanout", this.getFanout());
+		gen.writeNumberField("sentCount", this.getSentCount());
+		gen.writeNumberField("relayCount", this.getRelayCount());
+		gen.writeNumberField("dropCount", this.getDropCount());
+		gen.writeNumberField("duplicateCount", this.getDuplicateCount());
+		gen.writeBooleanField("wireEncoding", this.isWireEncoding());
+		gen.writeNumberField("encodedBytes", this.getEncodedBytes());
+	}
+
+	/* (non-Javadoc)
+	 * @see com.cyberfront.crdt.support.JsonStreamable#writeJson(com.fasterxml.jackson.core.JsonGenerator)
+	 */
+	@Override
+	public void writeJson(JsonGenerator gen) throws IOException {
+		gen.writeStartObject();
+		this.writeSegment(gen);
+		gen.writeEndObject();
+	}
+
+	/* (non-Javadoc)
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return Support.toJson(this);
+	}
+}
@@ -24,6 +24,7 @@ package com.cyberfront.crdt.sample.simlation;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 
@@ -159,16 +160,14 @@ public class Node extends AbstractNode {
 	}
 	
 	/**
-	 * Forward the given message to the intended recipient CRDT this Node manages.
+	 * Retrieve the CRDT this Node manages for the object the given operation manager refers to.  If this Node does not yet
+	 * have a CRDT for that object, a new one is allocated and added to the datastore.
 	 *
-	 * @param <T> Generic type of the object the recipient CRDT manages which is tied to the generic type of the message.
-	 * @param msg Message to deliver to the node
-	 * @param pReject Probability that the owning CRDT will reject an update or delete operation
-	 * @return A collection of messages which result in delivery of the message.  This will be an empty list if the 
-	 * recipient CRDT is not the owner of the object being managed.
+	 * @param <T> Generic type of the object the CRDT manages
+	 * @param mgr Operation manager referring to the object whose CRDT is to be retrieved
+	 * @return The CRDT this Node manages for the object the operation manager refers to
 	 */
-	protected <T extends AbstractDataType> Collection<Message <? extends AbstractDataType>> push(Message<T> msg, Double pReject) {
-		SimOperationManager<T> mgr = msg.getManager();
+	private <T extends AbstractDataType> SimCRDTManager<T> getCrdt(SimOperationManager<T> mgr) {
 		UUID id = mgr.getObjectId();
 		SimCRDTManager<? extends AbstractDataType> crdt = this.getDatastore().get(id);
 
@@ -181,8 +180,49 @@ public class Node extends AbstractNode {
 			this.addCRDT(castCrdt);
 		}
 		
-		Collection<Message <? extends AbstractDataType>> rv = castCrdt.push(msg, pReject);
-		return rv;
+		return castCrdt;
+	}
+	
+	/**
+	 * Forward the given message to the intended recipient CRDT this Node manages.
+	 *
+	 * @param <T> Generic type of the object the recipient CRDT manages which is tied to the generic type of the message.
+	 * @param msg Message to deliver to the node
+	 * @param pReject Probability that the owning CRDT will reject an update or delete operation
+	 * @return A collection of messages which result in delivery of the message.  This will be an empty list if the 
+	 * recipient CRDT is not the owner of the object being managed.
+	 */
+	protected <T extends AbstractDataType> Collection<Message <? extends AbstractDataType>> push(Message<T> msg, Double pReject) {
+		return this.getCrdt(msg.getManager()).push(msg, pReject);
+	}
+	
+	/**
+	 * Forward a batch of messages to the intended recipient CRDT this Node manages.  All of the messages in the batch must
+	 * refer to the same object, so they are all delivered to the same CRDT.
+	 *
+	 * @param batch Messages to deliver to the node, all of which refer to the same object
+	 * @param pReject Probability that the owning CRDT will reject an update or delete operation
+	 * @return A collection of messages which result in delivery of the batch.  This will be an empty list if the 
+	 * recipient CRDT is not the owner of the object being managed.
+	 */
+	protected Collection<Message <? extends AbstractDataType>> push(List<Message<? extends AbstractDataType>> batch, Double pReject) {
+		return this.push(batch.get(0), batch, pReject);
+	}
+	
+	/**
+	 * Forward a batch of messages to the CRDT managing the object the first message in the batch refers to.
+	 *
+	 * @param <T> Generic type of the object the recipient CRDT manages which is tied to the generic type of the messages.
+	 * @param first The first message in the batch, used to bind the generic type of the batch
+	 * @param batch Messages to deliver to the node, all of which refer to the same object
+	 * @param pReject Probability that the owning CRDT will reject an update or delete operation
+	 * @return A collection of messages which result in delivery of the batch
+	 */
+	private <T extends AbstractDataType> Collection<Message <? extends AbstractDataType>> push(Message<T> first, List<Message<? extends AbstractDataType>> batch, Double pReject) {
+		@SuppressWarnings("unchecked")
+		List<Message<T>> castBatch = (List<Message<T>>) (List<?>) batch;
+		
+		return this.getCrdt(first.getManager()).push(castBatch, pReject);
 	}
 	
 	/**
@@ -25,8 +25,11 @@ package com.cyberfront.crdt.sample.simlation;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 import java.util.stream.Collectors;
@@ -40,6 +43,7 @@ import com.cyberfront.crdt.operations.AbstractOperation.OperationType;
 import com.cyberfront.crdt.operations.OperationManager.StatusType;
 import com.cyberfront.crdt.sample.data.AbstractDataType;
 import com.cyberfront.crdt.support.Support;
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.github.fge.jsonpatch.diff.JsonDiff;	// Use this with jsonpatch
 //import com.flipkart.zjsonpatch.JsonPatch;		// Use this with zjsonpatch
@@ -88,6 +92,7 @@ public class SimCRDTManager<T extends AbstractDataType>
 		this.objectId = objectId;
 		this.ownerId = ownerNodeId;
 		this.managerId = managerNodeId;
+		this.setReplicaId(ownerNodeId);
 	}
 
 	/**
@@ -138,7 +143,8 @@ public class SimCRDTManager<T extends AbstractDataType>
 	}
 
 	/**
-	 * Generate an operation manager for this CRDT manager to deliver to other nodes.
+	 * Generate an operation manager for this CRDT manager to deliver to other nodes.  The operation has already been
+	 * stamped by the generate method producing it.
 	 *
 	 * @param status Status of the operation
 	 * @param op Operation to manage in the resulting operation manager
@@ -150,6 +156,16 @@ public class SimCRDTManager<T extends AbstractDataType>
 				: new SimOperationManager<>(status, op, this.getObjectId(), this.getObjectClass());
 	}
 
+	/**
+	 * Produce the APPROVED operation this manager issues in place of a PENDING one, stamped as generated by this replica
+	 *
+	 * @param mgr The PENDING operation being approved
+	 * @return The APPROVED operation
+	 */
+	private SimOperationManager<T> approve(SimOperationManager<T> mgr) {
+		return new SimOperationManager<>(StatusType.APPROVED, this.stamp(mgr.getOperation().mimic()), mgr.getObjectId(), mgr.getObjectClass());
+	}
+
 	/**
 	 * Gets the identifier of the node which is responsible for managing the CRDT contents.
 	 *
@@ -169,76 +185,75 @@ public class SimCRDTManager<T extends AbstractDataType>
 	}
 	
 	/**
-	 * Deliver a operation manager with a PENDING CREATE operation 
+	 * Deliver a operation manager with a PENDING CREATE operation which has already been pushed to the CRDT
 	 *
 	 * @param mgr Operation Manager to deliver to this CRDT manager
 	 * @param pReject Probability of rejecting an update
+	 * @param applicable Whether the operation applied cleanly to the CRDT when it was pushed
 	 * @return The collection of operation managers resulting from processing the one provided.  This primarily be a list
 	 * of no more than two operation, one a REJECT notice and the other an APPROVED notice
 	 */
-	private Collection<SimOperationManager<T>> deliverCreatePending(SimOperationManager<T> mgr, Double pReject) {
+	private Collection<SimOperationManager<T>> deliverCreatePending(SimOperationManager<T> mgr, Double pReject, boolean applicable) {
 		Collection<SimOperationManager<T>> operations = new ArrayList<>();
 
 		assertTrue(OperationType.CREATE == mgr.getOperation().getType());
 
-		this.push(mgr);
 		operations.add(mgr.copy(StatusType.REJECTED));
 
-		if (Support.getRandom().nextDouble() > pReject && this.getCrdt().getInvalidOperations().isEmpty()) {
-			operations.add(mgr.mimic(StatusType.APPROVED));
+		if (Support.getRandom().nextDouble() > pReject && applicable) {
+			operations.add(this.approve(mgr));
 		}
 		
 		return operations;
 	}
 	
 	/**
-	 * Deliver a operation manager with a PENDING READ operation 
+	 * Deliver a operation manager with a PENDING READ operation which has already been pushed to the CRDT
 	 *
 	 * @param mgr Operation Manager to deliver to this CRDT manager
 	 * @param pReject Probability of rejecting an update
+	 * @param applicable Whether the operation applied cleanly to the CRDT when it was pushed
 	 * @return The collection of operation managers resulting from processing the one provided.  This primarily be a list
 	 * of no more than two operation, one a REJECT notice and the other an APPROVED notice
 	 */
-	private Collection<SimOperationManager<T>> deliverReadPending(SimOperationManager<T> mgr, Double pReject) {
+	private Collection<SimOperationManager<T>> deliverReadPending(SimOperationManager<T> mgr, Double pReject, boolean applicable) {
 		Collection<SimOperationManager<T>> operations = new ArrayList<>();
 		
 		assertTrue(OperationType.READ == mgr.getOperation().getType());
 		
-		this.push(mgr);
 		operations.add(mgr.copy(StatusType.REJECTED));
 
-		if (Support.getRandom().nextDouble() > pReject && this.getCrdt().getInvalidOperations().isEmpty()) {
-			operations.add(mgr.mimic(StatusType.APPROVED));
+		if (Support.getRandom().nextDouble() > pReject && applicable) {
+			operations.add(this.approve(mgr));
 		}
 
 		return operations;
 	}
 	
 	/**
-	 * Deliver a operation manager with a PENDING UPDATE operation 
+	 * Deliver a operation manager with a PENDING UPDATE operation which has already been pushed to the CRDT
 	 *
 	 * @param mgr Operation Manager to deliver to this CRDT manager
 	 * @param pReject Probability of rejecting the UPDATE operation
+	 * @param applicable Whether the operation applied cleanly to the CRDT when it was pushed
 	 * @return The collection of operation managers resulting from processing the one provided.  This primarily be a list
 	 * of no more than two operation, one a REJECT notice and the other an APPROVED notice
 	 */
-	private Collection<SimOperationManager<T>> deliverUpdatePending(SimOperationManager<T> mgr, Double pReject) {
+	private Collection<SimOperationManager<T>> deliverUpdatePending(SimOperationManager<T> mgr, Double pReject, boolean applicable) {
 		Collection<SimOperationManager<T>> operations = new ArrayList<>();
 
 		assertTrue(OperationType.UPDATE == mgr.getOperation().getType());
 		
-		this.push(mgr);
-		
 		operations.add(mgr.copy(StatusType.REJECTED));
 
-		if (Support.getRandom().nextDouble() > pReject && this.getCrdt().getInvalidOperations().isEmpty()) {
+		if (Support.getRandom().nextDouble() > pReject && applicable) {
 			JsonNode source = (null != this.getCrdt().getDocument() ? this.getCrdt().getDocument() : getMapper().createObjectNode());
 
 			JsonNode target = (null != this.getCrdt().getDocument() ? this.getCrdt().getDocument() : getMapper().createObjectNode());
 			JsonNode diff = JsonDiff.asJson(source, target);
 
-			if (0 == this.getInvalidOperationCount() && 0 < diff.size()) {
-				operations.add(mgr.mimic(StatusType.APPROVED));
+			if (0 < diff.size()) {
+				operations.add(this.approve(mgr));
 			}
 		}
 
@@ -246,38 +261,38 @@ public class SimCRDTManager<T extends AbstractDataType>
 	}
 	
 	/**
-	 * Deliver a operation manager with a PENDING DELETE operation 
+	 * Deliver a operation manager with a PENDING DELETE operation which has already been pushed to the CRDT
 	 *
 	 * @param mgr Operation Manager to deliver to this CRDT manager
 	 * @param pReject Probability of rejecting the delete operation at the manager node
+	 * @param applicable Whether the operation applied cleanly to the CRDT, and left it without a CREATE, when it was pushed
 	 * @return The collection of operation managers resulting from processing the one provided.  This primarily be a list
 	 * of no more than two operation, one a REJECT notice and the other an APPROVED notice
 	 */
-	private Collection<SimOperationManager<T>> deliverDeletePending(SimOperationManager<T> mgr, Double pReject) {
+	private Collection<SimOperationManager<T>> deliverDeletePending(SimOperationManager<T> mgr, Double pReject, boolean applicable) {
 		Collection<SimOperationManager<T>> operations = new ArrayList<>();
 		
 		assertTrue(OperationType.DELETE == mgr.getOperation().getType());
 		
-		this.push(mgr);
-		
 		operations.add(mgr.copy(StatusType.REJECTED));
 
-		if (Support.getRandom().nextDouble() > pReject || !this.isCreated() && this.getCrdt().getInvalidOperations().isEmpty()) {
-			operations.add(mgr.mimic(StatusType.APPROVED));
+		if (Support.getRandom().nextDouble() > pReject || applicable) {
+			operations.add(this.approve(mgr));
 		}
 
 		return operations;
 	}
 	
 	/**
-	 * Deliver a pending operation manager to a locally managed CRDT instance 
+	 * Deliver a pending operation manager, which has already been pushed to the CRDT, to a locally managed CRDT instance 
 	 *
 	 * @param op Operation Manager to deliver to this CRDT manager
 	 * @param pReject Probability of rejecting the operation at the manager node
+	 * @param applicable Whether the operation applied cleanly to the CRDT when it was pushed
 	 * @return The collection of operation managers resulting from processing the one provided.  This primarily be a list
 	 * of no more than two operation, one a REJECT notice and the other an APPROVED notice
 	 */
-	private Collection<SimOperationManager<T>> deliverPending(SimOperationManager<T> op, Double pReject) {
+	private Collection<SimOperationManager<T>> deliverPending(SimOperationManager<T> op, Double pReject, boolean applicable) {
 		Collection<SimOperationManager<T>> rv = null;
 
 		assertEquals(StatusType.PENDING, op.getStatus());
@@ -285,16 +300,16 @@ public class SimCRDTManager<T extends AbstractDataType>
 
 		switch (op.getOperation().getType()) {
 		case CREATE:
-			rv = this.deliverCreatePending(op, pReject);
+			rv = this.deliverCreatePending(op, pReject, applicable);
 			break;
 		case READ:
-			rv = this.deliverReadPending(op, pReject);
+			rv = this.deliverReadPending(op, pReject, applicable);
 			break;
 		case UPDATE:
-			rv = this.deliverUpdatePending(op, pReject);
+			rv = this.deliverUpdatePending(op, pReject, applicable);
 			break;
 		case DELETE:
-			rv = this.deliverDeletePending(op, pReject);
+			rv = this.deliverDeletePending(op, pReject, applicable);
 			break;
 		default:
 			rv = new ArrayList<>();
@@ -322,7 +337,9 @@ public class SimCRDTManager<T extends AbstractDataType>
 	}
 	
 	/**
-	 * Builds the known messages for a single operation
+	 * Builds the known messages for a single operation, with delivery times determined by the network model of the
+	 * message router.  Since every operation is distributed exactly once when it is approved, this is also where the
+	 * latency from generation to approval is recorded.
 	 *
 	 * @param mgr The operation for which to generate a collection of messages for all of the nodes
 	 * @return The collection of messages resulting from the distribution of the single operation given 
@@ -331,11 +348,50 @@ public class SimCRDTManager<T extends AbstractDataType>
 		Collection<Message<? extends AbstractDataType>> rv = new ArrayList<>();
 		
 		if (null != mgr) {
-			for (Map.Entry<UUID, Node> entry : Executive.getExecutive().getNodes().entrySet()) {
-				long timestamp = Executive.getExecutive().getTimestamp() + 
-						Support.getRandom().nextInt(65536);
-				rv.add(new Message<>(this.getOwnerNodeID(), entry.getKey(), mgr, timestamp));
+			if (StatusType.APPROVED == mgr.getStatus()) {
+				Executive.getExecutive().getMetrics().recordApproval(
+						mgr.getOperation().getType(),
+						Executive.getExecutive().getTimestamp() - mgr.getOperation().getTimeStamp());
+			}
+			
+			NetworkModel network = Executive.getExecutive().getRouter().getNetwork();
+			List<UUID> span = new ArrayList<>();
+			
+			for (UUID dst : Executive.getExecutive().getNodes().keySet()) {
+				if (network.getFanout() <= 0 || this.getOwnerNodeID().equals(dst)) {
+					rv.add(new Message<>(this.getOwnerNodeID(), dst, mgr));
+				} else {
+					span.add(dst);
+				}
 			}
+			
+			rv.addAll(this.relay(this.getOwnerNodeID(), mgr, span));
+		}
+		
+		return rv;
+	}
+
+	/**
+	 * Build the messages which send a gossiped operation on to the children of this node in the gossip tree, each of
+	 * which relays it on to the nodes in its own subtree.  The messages are counted as relays unless this node is the
+	 * source of the operation.
+	 *
+	 * @param source The identifier of the node which originated the operation
+	 * @param mgr The operation to send on
+	 * @param span The nodes below this node in the gossip tree
+	 * @return The messages to the children of this node, which is empty when the span is
+	 */
+	private Collection<Message<? extends AbstractDataType>> relay(UUID source, SimOperationManager<T> mgr, List<UUID> span) {
+		Collection<Message<? extends AbstractDataType>> rv = new ArrayList<>();
+		NetworkModel network = Executive.getExecutive().getRouter().getNetwork();
+		UUID sender = this.getOwnerNodeID();
+		long now = Executive.getExecutive().getTimestamp();
+		
+		for (Map.Entry<UUID, List<UUID>> entry : network.split(span).entrySet()) {
+			long time = sender.equals(source)
+					? network.getDeliveryTime(sender, entry.getKey(), now)
+					: network.relay(sender, entry.getKey(), now);
+			rv.add(new Message<>(source, sender, entry.getKey(), mgr, time, entry.getValue()));
 		}
 		
 		return rv;
@@ -351,27 +407,59 @@ public class SimCRDTManager<T extends AbstractDataType>
 	 * processing the message delivered in this call to the method
 	 */
 	public Collection<Message<? extends AbstractDataType>> push(Message<T> msg, Double pReject) {
-		SimOperationManager<T> mgr = msg.getManager();
-		Collection<Message<? extends AbstractDataType>> rv = null;
-		this.getReceived().add(msg);
-
-		switch (mgr.getStatus()){
-		case PENDING:
-			if (!this.isLocallyManaged()) {
-				this.push(mgr);
-				rv = new ArrayList<>();
-			} else {
-				Collection<SimOperationManager<T>> mgrList = this.deliverPending(mgr, pReject);
-				rv = this.buildMessages(mgrList);
-			}
-			break;
-		case APPROVED:
-		case REJECTED:
+		return this.push(Collections.singletonList(msg), pReject);
+	}
+
+	/**
+	 * Push a batch of messages into the CRDT.  The operations of all of the messages are pushed first, and only then are
+	 * the PENDING operations delivered to a locally managed CRDT approved or rejected.  Whether each PENDING operation
+	 * applies cleanly is checked as it is pushed, against the materialized document, and recorded along with the state
+	 * of the CRDT a DELETE is judged on, so each is approved or rejected as it would be were it delivered on its own,
+	 * whatever follows it in the batch.  Approval never replays the operations of the CRDT unless a PENDING operation
+	 * arrives out of order and may interfere with those after it.
+	 * A message whose operation the CRDT rejects as one it already holds is a duplicate; it is discarded, neither being
+	 * recorded as received nor relayed, just as its original was.
+	 * 
+	 * @param msgs Messsages to process at this node, in delivery order
+	 * @param pReject Probability of rejecting each delivered PENDING operation if this CRDT manager is locally managed 
+	 * @return The collection of messages to deliver to the each of the other nodes and which are derived from 
+	 * processing the messages delivered in this call to the method
+	 */
+	public Collection<Message<? extends AbstractDataType>> push(Collection<Message<T>> msgs, Double pReject) {
+		List<SimOperationManager<T>> pending = new ArrayList<>();
+		List<Boolean> applicable = new ArrayList<>();
+		Collection<SimOperationManager<T>> mgrList = new ArrayList<>();
+		
+		Collection<Message<? extends AbstractDataType>> relays = new ArrayList<>();
+		
+		for (Message<T> msg : msgs) {
+			SimOperationManager<T> mgr = msg.getManager();
+			boolean check = StatusType.PENDING == mgr.getStatus() && this.isLocallyManaged();
+			boolean clean = check && !this.getCrdt().hasInvalidOperations() && this.getCrdt().canApply(mgr.getOperation());
+			long duplicates = this.getDuplicateCount();
+			
 			this.push(mgr);
-		default:
-			rv =  new ArrayList<>();
+			
+			if (this.getDuplicateCount() > duplicates) {
+				Executive.getExecutive().getRouter().discard();
+				continue;
+			}
+			
+			this.getReceived().add(msg);
+			relays.addAll(this.relay(msg.getSource(), mgr, msg.getSpan()));
+			
+			if (check) {
+				pending.add(mgr);
+				applicable.add(OperationType.DELETE == mgr.getOperation().getType() ? clean && !this.isCreated() : clean);
+			}
 		}
 		
+		for (int i = 0; i < pending.size(); ++i) {
+			mgrList.addAll(this.deliverPending(pending.get(i), pReject, applicable.get(i)));
+		}
+
+		Collection<Message<? extends AbstractDataType>> rv = this.buildMessages(mgrList);
+		rv.addAll(relays);
 		this.getSent().addAll(rv);
 
 		return rv;
@@ -414,7 +502,7 @@ public class SimCRDTManager<T extends AbstractDataType>
 			return new ArrayList<>();
 		}
 		
-		SimOperationManager<T> mgr = this.getManager(status, generateReadOperation(timestamp));
+		SimOperationManager<T> mgr = this.getManager(status, this.generateRead(timestamp));
 		Collection<Message<? extends AbstractDataType>> rv = this.buildMessages(mgr);
 
 		this.getSent().addAll(rv);
@@ -546,20 +634,19 @@ public class SimCRDTManager<T extends AbstractDataType>
 	}
 	
 	/* (non-Javadoc)
-	 * @see com.cyberfront.cmrdt.support.BaseManager#getSegment()
+	 * @see com.cyberfront.crdt.GenericCRDTManager#writeSegment(com.fasterxml.jackson.core.JsonGenerator)
 	 */
-	protected String getSegment() {
-		StringBuilder sb = new StringBuilder();
-
-		sb.append(super.getSegment() + ",");
-		sb.append("\"received\":" + (null == this.sent ? "null" : Support.convert(this.getSent())) + Support.convert(this.getReceived()) + ",");
-		sb.append("\"sent\":" + (null == this.sent ? "null" : Support.convert(this.getSent())) + ",");
-		sb.append("\"isLocal\":" + this.isLocallyManaged() + ",");
-		sb.append("\"objectId\":\"" + this.getObjectId() + "\",");
-		sb.append("\"ownerNodeId\":\"" + this.getOwnerNodeID() + "\",");
-		sb.append("\"managerNodeId\":\"" + this.getManagerNodeId() + "\"");
-		
-		return sb.toString();
+	@Override
+	protected void writeSegment(JsonGenerator gen) throws IOException {
+		super.writeSegment(gen);
+		gen.writeFieldName("received");
+		Support.writeJson(gen, this.getReceived());
+		gen.writeFieldName("sent");
+		Support.writeJson(gen, this.sent);
+		gen.writeBooleanField("isLocal", this.isLocallyManaged());
+		gen.writeStringField("objectId", String.valueOf(this.getObjectId()));
+		gen.writeStringField("ownerNodeId", String.valueOf(this.getOwnerNodeID()));
+		gen.writeStringField("managerNodeId", String.valueOf(this.getManagerNodeId()));
 	}
 	
 	/**
@@ -571,10 +658,10 @@ public class SimCRDTManager<T extends AbstractDataType>
 		JsonNode document = this.getCrdt().getDocument();
 
 		if (created && !deleted && null == document) {
-			logger.info(Executive.getExecutive().toString());
+			logger.info("Executive state written to " + Executive.getExecutive().dump());
 			throw new IllegalStateException("Created, non-deleted value should not be null, but is: " + this.toString());
 		} else if (deleted && null != document) {
-			logger.info(Executive.getExecutive().toString());
+			logger.info("Executive state written to " + Executive.getExecutive().dump());
 			throw new IllegalStateException("Deleted value should be null, but is not: " + this.toString());
 		}
 	}
@@ -22,11 +22,18 @@
  */
 package com.cyberfront.crdt.sample.simlation;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import java.util.UUID;
 
 import com.cyberfront.crdt.operations.AbstractOperation;
 import com.cyberfront.crdt.operations.GenericOperationManager;
+import com.cyberfront.crdt.operations.OperationCodec;
 import com.cyberfront.crdt.sample.data.AbstractDataType;
+import com.fasterxml.jackson.core.JsonGenerator;
 
 /**
  * The SimOperationManager class wraps JSON operations with some management code to ensure proper delivery and processing
@@ -103,6 +110,44 @@ public class SimOperationManager<T extends AbstractDataType>
 		return new SimOperationManager<>(status, this.getOperation().mimic(), this.getObjectId(), this.getObjectClass());
 	}
 
+	/**
+	 * Encode this operation manager into the binary form sent between nodes.  The status and object identifier are
+	 * followed by the operation, as encoded by the OperationCodec.
+	 *
+	 * @return The encoded operation manager
+	 * @throws IOException If the operation manager cannot be encoded
+	 */
+	public byte[] encode() throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+		try (DataOutputStream out = new DataOutputStream(bytes)) {
+			out.writeByte(this.getStatus().ordinal());
+			out.writeLong(this.getObjectId().getMostSignificantBits());
+			out.writeLong(this.getObjectId().getLeastSignificantBits());
+			OperationCodec.encode(this.getOperation(), out);
+		}
+
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * Decode an operation manager from the binary form sent between nodes.  The header fields of the operation are
+	 * decoded immediately, while its JSON operation is parsed only when the operation is applied to a document.
+	 *
+	 * @param data The encoded operation manager
+	 * @param objectClass The class of the object to which the operation applies
+	 * @param <T> The type of object to which the operation applies
+	 * @return The decoded operation manager
+	 * @throws IOException If the bytes do not hold an encoded operation manager
+	 */
+	public static <T extends AbstractDataType> SimOperationManager<T> decode(byte[] data, Class<T> objectClass) throws IOException {
+		try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(data))) {
+			StatusType status = StatusType.values()[in.readUnsignedByte()];
+			UUID objectId = new UUID(in.readLong(), in.readLong());
+			return new SimOperationManager<>(status, OperationCodec.decode(in), objectId, objectClass);
+		}
+	}
+
 	/* (non-Javadoc)
 	 * @see com.cyberfront.cmrdt.support.BaseManager#equals(java.lang.Object)
 	 */
@@ -133,14 +178,11 @@ public class SimOperationManager<T extends AbstractDataType>
 	}
 	
 	/* (non-Javadoc)
-	 * @see com.cyberfront.cmrdt.support.BaseManager#getSegment()
+	 * @see com.cyberfront.crdt.operations.GenericOperationManager#writeSegment(com.fasterxml.jackson.core.JsonGenerator)
 	 */
-	protected String getSegment() {
-		StringBuilder sb = new StringBuilder();
-		
-		sb.append(super.getSegment() + ",");
-		sb.append("\"objectId\":\"" + this.getObjectId() + "\"");
-		
-		return sb.toString();
+	@Override
+	protected void writeSegment(JsonGenerator gen) throws IOException {
+		super.writeSegment(gen);
+		gen.writeStringField("objectId", String.valueOf(this.getObjectId()));
 	}
 }
@@ -0,0 +1,473 @@
+/*
+ * Copyright (c) 2017 Cybernetic Frontiers LLC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package com.cyberfront.crdt.sample.simlation;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+import com.cyberfront.crdt.LastWriteWins;
+import com.cyberfront.crdt.operations.AbstractOperation.OperationType;
+import com.cyberfront.crdt.sample.data.AbstractDataType;
+
+/**
+ * The SimulationMetrics class collects measurements over a single run of the simulation so that runs under different
+ * configurations can be compared.  It covers the rate at which events are handled and messages delivered, how often
+ * and how extensively the CRDTs replay their operations, the latency from generation to approval of each type of
+ * operation, the time taken to converge after the last write, and the largest number of messages in flight at once.
+ * Times measured in the simulation are in simulation time units, while rates are per second of wall clock time.
+ */
+public class SimulationMetrics {
+
+	/**
+	 * The LatencyStatistics class accumulates the latencies of a single type of operation
+	 */
+	public static class LatencyStatistics {
+		/** The number of latencies recorded */
+		private long count = 0L;
+
+		/** The sum of the latencies recorded */
+		private long total = 0L;
+
+		/** The largest latency recorded */
+		private long maximum = 0L;
+
+		/**
+		 * Record a single latency
+		 *
+		 * @param latency The latency to record
+		 */
+		public void record(long latency) {
+			++this.count;
+			this.total += latency;
+			this.maximum = Math.max(this.maximum, latency);
+		}
+
+		/**
+		 * Retrieve the number of latencies recorded
+		 *
+		 * @return The number of latencies recorded
+		 */
+		public long getCount() {
+			return this.count;
+		}
+
+		/**
+		 * Retrieve the mean of the latencies recorded
+		 *
+		 * @return The mean latency, or zero if none were recorded
+		 */
+		public double getMean() {
+			return 0L == this.count ? 0.0 : (double) this.total / this.count;
+		}
+
+		/**
+		 * Retrieve the largest latency recorded
+		 *
+		 * @return The largest latency recorded
+		 */
+		public long getMaximum() {
+			return this.maximum;
+		}
+
+		/**
+		 * Gets a segment for the class instance to show the value of the various fields
+		 *
+		 * @return The String segment containing the value of the various fields formatted as a JSON string
+		 */
+		protected String getSegment() {
+			StringBuilder sb = new StringBuilder();
+
+			sb.append("\"count\":" + this.getCount() + ",");
+			sb.append("\"mean\":" + this.getMean() + ",");
+			sb.append("\"maximum\":" + this.getMaximum());
+
+			return sb.toString();
+		}
+
+		/* (non-Javadoc)
+		 * @see java.lang.Object#toString()
+		 */
+		@Override
+		public String toString() {
+			return "{" + this.getSegment() + "}";
+		}
+	}
+
+	/** The wall clock time in nanoseconds at which the run started */
+	private long startTime = 0L;
+
+	/** The wall clock time in nanoseconds at which the run stopped */
+	private long stopTime = 0L;
+
+	/** The number of nodes in the run */
+	private long nodeCount = 0L;
+
+	/** The number of events handled */
+	private long eventCount = 0L;
+
+	/** The number of messages delivered */
+	private long deliveryCount = 0L;
+
+	/** The number of CRDTs in the run, summed over all nodes */
+	private long crdtCount = 0L;
+
+	/** The number of replays, summed over all CRDTs */
+	private long replayCount = 0L;
+
+	/** The number of operations replayed, summed over all CRDTs */
+	private long replayLength = 0L;
+
+	/** The largest number of replays performed by a single CRDT */
+	private long maximumReplayCount = 0L;
+
+	/** The simulation time of the last write */
+	private long lastWriteTime = 0L;
+
+	/** The simulation time at which the run stopped */
+	private long finalTime = 0L;
+
+	/** The largest number of messages in flight at once */
+	private long peakInFlight = 0L;
+
+	/** The approval latencies of each type of operation */
+	private Map<OperationType, LatencyStatistics> approvals;
+
+	/**
+	 * Retrieve the approval latencies of each type of operation
+	 *
+	 * @return The approval latencies of each type of operation
+	 */
+	private Map<OperationType, LatencyStatistics> getApprovals() {
+		if (null == this.approvals) {
+			this.approvals = new EnumMap<>(OperationType.class);
+			for (OperationType type : OperationType.values()) {
+				this.approvals.put(type, new LatencyStatistics());
+			}
+		}
+
+		return this.approvals;
+	}
+
+	/**
+	 * Reset all of the measurements
+	 */
+	public void clear() {
+		this.startTime = 0L;
+		this.stopTime = 0L;
+		this.nodeCount = 0L;
+		this.eventCount = 0L;
+		this.deliveryCount = 0L;
+		this.crdtCount = 0L;
+		this.replayCount = 0L;
+		this.replayLength = 0L;
+		this.maximumReplayCount = 0L;
+		this.lastWriteTime = 0L;
+		this.finalTime = 0L;
+		this.peakInFlight = 0L;
+		this.approvals = null;
+	}
+
+	/**
+	 * Reset all of the measurements and mark the start of a run
+	 */
+	public void start() {
+		this.clear();
+		this.startTime = System.nanoTime();
+	}
+
+	/**
+	 * Record the handling of a single event
+	 *
+	 * @param type The type of the event handled
+	 * @param timestamp The simulation time at which the event was handled
+	 * @param produced True if and only if handling the event produced messages
+	 * @param inFlight The number of messages in flight after handling the event
+	 */
+	public void recordEvent(Executive.EventType type, long timestamp, boolean produced, long inFlight) {
+		++this.eventCount;
+		this.peakInFlight = Math.max(this.peakInFlight, inFlight);
+
+		if (produced && Executive.EventType.DELIVER != type && Executive.EventType.READ != type) {
+			this.lastWriteTime = timestamp;
+		}
+	}
+
+	/**
+	 * Record the approval of an operation
+	 *
+	 * @param type The type of the operation approved
+	 * @param latency The simulation time from generation of the operation to its approval
+	 */
+	public void recordApproval(OperationType type, long latency) {
+		this.getApprovals().get(type).record(latency);
+	}
+
+	/**
+	 * Mark the end of a run and collect the measurements which are only available once it is complete
+	 *
+	 * @param timestamp The simulation time at which the run stopped
+	 * @param deliveryCount The number of messages delivered over the run
+	 * @param nodes The nodes of the run
+	 */
+	public void stop(long timestamp, long deliveryCount, Collection<Node> nodes) {
+		this.stopTime = System.nanoTime();
+		this.finalTime = timestamp;
+		this.deliveryCount = deliveryCount;
+		this.nodeCount = nodes.size();
+
+		for (Node node : nodes) {
+			for (SimCRDTManager<? extends AbstractDataType> mgr : node.getDatastore().values()) {
+				LastWriteWins crdt = mgr.getCrdt();
+
+				++this.crdtCount;
+				this.replayCount += crdt.getReplayCount();
+				this.replayLength += crdt.getReplayLength();
+				this.maximumReplayCount = Math.max(this.maximumReplayCount, crdt.getReplayCount());
+			}
+		}
+	}
+
+	/**
+	 * Retrieve the wall clock time the run took, in milliseconds
+	 *
+	 * @return The wall clock time the run took
+	 */
+	public double getElapsedMillis() {
+		return (this.stopTime - this.startTime) / 1.0e6;
+	}
+
+	/**
+	 * Compute a rate per second of wall clock time over the run
+	 *
+	 * @param count The number of occurrences over the run
+	 * @return The number of occurrences per second
+	 */
+	private double getRate(long count) {
+		double seconds = (this.stopTime - this.startTime) / 1.0e9;
+		return seconds > 0.0 ? count / seconds : 0.0;
+	}
+
+	/**
+	 * Retrieve the number of events handled per second of wall clock time
+	 *
+	 * @return The event rate
+	 */
+	public double getEventsPerSecond() {
+		return this.getRate(this.eventCount);
+	}
+
+	/**
+	 * Retrieve the number of messages delivered per second of wall clock time
+	 *
+	 * @return The delivery rate
+	 */
+	public double getDeliveriesPerSecond() {
+		return this.getRate(this.deliveryCount);
+	}
+
+	/**
+	 * Retrieve the mean number of replays per CRDT
+	 *
+	 * @return The mean number of replays per CRDT
+	 */
+	public double getMeanReplayCount() {
+		return 0L == this.crdtCount ? 0.0 : (double) this.replayCount / this.crdtCount;
+	}
+
+	/**
+	 * Retrieve the mean number of operations processed per replay
+	 *
+	 * @return The mean replay length
+	 */
+	public double getMeanReplayLength() {
+		return 0L == this.replayCount ? 0.0 : (double) this.replayLength / this.replayCount;
+	}
+
+	/**
+	 * Retrieve the simulation time from the last write until the run stopped, by which time every node has converged
+	 *
+	 * @return The time to convergence after the last write
+	 */
+	public long getConvergenceTime() {
+		return this.finalTime - this.lastWriteTime;
+	}
+
+	/**
+	 * Retrieve the largest number of messages in flight at once
+	 *
+	 * @return The peak number of messages in flight
+	 */
+	public long getPeakInFlight() {
+		return this.peakInFlight;
+	}
+
+	/**
+	 * Retrieve the approval latencies of operations of the given type
+	 *
+	 * @param type The type of operation
+	 * @return The approval latencies of operations of the given type
+	 */
+	public LatencyStatistics getApprovalLatency(OperationType type) {
+		return this.getApprovals().get(type);
+	}
+
+	/**
+	 * Retrieve the names of the columns of the CSV format
+	 *
+	 * @return The names of the columns, in order
+	 */
+	private static List<String> getColumns() {
+		List<String> rv = new ArrayList<>();
+
+		rv.add("nodeCount");
+		rv.add("eventCount");
+		rv.add("deliveryCount");
+		rv.add("elapsedMillis");
+		rv.add("eventsPerSecond");
+		rv.add("deliveriesPerSecond");
+		rv.add("crdtCount");
+		rv.add("replayCount");
+		rv.add("meanReplayCount");
+		rv.add("maximumReplayCount");
+		rv.add("meanReplayLength");
+		rv.add("convergenceTime");
+		rv.add("peakInFlight");
+
+		for (OperationType type : OperationType.values()) {
+			String name = type.toString().toLowerCase();
+			rv.add(name + "ApprovalCount");
+			rv.add(name + "MeanApprovalLatency");
+			rv.add(name + "MaximumApprovalLatency");
+		}
+
+		return rv;
+	}
+
+	/**
+	 * Retrieve the values of the columns of the CSV format
+	 *
+	 * @return The values of the columns, in the same order as their names
+	 */
+	private List<Object> getValues() {
+		List<Object> rv = new ArrayList<>();
+
+		rv.add(this.nodeCount);
+		rv.add(this.eventCount);
+		rv.add(this.deliveryCount);
+		rv.add(this.getElapsedMillis());
+		rv.add(this.getEventsPerSecond());
+		rv.add(this.getDeliveriesPerSecond());
+		rv.add(this.crdtCount);
+		rv.add(this.replayCount);
+		rv.add(this.getMeanReplayCount());
+		rv.add(this.maximumReplayCount);
+		rv.add(this.getMeanReplayLength());
+		rv.add(this.getConvergenceTime());
+		rv.add(this.getPeakInFlight());
+
+		for (OperationType type : OperationType.values()) {
+			LatencyStatistics stats = this.getApprovalLatency(type);
+			rv.add(stats.getCount());
+			rv.add(stats.getMean());
+			rv.add(stats.getMaximum());
+		}
+
+		return rv;
+	}
+
+	/**
+	 * Join a list of values into a single CSV line
+	 *
+	 * @param values The values to join
+	 * @return The CSV line
+	 */
+	private static String toCsvLine(List<?> values) {
+		StringBuilder sb = new StringBuilder();
+
+		for (Object value : values) {
+			sb.append(sb.length() > 0 ? "," : "");
+			sb.append(value);
+		}
+
+		return sb.append(System.lineSeparator()).toString();
+	}
+
+	/**
+	 * Export the measurements to a file.  A file with a ".csv" extension has a row appended to it, with a header row
+	 * written first if the file is new, so successive runs accumulate in one file.  Any other file is overwritten with
+	 * the measurements formatted as JSON.
+	 *
+	 * @param filename The name of the file to export to
+	 * @throws IOException If the file could not be written
+	 */
+	public void export(String filename) throws IOException {
+		Path path = Paths.get(filename);
+
+		if (filename.toLowerCase().endsWith(".csv")) {
+			StringBuilder sb = new StringBuilder();
+
+			if (!Files.exists(path) || 0L == Files.size(path)) {
+				sb.append(toCsvLine(getColumns()));
+			}
+
+			sb.append(toCsvLine(this.getValues()));
+			Files.write(path, sb.toString().getBytes(StandardCharsets.UTF_8), StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+		} else {
+			Files.write(path, this.toString().getBytes(StandardCharsets.UTF_8));
+		}
+	}
+
+	/**
+	 * Gets a segment for the class instance to show the value of the various fields
+	 *
+	 * @return The String segment containing the value of the various fields formatted as a JSON string
+	 */
+	protected String getSegment() {
+		StringBuilder sb = new StringBuilder();
+		List<String> columns = getColumns();
+		List<Object> values = this.getValues();
+
+		for (int i = 0; i < columns.size(); ++i) {
+			sb.append((i > 0 ? "," : "") + "\"" + columns.get(i) + "\":" + values.get(i));
+		}
+
+		return sb.toString();
+	}
+
+	/* (non-Javadoc)
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return "{" + this.getSegment() + "}";
+	}
+}
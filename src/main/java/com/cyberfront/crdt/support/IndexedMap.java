@@ -0,0 +1,241 @@
+/*
+ * Copyright (c) 2017 Cybernetic Frontiers LLC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package com.cyberfront.crdt.support;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * The IndexedMap class is a map, backed by a TreeMap, which also keeps its entries in a dense array, so an entry can be
+ * retrieved by position in constant time.  That makes it cheap to pick a random entry, which a plain TreeMap can only do
+ * by walking its entries.  Iteration follows the sorted order of the keys, though the class is not a SortedMap, as that
+ * order governs nothing else.  Positions in the dense array follow insertion order, except that removing an entry moves
+ * the last entry into the position it vacated.
+ *
+ * Entries may only be changed through put, remove and clear; the views returned by entrySet, keySet and values are
+ * read only.
+ *
+ * @param <K> The type of the keys in the map
+ * @param <V> The type of the values in the map
+ */
+public class IndexedMap<K, V> extends AbstractMap<K, V> {
+
+	/** The sorted map holding the entries, used for lookups and iteration */
+	private Map<K, V> map;
+
+	/** The keys of the map in their dense array positions */
+	private List<K> keys;
+
+	/** The values of the map in their dense array positions */
+	private List<V> values;
+
+	/** The dense array position of each key in the map */
+	private Map<K, Integer> positions;
+
+	/**
+	 * Retrieve the sorted map holding the entries
+	 *
+	 * @return The sorted map holding the entries
+	 */
+	private Map<K, V> getMap() {
+		if (null == this.map) {
+			this.map = new TreeMap<>();
+		}
+
+		return this.map;
+	}
+
+	/**
+	 * Retrieve the keys in their dense array positions
+	 *
+	 * @return The keys in their dense array positions
+	 */
+	private List<K> getKeys() {
+		if (null == this.keys) {
+			this.keys = new ArrayList<>();
+		}
+
+		return this.keys;
+	}
+
+	/**
+	 * Retrieve the values in their dense array positions
+	 *
+	 * @return The values in their dense array positions
+	 */
+	private List<V> getValues() {
+		if (null == this.values) {
+			this.values = new ArrayList<>();
+		}
+
+		return this.values;
+	}
+
+	/**
+	 * Retrieve the map relating each key to its dense array position
+	 *
+	 * @return The map relating each key to its dense array position
+	 */
+	private Map<K, Integer> getPositions() {
+		if (null == this.positions) {
+			this.positions = new HashMap<>();
+		}
+
+		return this.positions;
+	}
+
+	/* (non-Javadoc)
+	 * @see java.util.AbstractMap#put(java.lang.Object, java.lang.Object)
+	 */
+	@Override
+	public V put(K key, V value) {
+		// The TreeMap may reject the key, so update it before the dense arrays to keep them in step
+		V rv = this.getMap().put(key, value);
+		Integer position = this.getPositions().get(key);
+
+		if (null == position) {
+			this.getPositions().put(key, this.getKeys().size());
+			this.getKeys().add(key);
+			this.getValues().add(value);
+		} else {
+			this.getValues().set(position, value);
+		}
+
+		return rv;
+	}
+
+	/* (non-Javadoc)
+	 * @see java.util.AbstractMap#remove(java.lang.Object)
+	 */
+	@Override
+	public V remove(Object key) {
+		if (!this.getPositions().containsKey(key)) {
+			return null;
+		}
+
+		V rv = this.getMap().remove(key);
+		int position = this.getPositions().remove(key);
+
+		int last = this.getKeys().size() - 1;
+		K lastKey = this.getKeys().remove(last);
+		V lastValue = this.getValues().remove(last);
+
+		if (position < last) {
+			this.getKeys().set(position, lastKey);
+			this.getValues().set(position, lastValue);
+			this.getPositions().put(lastKey, position);
+		}
+
+		return rv;
+	}
+
+	/* (non-Javadoc)
+	 * @see java.util.AbstractMap#clear()
+	 */
+	@Override
+	public void clear() {
+		this.getMap().clear();
+		this.getKeys().clear();
+		this.getValues().clear();
+		this.getPositions().clear();
+	}
+
+	/* (non-Javadoc)
+	 * @see java.util.AbstractMap#get(java.lang.Object)
+	 */
+	@Override
+	public V get(Object key) {
+		return this.getMap().get(key);
+	}
+
+	/* (non-Javadoc)
+	 * @see java.util.AbstractMap#containsKey(java.lang.Object)
+	 */
+	@Override
+	public boolean containsKey(Object key) {
+		return this.getPositions().containsKey(key);
+	}
+
+	/* (non-Javadoc)
+	 * @see java.util.AbstractMap#size()
+	 */
+	@Override
+	public int size() {
+		return this.getKeys().size();
+	}
+
+	/* (non-Javadoc)
+	 * @see java.util.AbstractMap#entrySet()
+	 */
+	@Override
+	public Set<Map.Entry<K, V>> entrySet() {
+		return Collections.unmodifiableMap(this.getMap()).entrySet();
+	}
+
+	/**
+	 * Retrieve the key at the given dense array position
+	 *
+	 * @param index Dense array position of the key to retrieve
+	 * @return The key at the given position
+	 */
+	public K getKey(int index) {
+		return this.getKeys().get(index);
+	}
+
+	/**
+	 * Retrieve the value at the given dense array position
+	 *
+	 * @param index Dense array position of the value to retrieve
+	 * @return The value at the given position
+	 */
+	public V getValue(int index) {
+		return this.getValues().get(index);
+	}
+
+	/**
+	 * Randomly pick a key from the map in constant time
+	 *
+	 * @param rnd The random number generator used to make the pick
+	 * @return The randomly selected key, or null if the map is empty
+	 */
+	public K pickKey(Random rnd) {
+		return this.isEmpty() ? null : this.getKey(rnd.nextInt(this.size()));
+	}
+
+	/**
+	 * Randomly pick a value from the map in constant time
+	 *
+	 * @param rnd The random number generator used to make the pick
+	 * @return The randomly selected value, or null if the map is empty
+	 */
+	public V pickValue(Random rnd) {
+		return this.isEmpty() ? null : this.getValue(rnd.nextInt(this.size()));
+	}
+}
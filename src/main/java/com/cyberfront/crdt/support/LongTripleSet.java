@@ -0,0 +1,167 @@
+/*
+ * Copyright (c) 2017 Cybernetic Frontiers LLC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package com.cyberfront.crdt.support;
+
+/**
+ * The LongTripleSet class is a compact set of triples of long values, held in a single array using open addressing
+ * with linear probing.  It is used to record the identities of operations already seen, so membership can be checked
+ * in constant time without allocating or comparing the operations themselves.  The table doubles in size when it is half full, and
+ * triples cannot be removed other than by clearing the whole set.
+ */
+public class LongTripleSet {
+
+	/** The initial number of slots in the table */
+	private static final int INITIAL_CAPACITY = 16;
+
+	/** The triples held, with the values of slot i at indices 3i, 3i+1 and 3i+2 */
+	private long[] triples;
+
+	/** Flags marking the occupied slots */
+	private boolean[] used;
+
+	/** The number of triples held */
+	private int size = 0;
+
+	/**
+	 * Instantiates a new, empty set
+	 */
+	public LongTripleSet() {
+		this.allocate(INITIAL_CAPACITY);
+	}
+
+	/**
+	 * Replace the table with an empty one with the given number of slots
+	 *
+	 * @param capacity The number of slots, which must be a power of two
+	 */
+	private void allocate(int capacity) {
+		this.triples = new long[3 * capacity];
+		this.used = new boolean[capacity];
+		this.size = 0;
+	}
+
+	/**
+	 * Compute the slot at which to start probing for a triple
+	 *
+	 * @param first The first value of the triple
+	 * @param second The second value of the triple
+	 * @param third The third value of the triple
+	 * @return The starting slot
+	 */
+	private int slot(long first, long second, long third) {
+		long hash = (first * 0x9E3779B97F4A7C15L + second) * 0x9E3779B97F4A7C15L + third;
+		hash ^= hash >>> 32;
+		hash *= 0xC2B2AE3D27D4EB4FL;
+		return (int) (hash ^ (hash >>> 29)) & (this.used.length - 1);
+	}
+
+	/**
+	 * Find the slot holding a triple, or the empty slot where it would be inserted
+	 *
+	 * @param first The first value of the triple
+	 * @param second The second value of the triple
+	 * @param third The third value of the triple
+	 * @return The slot holding the triple, or the empty slot ending the probe
+	 */
+	private int find(long first, long second, long third) {
+		int mask = this.used.length - 1;
+		int i = this.slot(first, second, third);
+
+		while (this.used[i] && (this.triples[3 * i] != first || this.triples[3 * i + 1] != second || this.triples[3 * i + 2] != third)) {
+			i = (i + 1) & mask;
+		}
+
+		return i;
+	}
+
+	/**
+	 * Determine whether the set holds a triple
+	 *
+	 * @param first The first value of the triple
+	 * @param second The second value of the triple
+	 * @param third The third value of the triple
+	 * @return True exactly when the triple is in the set
+	 */
+	public boolean contains(long first, long second, long third) {
+		return this.used[this.find(first, second, third)];
+	}
+
+	/**
+	 * Insert a triple into the set
+	 *
+	 * @param first The first value of the triple
+	 * @param second The second value of the triple
+	 * @param third The third value of the triple
+	 * @return True exactly when the triple was not already in the set
+	 */
+	public boolean add(long first, long second, long third) {
+		int i = this.find(first, second, third);
+
+		if (this.used[i]) {
+			return false;
+		}
+
+		this.used[i] = true;
+		this.triples[3 * i] = first;
+		this.triples[3 * i + 1] = second;
+		this.triples[3 * i + 2] = third;
+
+		if (2 * ++this.size > this.used.length) {
+			this.grow();
+		}
+
+		return true;
+	}
+
+	/**
+	 * Double the number of slots, reinserting every triple held
+	 */
+	private void grow() {
+		long[] oldTriples = this.triples;
+		boolean[] oldUsed = this.used;
+
+		this.allocate(2 * oldUsed.length);
+
+		for (int i = 0; i < oldUsed.length; ++i) {
+			if (oldUsed[i]) {
+				this.add(oldTriples[3 * i], oldTriples[3 * i + 1], oldTriples[3 * i + 2]);
+			}
+		}
+	}
+
+	/**
+	 * Retrieve the number of triples in the set
+	 *
+	 * @return The number of triples in the set
+	 */
+	public int size() {
+		return this.size;
+	}
+
+	/**
+	 * Remove every triple from the set, returning the table to its initial size
+	 */
+	public void clear() {
+		this.allocate(INITIAL_CAPACITY);
+	}
+}
@@ -0,0 +1,256 @@
+/*
+ * Copyright (c) 2017 Cybernetic Frontiers LLC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package com.cyberfront.crdt.support;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.function.Function;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+/**
+ * The MemoryEstimate class holds an estimate of the heap retained by one or more CRDTs, split into the operation
+ * history, the JSON Patch trees the operations carry, and the materialized documents.  Static routines estimate the
+ * size of the individual elements, assuming a 64 bit JVM with compressed references.  The figures are estimates meant
+ * for sizing caches and choosing what to evict, not exact measurements; in particular nodes shared between patches,
+ * such as interned pointers, are counted once for every patch holding them.
+ */
+public class MemoryEstimate {
+
+	/** The size of an object header */
+	public static final long HEADER_BYTES = 12L;
+
+	/** The size of a reference */
+	public static final long REFERENCE_BYTES = 4L;
+
+	/** The size of an operation, including its boxed timestamp and identifier, but not its patch */
+	public static final long OPERATION_BYTES = 56L;
+
+	/** The size of the TreeSet entry holding an operation in one of the sets of a CRDT */
+	public static final long SET_ENTRY_BYTES = 40L;
+
+	/** The size of an entry in the LinkedHashMap holding the fields of an ObjectNode */
+	private static final long FIELD_ENTRY_BYTES = 48L;
+
+	/** An estimate with no retained memory */
+	public static final MemoryEstimate EMPTY = new MemoryEstimate(0L, 0L, 0L);
+
+	/** The estimated bytes retained by the operation history */
+	private final long operationBytes;
+
+	/** The estimated bytes retained by the JSON Patch trees of the operations */
+	private final long patchBytes;
+
+	/** The estimated bytes retained by the materialized documents */
+	private final long documentBytes;
+
+	/**
+	 * Instantiates a new memory estimate
+	 *
+	 * @param operationBytes The estimated bytes retained by the operation history
+	 * @param patchBytes The estimated bytes retained by the JSON Patch trees of the operations
+	 * @param documentBytes The estimated bytes retained by the materialized documents
+	 */
+	public MemoryEstimate(long operationBytes, long patchBytes, long documentBytes) {
+		this.operationBytes = operationBytes;
+		this.patchBytes = patchBytes;
+		this.documentBytes = documentBytes;
+	}
+
+	/**
+	 * Retrieve the estimated bytes retained by the operation history
+	 *
+	 * @return The estimated bytes retained by the operation history
+	 */
+	public long getOperationBytes() {
+		return this.operationBytes;
+	}
+
+	/**
+	 * Retrieve the estimated bytes retained by the JSON Patch trees of the operations
+	 *
+	 * @return The estimated bytes retained by the JSON Patch trees
+	 */
+	public long getPatchBytes() {
+		return this.patchBytes;
+	}
+
+	/**
+	 * Retrieve the estimated bytes retained by the materialized documents
+	 *
+	 * @return The estimated bytes retained by the materialized documents
+	 */
+	public long getDocumentBytes() {
+		return this.documentBytes;
+	}
+
+	/**
+	 * Retrieve the total estimated bytes retained
+	 *
+	 * @return The total estimated bytes retained
+	 */
+	public long getTotalBytes() {
+		return this.getOperationBytes() + this.getPatchBytes() + this.getDocumentBytes();
+	}
+
+	/**
+	 * Produce the sum of this estimate and another
+	 *
+	 * @param other The estimate to add to this one
+	 * @return The sum of the two estimates
+	 */
+	public MemoryEstimate add(MemoryEstimate other) {
+		return new MemoryEstimate(
+				this.getOperationBytes() + other.getOperationBytes(),
+				this.getPatchBytes() + other.getPatchBytes(),
+				this.getDocumentBytes() + other.getDocumentBytes());
+	}
+
+	/**
+	 * Round a size up to the eight byte alignment of objects on the heap
+	 *
+	 * @param bytes The unaligned size
+	 * @return The aligned size
+	 */
+	public static long align(long bytes) {
+		return (bytes + 7L) & ~7L;
+	}
+
+	/**
+	 * Estimate the bytes retained by a String
+	 *
+	 * @param value The String to estimate
+	 * @return The estimated bytes retained, or zero if the value is null
+	 */
+	public static long sizeOf(String value) {
+		return null == value ? 0L : align(HEADER_BYTES + REFERENCE_BYTES + 8L) + align(HEADER_BYTES + 4L + 2L * value.length());
+	}
+
+	/**
+	 * Estimate the bytes retained by a JsonNode tree.  The singleton nodes for true, false, null and missing values
+	 * retain nothing.
+	 *
+	 * @param node The root of the tree to estimate
+	 * @return The estimated bytes retained, or zero if the node is null
+	 */
+	public static long sizeOf(JsonNode node) {
+		if (null == node) {
+			return 0L;
+		}
+
+		switch (node.getNodeType()) {
+		case OBJECT:
+			long object = align(HEADER_BYTES + REFERENCE_BYTES) + align(HEADER_BYTES + 40L) + align(HEADER_BYTES + 4L + REFERENCE_BYTES * Integer.highestOneBit(2 * node.size() + 1));
+			for (Iterator<Map.Entry<String, JsonNode>> it = node.fields(); it.hasNext();) {
+				Map.Entry<String, JsonNode> field = it.next();
+				object += FIELD_ENTRY_BYTES + sizeOf(field.getKey()) + sizeOf(field.getValue());
+			}
+			return object;
+		case ARRAY:
+			long array = align(HEADER_BYTES + REFERENCE_BYTES) + align(HEADER_BYTES + 8L) + align(HEADER_BYTES + 4L + REFERENCE_BYTES * node.size());
+			for (JsonNode element : node) {
+				array += sizeOf(element);
+			}
+			return array;
+		case STRING:
+			return align(HEADER_BYTES + REFERENCE_BYTES) + sizeOf(node.textValue());
+		case NUMBER:
+			return node.isBigDecimal() || node.isBigInteger() ? 64L : align(HEADER_BYTES + 8L);
+		case BINARY:
+			return align(HEADER_BYTES + REFERENCE_BYTES) + align(HEADER_BYTES + 4L + node.asText().length() * 3L / 4L);
+		case POJO:
+			return align(HEADER_BYTES + REFERENCE_BYTES);
+		default:
+			return 0L;
+		}
+	}
+
+	/**
+	 * Estimate the change in the bytes retained by a document when a JSON Patch is applied to it.  Only the values the
+	 * patch adds and those found at the locations it removes, replaces or copies from are estimated, so the cost follows
+	 * the size of the patch rather than that of the document.  Tokens which are array indices are taken to address array
+	 * elements, and the tables holding fields and elements are not taken to grow, so the estimate drifts from that of
+	 * sizeOf as a document grows.
+	 *
+	 * @param patch The JSON Patch applied
+	 * @param before The function resolving reference tokens against the document as it was before the patch
+	 * @return The estimated change in the bytes retained by the document
+	 */
+	public static long sizeOfChange(JsonNode patch, Function<String[], JsonNode> before) {
+		long rv = 0L;
+
+		for (JsonNode operation : patch) {
+			String[] path = Pointer.tokens(operation.path("path").asText());
+			long entry = 0 == path.length ? 0L : isReplaced(path) ? FIELD_ENTRY_BYTES + sizeOf(path[path.length - 1]) : REFERENCE_BYTES;
+
+			switch (operation.path("op").asText()) {
+			case "add":
+				JsonNode replaced = isReplaced(path) ? before.apply(path) : null;
+				rv += sizeOf(operation.get("value")) - (null == replaced ? -entry : sizeOf(replaced));
+				break;
+			case "remove":
+				rv -= sizeOf(before.apply(path)) + entry;
+				break;
+			case "replace":
+				rv += sizeOf(operation.get("value")) - sizeOf(before.apply(path));
+				break;
+			case "copy":
+				rv += sizeOf(before.apply(Pointer.tokens(operation.path("from").asText()))) + entry;
+				break;
+			default:
+				break;
+			}
+		}
+
+		return rv;
+	}
+
+	/**
+	 * Determine whether a JSON Patch add operation may replace the value found at its location, as it does for the
+	 * root and for a field of an object, rather than insert a new array element.  Tokens which are array indices are
+	 * taken to insert, which saves resolving the parent of the location.
+	 *
+	 * @param path The reference tokens of the location added to
+	 * @return True if any value found at the location is replaced
+	 */
+	private static boolean isReplaced(String[] path) {
+		return 0 == path.length || (Pointer.toIndex(path[path.length - 1]) < 0 && !"-".equals(path[path.length - 1]));
+	}
+
+	/* (non-Javadoc)
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+
+		sb.append("{");
+		sb.append("\"operationBytes\":" + this.getOperationBytes() + ",");
+		sb.append("\"patchBytes\":" + this.getPatchBytes() + ",");
+		sb.append("\"documentBytes\":" + this.getDocumentBytes() + ",");
+		sb.append("\"totalBytes\":" + this.getTotalBytes());
+		sb.append("}");
+
+		return sb.toString();
+	}
+}
@@ -0,0 +1,317 @@
+/*
+ * Copyright (c) 2017 Cybernetic Frontiers LLC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package com.cyberfront.crdt.support;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.databind.node.TextNode;
+
+/**
+ * The Pointer class provides static routines for working with the JSON Pointer strings (RFC 6901) used in the path and
+ * from fields of JSON Patch operations.
+ * 
+ * The same pointers and field names recur across thousands of operations and every copy of them sent between nodes, so
+ * they are interned in process wide tables.  Interned pointers are kept both as shared TextNode instances, for the
+ * operations to hold, and as pre-split token arrays, so resolving a pointer does not split it again.  Each table stops
+ * accepting new entries once it reaches MAX_INTERNED entries; beyond that the values are simply not shared.
+ */
+public class Pointer {
+
+	/** The largest number of entries held by each of the intern tables */
+	public static final int MAX_INTERNED = 1 << 16;
+
+	/** The empty token list, which refers to the whole document */
+	private static final String[] ROOT = new String[0];
+
+	/** The interned field names and reference tokens */
+	private static final ConcurrentMap<String, String> NAMES = new ConcurrentHashMap<>();
+
+	/** The interned pointers, as TextNode instances */
+	private static final ConcurrentMap<String, TextNode> NODES = new ConcurrentHashMap<>();
+
+	/** The interned pointers, split into their interned reference tokens */
+	private static final ConcurrentMap<String, String[]> TOKENS = new ConcurrentHashMap<>();
+
+	/**
+	 * Add a value to an intern table, provided the table is not full
+	 *
+	 * @param table The intern table
+	 * @param key The key of the value
+	 * @param value The value to intern
+	 * @param <T> The type of the values in the table
+	 * @return The interned value, which is the given value unless an equal one was interned first
+	 */
+	private static <T> T intern(ConcurrentMap<String, T> table, String key, T value) {
+		if (table.size() >= MAX_INTERNED) {
+			return value;
+		}
+
+		T rv = table.putIfAbsent(key, value);
+		return null == rv ? value : rv;
+	}
+
+	/**
+	 * Intern a field name or reference token
+	 *
+	 * @param name The name to intern
+	 * @return The interned name, equal to the given name
+	 */
+	public static String intern(String name) {
+		String rv = NAMES.get(name);
+		return null == rv ? intern(NAMES, name, name) : rv;
+	}
+
+	/**
+	 * Retrieve an interned TextNode holding a JSON Pointer
+	 *
+	 * @param pointer The JSON Pointer
+	 * @return The interned TextNode holding the pointer
+	 */
+	public static TextNode internNode(String pointer) {
+		TextNode rv = NODES.get(pointer);
+		return null == rv ? intern(NODES, pointer, TextNode.valueOf(pointer)) : rv;
+	}
+
+	/**
+	 * Split a JSON Pointer into its interned reference tokens, reusing the tokens from any earlier split of the same
+	 * pointer.  The array returned may be shared, and must not be changed.
+	 *
+	 * @param pointer The JSON Pointer to split
+	 * @return The unescaped and interned reference tokens of the pointer
+	 * @throws IllegalArgumentException If the pointer is neither empty nor starts with a slash, or contains an
+	 * invalid escape sequence
+	 */
+	public static String[] tokens(String pointer) {
+		String[] rv = TOKENS.get(pointer);
+
+		if (null == rv) {
+			rv = parse(pointer);
+			for (int i = 0; i < rv.length; ++i) {
+				rv[i] = intern(rv[i]);
+			}
+			rv = intern(TOKENS, pointer, rv);
+		}
+
+		return rv;
+	}
+
+	/**
+	 * Replace the path and from pointers of each operation of a JSON Patch with interned TextNode instances, so that
+	 * operations referring to the same locations share their pointers.  The patch is changed in place.
+	 *
+	 * @param patch The JSON Patch whose pointers are to be interned, which may be null
+	 * @return The given patch
+	 */
+	public static JsonNode internPatch(JsonNode patch) {
+		if (null != patch && patch.isArray()) {
+			for (JsonNode operation : patch) {
+				if (operation.isObject()) {
+					internField((ObjectNode) operation, "path");
+					internField((ObjectNode) operation, "from");
+				}
+			}
+		}
+
+		return patch;
+	}
+
+	/**
+	 * Replace a text field of a patch operation with its interned TextNode
+	 *
+	 * @param operation The patch operation
+	 * @param name The name of the field
+	 */
+	private static void internField(ObjectNode operation, String name) {
+		JsonNode field = operation.get(name);
+
+		if (null != field && field.isTextual()) {
+			TextNode interned = internNode(field.textValue());
+
+			if (interned != field) {
+				operation.set(name, interned);
+			}
+		}
+	}
+
+	/**
+	 * Empty the intern tables
+	 */
+	public static void clearInterned() {
+		NAMES.clear();
+		NODES.clear();
+		TOKENS.clear();
+	}
+
+	/**
+	 * Split a JSON Pointer into its reference tokens, unescaping each token.  The empty pointer refers to the whole
+	 * document and produces no tokens.
+	 *
+	 * @param pointer The JSON Pointer to split
+	 * @return The unescaped reference tokens of the pointer
+	 * @throws IllegalArgumentException If the pointer is neither empty nor starts with a slash, or contains an
+	 * invalid escape sequence
+	 */
+	public static String[] parse(String pointer) {
+		if (pointer.isEmpty()) {
+			return ROOT;
+		} else if ('/' != pointer.charAt(0)) {
+			throw new IllegalArgumentException("JSON Pointer \"" + pointer + "\" does not start with '/'");
+		}
+
+		List<String> tokens = new ArrayList<>();
+		int start = 1;
+
+		for (int end = pointer.indexOf('/', start); end >= 0; end = pointer.indexOf('/', start)) {
+			tokens.add(unescape(pointer, start, end));
+			start = end + 1;
+		}
+
+		tokens.add(unescape(pointer, start, pointer.length()));
+
+		return tokens.toArray(new String[tokens.size()]);
+	}
+
+	/**
+	 * Unescape a single reference token of a JSON Pointer, replacing ~1 with '/' and ~0 with '~'
+	 *
+	 * @param pointer The JSON Pointer holding the token
+	 * @param start The position of the first character of the token
+	 * @param end The position following the last character of the token
+	 * @return The unescaped token
+	 * @throws IllegalArgumentException If the token contains an invalid escape sequence
+	 */
+	private static String unescape(String pointer, int start, int end) {
+		int tilde = pointer.indexOf('~', start);
+
+		if (tilde < 0 || tilde >= end) {
+			return pointer.substring(start, end);
+		}
+
+		StringBuilder sb = new StringBuilder(end - start);
+
+		for (int i = start; i < end; ++i) {
+			char c = pointer.charAt(i);
+
+			if ('~' != c) {
+				sb.append(c);
+			} else if (i + 1 < end && '0' == pointer.charAt(i + 1)) {
+				sb.append('~');
+				++i;
+			} else if (i + 1 < end && '1' == pointer.charAt(i + 1)) {
+				sb.append('/');
+				++i;
+			} else {
+				throw new IllegalArgumentException("JSON Pointer \"" + pointer + "\" has an invalid escape sequence");
+			}
+		}
+
+		return sb.toString();
+	}
+
+	/**
+	 * Resolve a sequence of reference tokens against a document
+	 *
+	 * @param document The document to resolve the tokens against, which may be null
+	 * @param tokens The reference tokens to follow
+	 * @return The node the tokens refer to, or null if there is no such node
+	 */
+	public static JsonNode resolve(JsonNode document, String[] tokens) {
+		JsonNode rv = document;
+
+		for (int i = 0; null != rv && i < tokens.length; ++i) {
+			if (rv.isObject()) {
+				rv = rv.get(tokens[i]);
+			} else if (rv.isArray() && toIndex(tokens[i]) >= 0) {
+				rv = rv.get(toIndex(tokens[i]));
+			} else {
+				rv = null;
+			}
+		}
+
+		return rv;
+	}
+
+	/**
+	 * Convert a reference token to an array index.  Only the decimal forms without leading zeros are accepted.
+	 *
+	 * @param token The reference token to convert
+	 * @return The array index, or -1 if the token is not a valid array index
+	 */
+	public static int toIndex(String token) {
+		int length = token.length();
+
+		if (0 == length || length > 9 || (length > 1 && '0' == token.charAt(0))) {
+			return -1;
+		}
+
+		int rv = 0;
+
+		for (int i = 0; i < length; ++i) {
+			char c = token.charAt(i);
+
+			if (c < '0' || c > '9') {
+				return -1;
+			}
+
+			rv = rv * 10 + (c - '0');
+		}
+
+		return rv;
+	}
+
+	/**
+	 * Determine whether two JSON Pointers may refer to overlapping parts of a document.  This is the case when one refers
+	 * to a location within the other, and is also taken to be the case when they refer to siblings which may be elements
+	 * of the same array, since adding or removing one element shifts the others.
+	 *
+	 * @param a The reference tokens of the first pointer
+	 * @param b The reference tokens of the second pointer
+	 * @return False only when the pointers refer to disjoint parts of any document
+	 */
+	public static boolean overlaps(String[] a, String[] b) {
+		int length = Math.min(a.length, b.length);
+
+		for (int i = 0; i < length; ++i) {
+			if (!a[i].equals(b[i])) {
+				return isElement(a[i]) && isElement(b[i]);
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * Determine whether a reference token may refer to an array element
+	 *
+	 * @param token The reference token
+	 * @return True exactly when the token is an array index or the end of array marker
+	 */
+	private static boolean isElement(String token) {
+		return "-".equals(token) || toIndex(token) >= 0;
+	}
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright (c) 2017 Cybernetic Frontiers LLC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package com.cyberfront.crdt.support;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+import com.fasterxml.jackson.databind.util.ByteBufferBackedInputStream;
+
+/**
+ * The SlabArena class stores byte sequences outside of the Java heap, in direct ByteBuffer slabs of a fixed size.
+ * Sequences are appended to the current slab, and a new slab is allocated when one fills.  A sequence larger than a
+ * slab is given a slab of its own.
+ * 
+ * Each stored sequence is returned as a read only buffer covering just that sequence, which refers to its slab.  The
+ * arena only refers to the slab it is filling, so once a slab is full it is retained solely by the buffers of the
+ * sequences stored in it, and the garbage collector frees it, along with its off heap memory, once none of those
+ * buffers is reachable.  Sequences are never freed individually, so a slab lives as long as the longest lived sequence
+ * stored in it; the default slab size is kept small to limit the memory a few long lived sequences can pin.
+ */
+public class SlabArena {
+
+	/** The default size of each slab */
+	public static final int DEFAULT_SLAB_SIZE = 1 << 16;
+
+	/** The size of each slab */
+	private final int slabSize;
+
+	/** The slab being filled, or null before the first sequence is stored */
+	private ByteBuffer slab;
+
+	/** The total number of bytes stored in the arena */
+	private long storedBytes = 0L;
+
+	/** The total number of bytes allocated for slabs */
+	private long allocatedBytes = 0L;
+
+	/**
+	 * Instantiates a new arena with slabs of the default size
+	 */
+	public SlabArena() {
+		this(DEFAULT_SLAB_SIZE);
+	}
+
+	/**
+	 * Instantiates a new arena
+	 *
+	 * @param slabSize The size of each slab
+	 */
+	public SlabArena(int slabSize) {
+		if (slabSize <= 0) {
+			throw new IllegalArgumentException("Slab size " + slabSize + " is not positive");
+		}
+
+		this.slabSize = slabSize;
+	}
+
+	/**
+	 * Store a byte sequence in the arena
+	 *
+	 * @param data The bytes to store
+	 * @return A read only buffer covering the stored sequence, which keeps its slab from being freed
+	 */
+	public synchronized ByteBuffer store(byte[] data) {
+		if (null == this.slab || this.slab.remaining() < data.length) {
+			this.slab = ByteBuffer.allocateDirect(Math.max(this.slabSize, data.length));
+			this.allocatedBytes += this.slab.capacity();
+		}
+
+		ByteBuffer rv = this.slab.duplicate();
+		rv.limit(rv.position() + data.length);
+		this.slab.put(data);
+		this.storedBytes += data.length;
+
+		return rv.slice().asReadOnlyBuffer();
+	}
+
+	/**
+	 * Open a stream reading a stored byte sequence directly from its slab
+	 *
+	 * @param sequence The buffer returned when the sequence was stored
+	 * @return The stream reading the sequence
+	 */
+	public static InputStream open(ByteBuffer sequence) {
+		return new ByteBufferBackedInputStream(sequence.duplicate());
+	}
+
+	/**
+	 * Retrieve the total number of bytes stored in the arena over its lifetime
+	 *
+	 * @return The total number of bytes stored
+	 */
+	public synchronized long getStoredBytes() {
+		return this.storedBytes;
+	}
+
+	/**
+	 * Retrieve the total number of bytes allocated for slabs over the lifetime of the arena, which includes the unused
+	 * remainder of each slab and slabs which have since been freed
+	 *
+	 * @return The total number of bytes allocated for slabs
+	 */
+	public synchronized long getAllocatedBytes() {
+		return this.allocatedBytes;
+	}
+
+	/**
+	 * Retrieve the number of off heap bytes the arena itself retains, which is the capacity of the slab being filled;
+	 * every other slab is retained only by the sequences stored in it
+	 *
+	 * @return The number of bytes retained by the arena
+	 */
+	public synchronized long getRetainedBytes() {
+		return null == this.slab ? 0L : this.slab.capacity();
+	}
+}
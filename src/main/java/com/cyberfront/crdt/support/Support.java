@@ -22,18 +22,30 @@
  */
 package com.cyberfront.crdt.support;
 
+import java.io.BufferedOutputStream;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
 import java.nio.charset.Charset;
 import java.nio.file.Files;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
+import java.util.UUID;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.thedeanda.lorem.LoremIpsum;
 
 /**
@@ -47,6 +59,9 @@ public class Support {
 	/** Logger to use when displaying state information */
 	private static final Logger logger = LogManager.getLogger(Support.class);
 
+	/** The factory for generators used to stream JSON, which is bound to a mapper so JsonNode trees can be written */
+	private static final JsonFactory factory = new ObjectMapper().getFactory();
+
 	/**
 	 * An enumeration used to describe different parts of speech
 	 */
@@ -356,4 +371,129 @@ public class Support {
 	
 		return sb.toString();
 	}
+
+	/**
+	 * Create a generator which streams JSON to the given writer
+	 *
+	 * @param writer The writer to stream JSON to
+	 * @return The generator
+	 * @throws IOException If the generator could not be created
+	 */
+	public static JsonGenerator createGenerator(Writer writer) throws IOException {
+		return factory.createGenerator(writer);
+	}
+
+	/**
+	 * Create a generator which streams JSON to the given output stream in UTF-8
+	 *
+	 * @param stream The output stream to stream JSON to
+	 * @return The generator
+	 * @throws IOException If the generator could not be created
+	 */
+	public static JsonGenerator createGenerator(OutputStream stream) throws IOException {
+		return factory.createGenerator(stream, JsonEncoding.UTF8);
+	}
+
+	/**
+	 * Stream the given value as JSON to a file, overwriting any previous contents of the file
+	 *
+	 * @param value The value to stream
+	 * @param file The file to write
+	 * @throws IOException If the file could not be written
+	 */
+	public static void writeJson(JsonStreamable value, File file) throws IOException {
+		try (JsonGenerator gen = createGenerator(new BufferedOutputStream(new FileOutputStream(file)))) {
+			value.writeJson(gen);
+		}
+	}
+
+	/**
+	 * Render the given value as a JSON string by streaming it through a generator, so the string is exactly the JSON
+	 * the value streams to a file
+	 *
+	 * @param value The value to render
+	 * @return The JSON string for the value
+	 */
+	public static String toJson(JsonStreamable value) {
+		StringWriter writer = new StringWriter();
+
+		try (JsonGenerator gen = createGenerator(writer)) {
+			value.writeJson(gen);
+		} catch (IOException e) {
+			throw new UncheckedIOException("Value could not be written as JSON", e);
+		}
+
+		return writer.toString();
+	}
+
+	/**
+	 * Stream a value as JSON to the given generator.  Collections and maps are written in the same layout used by the
+	 * convert methods, and any other value which is not a JsonStreamable, JsonNode, number, boolean, string or
+	 * identifier is written as the JSON given by its toString() method.
+	 *
+	 * @param gen The generator to write to
+	 * @param value The value to write
+	 * @throws IOException If the generator fails to write
+	 */
+	public static void writeJson(JsonGenerator gen, Object value) throws IOException {
+		if (null == value) {
+			gen.writeNull();
+		} else if (value instanceof JsonStreamable) {
+			((JsonStreamable) value).writeJson(gen);
+		} else if (value instanceof JsonNode) {
+			gen.writeTree((JsonNode) value);
+		} else if (value instanceof Collection) {
+			writeJson(gen, (Collection<?>) value);
+		} else if (value instanceof Map) {
+			writeJson(gen, (Map<?, ?>) value);
+		} else if (value instanceof Number || value instanceof Boolean) {
+			gen.writeObject(value);
+		} else if (value instanceof CharSequence || value instanceof UUID || value instanceof Enum) {
+			gen.writeString(value.toString());
+		} else {
+			gen.writeRawValue(value.toString());
+		}
+	}
+
+	/**
+	 * Stream a collection as a JSON array to the given generator
+	 *
+	 * @param gen The generator to write to
+	 * @param collection The collection to write
+	 * @throws IOException If the generator fails to write
+	 */
+	public static void writeJson(JsonGenerator gen, Collection<?> collection) throws IOException {
+		if (null == collection) {
+			gen.writeNull();
+		} else {
+			gen.writeStartArray();
+			for (Object element : collection) {
+				writeJson(gen, element);
+			}
+			gen.writeEndArray();
+		}
+	}
+
+	/**
+	 * Stream a map as a JSON array of KEY and VALUE pairs to the given generator
+	 *
+	 * @param gen The generator to write to
+	 * @param map The map to write
+	 * @throws IOException If the generator fails to write
+	 */
+	public static void writeJson(JsonGenerator gen, Map<?, ?> map) throws IOException {
+		if (null == map) {
+			gen.writeNull();
+		} else {
+			gen.writeStartArray();
+			for (Map.Entry<?, ?> entry : map.entrySet()) {
+				gen.writeStartObject();
+				gen.writeStringField("KEY", entry.getKey().toString());
+				gen.writeFieldName("VALUE");
+				writeJson(gen, entry.getValue());
+				gen.writeEndObject();
+			}
+			gen.writeEndArray();
+		}
+	}
 }
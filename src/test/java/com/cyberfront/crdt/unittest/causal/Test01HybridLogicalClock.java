@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) 2017 Cybernetic Frontiers LLC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package com.cyberfront.crdt.unittest.causal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+import com.cyberfront.crdt.causal.HybridLogicalClock;
+import com.cyberfront.crdt.operations.OperationManager.StatusType;
+import com.cyberfront.crdt.operations.UpdateOperation;
+import com.cyberfront.crdt.sample.manager.JsonManager;
+import com.cyberfront.crdt.unittest.crdt.DeliveryManager;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * This contains a class used for performing unit tests designed to check the HybridLogicalClock and the way managers
+ * draw timestamps from it.  It is successful if the clock generates increasing timestamps which follow those observed
+ * within the maximum offset, and managers neither let explicit timestamps move the clock nor let clock timestamps jump
+ * ahead of the explicit timestamps they hold.
+ */
+public class Test01HybridLogicalClock {
+
+	/** The ObjectMapper used to build test documents and patches */
+	private final ObjectMapper mapper = new ObjectMapper();
+
+	/**
+	 * This test will drive a HybridLogicalClock with a stalled physical clock and with timestamps received from a replica
+	 * running ahead, and confirm the timestamps it generates always increase, follow every timestamp observed within the
+	 * maximum offset, and ignore those beyond it
+	 *
+	 * @throws IOException If a test document cannot be read
+	 */
+	@Test
+	public void clockTest() throws IOException {
+		AtomicLong physical = new AtomicLong(1000L);
+		HybridLogicalClock clock = new HybridLogicalClock(physical::get, 0L);
+		clock.setMaxOffset(100L);
+		
+		long t0 = clock.now();
+		long t1 = clock.now();
+		assertEquals("Physical time was not used", 1000L, HybridLogicalClock.getPhysical(t0));
+		assertEquals("Logical counter did not advance", t0 + 1, t1);
+		
+		long remote = HybridLogicalClock.pack(1050L, 7L);
+		assertTrue("Received timestamp was not adopted", clock.update(remote) > remote);
+		assertTrue("Timestamp did not follow the received one", clock.now() > remote);
+		
+		long skewed = HybridLogicalClock.pack(5000L, 0L);
+		assertTrue("Skewed timestamp was adopted", clock.update(skewed) < skewed);
+		assertEquals("Skewed timestamp was not counted", 1L, clock.getSkewCount());
+		
+		physical.set(2000L);
+		assertEquals("Clock did not return to physical time", HybridLogicalClock.pack(2000L, 0L), clock.now());
+		
+		JsonManager manager = new JsonManager(this.mapper.readTree("{\"a\":0}"), clock.now());
+		manager.setClock(clock);
+		manager.update(this.mapper.readTree("{\"a\":1}"));
+		manager.update(this.mapper.readTree("{\"a\":2}"));
+		
+		assertEquals("Clock timestamps did not order the updates", 2, manager.read().get("a").asInt());
+	}
+
+	/**
+	 * This test will deliver operations with explicit timestamps, and timestamps far ahead of the physical clock, to a
+	 * manager, and confirm neither moves its clock, that the default maximum offset is finite, and that the manager keeps
+	 * generating timestamps in the sequence of the explicit ones it holds
+	 *
+	 * @throws IOException If a test document cannot be read
+	 */
+	@Test
+	public void domainTest() throws IOException {
+		AtomicLong physical = new AtomicLong(HybridLogicalClock.DEFAULT_EPOCH + 1000L);
+		HybridLogicalClock clock = new HybridLogicalClock(physical::get);
+		
+		assertTrue("Default maximum offset is not finite", clock.getMaxOffset() < Long.MAX_VALUE);
+		assertFalse("Explicit timestamp is in the clock domain", clock.isInDomain(5L));
+		assertTrue("Clock timestamp is not in the clock domain", clock.isInDomain(clock.now()));
+		
+		DeliveryManager manager = new DeliveryManager(this.mapper.readTree("{\"a\":0}"));
+		manager.setClock(clock);
+		
+		manager.deliver(StatusType.APPROVED, new UpdateOperation(this.mapper.readTree("[{\"op\":\"replace\",\"path\":\"/a\",\"value\":1}]"), Long.MAX_VALUE - 1));
+		
+		assertTrue("Far future timestamp was adopted", HybridLogicalClock.getPhysical(clock.getLast()) <= physical.get());
+		assertEquals("Far future timestamp was not counted", 1L, clock.getSkewCount());
+		
+		long last = clock.getLast();
+		JsonManager explicit = new JsonManager(this.mapper.readTree("{\"a\":0}"), 1L);
+		explicit.setClock(clock);
+		explicit.update(this.mapper.readTree("{\"a\":1}"), 2L);
+		
+		assertEquals("Explicit timestamp moved the clock", last, clock.getLast());
+		assertEquals("Manager left the sequence of its explicit timestamps", 3L, explicit.nextTimestamp());
+		
+		explicit.update(this.mapper.readTree("{\"a\":2}"));
+		explicit.update(this.mapper.readTree("{\"a\":3}"), 10L);
+		
+		assertEquals("Explicit timestamp was ordered before a generated one", 3, explicit.read().get("a").asInt());
+		assertEquals("Generated timestamps moved the clock", last, clock.getLast());
+	}
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright (c) 2017 Cybernetic Frontiers LLC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package com.cyberfront.crdt.unittest.crdt;
+
+import com.cyberfront.crdt.operations.AbstractOperation;
+import com.cyberfront.crdt.operations.OperationManager;
+import com.cyberfront.crdt.operations.OperationManager.StatusType;
+import com.cyberfront.crdt.sample.manager.JsonManager;
+import com.fasterxml.jackson.databind.JsonNode;
+
+/**
+ * A JsonManager which allows operations to be delivered to it directly, as a node receiving messages would.  This is
+ * the fixture shared by the unit tests which drive a CRDT manager without running a simulation.
+ */
+public class DeliveryManager extends JsonManager {
+	/**
+	 * Instantiates a new DeliveryManager around the given document
+	 *
+	 * @param document The document to create
+	 */
+	public DeliveryManager(JsonNode document) {
+		super(document, 0L);
+	}
+	
+	/**
+	 * Deliver an operation with the given status
+	 *
+	 * @param status The status of the delivered operation
+	 * @param op The operation to deliver
+	 */
+	public void deliver(StatusType status, AbstractOperation op) {
+		this.push(new OperationManager(status, op));
+	}
+}
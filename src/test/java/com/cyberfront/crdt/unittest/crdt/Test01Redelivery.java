@@ -0,0 +1,172 @@
+/*
+ * Copyright (c) 2017 Cybernetic Frontiers LLC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package com.cyberfront.crdt.unittest.crdt;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.UUID;
+
+import org.junit.Test;
+
+import com.cyberfront.crdt.causal.Dot;
+import com.cyberfront.crdt.operations.AbstractOperation;
+import com.cyberfront.crdt.operations.OperationCodec;
+import com.cyberfront.crdt.operations.OperationManager.StatusType;
+import com.cyberfront.crdt.operations.UpdateOperation;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * This contains a class used for performing unit tests designed to check that a CRDT rejects operations it has already
+ * received.  It is successful if every redelivered operation is counted as a duplicate without changing the operations
+ * held or the document, while distinct operations which merely share a timestamp and operation identifier are kept, and
+ * an operation whose identity is new but which the log holds an equal of is counted as a duplicate without being recorded.
+ */
+public class Test01Redelivery {
+
+	/** The ObjectMapper used to build test documents and patches */
+	private final ObjectMapper mapper = new ObjectMapper();
+
+	/**
+	 * Build an update replacing the value of the field "a"
+	 *
+	 * @param value The value to replace it with
+	 * @param timestamp The timestamp of the update
+	 * @return The update
+	 * @throws IOException If the patch cannot be read
+	 */
+	private AbstractOperation replace(int value, long timestamp) throws IOException {
+		return new UpdateOperation(this.mapper.readTree("[{\"op\":\"replace\",\"path\":\"/a\",\"value\":" + value + "}]"), timestamp);
+	}
+
+	/**
+	 * This test will redeliver copies of every operation held by a CRDT, and confirm each copy is rejected as a duplicate
+	 * without changing the operations held or the document they produce
+	 *
+	 * @throws IOException If a test document cannot be read
+	 */
+	@Test
+	public void redeliveryTest() throws IOException {
+		DeliveryManager manager = new DeliveryManager(this.mapper.readTree("{\"a\":0}"));
+		
+		for (long timestamp = 1; timestamp <= 4; ++timestamp) {
+			manager.update(this.mapper.readTree("{\"a\":" + timestamp + "}"), timestamp);
+		}
+		
+		JsonNode document = manager.getCrdt().getDocument();
+		long count = manager.getCrdt().getAddCount();
+		
+		for (AbstractOperation op : manager.getCrdt().copyAddSet()) {
+			manager.deliver(StatusType.APPROVED, op);
+		}
+		
+		assertEquals("Redelivered operations were added", count, manager.getCrdt().getAddCount());
+		assertEquals("Redelivered operations were not counted", count, manager.getDuplicateCount());
+		assertEquals("Redelivered operations changed the document", document, manager.getCrdt().getDocument());
+		
+		AbstractOperation last = manager.getCrdt().copyAddSet().iterator().next();
+		manager.deliver(StatusType.REJECTED, last);
+		manager.deliver(StatusType.REJECTED, last.copy());
+		
+		assertEquals("Redelivered rejection was added", 1L, manager.getCrdt().getRemCount());
+		assertEquals("Redelivered rejection was not counted", count + 1, manager.getDuplicateCount());
+	}
+
+	/**
+	 * This test will deliver two different operations sharing a timestamp and operation identifier, as operations
+	 * generated by two processes can, and confirm both are kept, that rejecting one leaves the other in effect, and that
+	 * redelivering either is still rejected as a duplicate
+	 *
+	 * @throws IOException If a test document cannot be read or an operation cannot be encoded
+	 */
+	@Test
+	public void sharedIdentifierTest() throws IOException {
+		DeliveryManager manager = new DeliveryManager(this.mapper.readTree("{\"a\":0}"));
+		AbstractOperation first = this.replace(1, 5L);
+		
+		ByteBuffer encoded = ByteBuffer.wrap(OperationCodec.encode(this.replace(2, 5L)));
+		encoded.putLong(1 + Long.BYTES, first.getOperationId());
+		AbstractOperation second = OperationCodec.decode(encoded.array());
+		
+		assertEquals("Operations do not share a timestamp", first.getTimeStamp(), second.getTimeStamp());
+		assertEquals("Operations do not share an identifier", first.getOperationId(), second.getOperationId());
+		assertNotEquals("Operations are not distinct", first, second);
+		
+		long count = manager.getCrdt().getAddCount();
+		manager.deliver(StatusType.APPROVED, first);
+		manager.deliver(StatusType.APPROVED, second);
+		
+		assertEquals("Distinct operation was dropped", count + 2, manager.getCrdt().getAddCount());
+		assertEquals("Distinct operation was counted as a duplicate", 0L, manager.getDuplicateCount());
+		
+		manager.deliver(StatusType.REJECTED, second);
+		
+		assertEquals("Rejection removed the wrong operation", 1, manager.getCrdt().getDocument().get("a").asInt());
+		
+		manager.deliver(StatusType.APPROVED, first.copy());
+		manager.deliver(StatusType.APPROVED, second.copy());
+		manager.deliver(StatusType.REJECTED, second.copy());
+		
+		assertEquals("Redelivered operations were added", count + 2, manager.getCrdt().getAddCount());
+		assertEquals("Redelivered operations were not counted", 3L, manager.getDuplicateCount());
+	}
+
+	/**
+	 * This test will deliver two copies of an operation carrying different Dots, so each has an identity of its own while
+	 * the operation logs hold them as equal, and confirm the second copy is counted as a duplicate and its identity is not
+	 * recorded, so delivering it again is counted as a duplicate once more rather than being mistaken for a new operation
+	 *
+	 * @throws IOException If a test document cannot be read
+	 */
+	@Test
+	public void equalOperationTest() throws IOException {
+		DeliveryManager manager = new DeliveryManager(this.mapper.readTree("{\"a\":0}"));
+		UUID replica = UUID.randomUUID();
+		AbstractOperation first = this.replace(1, 5L).copy(new Dot(replica, 1L));
+		AbstractOperation second = first.copy(new Dot(replica, 2L));
+		
+		assertEquals("Copies are not equal in the operation logs", 0, first.compareTo(second));
+		
+		long count = manager.getCrdt().getAddCount();
+		manager.deliver(StatusType.APPROVED, first);
+		manager.deliver(StatusType.APPROVED, second);
+		
+		assertEquals("Equal operation was added", count + 1, manager.getCrdt().getAddCount());
+		assertEquals("Equal operation was not counted", 1L, manager.getDuplicateCount());
+		
+		manager.deliver(StatusType.REJECTED, first);
+		manager.deliver(StatusType.REJECTED, second);
+		
+		assertEquals("Equal rejection was added", 1L, manager.getCrdt().getRemCount());
+		assertEquals("Equal rejection was not counted", 2L, manager.getDuplicateCount());
+		
+		manager.deliver(StatusType.APPROVED, second.copy());
+		manager.deliver(StatusType.REJECTED, second.copy());
+		
+		assertEquals("Redelivered operations were added", count + 1, manager.getCrdt().getAddCount());
+		assertEquals("Redelivered operations were not counted", 4L, manager.getDuplicateCount());
+	}
+}
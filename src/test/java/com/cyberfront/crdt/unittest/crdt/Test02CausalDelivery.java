@@ -0,0 +1,186 @@
+/*
+ * Copyright (c) 2017 Cybernetic Frontiers LLC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package com.cyberfront.crdt.unittest.crdt;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.UUID;
+
+import org.junit.Test;
+
+import com.cyberfront.crdt.causal.Dot;
+import com.cyberfront.crdt.causal.VersionVector;
+import com.cyberfront.crdt.operations.AbstractOperation;
+import com.cyberfront.crdt.operations.OperationCodec;
+import com.cyberfront.crdt.operations.OperationManager.StatusType;
+import com.cyberfront.crdt.operations.UpdateOperation;
+import com.cyberfront.crdt.sample.manager.JsonManager;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * This contains a class used for performing unit tests designed to check the causal metadata carried by operations.  It
+ * is successful if every manager given a replica identifier stamps the operations it generates, the replica of an
+ * operation takes part in its identity, and operations delivered out of order with causal delivery enabled are held
+ * until the operations generated before them arrive.
+ */
+public class Test02CausalDelivery {
+
+	/** The ObjectMapper used to build test documents and patches */
+	private final ObjectMapper mapper = new ObjectMapper();
+
+	/**
+	 * This test will generate operations through a JsonManager given a replica identifier, and confirm each carries the
+	 * next Dot of that replica, so that the VersionVector of the manager counts every one of them
+	 *
+	 * @throws IOException If a test document cannot be read
+	 */
+	@Test
+	public void stampTest() throws IOException {
+		JsonManager manager = new JsonManager(this.mapper.readTree("{\"a\":0}"), 0L);
+		UUID replica = UUID.randomUUID();
+		
+		manager.setReplicaId(replica);
+		manager.update(this.mapper.readTree("{\"a\":1}"), 1L);
+		manager.update(this.mapper.readTree("{\"a\":2}"), 2L);
+		manager.delete(3L);
+		
+		assertEquals("Generated operations were not stamped", 3L, manager.getVersionVector().get(replica));
+		
+		for (AbstractOperation op : manager.getCrdt().copyAddSet()) {
+			if (op.getTimeStamp() > 0L) {
+				assertNotNull("Generated operation was not stamped", op.getDot());
+				assertEquals("Generated operation was stamped out of order", op.getTimeStamp().longValue(), op.getDot().getSequence());
+			}
+		}
+	}
+
+	/**
+	 * Confirm the ordering of two operations is the same in both argument orders, and consistent with equals and hashCode
+	 *
+	 * @param a The first operation
+	 * @param b The second operation
+	 * @return The sign of the ordering of the first operation against the second
+	 */
+	private static int assessOrder(AbstractOperation a, AbstractOperation b) {
+		int order = Integer.signum(a.compareTo(b));
+		
+		assertEquals("Ordering depends on the argument order", -order, Integer.signum(b.compareTo(a)));
+		assertEquals("Ordering is inconsistent with equals", 0 == order, a.equals(b));
+		assertEquals("Ordering is inconsistent with equals", 0 == order, b.equals(a));
+		
+		if (0 == order) {
+			assertEquals("Equal operations hash differently", a.hashCode(), b.hashCode());
+		}
+		
+		return order;
+	}
+
+	/**
+	 * This test will stamp an operation by copying it with a Dot, and confirm the original is left without one, that the
+	 * copy is distinct from the original since the replica takes part in the identity of an operation, and that it equals
+	 * another copy from the same replica whatever the sequence number
+	 *
+	 * @throws IOException If a test patch cannot be read
+	 */
+	@Test
+	public void dotIdentityTest() throws IOException {
+		AbstractOperation op = new UpdateOperation(this.mapper.readTree("[{\"op\":\"replace\",\"path\":\"/a\",\"value\":1}]"), 1L);
+		Dot dot = new Dot(UUID.randomUUID(), 1L);
+		AbstractOperation stamped = op.copy(dot);
+		
+		assertNull("Stamping changed the original operation", op.getDot());
+		assertEquals("Stamped copy does not carry the Dot", dot, stamped.getDot());
+		assertNotEquals("Stamped copy equals the original", 0, assessOrder(op, stamped));
+		assertEquals("Copies from one replica are distinct", 0, assessOrder(stamped, op.copy(new Dot(dot.getReplica(), 2L))));
+		assertEquals("Copy of the stamped operation lost the Dot", dot, stamped.copy().getDot());
+	}
+
+	/**
+	 * This test will build operations from two replicas sharing a timestamp and operation identifier, as operations
+	 * generated by two processes can, and confirm they are ordered by replica, the same way in both argument orders,
+	 * whether their JSON operations match or not
+	 *
+	 * @throws IOException If a test patch cannot be read or an operation cannot be encoded
+	 */
+	@Test
+	public void replicaOrderTest() throws IOException {
+		UUID first = UUID.randomUUID();
+		UUID second = UUID.randomUUID();
+		int expected = Integer.signum(first.compareTo(second));
+		
+		AbstractOperation op = new UpdateOperation(this.mapper.readTree("[{\"op\":\"replace\",\"path\":\"/a\",\"value\":1}]"), 5L);
+		ByteBuffer encoded = ByteBuffer.wrap(OperationCodec.encode(new UpdateOperation(this.mapper.readTree("[{\"op\":\"replace\",\"path\":\"/a\",\"value\":2}]"), 5L)));
+		encoded.putLong(1 + Long.BYTES, op.getOperationId());
+		AbstractOperation other = OperationCodec.decode(encoded.array());
+		
+		assertEquals("Operations do not share an identifier", op.getOperationId(), other.getOperationId());
+		assertNotEquals("Replicas are not distinct", 0, expected);
+		
+		assertEquals("Matching operations are not ordered by replica", expected, assessOrder(op.copy(new Dot(first, 1L)), op.copy(new Dot(second, 1L))));
+		assertEquals("Differing operations are not ordered by replica", expected, assessOrder(op.copy(new Dot(first, 1L)), other.copy(new Dot(second, 1L))));
+		assertEquals("Differing operations are not ordered by replica", expected, assessOrder(other.copy(new Dot(first, 1L)), op.copy(new Dot(second, 1L))));
+	}
+
+	/**
+	 * This test will deliver operations from one replica out of order with causal delivery enabled, and confirm each is
+	 * held until the operations generated before it arrive, and that the resulting VersionVector identifies exactly the
+	 * operations another replica is missing
+	 *
+	 * @throws IOException If a test patch cannot be read
+	 */
+	@Test
+	public void causalDeliveryTest() throws IOException {
+		DeliveryManager manager = new DeliveryManager(this.mapper.readTree("{\"a\":0}"));
+		UUID replica = UUID.randomUUID();
+		AbstractOperation[] ops = new AbstractOperation[3];
+		
+		manager.setCausalDelivery(true);
+		
+		for (int i = 0; i < ops.length; ++i) {
+			ops[i] = new UpdateOperation(this.mapper.readTree("[{\"op\":\"replace\",\"path\":\"/a\",\"value\":" + (i + 1) + "}]"), i + 1L).copy(new Dot(replica, i + 1L));
+		}
+		
+		manager.deliver(StatusType.APPROVED, ops[2]);
+		manager.deliver(StatusType.APPROVED, ops[1]);
+		
+		assertEquals("Operations delivered ahead of their predecessor", 1L, manager.getCrdt().getAddCount());
+		assertEquals("Operations were not held", 2, manager.getHeldCount());
+		
+		VersionVector partial = manager.getVersionVector();
+		manager.deliver(StatusType.APPROVED, ops[0]);
+		
+		assertEquals("Held operations were not released", 0, manager.getHeldCount());
+		assertEquals("Held operations were not delivered", 4L, manager.getCrdt().getAddCount());
+		assertEquals("Version vector did not advance", 3L, manager.getVersionVector().get(replica));
+		assertEquals("Operations delivered out of order changed the document", 3, manager.getCrdt().getDocument().get("a").asInt());
+		assertTrue("Version vector does not dominate an earlier one", manager.getVersionVector().dominates(partial));
+		assertEquals("Delta holds operations already seen", 1, manager.getCrdt().getDelta(manager.getVersionVector()).size());
+		assertEquals("Delta misses operations not seen", 4, manager.getCrdt().getDelta(partial).size());
+	}
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright (c) 2017 Cybernetic Frontiers LLC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package com.cyberfront.crdt.unittest.crdt;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+
+import org.junit.Test;
+
+import com.cyberfront.crdt.LastWriteWins.Backend;
+import com.cyberfront.crdt.LastWriteWins.Materialization;
+import com.cyberfront.crdt.operations.OperationManager.StatusType;
+import com.cyberfront.crdt.operations.UpdateOperation;
+import com.cyberfront.crdt.support.MemoryEstimate;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * This contains a class used for performing unit tests designed to check how a CRDT materializes its document.  It is
+ * successful if updates delivered in order are appended to the document without replays under every policy and
+ * backend, out of order updates are replayed as the policy requires, and the estimated size of an appended document
+ * tracks that of the document itself.
+ */
+public class Test03Materialization {
+
+	/** The ObjectMapper used to build test documents and patches */
+	private final ObjectMapper mapper = new ObjectMapper();
+
+	/**
+	 * Build an update operation from the text of a JSON Patch
+	 *
+	 * @param patch The text of the JSON Patch
+	 * @param timestamp The timestamp of the operation
+	 * @return The update operation
+	 * @throws IOException If the patch cannot be read
+	 */
+	private UpdateOperation update(String patch, long timestamp) throws IOException {
+		return new UpdateOperation(this.mapper.readTree(patch), timestamp);
+	}
+
+	/**
+	 * This test will apply a burst of updates to CRDTs under each materialization policy, reading the document after every
+	 * update, and confirm in order updates are appended without replays, out of order updates are replayed according to
+	 * the policy, and every policy arrives at the same document
+	 *
+	 * @throws IOException If a test document cannot be read
+	 */
+	@Test
+	public void materializationTest() throws IOException {
+		int count = 32;
+		JsonNode expected = null;
+		
+		for (Materialization policy : Materialization.values()) {
+			DeliveryManager ordered = new DeliveryManager(this.mapper.readTree("{\"a\":0}"));
+			DeliveryManager reversed = new DeliveryManager(this.mapper.readTree("{\"a\":0}"));
+			
+			ordered.getCrdt().setMaterialization(policy);
+			reversed.getCrdt().setMaterialization(policy);
+			reversed.getCrdt().setDebounce(8, Long.MAX_VALUE);
+			ordered.getCrdt().getDocument();
+			reversed.getCrdt().getDocument();
+			
+			for (int i = 1; i <= count; ++i) {
+				ordered.deliver(StatusType.APPROVED, this.update("[{\"op\":\"add\",\"path\":\"/b" + i + "\",\"value\":" + i + "}]", i));
+				ordered.getCrdt().getDocument();
+				
+				reversed.deliver(StatusType.APPROVED, this.update("[{\"op\":\"add\",\"path\":\"/c" + i + "\",\"value\":" + i + "}]", 2L * count - i));
+				reversed.getCrdt().getDocument();
+			}
+			
+			assertEquals("Ordered updates were replayed", 1L, ordered.getCrdt().getReplayCount());
+			assertEquals("Ordered updates were not appended", count, ordered.getCrdt().getAppendCount());
+			
+			long replays = reversed.getCrdt().getReplayCount();
+			if (Materialization.DEBOUNCED == policy) {
+				assertTrue("Debounced updates were replayed too often", replays <= 1 + count / 8);
+				reversed.getCrdt().flush();
+			} else {
+				// Only the first update, which follows the create, can be appended
+				assertEquals("Out of order updates were not replayed", (long) count, replays);
+			}
+			
+			if (null == expected) {
+				expected = reversed.getCrdt().getDocument();
+			}
+			
+			assertEquals("Materialization policy changed the document", expected, reversed.getCrdt().getDocument());
+			assertTrue("Appended updates were found invalid", !ordered.getCrdt().hasInvalidOperations());
+		}
+	}
+
+	/**
+	 * This test will append updates which add, replace, copy and remove fields and array elements to CRDTs under each
+	 * backend which appends, reading only the estimated size of the document until the end, and confirm the updates were
+	 * appended, the backends arrive at the same document, and the estimate adjusted by each update stays close to one
+	 * made afresh from the document
+	 *
+	 * @throws IOException If a test document cannot be read
+	 */
+	@Test
+	public void estimateTest() throws IOException {
+		int count = 64;
+		JsonNode expected = null;
+		
+		for (Backend backend : new Backend[] { Backend.JSON_PATCH, Backend.PERSISTENT }) {
+			DeliveryManager manager = new DeliveryManager(this.mapper.readTree("{\"a\":0,\"list\":[]}"));
+			
+			manager.getCrdt().setBackend(backend);
+			manager.getCrdt().getDocument();
+			
+			for (int i = 1; i <= count; ++i) {
+				manager.deliver(StatusType.APPROVED, this.update("[{\"op\":\"add\",\"path\":\"/f" + i + "\",\"value\":{\"name\":\"field" + i + "\",\"value\":" + i + "}}," +
+						"{\"op\":\"add\",\"path\":\"/list/-\",\"value\":\"element" + i + "\"}," +
+						"{\"op\":\"replace\",\"path\":\"/a\",\"value\":\"text" + i + "\"}]", 4L * i));
+				
+				if (0 == i % 4) {
+					manager.deliver(StatusType.APPROVED, this.update("[{\"op\":\"remove\",\"path\":\"/f" + (i - 1) + "\"},{\"op\":\"remove\",\"path\":\"/list/0\"}]", 4L * i + 1));
+					manager.deliver(StatusType.APPROVED, this.update("[{\"op\":\"copy\",\"from\":\"/f" + i + "\",\"path\":\"/g" + i + "\"}]", 4L * i + 2));
+				}
+			}
+			
+			assertEquals("Ordered updates were replayed", 1L, manager.getCrdt().getReplayCount());
+			assertEquals("Ordered updates were not appended", count * 3L / 2L, manager.getCrdt().getAppendCount());
+			
+			long estimated = manager.getCrdt().getMemoryEstimate().getDocumentBytes();
+			long actual = MemoryEstimate.sizeOf(manager.getCrdt().getDocument());
+			
+			assertTrue("Estimated document size drifted: " + estimated + " against " + actual, Math.abs(estimated - actual) * 10L < actual);
+			assertTrue("Appended updates were found invalid", !manager.getCrdt().hasInvalidOperations());
+			
+			if (null == expected) {
+				expected = manager.getCrdt().getDocument();
+			}
+			
+			assertEquals("Backend changed the document", expected, manager.getCrdt().getDocument());
+		}
+	}
+}
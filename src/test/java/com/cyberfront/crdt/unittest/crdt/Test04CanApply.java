@@ -0,0 +1,174 @@
+/*
+ * Copyright (c) 2017 Cybernetic Frontiers LLC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package com.cyberfront.crdt.unittest.crdt;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.cyberfront.crdt.LastWriteWins.Materialization;
+import com.cyberfront.crdt.operations.AbstractOperation;
+import com.cyberfront.crdt.operations.OperationManager.StatusType;
+import com.cyberfront.crdt.operations.UpdateOperation;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * This contains a class used for performing unit tests designed to check whether a CRDT can tell if an operation would
+ * apply cleanly without adding it.  It is successful if every verdict matches that of a replay with the operation added,
+ * including while a DEBOUNCED document has changes pending, and checking replays nothing where the operation commutes
+ * with those after it and is left out of the metrics.
+ */
+public class Test04CanApply {
+
+	/** The ObjectMapper used to build test documents and patches */
+	private final ObjectMapper mapper = new ObjectMapper();
+
+	/**
+	 * Determine whether an operation applies cleanly by adding it to a fresh CRDT holding copies of the given operations,
+	 * and confirming no more operations are invalid than without it
+	 *
+	 * @param document The document the CRDT is created with
+	 * @param history The operations the CRDT holds
+	 * @param op The operation to check
+	 * @return True exactly when adding the operation makes no further operation invalid
+	 */
+	private static boolean replayApplies(JsonNode document, List<AbstractOperation> history, AbstractOperation op) {
+		DeliveryManager manager = new DeliveryManager(document);
+		
+		for (AbstractOperation el : history) {
+			manager.deliver(StatusType.APPROVED, el.copy());
+		}
+		
+		int invalid = manager.getCrdt().getInvalidOperations().size();
+		manager.deliver(StatusType.APPROVED, op.copy());
+		
+		return invalid == manager.getCrdt().getInvalidOperations().size();
+	}
+
+	/**
+	 * This test will check operations against a CRDT, both at its tip and out of order, and confirm each verdict matches
+	 * a full replay with the operation added, that checks at the tip and of non-interfering updates replay nothing, and
+	 * that checking leaves the document and the replay and invalid operation counts unchanged
+	 *
+	 * @throws IOException If a test document cannot be read
+	 */
+	@Test
+	public void canApplyTest() throws IOException {
+		JsonNode document = this.mapper.readTree("{\"a\":0,\"b\":[1,2],\"c\":{\"d\":1}}");
+		List<AbstractOperation> history = Arrays.asList(
+				new UpdateOperation(this.mapper.readTree("[{\"op\":\"add\",\"path\":\"/e\",\"value\":1}]"), 10L),
+				new UpdateOperation(this.mapper.readTree("[{\"op\":\"test\",\"path\":\"/c/d\",\"value\":1}]"), 15L),
+				new UpdateOperation(this.mapper.readTree("[{\"op\":\"replace\",\"path\":\"/b/1\",\"value\":3}]"), 16L));
+		DeliveryManager manager = new DeliveryManager(document);
+		
+		for (AbstractOperation op : history) {
+			manager.deliver(StatusType.APPROVED, op.copy());
+		}
+		
+		JsonNode expected = manager.getCrdt().getDocument().deepCopy();
+		long replays = manager.getCrdt().getReplayCount();
+		
+		String[][] cheap = {
+				{ "20", "[{\"op\":\"add\",\"path\":\"/f\",\"value\":1}]", "true" },
+				{ "20", "[{\"op\":\"test\",\"path\":\"/a\",\"value\":0},{\"op\":\"replace\",\"path\":\"/a\",\"value\":1}]", "true" },
+				{ "20", "[{\"op\":\"replace\",\"path\":\"/a\",\"value\":1},{\"op\":\"test\",\"path\":\"/a\",\"value\":5}]", "false" },
+				{ "20", "[{\"op\":\"remove\",\"path\":\"/x\"}]", "false" },
+				{ "20", "[{\"op\":\"add\",\"path\":\"/x/y\",\"value\":1}]", "false" },
+				{ "5", "[{\"op\":\"replace\",\"path\":\"/a\",\"value\":1}]", "true" },
+				{ "5", "[{\"op\":\"remove\",\"path\":\"/x\"}]", "false" } };
+		
+		for (String[] test : cheap) {
+			UpdateOperation op = new UpdateOperation(this.mapper.readTree(test[1]), Long.parseLong(test[0]));
+			assertEquals("Wrong verdict for " + op, Boolean.parseBoolean(test[2]), manager.getCrdt().canApply(op));
+			assertEquals("Verdict differs from a replay for " + op, replayApplies(document, history, op), manager.getCrdt().canApply(op));
+		}
+		
+		assertEquals("Checks at the tip replayed the operations", replays, manager.getCrdt().getReplayCount());
+		
+		String[][] interfering = {
+				{ "5", "[{\"op\":\"remove\",\"path\":\"/e\"}]", "false" },
+				{ "5", "[{\"op\":\"replace\",\"path\":\"/c/d\",\"value\":2}]", "false" },
+				{ "5", "[{\"op\":\"replace\",\"path\":\"/c\",\"value\":{\"d\":1}}]", "true" },
+				{ "5", "[{\"op\":\"remove\",\"path\":\"/b/0\"}]", "false" },
+				{ "5", "[{\"op\":\"add\",\"path\":\"/b/-\",\"value\":4}]", "true" } };
+		
+		for (String[] test : interfering) {
+			UpdateOperation op = new UpdateOperation(this.mapper.readTree(test[1]), Long.parseLong(test[0]));
+			assertEquals("Wrong verdict for " + op, Boolean.parseBoolean(test[2]), manager.getCrdt().canApply(op));
+			assertEquals("Verdict differs from a replay for " + op, replayApplies(document, history, op), manager.getCrdt().canApply(op));
+		}
+		
+		assertEquals("Checking operations was counted as a replay", replays, manager.getCrdt().getReplayCount());
+		assertEquals("Checking operations was counted as finding invalid operations", 0L, manager.getCrdt().getInvalidCount());
+		assertEquals("Checking operations changed the document", expected, manager.getCrdt().getDocument());
+		assertTrue("Checking operations made an operation invalid", !manager.getCrdt().hasInvalidOperations());
+	}
+
+	/**
+	 * This test will check operations against a DEBOUNCED CRDT holding fewer pending changes than trigger a rebuild, and
+	 * confirm each verdict matches a full replay including the pending changes rather than the stale document
+	 *
+	 * @throws IOException If a test document cannot be read
+	 */
+	@Test
+	public void debouncedTest() throws IOException {
+		JsonNode document = this.mapper.readTree("{\"a\":0,\"b\":[1,2]}");
+		List<AbstractOperation> history = new ArrayList<>(Arrays.asList(
+				new UpdateOperation(this.mapper.readTree("[{\"op\":\"add\",\"path\":\"/e\",\"value\":1}]"), 10L),
+				new UpdateOperation(this.mapper.readTree("[{\"op\":\"replace\",\"path\":\"/b/1\",\"value\":3}]"), 16L)));
+		DeliveryManager manager = new DeliveryManager(document);
+		
+		manager.getCrdt().setMaterialization(Materialization.DEBOUNCED);
+		manager.getCrdt().setDebounce(16, Long.MAX_VALUE);
+		
+		for (AbstractOperation op : history) {
+			manager.deliver(StatusType.APPROVED, op.copy());
+		}
+		
+		manager.getCrdt().getDocument();
+		
+		AbstractOperation pending = new UpdateOperation(this.mapper.readTree("[{\"op\":\"remove\",\"path\":\"/e\"}]"), 12L);
+		history.add(pending);
+		manager.deliver(StatusType.APPROVED, pending.copy());
+		
+		assertTrue("Out of order change was not left pending", manager.getCrdt().getPendingChanges() > 0);
+		
+		String[][] tests = {
+				{ "20", "[{\"op\":\"replace\",\"path\":\"/e\",\"value\":2}]", "false" },
+				{ "20", "[{\"op\":\"add\",\"path\":\"/e\",\"value\":2}]", "true" },
+				{ "5", "[{\"op\":\"remove\",\"path\":\"/a\"}]", "true" } };
+		
+		for (String[] test : tests) {
+			UpdateOperation op = new UpdateOperation(this.mapper.readTree(test[1]), Long.parseLong(test[0]));
+			assertEquals("Wrong verdict for " + op, Boolean.parseBoolean(test[2]), manager.getCrdt().canApply(op));
+			assertEquals("Verdict differs from a replay for " + op, replayApplies(document, history, op), manager.getCrdt().canApply(op));
+		}
+	}
+}
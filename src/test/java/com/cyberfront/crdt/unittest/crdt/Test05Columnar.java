@@ -0,0 +1,94 @@
+/*
+ * Copyright (c) 2017 Cybernetic Frontiers LLC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package com.cyberfront.crdt.unittest.crdt;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.cyberfront.crdt.operations.AbstractOperation;
+import com.cyberfront.crdt.operations.DeleteOperation;
+import com.cyberfront.crdt.operations.OperationManager.StatusType;
+import com.cyberfront.crdt.operations.ReadOperation;
+import com.cyberfront.crdt.operations.UpdateOperation;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * This contains a class used for performing unit tests designed to check CRDTs which keep their operation metadata in
+ * columns.  It is successful if such a CRDT and one which does not report the same counts, state and documents, past
+ * and present, after every delivery of a random sequence of operations.
+ */
+public class Test05Columnar {
+
+	/** The ObjectMapper used to build test documents and patches */
+	private final ObjectMapper mapper = new ObjectMapper();
+
+	/**
+	 * This test will deliver the same random sequence of operations, in random order and with random statuses, to a CRDT
+	 * keeping its operation metadata in columns and to one which does not, and confirm after every delivery that both
+	 * report the same counts, state and documents, past and present
+	 *
+	 * @throws IOException If a test document cannot be read
+	 */
+	@Test
+	public void columnarTest() throws IOException {
+		Random rnd = new Random(0L);
+		StatusType[] statuses = StatusType.values();
+		int count = 256;
+		
+		DeliveryManager rows = new DeliveryManager(this.mapper.readTree("{\"a\":0}"));
+		DeliveryManager columns = new DeliveryManager(this.mapper.readTree("{\"a\":0}"));
+		columns.getCrdt().setColumnar(true);
+		
+		for (int i = 1; i <= count; ++i) {
+			long timestamp = 1L + rnd.nextInt(count);
+			int choice = rnd.nextInt(16);
+			AbstractOperation op = 0 == choice
+					? new DeleteOperation(timestamp + count)
+					: choice < 4
+						? new ReadOperation(timestamp)
+						: new UpdateOperation(this.mapper.readTree("[{\"op\":\"add\",\"path\":\"/b" + rnd.nextInt(32) + "\",\"value\":" + i + "}]"), timestamp);
+			
+			int deliveries = 1 + rnd.nextInt(2);
+			for (int j = 0; j < deliveries; ++j) {
+				StatusType status = statuses[rnd.nextInt(statuses.length)];
+				rows.deliver(status, op.copy());
+				columns.deliver(status, op.copy());
+			}
+			
+			assertEquals("Created counts differ", rows.getCrdt().countCreated(), columns.getCrdt().countCreated());
+			assertEquals("Read counts differ", rows.getCrdt().countRead(), columns.getCrdt().countRead());
+			assertEquals("Update counts differ", rows.getCrdt().countUpdate(), columns.getCrdt().countUpdate());
+			assertEquals("Delete counts differ", rows.getCrdt().countDelete(), columns.getCrdt().countDelete());
+			assertEquals("Operation counts differ", rows.getCrdt().getOperationCount(), columns.getCrdt().getOperationCount());
+			assertEquals("Created states differ", rows.getCrdt().isCreated(), columns.getCrdt().isCreated());
+			assertEquals("Deleted states differ", rows.getCrdt().isDeleted(), columns.getCrdt().isDeleted());
+			assertEquals("Empty states differ", rows.getCrdt().isEmpty(), columns.getCrdt().isEmpty());
+			assertEquals("Documents differ", rows.getCrdt().getDocument(), columns.getCrdt().getDocument());
+			assertEquals("Past documents differ", rows.getCrdt().getDocument(timestamp), columns.getCrdt().getDocument(timestamp));
+		}
+	}
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright (c) 2017 Cybernetic Frontiers LLC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package com.cyberfront.crdt.unittest.crdt;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.cyberfront.crdt.BulkMaterializer.BulkException;
+import com.cyberfront.crdt.BulkMaterializer.Mode;
+import com.cyberfront.crdt.BulkMaterializer.Report;
+import com.cyberfront.crdt.BulkMaterializer;
+import com.cyberfront.crdt.CRDTManager;
+import com.cyberfront.crdt.operations.OperationManager.StatusType;
+import com.cyberfront.crdt.operations.UpdateOperation;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * This contains a class used for performing unit tests designed to check the BulkMaterializer.  It is successful if
+ * validating many managers in parallel materializes each document exactly once, as it would be sequentially, reports
+ * exactly the managers holding invalid operations, and a failure part way through cancels the rest of the run.
+ */
+public class Test06BulkMaterialization {
+
+	/** The ObjectMapper used to build test documents and patches */
+	private final ObjectMapper mapper = new ObjectMapper();
+
+	/**
+	 * Create a manager holding a number of updates, along with an update which cannot be applied if requested
+	 *
+	 * @param index The index of the manager, which determines its updates
+	 * @param invalid Flag indicating whether to include an update which cannot be applied
+	 * @return The new manager
+	 * @throws IOException If a test document cannot be read
+	 */
+	private DeliveryManager bulkManager(int index, boolean invalid) throws IOException {
+		DeliveryManager rv = new DeliveryManager(this.mapper.readTree("{\"a\":" + index + "}"));
+		
+		for (int i = 1; i <= 8; ++i) {
+			rv.deliver(StatusType.APPROVED, new UpdateOperation(this.mapper.readTree("[{\"op\":\"add\",\"path\":\"/b" + i + "\",\"value\":" + index * i + "}]"), (long) i));
+		}
+		
+		if (invalid) {
+			rv.deliver(StatusType.APPROVED, new UpdateOperation(this.mapper.readTree("[{\"op\":\"remove\",\"path\":\"/x\"}]"), 9L));
+		}
+		
+		return rv;
+	}
+
+	/**
+	 * This test will validate many managers in parallel and confirm each document was materialized exactly once, matches
+	 * the document materialized sequentially, and that exactly the managers holding invalid operations were reported,
+	 * then confirm an exception thrown part way through cancels the rest of the run
+	 *
+	 * @throws IOException If a test document cannot be read
+	 */
+	@Test
+	public void bulkMaterializationTest() throws IOException {
+		int count = 256;
+		List<CRDTManager> managers = new ArrayList<>();
+		List<CRDTManager> expected = new ArrayList<>();
+		List<JsonNode> documents = new ArrayList<>();
+		
+		for (int i = 0; i < count; ++i) {
+			managers.add(this.bulkManager(i, 0 == i % 8));
+			documents.add(this.bulkManager(i, 0 == i % 8).getCrdt().getDocument());
+			
+			if (0 == i % 8) {
+				expected.add(managers.get(i));
+			}
+		}
+		
+		AtomicInteger progress = new AtomicInteger();
+		Report report;
+		
+		try (BulkMaterializer materializer = new BulkMaterializer(4)) {
+			report = materializer.run(managers, Mode.VALIDATE, (completed, total) -> progress.accumulateAndGet(completed, Math::max));
+		}
+		
+		assertEquals("Not every manager was counted", count, report.getTotal());
+		assertEquals("Not every manager was completed", count, report.getCompleted());
+		assertEquals("Progress was not reported for every manager", count, progress.get());
+		assertEquals("Wrong number of invalid managers", expected.size(), report.getInvalid().size());
+		
+		for (CRDTManager manager : expected) {
+			assertTrue("Invalid manager not reported", report.getInvalid().stream().anyMatch(el -> el == manager));
+		}
+		
+		for (int i = 0; i < count; ++i) {
+			assertEquals("Document was not materialized exactly once", 1L, managers.get(i).getCrdt().getReplayCount());
+			assertEquals("Parallel document differs", documents.get(i), managers.get(i).getCrdt().getDocument());
+			assertEquals("Reading a materialized document replayed it", 1L, managers.get(i).getCrdt().getReplayCount());
+		}
+		
+		List<CRDTManager> cold = new ArrayList<>();
+		for (int i = 0; i < count; ++i) {
+			cold.add(this.bulkManager(i, false));
+		}
+		
+		try (BulkMaterializer materializer = new BulkMaterializer(4)) {
+			materializer.run(cold, Mode.MATERIALIZE, (completed, total) -> {
+				if (16 == completed) {
+					throw new IllegalStateException("Cancelled by the test");
+				}
+			});
+			assertTrue("Failure did not cancel the run", false);
+		} catch (BulkException e) {
+			assertTrue("Wrong cause reported", e.getCause() instanceof IllegalStateException);
+			assertNotNull("Failed manager not reported", e.getManager());
+			assertTrue("Run was not cancelled", e.getReport().getCompleted() < count);
+			assertTrue("Cancelled run still materialized every document", cold.stream().anyMatch(el -> 0 == el.getCrdt().getReplayCount()));
+		}
+	}
+}
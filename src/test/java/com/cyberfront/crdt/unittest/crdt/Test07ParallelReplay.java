@@ -0,0 +1,157 @@
+/*
+ * Copyright (c) 2017 Cybernetic Frontiers LLC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package com.cyberfront.crdt.unittest.crdt;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.cyberfront.crdt.LastWriteWins.Backend;
+import com.cyberfront.crdt.operations.AbstractOperation;
+import com.cyberfront.crdt.operations.OperationManager.StatusType;
+import com.cyberfront.crdt.operations.UpdateOperation;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * This contains a class used for performing unit tests designed to check the parallel replay of the IN_PLACE backend.
+ * It is successful if replaying a large document whose updates mostly touch disjoint items splits runs of updates, and
+ * produces the same document and invalid operations, in the same order, as a sequential replay and the JSON_PATCH
+ * backend.
+ */
+public class Test07ParallelReplay {
+
+	/** The ObjectMapper used to build test documents and patches */
+	private final ObjectMapper mapper = new ObjectMapper();
+
+	/**
+	 * Generate a random update of a document holding an array of items, which mostly changes a single item, fails now
+	 * and then, and occasionally adds an item or changes the root, which a parallel replay must apply on its own
+	 *
+	 * @param rnd The source of randomness
+	 * @param items The number of items the document starts with
+	 * @param timestamp The timestamp of the update
+	 * @return The new update
+	 * @throws IOException If the update cannot be read
+	 */
+	private AbstractOperation itemUpdate(Random rnd, int items, long timestamp) throws IOException {
+		String item = "/items/" + rnd.nextInt(items);
+		String patch;
+		
+		switch (rnd.nextInt(256)) {
+		case 0:
+			patch = "[{\"op\":\"add\",\"path\":\"/items/-\",\"value\":{\"n\":0,\"tags\":[]}}]";
+			break;
+		case 1:
+			patch = "[{\"op\":\"replace\",\"path\":\"/id\",\"value\":" + timestamp + "}]";
+			break;
+		default:
+			switch (rnd.nextInt(6)) {
+			case 0:
+				patch = "[{\"op\":\"add\",\"path\":\"" + item + "/tags/-\",\"value\":" + timestamp + "}]";
+				break;
+			case 1:
+				patch = "[{\"op\":\"remove\",\"path\":\"" + item + "/tags/0\"}]";
+				break;
+			case 2:
+				patch = "[{\"op\":\"test\",\"path\":\"" + item + "/n\",\"value\":" + rnd.nextInt(4) + "},{\"op\":\"replace\",\"path\":\"" + item + "/n\",\"value\":" + timestamp + "}]";
+				break;
+			case 3:
+				patch = "[{\"op\":\"move\",\"from\":\"" + item + "/n\",\"path\":\"" + item + "/m\"}]";
+				break;
+			case 4:
+				patch = "[{\"op\":\"replace\",\"path\":\"/meta/" + (char) ('a' + rnd.nextInt(3)) + "/x\",\"value\":" + timestamp + "}]";
+				break;
+			default:
+				patch = "[{\"op\":\"replace\",\"path\":\"" + item + "/n\",\"value\":" + rnd.nextInt(4) + "}]";
+				break;
+			}
+		}
+		
+		return new UpdateOperation(this.mapper.readTree(patch), timestamp);
+	}
+
+	/**
+	 * This test will replay a large document whose updates mostly touch disjoint items, sequentially and in parallel, and
+	 * confirm the parallel replay split runs of updates and produced the same document and the same invalid operations,
+	 * in the same order, as the sequential replay and the JSON Patch backend
+	 *
+	 * @throws IOException If a test document cannot be read
+	 */
+	@Test
+	public void parallelReplayTest() throws IOException {
+		Random rnd = new Random(0L);
+		int items = 256;
+		int count = 4096;
+		ObjectNode document = this.mapper.createObjectNode();
+		
+		document.put("id", 0);
+		document.set("meta", this.mapper.readTree("{\"a\":{\"x\":0},\"b\":{\"x\":0},\"c\":{\"x\":0}}"));
+		for (int i = 0; i < items; ++i) {
+			document.withArray("items").add(this.mapper.readTree("{\"n\":0,\"tags\":[]}"));
+		}
+		
+		DeliveryManager reference = new DeliveryManager(document);
+		DeliveryManager sequential = new DeliveryManager(document);
+		DeliveryManager parallel = new DeliveryManager(document);
+		
+		sequential.getCrdt().setBackend(Backend.IN_PLACE);
+		parallel.getCrdt().setBackend(Backend.IN_PLACE);
+		parallel.getCrdt().setParallelReplay(true);
+		
+		for (int i = 0; i < count; ++i) {
+			AbstractOperation op = this.itemUpdate(rnd, items, 1L + rnd.nextInt(4 * count));
+			reference.deliver(StatusType.APPROVED, op.copy());
+			sequential.deliver(StatusType.APPROVED, op.copy());
+			parallel.deliver(StatusType.APPROVED, op.copy());
+		}
+		
+		JsonNode expected = sequential.getCrdt().getDocument();
+		assertEquals("Parallel replay changed the document", expected, parallel.getCrdt().getDocument());
+		assertEquals("In place replay differs from JSON Patch", reference.getCrdt().getDocument(), expected);
+		assertTrue("Parallel replay applied no run concurrently", parallel.getCrdt().getParallelRunCount() > 0);
+		assertEquals("Sequential replay applied a run concurrently", 0L, sequential.getCrdt().getParallelRunCount());
+		
+		List<Long> invalid = new ArrayList<>();
+		for (AbstractOperation op : sequential.getCrdt().getInvalidOperations()) {
+			invalid.add(op.getOperationId());
+		}
+		
+		List<Long> parallelInvalid = new ArrayList<>();
+		for (AbstractOperation op : parallel.getCrdt().getInvalidOperations()) {
+			parallelInvalid.add(op.getOperationId());
+		}
+		
+		assertTrue("No update was invalid", !invalid.isEmpty());
+		assertEquals("Parallel replay found different invalid operations", invalid, parallelInvalid);
+		assertEquals("In place replay found a different number of invalid operations", reference.getCrdt().getInvalidOperations().size(), invalid.size());
+		assertEquals("Parallel replay did not count invalid operations", sequential.getCrdt().getInvalidCount(), parallel.getCrdt().getInvalidCount());
+	}
+}
@@ -0,0 +1,211 @@
+/*
+ * Copyright (c) 2017 Cybernetic Frontiers LLC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package com.cyberfront.crdt.unittest.crdt;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+import org.junit.Test;
+
+import com.cyberfront.crdt.Snapshot;
+import com.cyberfront.crdt.causal.Dot;
+import com.cyberfront.crdt.operations.AbstractOperation;
+import com.cyberfront.crdt.operations.DeleteOperation;
+import com.cyberfront.crdt.operations.OperationManager.StatusType;
+import com.cyberfront.crdt.operations.UpdateOperation;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * This contains a class used for performing unit tests designed to check the Snapshot of CRDT managers.  It is
+ * successful if managers read back from a snapshot match those written without replaying their operations, and a
+ * snapshot which is corrupt, whatever part of it is damaged, is refused with every manager restored from it left empty
+ * and nothing read past its end.
+ */
+public class Test08Snapshot {
+
+	/** The ObjectMapper used to build test documents and patches */
+	private final ObjectMapper mapper = new ObjectMapper();
+
+	/**
+	 * Create a manager holding dotted updates, an update removed after it was added, a tombstone for an update never
+	 * added, an update which cannot be applied, and depending on its index an operation held for causal delivery or a
+	 * delete
+	 *
+	 * @param index The index of the manager, which determines its operations
+	 * @param replica The replica stamped on the dotted updates
+	 * @return The new manager
+	 * @throws IOException If a test document cannot be read
+	 */
+	private DeliveryManager snapshotManager(int index, UUID replica) throws IOException {
+		DeliveryManager rv = new DeliveryManager(this.mapper.readTree("{\"a\":" + index + "}"));
+		rv.setReplicaId(replica);
+		
+		for (int i = 1; i <= 8; ++i) {
+			AbstractOperation op = new UpdateOperation(this.mapper.readTree("[{\"op\":\"add\",\"path\":\"/b" + i + "\",\"value\":" + index * i + "}]"), (long) i).copy(new Dot(replica, i));
+			rv.deliver(StatusType.APPROVED, op);
+			
+			if (3 == i) {
+				rv.deliver(StatusType.REJECTED, op.copy());
+			}
+		}
+		
+		rv.deliver(StatusType.APPROVED, new UpdateOperation(this.mapper.readTree("[{\"op\":\"remove\",\"path\":\"/x\"}]"), 9L));
+		rv.deliver(StatusType.REJECTED, new UpdateOperation(this.mapper.readTree("[{\"op\":\"remove\",\"path\":\"/a\"}]"), 20L));
+		
+		if (0 == index % 2) {
+			AbstractOperation ahead = new UpdateOperation(this.mapper.readTree("[{\"op\":\"add\",\"path\":\"/c\",\"value\":1}]"), 25L).copy(new Dot(UUID.randomUUID(), 2L));
+			rv.setCausalDelivery(true);
+			rv.deliver(StatusType.APPROVED, ahead);
+		} else if (0 == index % 3) {
+			rv.deliver(StatusType.APPROVED, new DeleteOperation(30L));
+		}
+		
+		return rv;
+	}
+
+	/**
+	 * This test will write a snapshot of several managers and read it back, confirming each restored manager serves the
+	 * same documents, operations, version vector and held operations without replaying its operations, still rejects
+	 * redelivered operations, including those it only holds tombstones for, and that a corrupted snapshot is refused
+	 *
+	 * @throws IOException If a test document cannot be read or the snapshot cannot be written
+	 */
+	@Test
+	public void snapshotTest() throws IOException {
+		UUID replica = UUID.randomUUID();
+		List<DeliveryManager> managers = new ArrayList<>();
+		
+		for (int i = 0; i < 12; ++i) {
+			managers.add(this.snapshotManager(i, replica));
+		}
+		
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		Snapshot.writeAll(managers, bytes);
+		byte[] snapshot = bytes.toByteArray();
+		
+		List<DeliveryManager> restored = Snapshot.readAll(new ByteArrayInputStream(snapshot), () -> new DeliveryManager(this.mapper.createObjectNode()));
+		assertEquals("Wrong number of managers restored", managers.size(), restored.size());
+		
+		for (int i = 0; i < managers.size(); ++i) {
+			DeliveryManager expected = managers.get(i);
+			DeliveryManager actual = restored.get(i);
+			long replays = actual.getCrdt().getReplayCount();
+			
+			assertEquals("Restored document differs", expected.getCrdt().getDocument(), actual.getCrdt().getDocument());
+			if (!expected.isDeleted()) {
+				assertEquals("Restored document was replayed", replays, actual.getCrdt().getReplayCount());
+			}
+			assertEquals("Restored invalid operations differ", expected.getCrdt().getInvalidOperations().size(), actual.getCrdt().getInvalidOperations().size());
+			assertEquals("Restored operations differ", expected.getCrdt().getOpsSet().size(), actual.getCrdt().getOpsSet().size());
+			assertEquals("Restored tombstones differ", expected.getCrdt().getRemCount(), actual.getCrdt().getRemCount());
+			assertEquals("Restored updates differ", expected.getCrdt().countUpdate(), actual.getCrdt().countUpdate());
+			assertEquals("Restored deleted state differs", expected.isDeleted(), actual.isDeleted());
+			assertEquals("Restored version vector differs", expected.getVersionVector(), actual.getVersionVector());
+			assertEquals("Restored held operations differ", expected.getHeldCount(), actual.getHeldCount());
+			assertEquals("Restored replica differs", expected.getReplicaId(), actual.getReplicaId());
+			
+			for (long timestamp = 0L; timestamp <= 10L; ++timestamp) {
+				assertEquals("Restored past document differs", expected.getCrdt().getDocument(timestamp), actual.getCrdt().getDocument(timestamp));
+			}
+			
+			long duplicates = actual.getDuplicateCount();
+			JsonNode document = actual.getCrdt().getDocument();
+			document = null == document ? null : document.deepCopy();
+			
+			for (AbstractOperation op : expected.getCrdt().copyAddSet()) {
+				actual.deliver(StatusType.APPROVED, op);
+			}
+			
+			assertEquals("Redelivered operations were not rejected", duplicates + expected.getCrdt().getAddCount(), actual.getDuplicateCount());
+			assertEquals("Redelivered operations changed the document", document, actual.getCrdt().getDocument());
+		}
+		
+		byte[] corrupt = Arrays.copyOf(snapshot, snapshot.length);
+		corrupt[corrupt.length / 2] ^= 0x10;
+		this.assertRefused(corrupt, "Corrupt snapshot was read");
+	}
+
+	/**
+	 * Read a snapshot into fresh managers, confirming it is refused and every manager restored from it is left empty
+	 *
+	 * @param snapshot The bytes of the snapshot to read
+	 * @param message The message reported if the snapshot is read
+	 */
+	private void assertRefused(byte[] snapshot, String message) {
+		List<DeliveryManager> damaged = new ArrayList<>();
+		
+		try {
+			Snapshot.readAll(new ByteArrayInputStream(snapshot), () -> {
+				DeliveryManager manager = new DeliveryManager(this.mapper.createObjectNode());
+				damaged.add(manager);
+				return manager;
+			});
+			assertTrue(message, false);
+		} catch (IOException e) {
+			assertTrue("Corrupt snapshot left a manager populated", damaged.stream().allMatch(el -> el.getCrdt().isEmpty()));
+		}
+	}
+
+	/**
+	 * This test will damage the counts and lengths a snapshot holds, and confirm each damaged snapshot is refused without
+	 * claiming the memory a damaged length asks for, and that reading a snapshot leaves whatever follows it unread
+	 *
+	 * @throws IOException If a test document cannot be read or the snapshot cannot be written
+	 */
+	@Test
+	public void corruptionTest() throws IOException {
+		UUID replica = UUID.randomUUID();
+		List<DeliveryManager> managers = new ArrayList<>();
+		
+		for (int i = 0; i < 4; ++i) {
+			managers.add(this.snapshotManager(i, replica));
+		}
+		
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		Snapshot.writeAll(managers, bytes);
+		byte[] snapshot = bytes.toByteArray();
+		
+		// The manager count follows the magic number and version, and the length of the first frame follows the count
+		for (int value : new int[] { -1, 5, Integer.MAX_VALUE }) {
+			this.assertRefused(ByteBuffer.wrap(Arrays.copyOf(snapshot, snapshot.length)).putInt(8, value).array(), "Snapshot with a damaged count was read");
+			this.assertRefused(ByteBuffer.wrap(Arrays.copyOf(snapshot, snapshot.length)).putInt(12, value).array(), "Snapshot with a damaged length was read");
+		}
+		
+		this.assertRefused(Arrays.copyOf(snapshot, snapshot.length - 1), "Truncated snapshot was read");
+		
+		bytes.write(new byte[] { 1, 2, 3 });
+		ByteArrayInputStream in = new ByteArrayInputStream(bytes.toByteArray());
+		assertEquals("Wrong number of managers restored", managers.size(), Snapshot.readAll(in, () -> new DeliveryManager(this.mapper.createObjectNode())).size());
+		assertEquals("Reading the snapshot read past its end", 3, in.available());
+	}
+}
@@ -0,0 +1,211 @@
+/*
+ * Copyright (c) 2017 Cybernetic Frontiers LLC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package com.cyberfront.crdt.unittest.events;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.cyberfront.crdt.LastWriteWins;
+import com.cyberfront.crdt.events.ChangeEvent;
+import com.cyberfront.crdt.events.ChangeSubscriber;
+import com.cyberfront.crdt.events.ChangeSubscription;
+import com.cyberfront.crdt.operations.AbstractOperation;
+import com.cyberfront.crdt.operations.CreateOperation;
+import com.cyberfront.crdt.operations.UpdateOperation;
+import com.cyberfront.crdt.sample.manager.JsonManager;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.fge.jsonpatch.JsonPatch;
+import com.github.fge.jsonpatch.JsonPatchException;
+
+/**
+ * This contains a class used for performing unit tests designed to check the change feed published by each CRDT.  It is
+ * successful if every change is published once, in order, with a patch reproducing the document, and duplicate
+ * operations publish nothing and leave the document alone.
+ */
+public class Test01ChangeFeed {
+
+	/** The ObjectMapper used to build test documents and patches */
+	private final ObjectMapper mapper = new ObjectMapper();
+
+	/**
+	 * A ChangeSubscriber recording every event it receives, requesting one event at a time
+	 */
+	private static class Recorder implements ChangeSubscriber {
+		/** The events received */
+		private final List<ChangeEvent> events = new CopyOnWriteArrayList<>();
+		
+		/** The errors received */
+		private final List<Throwable> errors = new CopyOnWriteArrayList<>();
+		
+		/** The latch counted down as each event arrives */
+		private final CountDownLatch latch;
+		
+		/** The subscription of this subscriber */
+		private ChangeSubscription subscription;
+		
+		/**
+		 * Instantiates a new Recorder expecting the given number of events
+		 *
+		 * @param expected The number of events expected
+		 */
+		public Recorder(int expected) {
+			this.latch = new CountDownLatch(expected);
+		}
+		
+		/* (non-Javadoc)
+		 * @see com.cyberfront.crdt.events.ChangeSubscriber#onSubscribe(com.cyberfront.crdt.events.ChangeSubscription)
+		 */
+		@Override
+		public void onSubscribe(ChangeSubscription subscription) {
+			this.subscription = subscription;
+			subscription.request(1);
+		}
+		
+		/* (non-Javadoc)
+		 * @see com.cyberfront.crdt.events.ChangeSubscriber#onNext(com.cyberfront.crdt.events.ChangeEvent)
+		 */
+		@Override
+		public void onNext(ChangeEvent event) {
+			this.events.add(event);
+			this.latch.countDown();
+			this.subscription.request(1);
+		}
+		
+		/* (non-Javadoc)
+		 * @see com.cyberfront.crdt.events.ChangeSubscriber#onError(java.lang.Throwable)
+		 */
+		@Override
+		public void onError(Throwable error) {
+			this.errors.add(error);
+		}
+		
+		/* (non-Javadoc)
+		 * @see com.cyberfront.crdt.events.ChangeSubscriber#onComplete()
+		 */
+		@Override
+		public void onComplete() {
+		}
+	}
+
+	/**
+	 * A LastWriteWins CRDT whose operations are inserted directly, as a manager would insert them
+	 */
+	private static class DirectCrdt extends LastWriteWins {
+		/**
+		 * Insert an operation to the ADD set
+		 *
+		 * @param op The operation to insert
+		 * @return True exactly when the operation was not already in the ADD set
+		 */
+		public boolean add(AbstractOperation op) {
+			return this.addOperation(op);
+		}
+		
+		/**
+		 * Insert an operation to the REMOVE set
+		 *
+		 * @param op The operation to insert
+		 * @return True exactly when the operation was not already in the REMOVE set
+		 */
+		public boolean remove(AbstractOperation op) {
+			return this.remOperation(op);
+		}
+	}
+
+	/**
+	 * This test will subscribe to the changes of a CRDT, requesting one event at a time and asking for patches, then
+	 * update the document, and confirm an event arrives for each update and that applying the published patches in turn
+	 * reproduces the final document
+	 *
+	 * @throws IOException If a test document cannot be read
+	 * @throws InterruptedException If the test is interrupted while waiting for events
+	 * @throws JsonPatchException If a published patch cannot be applied
+	 */
+	@Test
+	public void changeFeedTest() throws IOException, InterruptedException, JsonPatchException {
+		JsonManager manager = new JsonManager(this.mapper.readTree("{\"a\":0}"), 0L);
+		JsonNode initial = manager.getCrdt().getDocument();
+		Recorder recorder = new Recorder(3);
+		
+		manager.getCrdt().getChanges().subscribe(recorder, 16, true);
+		
+		for (long timestamp = 1; timestamp <= 3; ++timestamp) {
+			manager.update(this.mapper.readTree("{\"a\":" + timestamp + ",\"b\":[" + timestamp + "]}"), timestamp);
+		}
+		
+		assertTrue("Change events were not delivered", recorder.latch.await(10, TimeUnit.SECONDS));
+		assertTrue("Change feed failed", recorder.errors.isEmpty());
+		
+		JsonNode document = initial;
+		for (ChangeEvent event : recorder.events) {
+			assertEquals("Change was not an addition", ChangeEvent.Kind.ADD, event.getKind());
+			document = JsonPatch.fromJson(event.getPatch()).apply(document);
+		}
+		
+		assertEquals("Published patches do not reproduce the document", manager.getCrdt().getDocument(), document);
+		manager.getCrdt().getChanges().close();
+	}
+
+	/**
+	 * This test will insert duplicates of operations a CRDT already holds while a subscriber asks for patches and the
+	 * document is not materialized, and confirm each duplicate is counted without replaying the document or publishing
+	 * a change
+	 *
+	 * @throws IOException If a test document cannot be read
+	 */
+	@Test
+	public void duplicateTest() throws IOException {
+		DirectCrdt crdt = new DirectCrdt();
+		AbstractOperation create = new CreateOperation(this.mapper.readTree("[{\"op\":\"add\",\"path\":\"/a\",\"value\":0}]"), 0L);
+		AbstractOperation first = new UpdateOperation(this.mapper.readTree("[{\"op\":\"replace\",\"path\":\"/a\",\"value\":1}]"), 1L);
+		AbstractOperation second = new UpdateOperation(this.mapper.readTree("[{\"op\":\"replace\",\"path\":\"/a\",\"value\":2}]"), 2L);
+		
+		crdt.add(create);
+		crdt.add(first);
+		crdt.add(second);
+		crdt.remove(second);
+		
+		Recorder recorder = new Recorder(0);
+		crdt.getChanges().subscribe(recorder, 16, true);
+		long replays = crdt.getReplayCount();
+		
+		assertFalse("Duplicate addition was inserted", crdt.add(first.copy()));
+		assertFalse("Duplicate removal was inserted", crdt.remove(second.copy()));
+		
+		assertEquals("Duplicates replayed the document", replays, crdt.getReplayCount());
+		assertEquals("Duplicates were not counted", 2L, crdt.getDuplicateCount());
+		assertTrue("Duplicates published a change", recorder.events.isEmpty());
+		assertEquals("Duplicates changed the document", 1, crdt.getDocument().get("a").asInt());
+		crdt.getChanges().close();
+	}
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) 2017 Cybernetic Frontiers LLC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package com.cyberfront.crdt.unittest.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.Test;
+
+import com.cyberfront.crdt.metrics.InProcessRegistry;
+import com.cyberfront.crdt.metrics.Metrics;
+import com.cyberfront.crdt.metrics.MetricsMBeanAdapter;
+import com.cyberfront.crdt.metrics.MetricsRegistry;
+import com.cyberfront.crdt.operations.OperationManager.StatusType;
+import com.cyberfront.crdt.operations.UpdateOperation;
+import com.cyberfront.crdt.sample.manager.GenericManager;
+import com.cyberfront.crdt.unittest.crdt.DeliveryManager;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * This contains a class used for performing unit tests designed to check the instrumentation of the CRDTs.  It is
+ * successful if a metrics registry, the MBean publishing it and the CRDTs agree on the rebuilds, operations applied and
+ * invalid operations, and nothing is reported while metrics are disabled.
+ */
+public class Test01Instrumentation {
+
+	/** The ObjectMapper used to build test documents and patches */
+	private final ObjectMapper mapper = new ObjectMapper();
+
+	/**
+	 * This test will update and read documents with a fresh metrics registry installed and published through JMX, and
+	 * confirm the registry, the MBean and the CRDTs agree on the rebuilds, operations applied and invalid operations, and
+	 * that nothing is reported while metrics are disabled
+	 *
+	 * @throws IOException If a test document cannot be read
+	 * @throws JMException If the metrics cannot be published through JMX
+	 */
+	@Test
+	public void instrumentationTest() throws IOException, JMException {
+		MetricsRegistry previous = Metrics.getRegistry();
+		InProcessRegistry registry = new InProcessRegistry();
+		int count = 16;
+		
+		Metrics.setRegistry(registry);
+		MetricsMBeanAdapter.unregister();
+		ObjectName name = MetricsMBeanAdapter.register(registry);
+		
+		try {
+			GenericManager<ObjectNode> manager = new GenericManager<>((ObjectNode) this.mapper.readTree("{\"a\":0}"), 0L);
+			for (int i = 1; i <= count; ++i) {
+				manager.update((ObjectNode) this.mapper.readTree("{\"a\":" + i + "}"), i);
+				assertEquals("Read the wrong object", i, manager.read(i).get("a").asInt());
+			}
+			
+			DeliveryManager invalid = new DeliveryManager(this.mapper.readTree("{\"a\":0}"));
+			invalid.deliver(StatusType.APPROVED, new UpdateOperation(this.mapper.readTree("[{\"op\":\"remove\",\"path\":\"/x\"}]"), 1L));
+			assertTrue("Invalid operation was not found", invalid.getCrdt().hasInvalidOperations());
+			
+			long rebuilds = manager.getCrdt().getReplayCount() + invalid.getCrdt().getReplayCount();
+			assertEquals("Rebuilds were not counted", rebuilds, registry.counter(Metrics.TRIAL_REBUILDS).getCount());
+			assertEquals("Replays were not recorded", rebuilds, registry.histogram(Metrics.TRIAL_REPLAYED).getCount());
+			assertEquals("Invalid operations were not counted", invalid.getCrdt().getInvalidCount(), registry.counter(Metrics.INVALID_OPERATIONS).getCount());
+			assertEquals("Diffs were not timed", count, registry.histogram(Metrics.DIFF_NANOS).getCount());
+			assertTrue("Conversions were not timed", registry.histogram(Metrics.TREE_TO_VALUE_NANOS).getCount() >= count);
+			assertTrue("Patches were not timed", registry.histogram(Metrics.PATCH_APPLY_NANOS).getCount() > count);
+			assertTrue("Patch time was not kept by the CRDT", manager.getCrdt().getApplyNanos() > 0L);
+			
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			assertEquals("MBean disagrees with the registry", rebuilds, server.getAttribute(name, Metrics.TRIAL_REBUILDS));
+			assertEquals("MBean disagrees with the registry", registry.histogram(Metrics.PATCH_APPLY_NANOS).getCount(), server.getAttribute(name, Metrics.PATCH_APPLY_NANOS + ".count"));
+			assertTrue("MBean does not list the histograms", Arrays.stream(server.getMBeanInfo(name).getAttributes()).anyMatch(el -> (Metrics.DIFF_NANOS + ".p99").equals(el.getName())));
+			
+			Metrics.setRegistry(null);
+			long applied = registry.histogram(Metrics.PATCH_APPLY_NANOS).getCount();
+			manager.update((ObjectNode) this.mapper.readTree("{\"a\":-1}"), count + 1);
+			manager.getCrdt().getDocument(count);
+			assertEquals("Disabled metrics were reported", applied, registry.histogram(Metrics.PATCH_APPLY_NANOS).getCount());
+			assertEquals("Disabled metrics read the clock", 0L, Metrics.start());
+		} finally {
+			Metrics.setRegistry(previous);
+			MetricsMBeanAdapter.unregister();
+		}
+	}
+}
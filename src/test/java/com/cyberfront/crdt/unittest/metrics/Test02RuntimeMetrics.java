@@ -0,0 +1,123 @@
+/*
+ * Copyright (c) 2017 Cybernetic Frontiers LLC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package com.cyberfront.crdt.unittest.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.util.List;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.Test;
+
+import com.cyberfront.crdt.metrics.InProcessRegistry;
+import com.cyberfront.crdt.metrics.Metrics;
+import com.cyberfront.crdt.metrics.PrometheusExporter;
+import com.cyberfront.crdt.metrics.RuntimeMetrics;
+import com.cyberfront.crdt.operations.OperationManager.StatusType;
+import com.cyberfront.crdt.operations.UpdateOperation;
+import com.cyberfront.crdt.unittest.crdt.DeliveryManager;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * This contains a class used for performing unit tests designed to check the process wide runtime metrics.  It is
+ * successful if the metrics follow the operations delivered, cancelled and read, both when read directly and through
+ * JMX, and the Prometheus dump of a registry they are bound to holds them.
+ */
+public class Test02RuntimeMetrics {
+
+	/** The ObjectMapper used to build test documents and patches */
+	private final ObjectMapper mapper = new ObjectMapper();
+
+	/**
+	 * This test will deliver, cancel and read operations, and confirm the process wide runtime metrics follow them, both
+	 * when read directly and through JMX, and that the Prometheus dump of a registry they are bound to holds them
+	 *
+	 * @throws IOException If a test document cannot be read or the dump cannot be written
+	 * @throws JMException If the runtime metrics cannot be published through JMX
+	 */
+	@Test
+	public void runtimeMetricsTest() throws IOException, JMException {
+		RuntimeMetrics metrics = RuntimeMetrics.getInstance();
+		long managers = metrics.getManagers();
+		long ingested = metrics.getOperationsIngested();
+		long adds = metrics.getAddSetSize();
+		long rems = metrics.getRemSetSize();
+		long live = metrics.getLiveOperations();
+		long hits = metrics.getCacheHits();
+		long failures = metrics.getPatchFailures();
+		
+		DeliveryManager manager = new DeliveryManager(this.mapper.readTree("{\"a\":0}"));
+		UpdateOperation cancelled = new UpdateOperation(this.mapper.readTree("[{\"op\":\"add\",\"path\":\"/b\",\"value\":1}]"), 1L);
+		manager.deliver(StatusType.APPROVED, cancelled);
+		manager.deliver(StatusType.APPROVED, new UpdateOperation(this.mapper.readTree("[{\"op\":\"remove\",\"path\":\"/x\"}]"), 2L));
+		manager.deliver(StatusType.REJECTED, cancelled.copy());
+		manager.getCrdt().getDocument();
+		manager.getCrdt().getDocument();
+		
+		assertEquals("Manager was not counted", managers + 1, metrics.getManagers());
+		assertEquals("Operations were not counted", ingested + 4, metrics.getOperationsIngested());
+		assertEquals("ADD set was not counted", adds + 3, metrics.getAddSetSize());
+		assertEquals("REMOVE set was not counted", rems + 1, metrics.getRemSetSize());
+		assertEquals("Live operations were not counted", live + 2, metrics.getLiveOperations());
+		assertTrue("Cache hit was not counted", metrics.getCacheHits() > hits);
+		assertTrue("Patch failure was not counted", metrics.getPatchFailures() > failures);
+		assertTrue("Hit ratio out of range", metrics.getCacheHitRatio() > 0.0 && metrics.getCacheHitRatio() <= 1.0);
+		
+		manager.getCrdt().clear();
+		assertEquals("Cleared operations were still counted", live, metrics.getLiveOperations());
+		
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		ObjectName name = RuntimeMetrics.register();
+		try {
+			assertEquals("MBean disagrees with the metrics", metrics.getManagers(), server.getAttribute(name, "Managers"));
+			assertEquals("MBean disagrees with the metrics", metrics.getAddSetSize(), server.getAttribute(name, "AddSetSize"));
+		} finally {
+			RuntimeMetrics.unregister();
+		}
+		
+		InProcessRegistry registry = new InProcessRegistry();
+		metrics.bindTo(registry);
+		registry.counter(Metrics.TRIAL_REBUILDS).add(3L);
+		registry.histogram(Metrics.PATCH_APPLY_NANOS).record(100L);
+		
+		File dump = File.createTempFile("metrics", ".prom");
+		try {
+			PrometheusExporter.dump(registry, dump);
+			List<String> lines = Files.readAllLines(dump.toPath());
+			assertTrue("Gauge was not dumped", lines.contains("crdt_runtime_managers " + (double) metrics.getManagers()));
+			assertTrue("Counter was not dumped", lines.contains("crdt_trial_rebuilds_total 3"));
+			assertTrue("Histogram was not dumped", lines.contains("crdt_patch_apply_nanos_count 1"));
+			assertTrue("Type was not dumped", lines.contains("# TYPE crdt_runtime_cache_hit_ratio gauge"));
+		} finally {
+			dump.delete();
+		}
+	}
+}
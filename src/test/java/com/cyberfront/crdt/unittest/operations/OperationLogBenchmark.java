@@ -0,0 +1,119 @@
+/*
+ * Copyright (c) 2017 Cybernetic Frontiers LLC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package com.cyberfront.crdt.unittest.operations;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.junit.Test;
+
+import com.cyberfront.crdt.operations.AbstractOperation;
+import com.cyberfront.crdt.operations.OperationLog;
+import com.cyberfront.crdt.operations.ReadOperation;
+import com.cyberfront.crdt.unittest.operations.Test01OperationLog.Arrival;
+
+/**
+ * This contains a class used for timing the OperationLog against the TreeSet it replaces on the arrival patterns seen in
+ * practice.  Its name keeps it out of the unit tests, so it runs only under the benchmark profile, as with
+ * mvn test -Pbenchmark.
+ */
+public class OperationLogBenchmark {
+
+	/** Logger to use when displaying state information */
+	private Logger logger = LogManager.getLogger(OperationLogBenchmark.class.getName());
+
+	/** Number of operations inserted in the benchmark */
+	private static final int BENCHMARK_COUNT = 1 << 18;
+
+	/** Number of times the benchmark replays each log */
+	private static final int REPLAY_COUNT = 8;
+
+	/**
+	 * Build a TreeSet and an OperationLog from the same realistic arrivals, replay each several times, and report the time
+	 * each took.  The times are reported rather than checked, since they depend on the machine running the test.
+	 *
+	 * @param count The number of operations in each log
+	 */
+	private void benchmark(int count) {
+		logger.info("\n** OperationLogBenchmark: {\"count\":" + count + ",\"replays\":" + REPLAY_COUNT + "}");
+		
+		for (Arrival arrival : new Arrival[] { Arrival.ORDERED, Arrival.JITTERED }) {
+			List<AbstractOperation> ops = new ArrayList<>(count);
+			for (long timestamp : Test01OperationLog.arrivals(arrival, count, new Random(1L))) {
+				ops.add(new ReadOperation(timestamp));
+			}
+			
+			long start = System.nanoTime();
+			TreeSet<AbstractOperation> tree = new TreeSet<>();
+			for (AbstractOperation op : ops) {
+				tree.add(op);
+			}
+			long treeBuild = System.nanoTime() - start;
+			
+			start = System.nanoTime();
+			OperationLog log = new OperationLog();
+			for (AbstractOperation op : ops) {
+				log.add(op);
+			}
+			long logBuild = System.nanoTime() - start;
+			
+			long treeSum = 0L;
+			start = System.nanoTime();
+			for (int i = 0; i < REPLAY_COUNT; ++i) {
+				for (AbstractOperation op : tree) {
+					treeSum += op.getOperationId();
+				}
+			}
+			long treeReplay = System.nanoTime() - start;
+			
+			long logSum = 0L;
+			start = System.nanoTime();
+			for (int i = 0; i < REPLAY_COUNT; ++i) {
+				for (AbstractOperation op : log) {
+					logSum += op.getOperationId();
+				}
+			}
+			long logReplay = System.nanoTime() - start;
+			
+			assertEquals(treeSum, logSum);
+			logger.info("   " + arrival + ": {\"treeBuildMs\":" + treeBuild / 1000000 + ",\"logBuildMs\":" + logBuild / 1000000
+					+ ",\"treeReplayMs\":" + treeReplay / 1000000 + ",\"logReplayMs\":" + logReplay / 1000000 + "}");
+		}
+		
+		logger.info("   SUCCESS");
+	}
+
+	/**
+	 * The main routine used to time the OperationLog against a TreeSet
+	 */
+	@Test
+	public void benchmark() {
+		this.benchmark(BENCHMARK_COUNT);
+	}
+}
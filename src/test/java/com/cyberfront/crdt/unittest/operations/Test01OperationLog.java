@@ -0,0 +1,201 @@
+/*
+ * Copyright (c) 2017 Cybernetic Frontiers LLC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package com.cyberfront.crdt.unittest.operations;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.junit.Test;
+
+import com.cyberfront.crdt.operations.AbstractOperation;
+import com.cyberfront.crdt.operations.OperationLog;
+import com.cyberfront.crdt.operations.ReadOperation;
+import com.cyberfront.crdt.unittest.data.AssessmentSupport;
+
+/**
+ * This contains a class used for performing unit tests designed to compare the OperationLog against the TreeSet it
+ * replaces.  It is successful if both hold the same operations in the same order over random inserts and removals under
+ * each arrival distribution.  The time each takes to build and replay a log is reported by OperationLogBenchmark, which
+ * runs only under the benchmark profile.
+ */
+public class Test01OperationLog extends AssessmentSupport {
+
+	/** Logger to use when displaying state information */
+	private Logger logger = LogManager.getLogger(Test01OperationLog.class.getName());
+
+	/** Number of operations inserted in each differential test */
+	private static final int OPERATION_COUNT = 4096;
+
+	/**
+	 * The ways operations may arrive
+	 */
+	enum Arrival {
+		
+		/** Every operation arrives in timestamp order */
+		ORDERED,
+		
+		/** Most operations arrive in order, with one in twenty delayed by a short random interval */
+		JITTERED,
+		
+		/** Operations arrive in reverse timestamp order */
+		REVERSED,
+		
+		/** Operations arrive in random order */
+		RANDOM
+	}
+
+	/**
+	 * Generate the timestamps of operations in the order they arrive.  Some timestamps repeat, so operations are also
+	 * ordered by what follows the timestamp.
+	 *
+	 * @param arrival The way the operations arrive
+	 * @param count The number of operations
+	 * @param rnd The source of randomness
+	 * @return The timestamps in arrival order
+	 */
+	static List<Long> arrivals(Arrival arrival, int count, Random rnd) {
+		List<Long> rv = new ArrayList<>(count);
+		
+		for (int i = 0; i < count; ++i) {
+			rv.add((long) (i - i % 3));
+		}
+		
+		switch (arrival) {
+		case JITTERED:
+			for (int i = 0; i < count; ++i) {
+				if (0 == rnd.nextInt(20)) {
+					int j = Math.max(0, i - rnd.nextInt(64));
+					rv.add(j, rv.remove(i));
+				}
+			}
+			break;
+		case REVERSED:
+			Collections.reverse(rv);
+			break;
+		case RANDOM:
+			Collections.shuffle(rv, rnd);
+			break;
+		default:
+			break;
+		}
+		
+		return rv;
+	}
+
+	/**
+	 * Compare an OperationLog with a TreeSet holding the same operations
+	 *
+	 * @param expected The TreeSet
+	 * @param actual The OperationLog
+	 */
+	private static void compare(TreeSet<AbstractOperation> expected, OperationLog actual) {
+		assertEquals(expected.size(), actual.size());
+		assertEquals(new ArrayList<>(expected), new ArrayList<>(actual));
+		
+		if (!expected.isEmpty()) {
+			assertEquals(expected.first(), actual.first());
+			assertEquals(expected.last(), actual.last());
+		}
+	}
+
+	/**
+	 * Insert operations arriving in each way in both an OperationLog and a TreeSet, along with redeliveries and
+	 * removals, and compare their contents, lookups, tails and differences
+	 *
+	 * @param count The number of operations to insert for each way they may arrive
+	 */
+	private void differentialTest(int count) {
+		logger.info("\n** Test01OperationLog: {\"count\":" + count + "}");
+		Random rnd = new Random(0L);
+		
+		for (Arrival arrival : Arrival.values()) {
+			TreeSet<AbstractOperation> expected = new TreeSet<>();
+			OperationLog actual = new OperationLog();
+			List<AbstractOperation> ops = new ArrayList<>();
+			
+			for (long timestamp : arrivals(arrival, count, rnd)) {
+				AbstractOperation op = new ReadOperation(timestamp);
+				ops.add(op);
+				assertEquals(expected.add(op), actual.add(op));
+				
+				AbstractOperation redelivered = ops.get(rnd.nextInt(ops.size()));
+				assertEquals(expected.add(redelivered), actual.add(redelivered));
+			}
+			
+			compare(expected, actual);
+			
+			for (int i = 0; i < count / 4; ++i) {
+				AbstractOperation op = ops.get(rnd.nextInt(ops.size()));
+				assertEquals(expected.contains(op), actual.contains(op));
+				assertEquals(new ArrayList<>(expected.tailSet(op, false)), actual.after(op));
+				assertEquals(expected.remove(op), actual.remove(op));
+			}
+			
+			compare(expected, actual);
+			
+			OperationLog removed = new OperationLog();
+			for (AbstractOperation op : ops) {
+				if (0 == rnd.nextInt(3)) {
+					removed.add(op);
+				}
+			}
+			
+			TreeSet<AbstractOperation> difference = new TreeSet<>(expected);
+			difference.removeAll(removed);
+			compare(difference, OperationLog.difference(actual, removed));
+			
+			Iterator<AbstractOperation> iterator = actual.iterator();
+			while (iterator.hasNext()) {
+				if (rnd.nextBoolean()) {
+					expected.remove(iterator.next());
+					iterator.remove();
+				} else {
+					iterator.next();
+				}
+			}
+			
+			compare(expected, actual);
+			actual.clear();
+			assertTrue(actual.isEmpty());
+		}
+		
+		logger.info("   SUCCESS");
+	}
+
+	/**
+	 * The main unit test routine used to compare the OperationLog against a TreeSet
+	 */
+	@Test
+	public void differentialTest() {
+		this.differentialTest(OPERATION_COUNT);
+	}
+}
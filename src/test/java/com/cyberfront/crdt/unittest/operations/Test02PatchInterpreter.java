@@ -0,0 +1,152 @@
+/*
+ * Copyright (c) 2017 Cybernetic Frontiers LLC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package com.cyberfront.crdt.unittest.operations;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.junit.Test;
+
+import com.cyberfront.crdt.LastWriteWins;
+import com.cyberfront.crdt.LastWriteWins.Backend;
+import com.cyberfront.crdt.operations.PatchInterpreter;
+import com.cyberfront.crdt.operations.PatchInterpreter.Mode;
+import com.cyberfront.crdt.sample.data.AbstractDataType;
+import com.cyberfront.crdt.sample.data.Factory;
+import com.cyberfront.crdt.sample.manager.JsonManager;
+import com.cyberfront.crdt.unittest.data.AssessmentSupport;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.github.fge.jsonpatch.JsonPatch;
+import com.github.fge.jsonpatch.JsonPatchException;
+import com.github.fge.jsonpatch.diff.JsonDiff;
+
+/**
+ * This contains a class used for performing unit tests designed to compare the in place PatchInterpreter against the
+ * JSON Patch implementation used by the operations.  It is successful if both produce the same documents from the same
+ * patches, and a failing patch applied in the CHECKED mode leaves the document unchanged.
+ */
+public class Test02PatchInterpreter extends AssessmentSupport {
+
+	/** Logger to use when displaying state information */
+	private Logger logger = LogManager.getLogger(Test02PatchInterpreter.class.getName());
+
+	/** Probability used when updating the test objects */
+	private static final double UPDATE_PROBABILITY = 0.3;
+
+	/** Number of updates applied to each document managed by a CRDT */
+	private static final int UPDATE_COUNT = 8;
+
+	/**
+	 * Compare the documents produced by applying a JsonDiff patch with JSON Patch and in place, then apply the same
+	 * patch followed by a failing test operation and check the document is left unchanged
+	 *
+	 * @param count The number of times to perform the test
+	 * @throws JsonPatchException If either implementation fails to apply a valid patch
+	 * @throws IOException If a patch cannot be read
+	 */
+	private void patchTest(long count) throws JsonPatchException, IOException {
+		logger.info("\n** Test02PatchInterpreter: {\"count\":" + count + "}");
+
+		for (long i=0; i<count; ++i) {
+			AbstractDataType el0 = Factory.getInstance();
+			AbstractDataType el1 = Factory.copy(el0);
+			el1.update(UPDATE_PROBABILITY);
+
+			JsonNode source = this.getMapper().valueToTree(el0);
+			JsonNode target = this.getMapper().valueToTree(el1);
+			JsonNode diff = JsonDiff.asJson(source, target);
+			JsonNode expected = JsonPatch.fromJson(diff).apply(source);
+
+			assertEquals(expected, PatchInterpreter.apply(diff, source.deepCopy(), Mode.IN_PLACE));
+
+			ArrayNode failing = ((ArrayNode) diff).deepCopy();
+			failing.addObject().put("op", "test").put("path", "").put("value", "not the document");
+			JsonNode document = source.deepCopy();
+
+			try {
+				PatchInterpreter.apply(failing, document, Mode.CHECKED);
+				fail("Failing patch was applied");
+			} catch (JsonPatchException e) {
+				assertEquals(source, document);
+			}
+		}
+
+		logger.info("   SUCCESS");
+	}
+
+	/**
+	 * Compare the documents, current and past, materialized by the JSON_PATCH and IN_PLACE backends from the same
+	 * operations
+	 *
+	 * @param count The number of times to perform the test
+	 */
+	private void backendTest(long count) {
+		logger.info("\n** Test02PatchInterpreter backends: {\"count\":" + count + ",\"updates\":" + UPDATE_COUNT + "}");
+
+		for (long i=0; i<count; ++i) {
+			AbstractDataType element = Factory.getInstance();
+			JsonManager manager = new JsonManager(this.getMapper().valueToTree(element), 0L);
+
+			for (long timestamp = 1; timestamp <= UPDATE_COUNT; ++timestamp) {
+				element.update(UPDATE_PROBABILITY);
+				manager.update(this.getMapper().valueToTree(element), timestamp);
+			}
+
+			LastWriteWins crdt = manager.getCrdt();
+
+			for (long timestamp = 0; timestamp <= UPDATE_COUNT; ++timestamp) {
+				crdt.setBackend(Backend.JSON_PATCH);
+				JsonNode expected = crdt.getDocument(timestamp);
+				crdt.setBackend(Backend.IN_PLACE);
+				assertEquals(expected, crdt.getDocument(timestamp));
+				assertEquals(0, crdt.getInvalidOperations().size());
+			}
+		}
+
+		logger.info("   SUCCESS");
+	}
+
+	/**
+	 * The main unit test routine used to compare the patch implementations
+	 *
+	 * @throws JsonPatchException If either implementation fails to apply a valid patch
+	 * @throws IOException If a patch cannot be read
+	 */
+	@Test
+	public void patchTest() throws JsonPatchException, IOException {
+		this.patchTest(getTrialCount());
+	}
+
+	/**
+	 * The main unit test routine used to compare the LastWriteWins backends
+	 */
+	@Test
+	public void backendTest() {
+		this.backendTest(getTrialCount());
+	}
+}
@@ -0,0 +1,236 @@
+/*
+ * Copyright (c) 2017 Cybernetic Frontiers LLC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package com.cyberfront.crdt.unittest.persistent;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.junit.Test;
+
+import com.cyberfront.crdt.LastWriteWins;
+import com.cyberfront.crdt.LastWriteWins.Backend;
+import com.cyberfront.crdt.persistent.PersistentHashMap;
+import com.cyberfront.crdt.persistent.PersistentNode;
+import com.cyberfront.crdt.persistent.PersistentPatch;
+import com.cyberfront.crdt.persistent.PersistentVector;
+import com.cyberfront.crdt.sample.data.AbstractDataType;
+import com.cyberfront.crdt.sample.data.Factory;
+import com.cyberfront.crdt.sample.manager.JsonManager;
+import com.cyberfront.crdt.unittest.data.AssessmentSupport;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.github.fge.jsonpatch.JsonPatch;
+import com.github.fge.jsonpatch.JsonPatchException;
+import com.github.fge.jsonpatch.diff.JsonDiff;
+
+/**
+ * This contains a class used for performing unit tests designed to compare the persistent document model against the
+ * JSON Patch implementation used by the operations.  It is successful if both produce the same documents from the same
+ * patches, and applying a patch to a persistent document leaves the original document unchanged.
+ */
+public class Test01PersistentPatch extends AssessmentSupport {
+
+	/** Logger to use when displaying state information */
+	private Logger logger = LogManager.getLogger(Test01PersistentPatch.class.getName());
+
+	/** Probability used when updating the test objects */
+	private static final double UPDATE_PROBABILITY = 0.3;
+
+	/** Number of updates applied to each document managed by a CRDT */
+	private static final int UPDATE_COUNT = 8;
+
+	/** Number of random changes made to the collections in the collection test */
+	private static final int CHANGE_COUNT = 4096;
+
+	/**
+	 * Compare the documents produced by applying a JsonDiff patch with JSON Patch and with the persistent model
+	 *
+	 * @param count The number of times to perform the test
+	 * @throws JsonPatchException If either implementation fails to apply a patch
+	 * @throws IOException If a patch cannot be read
+	 */
+	private void patchTest(long count) throws JsonPatchException, IOException {
+		logger.info("\n** Test01PersistentPatch: {\"count\":" + count + "}");
+
+		for (long i=0; i<count; ++i) {
+			AbstractDataType el0 = Factory.getInstance();
+			AbstractDataType el1 = Factory.copy(el0);
+			el1.update(UPDATE_PROBABILITY);
+
+			JsonNode source = this.getMapper().valueToTree(el0);
+			JsonNode target = this.getMapper().valueToTree(el1);
+			JsonNode diff = JsonDiff.asJson(source, target);
+
+			PersistentNode original = PersistentNode.from(source);
+			PersistentNode patched = PersistentPatch.apply(diff, original);
+
+			assertEquals(JsonPatch.fromJson(diff).apply(source), patched.toJsonNode());
+			assertEquals(source, original.toJsonNode());
+		}
+
+		logger.info("   SUCCESS");
+	}
+
+	/**
+	 * Compare the documents, current and past, materialized by the two LastWriteWins backends from the same operations
+	 *
+	 * @param count The number of times to perform the test
+	 */
+	private void backendTest(long count) {
+		logger.info("\n** Test01PersistentPatch backends: {\"count\":" + count + ",\"updates\":" + UPDATE_COUNT + "}");
+
+		for (long i=0; i<count; ++i) {
+			AbstractDataType element = Factory.getInstance();
+			JsonManager manager = new JsonManager(this.getMapper().valueToTree(element), 0L);
+
+			for (long timestamp = 1; timestamp <= UPDATE_COUNT; ++timestamp) {
+				element.update(UPDATE_PROBABILITY);
+				manager.update(this.getMapper().valueToTree(element), timestamp);
+			}
+
+			LastWriteWins crdt = manager.getCrdt();
+			List<JsonNode> expected = new ArrayList<>();
+
+			crdt.setBackend(Backend.JSON_PATCH);
+			for (long timestamp = 0; timestamp <= UPDATE_COUNT; ++timestamp) {
+				expected.add(crdt.getDocument(timestamp));
+			}
+
+			crdt.setBackend(Backend.PERSISTENT);
+			assertEquals(expected.get(UPDATE_COUNT), crdt.getDocument());
+			for (int timestamp = 0; timestamp <= UPDATE_COUNT; ++timestamp) {
+				assertEquals(expected.get(timestamp), crdt.getDocument(timestamp));
+				assertEquals(expected.get(timestamp), crdt.getVersion(timestamp).toJsonNode());
+			}
+			assertNull(crdt.getVersion(-1L));
+		}
+
+		logger.info("   SUCCESS");
+	}
+
+	/**
+	 * Compare the persistent collections against their mutable counterparts over a sequence of random changes, checking
+	 * an early version of each is unaffected by the later changes
+	 *
+	 * @param count The number of random changes to make
+	 */
+	private void collectionTest(int count) {
+		logger.info("\n** Test01PersistentPatch collections: {\"changes\":" + count + "}");
+
+		Random rnd = new Random(0L);
+		PersistentVector<Integer> vector = PersistentVector.empty();
+		List<Integer> list = new ArrayList<>();
+		PersistentHashMap<String, Integer> map = PersistentHashMap.empty();
+		Map<String, Integer> hash = new HashMap<>();
+		PersistentVector<Integer> earlyVector = null;
+		List<Integer> earlyList = null;
+
+		for (int i=0; i<count; ++i) {
+			int choice = rnd.nextInt(8);
+			int index = list.isEmpty() ? 0 : rnd.nextInt(list.size());
+
+			if (choice < 4 || list.isEmpty()) {
+				vector = vector.append(i);
+				list.add(i);
+			} else if (choice < 5) {
+				vector = vector.insert(index, i);
+				list.add(index, i);
+			} else if (choice < 6) {
+				vector = vector.remove(index);
+				list.remove(index);
+			} else {
+				vector = vector.set(index, i);
+				list.set(index, i);
+			}
+
+			// "Aa" and "BB" share a hash code, so this also exercises hash collisions
+			String key = (rnd.nextBoolean() ? "Aa" : "BB") + rnd.nextInt(count / 4);
+			if (rnd.nextInt(4) == 0) {
+				map = map.without(key);
+				hash.remove(key);
+			} else {
+				map = map.with(key, i);
+				hash.put(key, i);
+			}
+
+			if (count / 2 == i) {
+				earlyVector = vector;
+				earlyList = new ArrayList<>(list);
+			}
+		}
+
+		assertEquals(list.size(), vector.size());
+		for (int i=0; i<list.size(); ++i) {
+			assertEquals(list.get(i), vector.get(i));
+		}
+
+		assertEquals(earlyList.size(), earlyVector.size());
+		for (int i=0; i<earlyList.size(); ++i) {
+			assertEquals(earlyList.get(i), earlyVector.get(i));
+		}
+
+		Map<String, Integer> entries = new HashMap<>();
+		for (Map.Entry<String, Integer> entry : map) {
+			entries.put(entry.getKey(), entry.getValue());
+		}
+		assertEquals(hash.size(), map.size());
+		assertEquals(hash, entries);
+
+		logger.info("   SUCCESS");
+	}
+
+	/**
+	 * The main unit test routine used to compare the patch implementations
+	 *
+	 * @throws JsonPatchException If either implementation fails to apply a patch
+	 * @throws IOException If a patch cannot be read
+	 */
+	@Test
+	public void patchTest() throws JsonPatchException, IOException {
+		this.patchTest(getTrialCount());
+	}
+
+	/**
+	 * The main unit test routine used to compare the LastWriteWins backends
+	 */
+	@Test
+	public void backendTest() {
+		this.backendTest(getTrialCount());
+	}
+
+	/**
+	 * The main unit test routine used to check the persistent collections
+	 */
+	@Test
+	public void collectionTest() {
+		this.collectionTest(CHANGE_COUNT);
+	}
+}
@@ -27,6 +27,11 @@ import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.UUID;
@@ -35,12 +40,23 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.junit.Test;
 
+import com.cyberfront.crdt.CRDTManager;
+import com.cyberfront.crdt.DocumentCache;
+import com.cyberfront.crdt.operations.AbstractOperation;
+import com.cyberfront.crdt.operations.OperationCodec;
+import com.cyberfront.crdt.operations.Payload;
+import com.cyberfront.crdt.operations.UpdateOperation;
 import com.cyberfront.crdt.sample.data.AbstractDataType;
 import com.cyberfront.crdt.sample.simlation.Executive;
+import com.cyberfront.crdt.sample.simlation.LatencyModel;
+import com.cyberfront.crdt.sample.simlation.NetworkModel;
 import com.cyberfront.crdt.sample.simlation.Node;
 import com.cyberfront.crdt.sample.simlation.SimCRDTManager;
+import com.cyberfront.crdt.support.MemoryEstimate;
+import com.cyberfront.crdt.support.SlabArena;
 import com.cyberfront.crdt.unittest.data.AssessmentSupport;
 import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.github.fge.jsonpatch.diff.JsonDiff;	// Use this with jsonpatch
 //import com.flipkart.zjsonpatch.JsonDiff;		// Use this with zjsonpatch
 
@@ -394,7 +410,7 @@ public class Test01Simulation {
 					sb.append(String.valueOf(count));
 					
 					logger.info("{\"node-id\":\"" + node.getId().toString() + "\",");
-					logger.info("\"executive\":" + Executive.getExecutive().toString() + "}");
+					logger.info("\"executive\":\"" + Executive.getExecutive().dump() + "\"}");
 
 					assertTrue(sb.toString(), this.getCreateCount() == count);
 				}
@@ -506,7 +522,7 @@ public class Test01Simulation {
 					assertNull("CRDT has no create operations but is not null" + errMsg, val);
 				} else if (deleted) {
 					if (null != val) {
-						logger.info(Executive.getExecutive().toString());
+						logger.info("Executive state written to " + Executive.getExecutive().dump());
 					}
 					
 					assertNull("CRDT was deleted but is not null" + errMsg, val);
@@ -656,6 +672,207 @@ public class Test01Simulation {
 		test.test();
 	}
 
+	/**
+	 * This test will perform a qualitative assessment of the ability to perform create, read, update and delete
+	 * operations on a CRDT and have those operations propagate across all the nodes in a simulated distributed
+	 * environment spread across regions joined by bandwidth limited links, which suffers a partition along with
+	 * dropped and duplicated messages, and which gossips operations rather than broadcasting them. 
+	 */
+	@Test
+	public void simulateNetwork() {
+		NetworkModel network = new NetworkModel();
+		String r0 = NetworkModel.getRegionName(0);
+		String r1 = NetworkModel.getRegionName(1);
+		
+		network.setRegionCount(2);
+		network.setLink(r0, r0, LatencyModel.exponential(1024.0), 0L);
+		network.setLink(r1, r1, LatencyModel.normal(1024.0, 256.0), 0L);
+		network.setLink(r0, r1, LatencyModel.uniform(16384L, 65536L), 64L);
+		network.setLink(r1, r0, LatencyModel.constant(32768L), 64L);
+		network.addPartition(Arrays.asList(r0), 65536L, 1048576L);
+		network.setDropProbability(0.05d);
+		network.setDuplicateProbability(0.05d);
+		network.setFanout(3);
+		
+		Executive.getExecutive().getRouter().setNetwork(network);
+		
+		try {
+			SimulationTest test = new SimulationTest();
+			test.setNodeCount(8 * test.getAbbreviatedFactor());
+			test.setTrialCount(2 * test.getAbbreviatedFactor());
+			test.test();
+			
+			assertTrue("No messages were sent", network.getSentCount() > 0);
+			assertTrue("No messages were relayed", network.getRelayCount() > 0);
+			assertTrue("Relays were not counted as sent", network.getSentCount() > network.getRelayCount());
+			assertEquals("Duplicates were not all rejected by their receivers",
+					network.getDuplicateCount(), Executive.getExecutive().getRouter().getDiscardCount());
+		} finally {
+			Executive.getExecutive().getRouter().setNetwork(null);
+		}
+	}
+
+	/**
+	 * This test will run the create, read, update and delete simulation while exporting the simulation metrics to a
+	 * CSV file, and confirm the file holds a header row followed by one row of plausible measurements per trial.
+	 *
+	 * @throws IOException If the temporary metrics file cannot be created, read or removed
+	 */
+	@Test
+	public void simulateMetrics() throws IOException {
+		File file = File.createTempFile("simulation", ".csv");
+		file.delete();
+		
+		Executive.getExecutive().setMetricsFile(file.getPath());
+		
+		try {
+			SimulationTest test = new SimulationTest();
+			test.test();
+			
+			List<String> lines = Files.readAllLines(file.toPath());
+			assertEquals("Unexpected number of metrics rows", test.getTrialCount() + 1, lines.size());
+			assertEquals("Header and row widths differ", lines.get(0).split(",").length, lines.get(1).split(",").length);
+			assertTrue("No events were recorded", Executive.getExecutive().getMetrics().getEventsPerSecond() > 0.0);
+			assertTrue("No messages were in flight", Executive.getExecutive().getMetrics().getPeakInFlight() > 0);
+		} finally {
+			Executive.getExecutive().setMetricsFile(null);
+			Files.deleteIfExists(file.toPath());
+		}
+	}
+
+	/**
+	 * This test will run the create, read, update and delete simulation with a small budget for materialized documents,
+	 * and confirm cold documents were released and rebuilt without affecting the consistency of the nodes
+	 */
+	@Test
+	public void simulateDocumentCache() {
+		DocumentCache cache = DocumentCache.getInstance();
+		cache.clear();
+		cache.setBudget(1L << 16);
+		
+		try {
+			SimulationTest test = new SimulationTest();
+			test.test();
+			
+			assertTrue("No documents were released", cache.getEvictionCount() > 0);
+			assertTrue("Resident documents exceed the budget", cache.getResidentCount() <= 1 || cache.getResidentBytes() <= cache.getBudget());
+		} finally {
+			cache.setBudget(0L);
+			cache.clear();
+		}
+	}
+
+	/**
+	 * This test will run the create, read, update and delete simulation with the operation payloads held off heap, and
+	 * confirm the payloads were stored in the off heap arena without affecting the consistency of the nodes, and that the
+	 * arena itself holds on to no more than the slab it is filling
+	 */
+	@Test
+	public void simulateOffHeap() {
+		long stored = Payload.getArena().getStoredBytes();
+		AbstractOperation.setOffHeapPayloads(true);
+		
+		try {
+			SimulationTest test = new SimulationTest();
+			test.test();
+			
+			assertTrue("No payloads were stored off heap", Payload.getArena().getStoredBytes() > stored);
+			assertTrue("The arena retains more than the slab being filled", Payload.getArena().getRetainedBytes() <= SlabArena.DEFAULT_SLAB_SIZE);
+		} finally {
+			AbstractOperation.setOffHeapPayloads(false);
+		}
+	}
+
+	/**
+	 * This test will run the create, read, update and delete simulation with operations encoded as they cross the
+	 * network, confirm the nodes remain consistent, and confirm a decoded operation defers parsing its JSON operation
+	 * while still comparing equal to the original
+	 *
+	 * @throws IOException If an operation cannot be encoded or decoded
+	 */
+	@Test
+	public void simulateWireEncoding() throws IOException {
+		NetworkModel network = Executive.getExecutive().getRouter().getNetwork();
+		network.setWireEncoding(true);
+		
+		try {
+			SimulationTest test = new SimulationTest();
+			test.test();
+			
+			assertTrue("No operations were encoded", network.getEncodedBytes() > 0);
+		} finally {
+			network.setWireEncoding(false);
+		}
+		
+		JsonNode patch = new ObjectMapper().readTree("[{\"op\":\"add\",\"path\":\"/a\",\"value\":1}]");
+		AbstractOperation op = new UpdateOperation(patch, 1L);
+		AbstractOperation decoded = OperationCodec.decode(OperationCodec.encode(op));
+		
+		assertEquals("Decoded operation differs in ordering", 0, op.compareTo(decoded));
+		assertEquals("Decoded operation hash differs", op.hashCode(), decoded.hashCode());
+		assertTrue("Decoded operation was parsed eagerly", !decoded.getPayload().isParsed());
+		assertEquals("Decoded operation differs", op, decoded);
+		assertTrue("Decoded operation was not parsed on use", decoded.getPayload().isParsed());
+	}
+
+	/**
+	 * This test will run the create, read, update and delete simulation, and confirm the memory estimate maintained
+	 * incrementally by each CRDT matches one recomputed from its operations
+	 */
+	@Test
+	public void simulateMemory() {
+		SimulationTest test = new SimulationTest();
+		test.test();
+		
+		MemoryEstimate total = Executive.getExecutive().getMemoryEstimate();
+		assertTrue("No operation memory was estimated", total.getOperationBytes() > 0);
+		assertTrue("No patch memory was estimated", total.getPatchBytes() > 0);
+		
+		for (Node node : Executive.getExecutive().getNodes().values()) {
+			for (SimCRDTManager<? extends AbstractDataType> crdt : node.getDatastore().values()) {
+				long patchBytes = 0;
+				long count = 0;
+				
+				for (AbstractOperation op : crdt.getCrdt().copyAddSet()) {
+					patchBytes += op.getPatchBytes();
+					++count;
+				}
+				for (AbstractOperation op : crdt.getCrdt().copyRemSet()) {
+					patchBytes += op.getPatchBytes();
+					++count;
+				}
+				
+				MemoryEstimate estimate = crdt.getMemoryEstimate();
+				assertEquals("Patch estimate drifted", patchBytes, estimate.getPatchBytes());
+				assertEquals("Operation estimate drifted", count * (MemoryEstimate.OPERATION_BYTES + MemoryEstimate.SET_ENTRY_BYTES), estimate.getOperationBytes());
+			}
+		}
+	}
+
+	/**
+	 * This test will run the create, read, update and delete simulation, stream the final state of the Executive to a
+	 * file, and confirm the file holds well formed JSON describing every node.
+	 *
+	 * @throws IOException If the state file cannot be read or removed
+	 */
+	@Test
+	public void simulateDump() throws IOException {
+		SimulationTest test = new SimulationTest();
+		test.test();
+		
+		File file = Executive.getExecutive().dump();
+		assertNotNull("Executive state was not written", file);
+		
+		try {
+			JsonNode state = new ObjectMapper().readTree(file);
+			assertEquals("Node count mismatch in executive state", test.getNodeCount(), state.get("nodes").size());
+			assertEquals("Timestamp mismatch in executive state",
+					Executive.getExecutive().getTimestamp(), state.get("router").get("timestamp").asLong());
+		} finally {
+			Files.deleteIfExists(file.toPath());
+		}
+	}
+
 	/**
 	 * This test will perform a behavioral and stability assessment of the ability to perform create, read and update
 	 * operations on a CRDT and have those operations propagate across all the nodes in
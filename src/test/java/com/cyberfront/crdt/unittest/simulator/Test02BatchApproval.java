@@ -0,0 +1,173 @@
+/*
+ * Copyright (c) 2017 Cybernetic Frontiers LLC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package com.cyberfront.crdt.unittest.simulator;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+import org.junit.Test;
+
+import com.cyberfront.crdt.operations.AbstractOperation;
+import com.cyberfront.crdt.operations.AbstractOperation.OperationType;
+import com.cyberfront.crdt.operations.CreateOperation;
+import com.cyberfront.crdt.operations.DeleteOperation;
+import com.cyberfront.crdt.operations.OperationManager.StatusType;
+import com.cyberfront.crdt.operations.ReadOperation;
+import com.cyberfront.crdt.operations.UpdateOperation;
+import com.cyberfront.crdt.sample.data.AbstractDataType;
+import com.cyberfront.crdt.sample.data.SimpleA;
+import com.cyberfront.crdt.sample.simlation.Executive;
+import com.cyberfront.crdt.sample.simlation.Message;
+import com.cyberfront.crdt.sample.simlation.Node;
+import com.cyberfront.crdt.sample.simlation.SimCRDTManager;
+import com.cyberfront.crdt.sample.simlation.SimOperationManager;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * This contains a class used for performing unit tests designed to check how a locally managed CRDT approves a batch of
+ * messages delivered together.  It is successful if each PENDING operation of a batch is approved or rejected exactly as
+ * it is when its message is delivered on its own, whatever the operations after it in the batch.
+ */
+public class Test02BatchApproval {
+
+	/** The ObjectMapper used to build test patches */
+	private final ObjectMapper mapper = new ObjectMapper();
+
+	/**
+	 * Create a CRDT manager on a fresh single node simulation, managed by the node which owns it
+	 *
+	 * @return The new CRDT manager
+	 */
+	private static SimCRDTManager<SimpleA> manager() {
+		Node node = new Node();
+		
+		Executive.getExecutive().clear();
+		Executive.getExecutive().addNode(node);
+		
+		return new SimCRDTManager<>(UUID.randomUUID(), node.getId(), node.getId(), SimpleA.class);
+	}
+
+	/**
+	 * Build the message delivering an operation to the node owning a CRDT manager
+	 *
+	 * @param crdt The CRDT manager to deliver to
+	 * @param status The status of the operation delivered
+	 * @param op The operation delivered
+	 * @return The message delivering the operation
+	 */
+	private static Message<SimpleA> message(SimCRDTManager<SimpleA> crdt, StatusType status, AbstractOperation op) {
+		UUID node = crdt.getOwnerNodeID();
+		return new Message<>(node, node, new SimOperationManager<>(status, op, crdt.getObjectId(), SimpleA.class), 0L);
+	}
+
+	/**
+	 * Find the types of the operations approved by a collection of messages
+	 *
+	 * @param msgs The messages to search
+	 * @return The types of the APPROVED operations, in the order of the messages
+	 */
+	private static List<OperationType> approved(Collection<Message<? extends AbstractDataType>> msgs) {
+		List<OperationType> rv = new ArrayList<>();
+		
+		for (Message<? extends AbstractDataType> msg : msgs) {
+			if (StatusType.APPROVED == msg.getManager().getStatus()) {
+				rv.add(msg.getManager().getOperation().getType());
+			}
+		}
+		
+		return rv;
+	}
+
+	/**
+	 * Deliver operations to a fresh CRDT manager as a single batch, and to another one message at a time, and confirm both
+	 * approve the operations expected
+	 *
+	 * @param pReject The probability of rejecting each PENDING operation
+	 * @param statuses The status of each operation delivered
+	 * @param ops The operations delivered, in order
+	 * @param expected The types of the operations expected to be approved
+	 */
+	private static void assessBatch(double pReject, StatusType[] statuses, AbstractOperation[] ops, List<OperationType> expected) {
+		try {
+			SimCRDTManager<SimpleA> batched = manager();
+			List<Message<SimpleA>> batch = new ArrayList<>();
+			
+			for (int i = 0; i < ops.length; ++i) {
+				batch.add(message(batched, statuses[i], ops[i].copy()));
+			}
+			
+			assertEquals("Batch changed the operations approved", expected, approved(batched.push(batch, pReject)));
+			
+			SimCRDTManager<SimpleA> single = manager();
+			Collection<Message<? extends AbstractDataType>> sent = new ArrayList<>();
+			
+			for (int i = 0; i < ops.length; ++i) {
+				sent.addAll(single.push(message(single, statuses[i], ops[i].copy()), pReject));
+			}
+			
+			assertEquals("Single deliveries approved the wrong operations", expected, approved(sent));
+		} finally {
+			Executive.getExecutive().clear();
+		}
+	}
+
+	/**
+	 * This test will deliver a batch holding a valid CREATE followed by an UPDATE which cannot be applied and a READ, and
+	 * confirm the CREATE is approved although the batch goes on to hold an invalid operation, while the READ, which
+	 * follows the invalid UPDATE, is not
+	 *
+	 * @throws IOException If a test patch cannot be read
+	 */
+	@Test
+	public void mixedBatchTest() throws IOException {
+		StatusType[] statuses = { StatusType.PENDING, StatusType.PENDING, StatusType.PENDING };
+		AbstractOperation[] ops = {
+				new CreateOperation(this.mapper.readTree("[{\"op\":\"add\",\"path\":\"/a\",\"value\":1}]"), 1L),
+				new UpdateOperation(this.mapper.readTree("[{\"op\":\"remove\",\"path\":\"/x\"}]"), 2L),
+				new ReadOperation(3L) };
+		
+		assessBatch(0.0, statuses, ops, Collections.singletonList(OperationType.CREATE));
+	}
+
+	/**
+	 * This test will deliver a batch holding a PENDING DELETE followed by the APPROVED CREATE it precedes, with every
+	 * operation rejected unless it must be approved, and confirm the DELETE is approved, as it is judged on the CRDT as
+	 * it was when the DELETE was pushed, before the CREATE arrived
+	 */
+	@Test
+	public void deleteBatchTest() {
+		StatusType[] statuses = { StatusType.PENDING, StatusType.APPROVED };
+		AbstractOperation[] ops = {
+				new DeleteOperation(2L),
+				new CreateOperation(this.mapper.createArrayNode(), 1L) };
+		
+		assessBatch(1.0, statuses, ops, Arrays.asList(OperationType.DELETE));
+	}
+}
@@ -0,0 +1,179 @@
+/*
+ * Copyright (c) 2017 Cybernetic Frontiers LLC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package com.cyberfront.crdt.unittest.support;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.junit.Test;
+
+import com.cyberfront.crdt.support.IndexedMap;
+
+/**
+ * This contains a class used for performing unit tests designed to check the IndexedMap.  It is successful if the map
+ * holds the same entries in the same order as a TreeMap over random puts, replacements and removals, its dense array
+ * stays in step with its entries as removals swap the last entry into the vacated position, and random picks only ever
+ * return entries it still holds.
+ */
+public class Test01IndexedMap {
+
+	/** Number of random changes made in the differential test */
+	private static final int CHANGE_COUNT = 4096;
+
+	/** Number of distinct keys the random changes draw from */
+	private static final int KEY_COUNT = 256;
+
+	/**
+	 * Confirm an IndexedMap holds the same entries as a TreeMap, in the same order, and that its dense array holds each
+	 * of its entries exactly once
+	 *
+	 * @param expected The TreeMap
+	 * @param actual The IndexedMap
+	 */
+	private static void compare(TreeMap<Integer, String> expected, IndexedMap<Integer, String> actual) {
+		assertEquals("Sizes differ", expected.size(), actual.size());
+		assertEquals("Entries differ", new ArrayList<>(expected.entrySet()), new ArrayList<>(actual.entrySet()));
+		
+		Set<Integer> positioned = new HashSet<>();
+		for (int i = 0; i < actual.size(); ++i) {
+			Integer key = actual.getKey(i);
+			assertTrue("Key held at two positions " + key, positioned.add(key));
+			assertTrue("Dense array holds a removed key " + key, expected.containsKey(key));
+			assertEquals("Dense array value out of step for " + key, expected.get(key), actual.getValue(i));
+		}
+	}
+
+	/**
+	 * This test will put, replace and remove random entries in an IndexedMap and a TreeMap, and confirm after every change
+	 * that they return the same previous values and hold the same entries, and that the dense array matches them
+	 */
+	@Test
+	public void differentialTest() {
+		Random rnd = new Random(0L);
+		TreeMap<Integer, String> expected = new TreeMap<>();
+		IndexedMap<Integer, String> actual = new IndexedMap<>();
+		
+		for (int i = 0; i < CHANGE_COUNT; ++i) {
+			Integer key = rnd.nextInt(KEY_COUNT);
+			
+			if (rnd.nextInt(3) > 0) {
+				String value = "v" + i;
+				assertEquals("Put returned a different previous value", expected.put(key, value), actual.put(key, value));
+			} else {
+				assertEquals("Remove returned a different value", expected.remove(key), actual.remove(key));
+			}
+			
+			assertEquals("Lookups differ", expected.get(key), actual.get(key));
+			assertEquals("Membership differs", expected.containsKey(key), actual.containsKey(key));
+			compare(expected, actual);
+		}
+		
+		actual.clear();
+		assertTrue("Cleared map is not empty", actual.isEmpty());
+		assertNull("Cleared map picked a key", actual.pickKey(rnd));
+		assertNull("Cleared map picked a value", actual.pickValue(rnd));
+	}
+
+	/**
+	 * This test will remove entries from the front, middle and end of the dense array, and confirm the last entry moves
+	 * into each vacated position while the others keep theirs, and that a key the TreeMap rejects leaves the map unchanged
+	 */
+	@Test
+	public void swapRemoveTest() {
+		IndexedMap<Integer, String> map = new IndexedMap<>();
+		
+		for (int i = 0; i < 8; ++i) {
+			map.put(i, "v" + i);
+		}
+		
+		map.put(3, "w3");
+		assertEquals("Replacing a value moved its key", 3, map.getKey(3).intValue());
+		assertEquals("Replacing a value left the old one in the dense array", "w3", map.getValue(3));
+		
+		assertEquals("Wrong value removed", "v2", map.remove(2));
+		assertEquals("Last key did not fill the vacated position", 7, map.getKey(2).intValue());
+		assertEquals("Last value did not fill the vacated position", "v7", map.getValue(2));
+		
+		assertEquals("Wrong value removed", "v6", map.remove(6));
+		assertEquals("Removing the last entry moved another", 6, map.size());
+		
+		assertEquals("Wrong value removed", "v0", map.remove(0));
+		assertEquals("Last key did not fill the first position", 5, map.getKey(0).intValue());
+		assertNull("Removing an absent key returned a value", map.remove(0));
+		
+		for (int i = 0; i < map.size(); ++i) {
+			assertEquals("Dense array out of step", map.get(map.getKey(i)), map.getValue(i));
+		}
+		
+		try {
+			map.put(null, "null");
+			assertTrue("TreeMap accepted a null key", false);
+		} catch (NullPointerException e) {
+			assertEquals("Rejected key changed the dense array", map.size(), map.entrySet().size());
+			assertTrue("Rejected key was given a position", !map.containsKey(null));
+		}
+	}
+
+	/**
+	 * This test will remove most of the entries of a map, and confirm random picks of keys and values return only the
+	 * entries which remain, and every one of them
+	 */
+	@Test
+	public void pickTest() {
+		Random rnd = new Random(0L);
+		IndexedMap<Integer, String> map = new IndexedMap<>();
+		
+		for (int i = 0; i < KEY_COUNT; ++i) {
+			map.put(i, "v" + i);
+		}
+		
+		for (int i = 0; i < KEY_COUNT; ++i) {
+			if (0 != i % 8) {
+				map.remove(i);
+			}
+		}
+		
+		Set<Integer> keys = new HashSet<>();
+		Set<String> values = new HashSet<>();
+		
+		for (int i = 0; i < 64 * map.size(); ++i) {
+			Integer key = map.pickKey(rnd);
+			String value = map.pickValue(rnd);
+			
+			assertTrue("Picked a removed key " + key, map.containsKey(key));
+			assertTrue("Picked a removed value " + value, map.containsValue(value));
+			keys.add(key);
+			values.add(value);
+		}
+		
+		assertEquals("Not every remaining key was picked", map.keySet(), keys);
+		assertEquals("Not every remaining value was picked", new HashSet<>(map.values()), values);
+	}
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright (c) 2017 Cybernetic Frontiers LLC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ */
+package com.cyberfront.crdt.unittest.support;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collection;
+
+import org.junit.Test;
+
+import com.cyberfront.crdt.sample.data.AbstractDataType;
+import com.cyberfront.crdt.sample.data.SimpleA;
+import com.cyberfront.crdt.sample.simlation.Executive;
+import com.cyberfront.crdt.sample.simlation.Message;
+import com.cyberfront.crdt.sample.simlation.Node;
+import com.cyberfront.crdt.support.JsonStreamable;
+import com.cyberfront.crdt.support.Support;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * This contains a class used for performing unit tests designed to check the JSON written by the JsonStreamable classes.
+ * It is successful if the toString() method of each of them returns exactly the JSON it streams to a file, and that JSON
+ * parses.
+ */
+public class Test02JsonStreamable {
+
+	/** Number of nodes in the simulation written */
+	private static final int NODE_COUNT = 3;
+
+	/** The ObjectMapper used to parse the JSON written */
+	private final ObjectMapper mapper = new ObjectMapper();
+
+	/**
+	 * Confirm the toString() method of a value returns the JSON it streams to a file, and that the JSON parses
+	 *
+	 * @param value The value to check
+	 * @throws IOException If the file cannot be written or read, or the JSON cannot be parsed
+	 */
+	private void assessJson(JsonStreamable value) throws IOException {
+		File file = File.createTempFile("streamable", ".json");
+		
+		try {
+			Support.writeJson(value, file);
+			String streamed = new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+			
+			assertEquals("toString() differs from the streamed JSON", streamed, value.toString());
+			assertFalse("Streamed JSON does not parse", this.mapper.readTree(streamed).isMissingNode());
+		} finally {
+			file.delete();
+		}
+	}
+
+	/**
+	 * This test will create and update an object on one node of a small simulation, and confirm the toString() method of
+	 * each message sent, each node, and the Executive holding the router, network model and every CRDT, returns exactly
+	 * the JSON it streams
+	 *
+	 * @throws IOException If a file cannot be written or read, or the JSON cannot be parsed
+	 */
+	@Test
+	public void toStringTest() throws IOException {
+		try {
+			Executive.getExecutive().clear();
+			for (int i = 0; i < NODE_COUNT; ++i) {
+				Executive.getExecutive().addNode(new Node());
+			}
+			
+			Node node = Executive.getExecutive().pickNode();
+			Collection<Message<? extends AbstractDataType>> messages = new ArrayList<>();
+			messages.addAll(node.generateCreateOperation(new SimpleA()));
+			messages.addAll(node.generateUpdateOperation(1.0));
+			Executive.getExecutive().transmit(messages);
+			
+			for (Message<? extends AbstractDataType> message : messages) {
+				this.assessJson(message);
+				this.assessJson(message.getManager());
+			}
+			
+			for (Node n : Executive.getExecutive().getNodes().values()) {
+				this.assessJson(n);
+			}
+			
+			this.assessJson(Executive.getExecutive());
+		} finally {
+			Executive.getExecutive().clear();
+		}
+	}
+}